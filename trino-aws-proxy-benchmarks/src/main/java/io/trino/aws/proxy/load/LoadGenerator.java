@@ -0,0 +1,289 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.load.OperationResult.Recorder;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import io.trino.aws.proxy.spi.credentials.Credentials;
+import io.trino.aws.proxy.spi.signing.SigningController;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends signed GET, PUT, HEAD and ListObjectsV2 requests from a fixed number of concurrent workers. Each
+ * worker sends its next request as soon as the response to the previous one has been read.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class LoadGenerator
+{
+    public static final String BUCKET = "load-test";
+
+    private static final String REGION = "us-east-1";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final int KEYS_PER_DIRECTORY = 100;
+    // uploads overwrite a fixed set of keys so that the memory held by the stub stays bounded
+    private static final int UPLOAD_KEYS = 100;
+
+    private final LoadTestConfig config;
+    private final URI s3Uri;
+    private final SigningController signingController;
+    private final SigningMetadata signingMetadata;
+    private final List<LoadOperation> operations;
+    private final byte[] payload;
+    private final String payloadHash;
+    private final long rangeSize;
+
+    /**
+     * @param s3Uri the URI that path style S3 requests are relative to
+     */
+    public LoadGenerator(LoadTestConfig config, URI s3Uri, SigningController signingController, Credentials credentials)
+    {
+        this.config = requireNonNull(config, "config is null");
+        this.s3Uri = requireNonNull(s3Uri, "s3Uri is null");
+        this.signingController = requireNonNull(signingController, "signingController is null");
+        signingMetadata = new SigningMetadata(SigningServiceType.S3, credentials, Optional.empty());
+
+        ImmutableList.Builder<LoadOperation> operations = ImmutableList.builder();
+        addWeighted(operations, LoadOperation.GET, config.getGetWeight());
+        addWeighted(operations, LoadOperation.PUT, config.getPutWeight());
+        addWeighted(operations, LoadOperation.HEAD, config.getHeadWeight());
+        addWeighted(operations, LoadOperation.LIST, config.getListWeight());
+        this.operations = operations.build();
+
+        payload = new byte[(int) config.getObjectSize().toBytes()];
+        ThreadLocalRandom.current().nextBytes(payload);
+        payloadHash = sha256().hashBytes(payload).toString();
+        rangeSize = config.getRangeSize().map(DataSize::toBytes).orElse(0L);
+    }
+
+    /**
+     * Store the objects read by the test in the stub. All objects share the same data.
+     */
+    public void populate(StubS3Server stub)
+    {
+        stub.createBucket(BUCKET);
+        for (int i = 0; i < config.getObjects(); i++) {
+            stub.putObject(BUCKET, objectKey(i), payload);
+        }
+    }
+
+    public LoadTestResult run()
+            throws InterruptedException
+    {
+        long measureStart = System.nanoTime() + config.getWarmup().roundTo(TimeUnit.NANOSECONDS);
+        long measureEnd = measureStart + config.getDuration().roundTo(TimeUnit.NANOSECONDS);
+
+        List<Map<LoadOperation, Recorder>> recorders = new ArrayList<>();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+                ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .executor(clientExecutor)
+                        .build()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < config.getConcurrency(); i++) {
+                Map<LoadOperation, Recorder> workerRecorders = new EnumMap<>(LoadOperation.class);
+                for (LoadOperation operation : LoadOperation.values()) {
+                    workerRecorders.put(operation, new Recorder());
+                }
+                recorders.add(workerRecorders);
+                futures.add(workers.submit(() -> runWorker(client, workerRecorders, measureStart, measureEnd)));
+            }
+
+            TimeUnit.NANOSECONDS.sleep(measureStart - System.nanoTime());
+            ResourceUsage startUsage = ResourceUsage.current();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            ResourceUsage endUsage = ResourceUsage.current();
+
+            Map<LoadOperation, OperationResult> results = new EnumMap<>(LoadOperation.class);
+            for (LoadOperation operation : LoadOperation.values()) {
+                results.put(operation, OperationResult.merge(recorders.stream().map(workerRecorders -> workerRecorders.get(operation)).collect(Collectors.toList())));
+            }
+            return new LoadTestResult(
+                    config.getTarget().toString(),
+                    config.getConcurrency(),
+                    config.getDuration(),
+                    results,
+                    endUsage.cpuNanos() - startUsage.cpuNanos(),
+                    endUsage.allocatedBytes().isPresent() && startUsage.allocatedBytes().isPresent()
+                            ? OptionalLong.of(endUsage.allocatedBytes().getAsLong() - startUsage.allocatedBytes().getAsLong())
+                            : OptionalLong.empty());
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("Load generator worker failed", e.getCause());
+        }
+    }
+
+    private void runWorker(HttpClient client, Map<LoadOperation, Recorder> recorders, long measureStart, long measureEnd)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            long start = System.nanoTime();
+            if (start >= measureEnd) {
+                return;
+            }
+            LoadOperation operation = operations.get(random.nextInt(operations.size()));
+            int status;
+            long bytes = 0;
+            try {
+                HttpResponse<InputStream> response = client.send(request(operation, random), BodyHandlers.ofInputStream());
+                try (InputStream body = response.body()) {
+                    bytes = body.transferTo(OutputStream.nullOutputStream());
+                }
+                status = response.statusCode();
+            }
+            catch (IOException e) {
+                status = 0;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (start >= measureStart) {
+                if (operation == LoadOperation.PUT) {
+                    bytes = payload.length;
+                }
+                recorders.get(operation).record(System.nanoTime() - start, bytes, status, operation.isSuccess(status));
+            }
+        }
+    }
+
+    private HttpRequest request(LoadOperation operation, ThreadLocalRandom random)
+    {
+        return switch (operation) {
+            case GET -> {
+                Optional<String> range = Optional.empty();
+                if (rangeSize > 0) {
+                    long start = random.nextLong(payload.length - rangeSize + 1);
+                    range = Optional.of("bytes=%s-%s".formatted(start, start + rangeSize - 1));
+                }
+                yield signedRequest("GET", "/" + BUCKET + "/" + objectKey(random.nextInt(config.getObjects())), ImmutableMap.of(), range, BodyPublishers.noBody(), UNSIGNED_PAYLOAD);
+            }
+            case HEAD -> signedRequest("HEAD", "/" + BUCKET + "/" + objectKey(random.nextInt(config.getObjects())), ImmutableMap.of(), Optional.empty(), BodyPublishers.noBody(), UNSIGNED_PAYLOAD);
+            case PUT -> signedRequest("PUT", "/" + BUCKET + "/upload/part-%05d".formatted(random.nextInt(UPLOAD_KEYS)), ImmutableMap.of(), Optional.empty(), BodyPublishers.ofByteArray(payload), payloadHash);
+            case LIST -> {
+                int directories = ((config.getObjects() - 1) / KEYS_PER_DIRECTORY) + 1;
+                Map<String, String> query = ImmutableMap.of(
+                        "list-type", "2",
+                        "prefix", directory(random.nextInt(directories)) + "/",
+                        "delimiter", "/");
+                yield signedRequest("GET", "/" + BUCKET, query, Optional.empty(), BodyPublishers.noBody(), UNSIGNED_PAYLOAD);
+            }
+        };
+    }
+
+    private HttpRequest signedRequest(String method, String path, Map<String, String> query, Optional<String> range, BodyPublisher body, String contentHash)
+    {
+        StringBuilder uri = new StringBuilder(s3Uri.toString()).append(path);
+        ImmutableMultiMap.Builder queryParameters = ImmutableMultiMap.builder(true);
+        String separator = "?";
+        for (Map.Entry<String, String> entry : query.entrySet()) {
+            uri.append(separator).append(encode(entry.getKey())).append('=').append(encode(entry.getValue()));
+            queryParameters.add(entry.getKey(), entry.getValue());
+            separator = "&";
+        }
+        URI requestUri = URI.create(uri.toString());
+
+        String requestDate = signingController.formatRequestInstant(Instant.now());
+        ImmutableMultiMap.Builder headersBuilder = ImmutableMultiMap.builder(false)
+                .add("Host", requestUri.getRawAuthority())
+                .add("X-Amz-Date", requestDate)
+                .add("X-Amz-Content-SHA256", contentHash);
+        range.ifPresent(value -> headersBuilder.add("Range", value));
+        MultiMap headers = headersBuilder.build();
+
+        String authorization = signingController.signRequest(signingMetadata, REGION, requestDate, Credentials::emulated, requestUri, headers, queryParameters.build(), method);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(requestUri)
+                .method(method, body)
+                .header("Authorization", authorization);
+        // the HTTP client sets the host header itself
+        headers.forEachEntry((name, value) -> {
+            if (!name.equals("host")) {
+                request.header(name, value);
+            }
+        });
+        return request.build();
+    }
+
+    private static String objectKey(int index)
+    {
+        return directory(index / KEYS_PER_DIRECTORY) + "/part-%05d".formatted(index);
+    }
+
+    private static String directory(int index)
+    {
+        return "data/dir-%04d".formatted(index);
+    }
+
+    private static String encode(String value)
+    {
+        return URLEncoder.encode(value, UTF_8).replace("+", "%20");
+    }
+
+    private static void addWeighted(ImmutableList.Builder<LoadOperation> operations, LoadOperation operation, int weight)
+    {
+        for (int i = 0; i < weight; i++) {
+            operations.add(operation);
+        }
+    }
+
+    private record ResourceUsage(long cpuNanos, OptionalLong allocatedBytes)
+    {
+        static ResourceUsage current()
+        {
+            long cpuNanos = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocatedBytes = threads.isThreadAllocatedMemoryEnabled() ? threads.getTotalThreadAllocatedBytes() : -1;
+            return new ResourceUsage(cpuNanos, (allocatedBytes < 0) ? OptionalLong.empty() : OptionalLong.of(allocatedBytes));
+        }
+    }
+}
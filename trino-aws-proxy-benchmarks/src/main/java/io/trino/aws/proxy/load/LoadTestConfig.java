@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class LoadTestConfig
+{
+    public enum Target
+    {
+        /**
+         * Send requests through the proxy
+         */
+        PROXY,
+        /**
+         * Send the same requests straight to the stub, to measure the cost of the load generator and the stub
+         */
+        DIRECT,
+    }
+
+    private Target target = Target.PROXY;
+    private int concurrency = 1000;
+    private Duration warmup = new Duration(5, TimeUnit.SECONDS);
+    private Duration duration = new Duration(30, TimeUnit.SECONDS);
+    private int objects = 1000;
+    private DataSize objectSize = DataSize.of(1, MEGABYTE);
+    private Optional<DataSize> rangeSize = Optional.empty();
+    private int getWeight = 70;
+    private int putWeight = 10;
+    private int headWeight = 10;
+    private int listWeight = 10;
+
+    @Config("load.target")
+    @ConfigDescription("Where requests are sent: PROXY or DIRECT to the stub")
+    public LoadTestConfig setTarget(Target target)
+    {
+        this.target = target;
+        return this;
+    }
+
+    @NotNull
+    public Target getTarget()
+    {
+        return target;
+    }
+
+    @Config("load.concurrency")
+    @ConfigDescription("Number of requests in flight at any time")
+    public LoadTestConfig setConcurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    @Min(1)
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    @Config("load.warmup")
+    @ConfigDescription("How long requests are sent before measuring starts")
+    public LoadTestConfig setWarmup(Duration warmup)
+    {
+        this.warmup = warmup;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getWarmup()
+    {
+        return warmup;
+    }
+
+    @Config("load.duration")
+    @ConfigDescription("How long requests are measured for")
+    public LoadTestConfig setDuration(Duration duration)
+    {
+        this.duration = duration;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("100ms")
+    public Duration getDuration()
+    {
+        return duration;
+    }
+
+    @Config("load.objects")
+    @ConfigDescription("Number of objects stored in the stub before the test starts")
+    public LoadTestConfig setObjects(int objects)
+    {
+        this.objects = objects;
+        return this;
+    }
+
+    @Min(1)
+    public int getObjects()
+    {
+        return objects;
+    }
+
+    @Config("load.object-size")
+    @ConfigDescription("Size of stored and uploaded objects")
+    public LoadTestConfig setObjectSize(DataSize objectSize)
+    {
+        this.objectSize = objectSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1B")
+    @MaxDataSize("1GB")
+    public DataSize getObjectSize()
+    {
+        return objectSize;
+    }
+
+    @Config("load.range-size")
+    @ConfigDescription("Size of the random range read by each GET. Whole objects are read when not set")
+    public LoadTestConfig setRangeSize(DataSize rangeSize)
+    {
+        this.rangeSize = Optional.ofNullable(rangeSize);
+        return this;
+    }
+
+    public Optional<DataSize> getRangeSize()
+    {
+        return rangeSize;
+    }
+
+    @Config("load.get-weight")
+    public LoadTestConfig setGetWeight(int getWeight)
+    {
+        this.getWeight = getWeight;
+        return this;
+    }
+
+    @Min(0)
+    public int getGetWeight()
+    {
+        return getWeight;
+    }
+
+    @Config("load.put-weight")
+    public LoadTestConfig setPutWeight(int putWeight)
+    {
+        this.putWeight = putWeight;
+        return this;
+    }
+
+    @Min(0)
+    public int getPutWeight()
+    {
+        return putWeight;
+    }
+
+    @Config("load.head-weight")
+    public LoadTestConfig setHeadWeight(int headWeight)
+    {
+        this.headWeight = headWeight;
+        return this;
+    }
+
+    @Min(0)
+    public int getHeadWeight()
+    {
+        return headWeight;
+    }
+
+    @Config("load.list-weight")
+    public LoadTestConfig setListWeight(int listWeight)
+    {
+        this.listWeight = listWeight;
+        return this;
+    }
+
+    @Min(0)
+    public int getListWeight()
+    {
+        return listWeight;
+    }
+
+    @AssertTrue(message = "at least one operation weight must be positive")
+    public boolean isAnyOperationWeighted()
+    {
+        return getWeight + putWeight + headWeight + listWeight > 0;
+    }
+
+    @AssertTrue(message = "range size must not be larger than object size")
+    public boolean isRangeSizeValid()
+    {
+        return rangeSize.map(size -> size.toBytes() > 0 && size.toBytes() <= objectSize.toBytes()).orElse(true);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import com.google.inject.Binder;
+import com.google.inject.Scopes;
+import io.trino.aws.proxy.server.TrinoAwsProxyServerModule;
+import io.trino.aws.proxy.server.remote.PathStyleRemoteS3Facade;
+import io.trino.aws.proxy.server.remote.RemoteS3Facade;
+import io.trino.aws.proxy.server.security.S3SecurityController;
+import io.trino.aws.proxy.spi.credentials.Credentials;
+import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
+import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
+import static io.trino.aws.proxy.spi.TrinoAwsProxyBinder.trinoAwsProxyBinder;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The proxy with a single set of credentials, forwarding path style requests to the stub
+ */
+class LoadTestProxyModule
+        extends TrinoAwsProxyServerModule
+{
+    private final URI stubUri;
+    private final Credentials credentials;
+
+    LoadTestProxyModule(URI stubUri, Credentials credentials)
+    {
+        this.stubUri = requireNonNull(stubUri, "stubUri is null");
+        this.credentials = requireNonNull(credentials, "credentials is null");
+    }
+
+    @Override
+    protected void moduleSpecificBinding(Binder binder)
+    {
+        CredentialsProvider credentialsProvider = (emulatedAccessKey, _) -> credentials.emulated().accessKey().equals(emulatedAccessKey) ? Optional.of(credentials) : Optional.empty();
+        trinoAwsProxyBinder(binder).bindCredentialsProvider(binding -> binding.toInstance(credentialsProvider));
+
+        binder.bind(RemoteS3Facade.class).toInstance(new PathStyleRemoteS3Facade((_, _) -> stubUri.getHost(), false, Optional.of(stubUri.getPort())));
+
+        binder.bind(S3SecurityController.class).in(Scopes.SINGLETON);
+        newOptionalBinder(binder, S3SecurityFacadeProvider.class).setDefault().toInstance(_ -> _ -> SecurityResponse.DEFAULT);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * @param cpuNanos CPU time of the whole process while measuring, which includes the load generator and the stub
+ * @param allocatedBytes bytes allocated by the whole process while measuring, if the JVM reports them
+ */
+public record LoadTestResult(String target, int concurrency, Duration duration, Map<LoadOperation, OperationResult> operations, long cpuNanos, OptionalLong allocatedBytes)
+{
+    public LoadTestResult
+    {
+        requireNonNull(target, "target is null");
+        requireNonNull(duration, "duration is null");
+        operations = Map.copyOf(operations);
+        requireNonNull(allocatedBytes, "allocatedBytes is null");
+    }
+
+    public OperationResult operation(LoadOperation operation)
+    {
+        return operations.get(operation);
+    }
+
+    public long requests()
+    {
+        return operations.values().stream().mapToLong(OperationResult::getRequests).sum();
+    }
+
+    public void print(PrintStream out)
+    {
+        double seconds = duration.getValue(SECONDS);
+        out.printf("target: %s, concurrency: %s, measured: %s%n%n", target, concurrency, duration);
+        out.printf("%-5s %10s %8s %10s %10s %9s %9s %9s %9s %9s%n", "op", "requests", "errors", "req/s", "MB/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (LoadOperation operation : LoadOperation.values()) {
+            OperationResult result = operations.get(operation);
+            if (result == null || result.getRequests() == 0) {
+                continue;
+            }
+            out.printf("%-5s %10d %8d %10.1f %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation,
+                    result.getRequests(),
+                    result.getErrorCount(),
+                    result.getRequests() / seconds,
+                    result.getBytes() / seconds / 1_000_000,
+                    result.getLatencyMillis(50),
+                    result.getLatencyMillis(90),
+                    result.getLatencyMillis(99),
+                    result.getLatencyMillis(99.9),
+                    result.getLatencyMillis(100));
+        }
+        long requests = requests();
+        out.printf("%-5s %10d %8d %10.1f%n%n", "total", requests, operations.values().stream().mapToLong(OperationResult::getErrorCount).sum(), requests / seconds);
+
+        operations.forEach((operation, result) -> result.getErrors().forEach((status, count) ->
+                out.printf("%s errors with status %s: %s%n", operation, (status == 0) ? "none (no response)" : status, count)));
+
+        if (requests > 0) {
+            out.printf("CPU per request: %.3f ms%n", cpuNanos / 1_000_000.0 / requests);
+            allocatedBytes.ifPresent(bytes -> out.printf("allocation per request: %s%n", DataSize.ofBytes(bytes / requests).succinct()));
+            out.println("(process totals, which include the load generator and the stub)");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The outcome of the requests of one operation measured by a load test
+ */
+public final class OperationResult
+{
+    private final long requests;
+    private final long bytes;
+    private final Map<Integer, Long> errors;
+    private final long[] sortedLatencyNanos;
+
+    private OperationResult(long requests, long bytes, Map<Integer, Long> errors, long[] sortedLatencyNanos)
+    {
+        this.requests = requests;
+        this.bytes = bytes;
+        this.errors = Map.copyOf(errors);
+        this.sortedLatencyNanos = sortedLatencyNanos;
+    }
+
+    static OperationResult merge(List<Recorder> recorders)
+    {
+        long requests = 0;
+        long bytes = 0;
+        Map<Integer, Long> errors = new HashMap<>();
+        for (Recorder recorder : recorders) {
+            requests += recorder.size;
+            bytes += recorder.bytes;
+            recorder.errors.forEach((status, count) -> errors.merge(status, count, Long::sum));
+        }
+        long[] latencies = new long[(int) requests];
+        int position = 0;
+        for (Recorder recorder : recorders) {
+            System.arraycopy(recorder.latencyNanos, 0, latencies, position, recorder.size);
+            position += recorder.size;
+        }
+        Arrays.sort(latencies);
+        return new OperationResult(requests, bytes, errors, latencies);
+    }
+
+    public long getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * Bytes of response bodies, or of request bodies for uploads
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Number of failed requests by HTTP status, where status 0 means that no response was received
+     */
+    public Map<Integer, Long> getErrors()
+    {
+        return errors;
+    }
+
+    public long getErrorCount()
+    {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public double getLatencyMillis(double percentile)
+    {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+        if (sortedLatencyNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil((percentile / 100) * sortedLatencyNanos.length) - 1;
+        return sortedLatencyNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * Requests made by one load generator worker. Not thread safe.
+     */
+    static final class Recorder
+    {
+        private long[] latencyNanos = new long[1024];
+        private int size;
+        private long bytes;
+        private final Map<Integer, Long> errors = new HashMap<>();
+
+        void record(long nanos, long bodyBytes, int status, boolean success)
+        {
+            if (size == latencyNanos.length) {
+                latencyNanos = Arrays.copyOf(latencyNanos, size * 2);
+            }
+            latencyNanos[size] = nanos;
+            size++;
+            bytes += bodyBytes;
+            if (!success) {
+                errors.merge(status, 1L, Long::sum);
+            }
+        }
+    }
+}
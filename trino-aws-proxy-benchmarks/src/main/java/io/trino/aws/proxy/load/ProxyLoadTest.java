@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.google.inject.Injector;
+import io.airlift.bootstrap.Bootstrap;
+import io.airlift.bootstrap.LifeCycleManager;
+import io.airlift.configuration.ConfigurationFactory;
+import io.airlift.event.client.EventModule;
+import io.airlift.http.server.HttpServerInfo;
+import io.airlift.http.server.testing.TestingHttpServerModule;
+import io.airlift.jaxrs.JaxrsModule;
+import io.airlift.jmx.testing.TestingJmxModule;
+import io.airlift.json.JsonModule;
+import io.airlift.log.Level;
+import io.airlift.log.Logging;
+import io.airlift.node.testing.TestingNodeModule;
+import io.trino.aws.proxy.server.rest.TrinoS3ProxyConfig;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.Credentials;
+import io.trino.aws.proxy.spi.signing.SigningController;
+import org.weakref.jmx.guice.MBeanModule;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.configuration.ConfigurationLoader.loadPropertiesFrom;
+
+/**
+ * Drives the proxy with signed GET, PUT, HEAD and ListObjectsV2 requests backed by an in-process S3
+ * stand-in, and reports throughput, latency percentiles and the CPU time and allocation per request.
+ * <p>
+ * Arguments are {@code name=value} properties or paths of properties files. Properties starting with
+ * {@code load.} configure the load, see {@link LoadTestConfig}, those starting with {@code stub.} configure
+ * the stub, see {@link StubS3Config}, and all others configure the proxy. Run the test with
+ * {@code load.target=DIRECT} to measure what the load generator and the stub cost on their own.
+ */
+public final class ProxyLoadTest
+{
+    private static final Credentials CREDENTIALS = Credentials.build(
+            new Credential("LOADTESTACCESSKEY", "load-test-secret-key"),
+            new Credential("STUBACCESSKEY", "stub-secret-key"));
+
+    private ProxyLoadTest() {}
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException
+    {
+        Map<String, String> properties = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                properties.putAll(loadPropertiesFrom(arg));
+            }
+            else {
+                properties.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+
+        // logging redirects standard out once initialized
+        PrintStream out = System.out;
+        Logging logging = Logging.initialize();
+        logging.setLevel("Bootstrap", Level.WARN);
+        logging.setLevel("io.airlift", Level.WARN);
+        logging.setLevel("org.eclipse.jetty", Level.WARN);
+
+        run(properties).print(out);
+    }
+
+    public static LoadTestResult run(Map<String, String> properties)
+            throws IOException, InterruptedException
+    {
+        ImmutableMap.Builder<String, String> testProperties = ImmutableMap.builder();
+        ImmutableMap.Builder<String, String> proxyProperties = ImmutableMap.builder();
+        properties.forEach((name, value) -> {
+            if (name.startsWith("load.") || name.startsWith("stub.")) {
+                testProperties.put(name, value);
+            }
+            else {
+                proxyProperties.put(name, value);
+            }
+        });
+
+        ConfigurationFactory configurationFactory = new ConfigurationFactory(testProperties.buildOrThrow());
+        LoadTestConfig config = configurationFactory.build(LoadTestConfig.class);
+        StubS3Config stubConfig = configurationFactory.build(StubS3Config.class);
+        Set<String> unusedProperties = Sets.difference(configurationFactory.getProperties().keySet(), configurationFactory.getUsedProperties());
+        checkArgument(unusedProperties.isEmpty(), "Unknown properties: %s", unusedProperties);
+
+        try (StubS3Server stub = new StubS3Server(stubConfig)) {
+            Injector injector = new Bootstrap(
+                    new LoadTestProxyModule(stub.getUri(), CREDENTIALS),
+                    new TestingNodeModule(),
+                    new EventModule(),
+                    new TestingHttpServerModule(),
+                    new JsonModule(),
+                    new JaxrsModule(),
+                    new MBeanModule(),
+                    new TestingJmxModule())
+                    .doNotInitializeLogging()
+                    .setRequiredConfigurationProperties(proxyProperties.buildOrThrow())
+                    .initialize();
+            try {
+                URI s3Uri = switch (config.getTarget()) {
+                    case PROXY -> {
+                        int port = injector.getInstance(HttpServerInfo.class).getHttpUri().getPort();
+                        yield URI.create("http://127.0.0.1:" + port + injector.getInstance(TrinoS3ProxyConfig.class).getS3Path());
+                    }
+                    case DIRECT -> stub.getUri();
+                };
+                LoadGenerator loadGenerator = new LoadGenerator(config, s3Uri, injector.getInstance(SigningController.class), CREDENTIALS);
+                loadGenerator.populate(stub);
+                return loadGenerator.run();
+            }
+            finally {
+                injector.getInstance(LifeCycleManager.class).stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class StubS3Config
+{
+    private Duration latency = new Duration(0, TimeUnit.MILLISECONDS);
+    private Duration latencyJitter = new Duration(0, TimeUnit.MILLISECONDS);
+    private Optional<DataSize> bandwidth = Optional.empty();
+    private double errorRate;
+    private int errorStatus = 503;
+
+    @Config("stub.latency")
+    @ConfigDescription("Time the stub waits before it starts a response")
+    public StubS3Config setLatency(Duration latency)
+    {
+        this.latency = latency;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0ms")
+    public Duration getLatency()
+    {
+        return latency;
+    }
+
+    @Config("stub.latency-jitter")
+    @ConfigDescription("Largest random delay added to the latency of each response")
+    public StubS3Config setLatencyJitter(Duration latencyJitter)
+    {
+        this.latencyJitter = latencyJitter;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0ms")
+    public Duration getLatencyJitter()
+    {
+        return latencyJitter;
+    }
+
+    @Config("stub.bandwidth")
+    @ConfigDescription("Bytes per second at which the body of each response is sent. Unlimited when not set")
+    public StubS3Config setBandwidth(DataSize bandwidth)
+    {
+        this.bandwidth = Optional.ofNullable(bandwidth);
+        return this;
+    }
+
+    public Optional<DataSize> getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    @Config("stub.error-rate")
+    @ConfigDescription("Fraction of requests that fail with the error status")
+    public StubS3Config setErrorRate(double errorRate)
+    {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getErrorRate()
+    {
+        return errorRate;
+    }
+
+    @Config("stub.error-status")
+    @ConfigDescription("HTTP status of injected errors. 503 is sent as SlowDown, other statuses as InternalError")
+    public StubS3Config setErrorStatus(int errorStatus)
+    {
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    @Min(500)
+    @Max(599)
+    public int getErrorStatus()
+    {
+        return errorStatus;
+    }
+}
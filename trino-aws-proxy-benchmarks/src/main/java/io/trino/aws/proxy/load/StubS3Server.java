@@ -0,0 +1,457 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-memory stand-in for S3, served from an in-process HTTP server. It handles path style GET, HEAD,
+ * PUT and DELETE of objects, ranged GETs and ListObjectsV2, and can delay responses, limit their
+ * bandwidth and fail a fraction of requests. Requests are not authenticated.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class StubS3Server
+        implements Closeable
+{
+    private static final Logger log = Logger.get(StubS3Server.class);
+
+    private static final DateTimeFormatter LAST_MODIFIED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Splitter QUERY_SPLITTER = Splitter.on('&').omitEmptyStrings();
+    private static final int WRITE_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_KEYS = 1000;
+
+    private final long latencyNanos;
+    private final long latencyJitterNanos;
+    private final Optional<Long> bytesPerSecond;
+    private final double errorRate;
+    private final int errorStatus;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+    private final Map<String, ConcurrentNavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    public StubS3Server(StubS3Config config)
+            throws IOException
+    {
+        latencyNanos = config.getLatency().roundTo(TimeUnit.NANOSECONDS);
+        latencyJitterNanos = config.getLatencyJitter().roundTo(TimeUnit.NANOSECONDS);
+        bytesPerSecond = config.getBandwidth().map(DataSize::toBytes);
+        errorRate = config.getErrorRate();
+        errorStatus = config.getErrorStatus();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public URI getUri()
+    {
+        return URI.create("http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort());
+    }
+
+    public long getRequests()
+    {
+        return requests.get();
+    }
+
+    public long getInjectedErrors()
+    {
+        return injectedErrors.get();
+    }
+
+    public void createBucket(String bucket)
+    {
+        buckets.computeIfAbsent(bucket, _ -> new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * Store an object without going through HTTP. The data is not copied.
+     */
+    public void putObject(String bucket, String key, byte[] data)
+    {
+        createBucket(bucket);
+        buckets.get(bucket).put(key, new StoredObject(data, eTag(data), Instant.now()));
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private record StoredObject(byte[] data, String eTag, Instant lastModified)
+    {
+        private StoredObject
+        {
+            requireNonNull(data, "data is null");
+            requireNonNull(eTag, "eTag is null");
+            requireNonNull(lastModified, "lastModified is null");
+        }
+    }
+
+    private void handle(HttpExchange exchange)
+    {
+        try {
+            requests.incrementAndGet();
+            // the body of a PUT is consumed even when an error is injected so that the connection can be reused
+            byte[] body = exchange.getRequestBody().readAllBytes();
+
+            delay();
+            if ((errorRate > 0) && (ThreadLocalRandom.current().nextDouble() < errorRate)) {
+                injectedErrors.incrementAndGet();
+                sendError(exchange, errorStatus, (errorStatus == 503) ? "SlowDown" : "InternalError");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            int keyStart = path.indexOf('/', 1);
+            String bucket = (keyStart < 0) ? path.substring(1) : path.substring(1, keyStart);
+            String key = (keyStart < 0) ? "" : path.substring(keyStart + 1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            if (bucket.isEmpty()) {
+                sendError(exchange, 501, "NotImplemented");
+            }
+            else if (key.isEmpty()) {
+                handleBucket(exchange, bucket, query);
+            }
+            else {
+                handleObject(exchange, bucket, key, body);
+            }
+        }
+        catch (IOException e) {
+            log.debug(e, "Stub request failed: %s %s", exchange.getRequestMethod(), exchange.getRequestURI());
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String bucket, Map<String, String> query)
+            throws IOException
+    {
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                createBucket(bucket);
+                sendEmpty(exchange, 200);
+            }
+            case "HEAD" -> sendEmpty(exchange, buckets.containsKey(bucket) ? 200 : 404);
+            case "GET" -> {
+                ConcurrentNavigableMap<String, StoredObject> objects = buckets.get(bucket);
+                if (objects == null) {
+                    sendError(exchange, 404, "NoSuchBucket");
+                }
+                else if (!"2".equals(query.get("list-type"))) {
+                    sendError(exchange, 501, "NotImplemented");
+                }
+                else {
+                    sendXml(exchange, 200, listObjectsV2(bucket, objects, query));
+                }
+            }
+            default -> sendError(exchange, 405, "MethodNotAllowed");
+        }
+    }
+
+    private void handleObject(HttpExchange exchange, String bucket, String key, byte[] body)
+            throws IOException
+    {
+        ConcurrentNavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            sendError(exchange, 404, "NoSuchBucket");
+            return;
+        }
+
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                StoredObject object = new StoredObject(body, eTag(body), Instant.now());
+                objects.put(key, object);
+                exchange.getResponseHeaders().set(HttpHeaders.ETAG, object.eTag());
+                sendEmpty(exchange, 200);
+            }
+            case "DELETE" -> {
+                objects.remove(key);
+                sendEmpty(exchange, 204);
+            }
+            case "GET", "HEAD" -> {
+                StoredObject object = objects.get(key);
+                if (object == null) {
+                    sendError(exchange, 404, "NoSuchKey");
+                    return;
+                }
+                sendObject(exchange, object);
+            }
+            default -> sendError(exchange, 405, "MethodNotAllowed");
+        }
+    }
+
+    private void sendObject(HttpExchange exchange, StoredObject object)
+            throws IOException
+    {
+        int length = object.data().length;
+        int start = 0;
+        int end = length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst(HttpHeaders.RANGE);
+        if (range != null) {
+            Matcher matcher = RANGE_PATTERN.matcher(range);
+            if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                sendError(exchange, 416, "InvalidRange");
+                return;
+            }
+            if (matcher.group(1).isEmpty()) {
+                start = Math.max(0, length - Integer.parseInt(matcher.group(2)));
+            }
+            else {
+                start = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                }
+            }
+            if (start >= length) {
+                sendError(exchange, 416, "InvalidRange");
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes %s-%s/%s".formatted(start, end, length));
+        }
+
+        int count = end - start + 1;
+        exchange.getResponseHeaders().set(HttpHeaders.ETAG, object.eTag());
+        exchange.getResponseHeaders().set(HttpHeaders.LAST_MODIFIED, DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified().atZone(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "application/octet-stream");
+        sendBody(exchange, status, object.data(), start, count);
+    }
+
+    private static String listObjectsV2(String bucket, ConcurrentNavigableMap<String, StoredObject> objects, Map<String, String> query)
+    {
+        String prefix = query.getOrDefault("prefix", "");
+        Optional<String> delimiter = Optional.ofNullable(query.get("delimiter")).filter(value -> !value.isEmpty());
+        int maxKeys = Optional.ofNullable(query.get("max-keys")).map(Integer::parseInt).orElse(DEFAULT_MAX_KEYS);
+        Optional<String> continuationToken = Optional.ofNullable(query.get("continuation-token"));
+        Optional<String> startAfter = Optional.ofNullable(query.get("start-after"));
+
+        String after = continuationToken.map(token -> new String(Base64.getUrlDecoder().decode(token), UTF_8))
+                .or(() -> startAfter)
+                .filter(value -> value.compareTo(prefix) >= 0)
+                .orElse(null);
+        ConcurrentNavigableMap<String, StoredObject> candidates = (after == null) ? objects.tailMap(prefix, true) : objects.tailMap(after, false);
+
+        StringBuilder contents = new StringBuilder();
+        Set<String> commonPrefixes = new LinkedHashSet<>();
+        int keyCount = 0;
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            Optional<String> commonPrefix = delimiter.flatMap(value -> {
+                int index = key.indexOf(value, prefix.length());
+                return (index < 0) ? Optional.empty() : Optional.of(key.substring(0, index + value.length()));
+            });
+            if (commonPrefix.isPresent() && commonPrefixes.contains(commonPrefix.get())) {
+                lastKey = key;
+                continue;
+            }
+            if (keyCount == maxKeys) {
+                truncated = true;
+                break;
+            }
+            keyCount++;
+            lastKey = key;
+            if (commonPrefix.isPresent()) {
+                commonPrefixes.add(commonPrefix.get());
+                continue;
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents>")
+                    .append("<Key>").append(escape(key)).append("</Key>")
+                    .append("<LastModified>").append(LAST_MODIFIED_FORMAT.format(object.lastModified())).append("</LastModified>")
+                    .append("<ETag>").append(escape(object.eTag())).append("</ETag>")
+                    .append("<Size>").append(object.data().length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass>")
+                    .append("</Contents>");
+        }
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(escape(bucket)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(keyCount).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>");
+        delimiter.ifPresent(value -> xml.append("<Delimiter>").append(escape(value)).append("</Delimiter>"));
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        continuationToken.ifPresent(token -> xml.append("<ContinuationToken>").append(escape(token)).append("</ContinuationToken>"));
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(Base64.getUrlEncoder().encodeToString(lastKey.getBytes(UTF_8))).append("</NextContinuationToken>");
+        }
+        startAfter.ifPresent(value -> xml.append("<StartAfter>").append(escape(value)).append("</StartAfter>"));
+        xml.append(contents);
+        commonPrefixes.forEach(commonPrefix -> xml.append("<CommonPrefixes><Prefix>").append(escape(commonPrefix)).append("</Prefix></CommonPrefixes>"));
+        return xml.append("</ListBucketResult>").toString();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code)
+            throws IOException
+    {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            sendEmpty(exchange, status);
+            return;
+        }
+        sendXml(exchange, status, "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>%s</Code><Message>%s</Message><RequestId>%s</RequestId></Error>"
+                .formatted(code, code, UUID.randomUUID()));
+    }
+
+    private void sendXml(HttpExchange exchange, int status, String xml)
+            throws IOException
+    {
+        byte[] bytes = xml.getBytes(UTF_8);
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "application/xml");
+        sendBody(exchange, status, bytes, 0, bytes.length);
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status)
+            throws IOException
+    {
+        exchange.getResponseHeaders().set("x-amz-request-id", UUID.randomUUID().toString());
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private void sendBody(HttpExchange exchange, int status, byte[] data, int offset, int length)
+            throws IOException
+    {
+        exchange.getResponseHeaders().set("x-amz-request-id", UUID.randomUUID().toString());
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            // the JDK server does not set the length of HEAD responses
+            exchange.getResponseHeaders().set(HttpHeaders.CONTENT_LENGTH, Integer.toString(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        // a length of 0 would make the JDK server use chunked encoding
+        exchange.sendResponseHeaders(status, (length == 0) ? -1 : length);
+
+        OutputStream output = exchange.getResponseBody();
+        long start = System.nanoTime();
+        int written = 0;
+        while (written < length) {
+            int count = Math.min(WRITE_SIZE, length - written);
+            output.write(data, offset + written, count);
+            written += count;
+            if (bytesPerSecond.isPresent()) {
+                sleepUntil(start + (long) (written * (1_000_000_000.0 / bytesPerSecond.get())));
+            }
+        }
+        output.close();
+    }
+
+    private void delay()
+    {
+        long nanos = latencyNanos;
+        if (latencyJitterNanos > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(latencyJitterNanos + 1);
+        }
+        if (nanos > 0) {
+            sleepUntil(System.nanoTime() + nanos);
+        }
+    }
+
+    private static void sleepUntil(long nanoTime)
+    {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+        catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery)
+    {
+        if (rawQuery == null) {
+            return ImmutableMap.of();
+        }
+        Map<String, String> query = new HashMap<>();
+        for (String parameter : QUERY_SPLITTER.split(rawQuery)) {
+            int separator = parameter.indexOf('=');
+            String name = (separator < 0) ? parameter : parameter.substring(0, separator);
+            String value = (separator < 0) ? "" : parameter.substring(separator + 1);
+            query.put(URLDecoder.decode(name, UTF_8), URLDecoder.decode(value, UTF_8));
+        }
+        return query;
+    }
+
+    private static String eTag(byte[] data)
+    {
+        @SuppressWarnings("deprecation")
+        String md5 = Hashing.md5().hashBytes(data).toString();
+        return '"' + md5 + '"';
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import io.trino.aws.proxy.server.buffer.BufferPoolConfig;
+import io.trino.aws.proxy.server.signing.ChunkedPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkAwsChunkedInputStream
+{
+    // the default chunk size of AWS SDK v1 and v2
+    private static final int CHUNK_SIZE = 128 * 1024;
+
+    @Param({"1048576", "16777216"})
+    private int payloadSize;
+
+    @Param({"true", "false"})
+    private boolean signed;
+
+    private final byte[] buffer = new byte[8192];
+    private final BufferPool bufferPool = new BufferPool(new BufferPoolConfig());
+    private ChunkedPayload payload;
+
+    @Setup
+    public void setup()
+    {
+        byte[] bytes = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        payload = new ChunkedPayload(bytes, CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public long read()
+            throws IOException
+    {
+        long total = 0;
+        try (InputStream input = new AwsChunkedInputStream(new ByteArrayInputStream(payload.encoded()), signed ? Optional.of(payload.newSigningSession()) : Optional.empty(), bufferPool)) {
+            int count = input.read(buffer);
+            while (count >= 0) {
+                total += count;
+                count = input.read(buffer);
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkAwsChunkedInputStream.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
+
+import java.io.ByteArrayOutputStream;
+
+import static com.google.common.hash.Hashing.sha256;
+import static io.trino.aws.proxy.server.signing.ClientRequest.REGION;
+import static io.trino.aws.proxy.server.signing.ClientRequest.REQUEST_DATE;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A payload in the aws-chunked encoding with valid chunk signatures, as uploaded by clients using
+ * {@code STREAMING-AWS4-HMAC-SHA256-PAYLOAD}
+ */
+@SuppressWarnings("UnstableApiUsage")
+public final class ChunkedPayload
+{
+    private static final String KEY_PATH = REQUEST_DATE.substring(0, 8) + "/" + REGION + "/s3/aws4_request";
+    private static final String SEED_SIGNATURE = "4f232c4386841ef735655705268965c44a0e4690baa4adea153f7db9fa80a0a9";
+
+    private final ChunkSigner chunkSigner = new ChunkSigner(REQUEST_DATE, KEY_PATH, sha256().hashString("signing key", UTF_8).asBytes());
+    private final byte[] encoded;
+
+    public ChunkedPayload(byte[] payload, int chunkSize)
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(payload.length + ((payload.length / chunkSize) + 2) * 100);
+        String previousSignature = SEED_SIGNATURE;
+        int offset = 0;
+        while (true) {
+            int length = Math.min(chunkSize, payload.length - offset);
+            previousSignature = chunkSigner.signChunk(sha256().hashBytes(payload, offset, length), previousSignature);
+            output.writeBytes((Integer.toHexString(length) + ";chunk-signature=" + previousSignature + "\r\n").getBytes(US_ASCII));
+            output.write(payload, offset, length);
+            output.writeBytes("\r\n".getBytes(US_ASCII));
+            if (length == 0) {
+                break;
+            }
+            offset += length;
+        }
+        encoded = output.toByteArray();
+    }
+
+    public byte[] encoded()
+    {
+        return encoded;
+    }
+
+    /**
+     * A new session that validates the chunk signatures of the payload, as the proxy creates for each upload
+     */
+    public ChunkSigningSession newSigningSession()
+    {
+        return new InternalChunkSigningSession(chunkSigner, SEED_SIGNATURE);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Requests as sent to the proxy by the S3 clients it is used with. Headers are listed in the order and
+ * case the clients send them, without the {@code Authorization} header which is generated when signing.
+ */
+public enum ClientRequest
+{
+    // Hadoop 3.3 S3A reading a Parquet footer through AWS SDK v1
+    HADOOP_S3A_SDK_V1(
+            "GET",
+            "/api/v1/s3Proxy/s3/warehouse/tpch/orders/20240516_024511_00012_x7kq3_3b1f6a0e-4c2d-4d7b-9a8f-1e2c3d4b5a69.parquet",
+            ImmutableMultiMap.empty(),
+            multiMap(
+                    "Host", "localhost:10064",
+                    "amz-sdk-invocation-id", "4f2c7c1a-9e3b-2d4f-8a1e-6b5c3d2e1f0a",
+                    "amz-sdk-request", "attempt=1;max=21",
+                    "amz-sdk-retry", "0/0/500",
+                    "Content-Type", "application/octet-stream",
+                    "Range", "bytes=134152192-134217727",
+                    "User-Agent", "Hadoop 3.3.4, aws-sdk-java/1.12.262 Linux/5.15.0-1051-aws OpenJDK_64-Bit_Server_VM/17.0.10+7-LTS java/17.0.10 vendor/Eclipse_Adoptium cfg/retry-mode/legacy",
+                    "x-amz-content-sha256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                    "X-Amz-Date", ClientRequest.REQUEST_DATE,
+                    "Connection", "Keep-Alive"),
+            "amz-sdk-invocation-id;amz-sdk-request;amz-sdk-retry;content-type;host;range;user-agent;x-amz-content-sha256;x-amz-date",
+            Optional.empty()),
+    // Trino native S3 file system reading a range through AWS SDK v2 with session credentials
+    AWS_SDK_V2(
+            "GET",
+            "/api/v1/s3Proxy/s3/warehouse/tpch/lineitem/20240516_024511_00013_x7kq3_6d0e9a71-2b8c-4f3e-8d5a-0c7b6e5f4a32.orc",
+            ImmutableMultiMap.empty(),
+            multiMap(
+                    "Host", "localhost:10064",
+                    "amz-sdk-invocation-id", "0b9d6c3e-5f2a-7e4b-1c8d-9a3f2e6b7d45",
+                    "amz-sdk-request", "attempt=1; max=4",
+                    "Range", "bytes=268435456-277872639",
+                    "User-Agent", "aws-sdk-java/2.25.32 Linux/5.15.0-1051-aws OpenJDK_64-Bit_Server_VM/22.0.1+8 Java/22.0.1 vendor/Eclipse_Adoptium io/sync http/Apache cfg/retry-mode/legacy",
+                    "x-amz-content-sha256", "UNSIGNED-PAYLOAD",
+                    "X-Amz-Date", ClientRequest.REQUEST_DATE,
+                    "X-Amz-Security-Token", ClientRequest.SESSION_TOKEN,
+                    "Connection", "Keep-Alive"),
+            "amz-sdk-invocation-id;amz-sdk-request;host;range;x-amz-content-sha256;x-amz-date;x-amz-security-token",
+            Optional.of(ClientRequest.SESSION_TOKEN)),
+    // Hadoop 3.4 S3A listing a directory through AWS SDK v2, with the audit span in the Referer header
+    HADOOP_S3A_SDK_V2(
+            "GET",
+            "/api/v1/s3Proxy/s3/warehouse",
+            multiMap(
+                    "list-type", "2",
+                    "delimiter", "/",
+                    "max-keys", "5000",
+                    "prefix", "tpch/orders/",
+                    "fetch-owner", "false"),
+            multiMap(
+                    "Host", "localhost:10064",
+                    "amz-sdk-invocation-id", "7c1e4b2a-3d9f-5a6e-8b0c-2f4d6a8e1c37",
+                    "amz-sdk-request", "attempt=1; max=3",
+                    "Referer", "https://audit.example.org/hadoop/1/op_list_status/4d8a7e21-0f1b-4c0e-9e60-5c1d8e9b4a21-00000008/?op=op_list_status&p1=s3a://warehouse/tpch/orders&pr=trino&ps=2b3f6c1d-8e4a-4f0b-9c7d-5a1e3b2d4c6f&id=4d8a7e21-0f1b-4c0e-9e60-5c1d8e9b4a21-00000008&t0=91&fs=4d8a7e21-0f1b-4c0e-9e60-5c1d8e9b4a21&t1=91&ts=1715827511000",
+                    "User-Agent", "Hadoop 3.4.0, aws-sdk-java/2.23.19 Linux/5.15.0-1051-aws OpenJDK_64-Bit_Server_VM/22.0.1+8 Java/22.0.1 vendor/Eclipse_Adoptium io/sync http/Apache cfg/retry-mode/adaptive",
+                    "x-amz-content-sha256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                    "X-Amz-Date", ClientRequest.REQUEST_DATE,
+                    "Connection", "Keep-Alive"),
+            "amz-sdk-invocation-id;amz-sdk-request;host;referer;x-amz-content-sha256;x-amz-date",
+            Optional.empty());
+
+    public static final String REQUEST_DATE = "20240516T024511Z";
+    public static final String REGION = "us-east-1";
+
+    private static final String SESSION_TOKEN = "FwoGZXIvYXdzEP3//////////wEaDG79rlcAjsgKPP9N3SKIAu7/Zvngne5Ov6kGrDcIIPUZYkGpwNbj8zNnbWgOhiqmOCM3hrk4NuH17mP5n3nC7urlXZxaTCywKpAHpO3YsvLXcwjlfaYFA0Au4oejwSbU9ybIlzPzrqz7lVesgCfJOV+rj5F5UAh19d7RpRpA6Vy4nxGBTTlCNIVbkW9fp2Esql2/vsdh77rAG+j+BQegtegDCKBfen4gHMdvEOF6hyc4ne43eLXjpvUKxBgpI9MjOHtNHrDbOOBFXDDyknoESgE9Hsm12nDuVQhwrI/hhA4YB/MSIpl4FTgVs2sQP3K+v65tmyvIlpL6O78S6spMM9Tv/F4JLtksTzb90w46uZk9sxKC/RBkRijisM6tBjIrr/0znxnW3i5ggGAX4H/Z3aWlxSdzNs2UGWtqig9Plp3Xa9gG+zCKcXmDAA==";
+
+    private final String httpVerb;
+    private final URI uri;
+    private final MultiMap queryParameters;
+    private final MultiMap headers;
+    private final Set<String> signedHeaders;
+    private final Optional<String> securityToken;
+
+    ClientRequest(String httpVerb, String path, MultiMap queryParameters, MultiMap headers, String signedHeaders, Optional<String> securityToken)
+    {
+        this.httpVerb = httpVerb;
+        this.uri = URI.create("http://localhost:10064" + path);
+        this.queryParameters = queryParameters;
+        this.headers = headers;
+        this.signedHeaders = ImmutableSet.copyOf(Splitter.on(';').split(signedHeaders));
+        this.securityToken = securityToken;
+    }
+
+    public String httpVerb()
+    {
+        return httpVerb;
+    }
+
+    public URI uri()
+    {
+        return uri;
+    }
+
+    public MultiMap queryParameters()
+    {
+        return queryParameters;
+    }
+
+    /**
+     * Headers with the names in the case they are sent in
+     */
+    public MultiMap headers()
+    {
+        return headers;
+    }
+
+    public Set<String> signedHeaders()
+    {
+        return signedHeaders;
+    }
+
+    public Optional<String> securityToken()
+    {
+        return securityToken;
+    }
+
+    private static MultiMap multiMap(String... namesAndValues)
+    {
+        checkArgument(namesAndValues.length % 2 == 0, "names and values must be paired");
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            builder.add(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return builder.build();
+    }
+}
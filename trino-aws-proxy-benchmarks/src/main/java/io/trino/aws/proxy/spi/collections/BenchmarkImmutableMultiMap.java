@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.spi.collections;
+
+import io.trino.aws.proxy.server.signing.ClientRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkImmutableMultiMap
+{
+    private static final List<String> LOOKUPS = List.of("x-amz-date", "authorization", "x-amz-security-token", "Content-Type", "content-encoding", "transfer-encoding", "x-amz-content-sha256", "host");
+
+    @Param
+    private ClientRequest client;
+
+    private Set<Map.Entry<String, List<String>>> containerHeaders;
+    private MultiMap headers;
+    private MultiMap caseInsensitiveHeaders;
+
+    @Setup
+    public void setup()
+    {
+        // the shape of the JAX-RS request headers the proxy copies for each request
+        Map<String, List<String>> containerHeaders = new LinkedHashMap<>();
+        client.headers().forEach((name, values) -> containerHeaders.put(name, new ArrayList<>(values)));
+        this.containerHeaders = containerHeaders.entrySet();
+        headers = client.headers();
+        caseInsensitiveHeaders = ImmutableMultiMap.copyOfCaseInsensitive(containerHeaders.entrySet());
+    }
+
+    @Benchmark
+    public ImmutableMultiMap copyOfCaseInsensitiveEntrySet()
+    {
+        return ImmutableMultiMap.copyOfCaseInsensitive(containerHeaders);
+    }
+
+    @Benchmark
+    public ImmutableMultiMap copyOfCaseInsensitive()
+    {
+        return ImmutableMultiMap.copyOfCaseInsensitive(headers);
+    }
+
+    @Benchmark
+    public int lookup()
+    {
+        // the lookups made while authenticating and forwarding a request
+        int found = 0;
+        for (String header : LOOKUPS) {
+            if (caseInsensitiveHeaders.getFirst(header).isPresent()) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkImmutableMultiMap.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
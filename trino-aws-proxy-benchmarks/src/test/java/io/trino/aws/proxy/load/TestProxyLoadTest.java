@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.load;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestProxyLoadTest
+{
+    private static final Map<String, String> SHORT_RUN = ImmutableMap.<String, String>builder()
+            .put("load.concurrency", "8")
+            .put("load.warmup", "200ms")
+            .put("load.duration", "1s")
+            .put("load.objects", "250")
+            .put("load.object-size", "64kB")
+            .put("load.range-size", "16kB")
+            .buildOrThrow();
+
+    @Test
+    public void testThroughProxy()
+            throws Exception
+    {
+        LoadTestResult result = ProxyLoadTest.run(SHORT_RUN);
+
+        for (LoadOperation operation : LoadOperation.values()) {
+            OperationResult operationResult = result.operation(operation);
+            assertThat(operationResult.getRequests()).as(operation.toString()).isPositive();
+            assertThat(operationResult.getErrors()).as(operation.toString()).isEmpty();
+        }
+        assertThat(result.operation(LoadOperation.GET).getBytes()).isEqualTo(result.operation(LoadOperation.GET).getRequests() * 16 * 1024);
+        assertThat(result.cpuNanos()).isPositive();
+    }
+
+    @Test
+    public void testInjectedErrors()
+            throws Exception
+    {
+        LoadTestResult result = ProxyLoadTest.run(ImmutableMap.<String, String>builder()
+                .putAll(SHORT_RUN)
+                .put("load.put-weight", "0")
+                .put("load.head-weight", "0")
+                .put("load.list-weight", "0")
+                .put("stub.error-rate", "1.0")
+                .buildOrThrow());
+
+        OperationResult gets = result.operation(LoadOperation.GET);
+        assertThat(gets.getRequests()).isPositive();
+        assertThat(gets.getErrors()).containsOnlyKeys(503);
+        assertThat(result.operation(LoadOperation.PUT).getRequests()).isZero();
+    }
+
+    @Test
+    public void testUnknownProperty()
+    {
+        assertThatThrownBy(() -> ProxyLoadTest.run(ImmutableMap.of("load.concurrrency", "8")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("load.concurrrency");
+    }
+}
@@ -15,6 +15,7 @@ package io.trino.aws.proxy.spi;
 
 import com.google.inject.Binder;
 import com.google.inject.binder.LinkedBindingBuilder;
+import io.opentelemetry.api.OpenTelemetry;
 import io.trino.aws.proxy.spi.credentials.AssumedRoleProvider;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
 import io.trino.aws.proxy.spi.security.S3DatabaseSecurityFacadeProvider;
@@ -40,6 +41,11 @@ public interface TrinoAwsProxyBinder
 
     TrinoAwsProxyBinder bindS3DatabaseSecurity(Consumer<LinkedBindingBuilder<S3DatabaseSecurityFacadeProvider>> databaseSecurityProviderBinder);
 
+    /**
+     * Bind the OpenTelemetry instance that the proxy's spans are exported through. Tracing is disabled if none is bound.
+     */
+    TrinoAwsProxyBinder bindOpenTelemetry(Consumer<LinkedBindingBuilder<OpenTelemetry>> openTelemetryBinder);
+
     final class InternalBinder
             implements TrinoAwsProxyBinder
     {
@@ -77,5 +83,12 @@ public interface TrinoAwsProxyBinder
             databaseSecurityProviderBinder.accept(newOptionalBinder(binder, S3DatabaseSecurityFacadeProvider.class).setBinding());
             return this;
         }
+
+        @Override
+        public TrinoAwsProxyBinder bindOpenTelemetry(Consumer<LinkedBindingBuilder<OpenTelemetry>> openTelemetryBinder)
+        {
+            openTelemetryBinder.accept(newOptionalBinder(binder, OpenTelemetry.class).setBinding());
+            return this;
+        }
     }
 }
@@ -14,32 +14,55 @@
 package io.trino.aws.proxy.spi.collections;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.BiConsumer;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Keys and their values held in arrays, in the order in which keys were first added, with an open addressing
+ * table for lookups. Keys of case-insensitive maps are lowercase; well-known header names share one instance.
+ * {@link #keySet()} and {@link #entrySet()} are views, and copies of an immutable map return the map itself.
+ */
 public class ImmutableMultiMap
         implements MultiMap
 {
+    private static final String[] NO_KEYS = new String[0];
+    private static final ImmutableMultiMap EMPTY = new ImmutableMultiMap(NO_KEYS, new ImmutableList<?>[0], 0, false);
+
     private final boolean caseSensitiveKeys;
-    private final ImmutableListMultimap<String, String> mapData;
+    private final String[] keys;
+    private final ImmutableList<?>[] values;
+    // key index plus one for each occupied slot
+    private final int[] slots;
 
-    private ImmutableMultiMap(ImmutableListMultimap<String, String> data, boolean caseSensitiveKeys)
+    private ImmutableMultiMap(String[] keys, ImmutableList<?>[] values, int size, boolean caseSensitiveKeys)
     {
-        this.mapData = requireNonNull(data, "data is null");
+        this.keys = (keys.length == size) ? keys : Arrays.copyOf(keys, size);
+        this.values = (values.length == size) ? values : Arrays.copyOf(values, size);
         this.caseSensitiveKeys = caseSensitiveKeys;
+
+        slots = new int[tableSize(size)];
+        int mask = slots.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(this.keys[index]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
     }
 
     public boolean isCaseSensitiveKeys()
@@ -49,17 +72,18 @@ public class ImmutableMultiMap
 
     public Set<String> keySet()
     {
-        return ImmutableSet.copyOf(mapData.keySet());
+        return new KeySet();
     }
 
     public Set<Map.Entry<String, List<String>>> entrySet()
     {
-        return Multimaps.asMap(mapData).entrySet();
+        return new EntrySet();
     }
 
     public List<String> get(String key)
     {
-        return mapData.get(getActualKey(key));
+        int index = indexOf(getActualKey(key));
+        return (index < 0) ? ImmutableList.of() : values(index);
     }
 
     public Optional<String> getFirst(String key)
@@ -73,27 +97,33 @@ public class ImmutableMultiMap
 
     public void forEachEntry(BiConsumer<String, String> consumer)
     {
-        mapData.forEach(consumer);
+        for (int index = 0; index < keys.length; index++) {
+            for (String value : values(index)) {
+                consumer.accept(keys[index], value);
+            }
+        }
     }
 
     public void forEach(BiConsumer<String, List<String>> consumer)
     {
-        Multimaps.asMap(mapData).forEach(consumer);
+        for (int index = 0; index < keys.length; index++) {
+            consumer.accept(keys[index], values(index));
+        }
     }
 
     public boolean containsKey(String key)
     {
-        return !get(key).isEmpty();
+        return indexOf(getActualKey(key)) >= 0;
     }
 
     public static ImmutableMultiMap empty()
     {
-        return builder(false).build();
+        return EMPTY;
     }
 
     public static Builder builder(boolean caseSensitiveKeys)
     {
-        return new Builder(caseSensitiveKeys);
+        return new Builder(caseSensitiveKeys, 8);
     }
 
     public static ImmutableMultiMap copyOf(Set<Map.Entry<String, List<String>>> entrySet)
@@ -106,22 +136,23 @@ public class ImmutableMultiMap
         return copyOf(entrySet, false);
     }
 
+    /**
+     * Copy a map, keeping the case sensitivity of its keys
+     */
     public static ImmutableMultiMap copyOf(MultiMap data)
     {
-        return copyOf(data, true);
+        if (data instanceof ImmutableMultiMap immutableData) {
+            return immutableData;
+        }
+        return copyOf(data.entrySet(), data.isCaseSensitiveKeys());
     }
 
     public static ImmutableMultiMap copyOfCaseInsensitive(MultiMap data)
     {
-        return copyOf(data, false);
-    }
-
-    private static ImmutableMultiMap copyOf(MultiMap data, boolean caseSensitiveKeys)
-    {
-        if (data instanceof ImmutableMultiMap immutableData && caseSensitiveKeys == data.isCaseSensitiveKeys()) {
+        if (data instanceof ImmutableMultiMap immutableData && !data.isCaseSensitiveKeys()) {
             return immutableData;
         }
-        return copyOf(data.entrySet(), data.isCaseSensitiveKeys());
+        return copyOf(data.entrySet(), false);
     }
 
     private String getActualKey(String key)
@@ -132,25 +163,125 @@ public class ImmutableMultiMap
     private static String getActualKey(String key, boolean caseSensitiveKeys)
     {
         requireNonNull(key, "key is null");
-        return caseSensitiveKeys ? key : key.toLowerCase(Locale.ROOT);
+        return caseSensitiveKeys ? key : WellKnownKeys.lowercase(key);
+    }
+
+    private int indexOf(String key)
+    {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> values(int index)
+    {
+        return (List<String>) values[index];
+    }
+
+    private static int hash(String key)
+    {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSize(int size)
+    {
+        // at most half full so that probe sequences stay short
+        return Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
     }
 
     private static ImmutableMultiMap copyOf(Set<? extends Map.Entry<String, ? extends Collection<String>>> entrySet, boolean caseSensitiveKeys)
     {
-        Builder builder = builder(caseSensitiveKeys);
+        Builder builder = new Builder(caseSensitiveKeys, entrySet.size());
         entrySet.forEach(entry -> builder.addAll(entry.getKey(), entry.getValue()));
         return builder.build();
     }
 
+    private class KeySet
+            extends AbstractSet<String>
+    {
+        @Override
+        public boolean contains(Object key)
+        {
+            return (key instanceof String string) && (indexOf(string) >= 0);
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            return Arrays.asList(keys).iterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return keys.length;
+        }
+    }
+
+    private class EntrySet
+            extends AbstractSet<Map.Entry<String, List<String>>>
+    {
+        @Override
+        public Iterator<Map.Entry<String, List<String>>> iterator()
+        {
+            return new Iterator<>()
+            {
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return index < keys.length;
+                }
+
+                @Override
+                public Map.Entry<String, List<String>> next()
+                {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<String, List<String>> entry = new SimpleImmutableEntry<>(keys[index], values(index));
+                    index++;
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return keys.length;
+        }
+    }
+
     public static class Builder
     {
-        private final Multimap<String, String> data;
+        private static final int MAX_SCANNED_KEYS = 16;
+
         private final boolean caseSensitiveKeys;
+        private String[] keys;
+        // a String for a single value, a List of values otherwise
+        private Object[] keyValues;
+        private int size;
+        // index of the keys once there are too many to scan
+        private Map<String, Integer> keyIndex;
 
-        private Builder(boolean caseSensitiveKeys)
+        private Builder(boolean caseSensitiveKeys, int expectedKeys)
         {
-            this.data = LinkedListMultimap.create();
             this.caseSensitiveKeys = caseSensitiveKeys;
+            keys = new String[Math.max(expectedKeys, 1)];
+            keyValues = new Object[keys.length];
         }
 
         /**
@@ -160,7 +291,15 @@ public class ImmutableMultiMap
          */
         public Builder putOrReplaceSingle(String key, String value)
         {
-            data.replaceValues(getActualKey(key, caseSensitiveKeys), ImmutableList.of(value));
+            requireNonNull(value, "value is null");
+            String actualKey = getActualKey(key, caseSensitiveKeys);
+            int index = indexOf(actualKey);
+            if (index < 0) {
+                append(actualKey, value);
+            }
+            else {
+                keyValues[index] = value;
+            }
             return this;
         }
 
@@ -171,7 +310,15 @@ public class ImmutableMultiMap
          */
         public Builder add(String key, String value)
         {
-            data.put(getActualKey(key, caseSensitiveKeys), value);
+            requireNonNull(value, "value is null");
+            String actualKey = getActualKey(key, caseSensitiveKeys);
+            int index = indexOf(actualKey);
+            if (index < 0) {
+                append(actualKey, value);
+            }
+            else {
+                addValue(index, value);
+            }
             return this;
         }
 
@@ -182,13 +329,93 @@ public class ImmutableMultiMap
          */
         public Builder addAll(String key, Collection<String> values)
         {
-            data.putAll(getActualKey(key, caseSensitiveKeys), values);
+            String actualKey = getActualKey(key, caseSensitiveKeys);
+            if (values.isEmpty()) {
+                return this;
+            }
+            int index = indexOf(actualKey);
+            if ((index < 0) && (values.size() == 1)) {
+                append(actualKey, requireNonNull(values.iterator().next(), "value is null"));
+                return this;
+            }
+            for (String value : values) {
+                requireNonNull(value, "value is null");
+                if (index < 0) {
+                    index = append(actualKey, value);
+                }
+                else {
+                    addValue(index, value);
+                }
+            }
             return this;
         }
 
         public ImmutableMultiMap build()
         {
-            return new ImmutableMultiMap(ImmutableListMultimap.copyOf(data), caseSensitiveKeys);
+            if ((size == 0) && !caseSensitiveKeys) {
+                return EMPTY;
+            }
+            ImmutableList<?>[] lists = new ImmutableList<?>[size];
+            for (int index = 0; index < size; index++) {
+                lists[index] = switch (keyValues[index]) {
+                    case String value -> ImmutableList.of(value);
+                    case List<?> list -> ImmutableList.copyOf(list);
+                    default -> throw new IllegalStateException("Unexpected value: " + keyValues[index]);
+                };
+            }
+            // a full keys array is shared with the map; the builder copies it before appending again
+            return new ImmutableMultiMap((size == 0) ? NO_KEYS : keys, lists, size, caseSensitiveKeys);
+        }
+
+        private int indexOf(String key)
+        {
+            if (keyIndex != null) {
+                Integer index = keyIndex.get(key);
+                return (index == null) ? -1 : index;
+            }
+            for (int index = 0; index < size; index++) {
+                if (keys[index].equals(key)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        private int append(String key, String value)
+        {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                keyValues = Arrays.copyOf(keyValues, size * 2);
+            }
+            int index = size;
+            keys[index] = key;
+            keyValues[index] = value;
+            size++;
+
+            if (keyIndex != null) {
+                keyIndex.put(key, index);
+            }
+            else if (size > MAX_SCANNED_KEYS) {
+                keyIndex = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    keyIndex.put(keys[i], i);
+                }
+            }
+            return index;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addValue(int index, String value)
+        {
+            if (keyValues[index] instanceof String single) {
+                List<String> list = new ArrayList<>(4);
+                list.add(single);
+                list.add(value);
+                keyValues[index] = list;
+            }
+            else {
+                ((List<String>) keyValues[index]).add(value);
+            }
         }
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.spi.collections;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Lowercase keys of the headers seen on most S3 requests and responses. Case-insensitive maps use these
+ * instances for their keys, and the usual spellings of the headers are mapped to them without lowercasing.
+ */
+final class WellKnownKeys
+{
+    private static final Set<String> HEADERS = ImmutableSet.of(
+            "accept",
+            "accept-encoding",
+            "accept-ranges",
+            "amz-sdk-invocation-id",
+            "amz-sdk-request",
+            "authorization",
+            "cache-control",
+            "connection",
+            "content-disposition",
+            "content-encoding",
+            "content-length",
+            "content-md5",
+            "content-range",
+            "content-type",
+            "date",
+            "etag",
+            "expect",
+            "host",
+            "if-match",
+            "if-modified-since",
+            "if-none-match",
+            "if-unmodified-since",
+            "last-modified",
+            "range",
+            "server",
+            "transfer-encoding",
+            "user-agent",
+            "x-amz-checksum-crc32",
+            "x-amz-checksum-crc32c",
+            "x-amz-checksum-sha1",
+            "x-amz-checksum-sha256",
+            "x-amz-content-sha256",
+            "x-amz-date",
+            "x-amz-decoded-content-length",
+            "x-amz-id-2",
+            "x-amz-request-id",
+            "x-amz-sdk-checksum-algorithm",
+            "x-amz-security-token",
+            "x-amz-server-side-encryption",
+            "x-amz-storage-class",
+            "x-amz-trailer",
+            "x-amz-user-agent",
+            "x-amzn-trace-id");
+
+    // lowercase and capitalized spellings, e.g. "content-md5", "Content-Md5", "Content-MD5" and "ETag"
+    private static final Map<String, String> CANONICAL_KEYS = buildCanonicalKeys();
+
+    private WellKnownKeys() {}
+
+    /**
+     * The lowercase form of the key, which is a shared instance for well-known headers
+     */
+    static String lowercase(String key)
+    {
+        String canonical = CANONICAL_KEYS.get(key);
+        if (canonical != null) {
+            return canonical;
+        }
+        // returns the key itself when it is already lowercase
+        String lowercase = key.toLowerCase(Locale.ROOT);
+        canonical = CANONICAL_KEYS.get(lowercase);
+        return (canonical != null) ? canonical : lowercase;
+    }
+
+    private static Map<String, String> buildCanonicalKeys()
+    {
+        Map<String, String> keys = new HashMap<>();
+        for (String header : HEADERS) {
+            keys.put(header, header);
+            keys.put(capitalize(header), header);
+            keys.put(header.toUpperCase(Locale.ROOT), header);
+        }
+        keys.put("Content-MD5", "content-md5");
+        keys.put("ETag", "etag");
+        return ImmutableMap.copyOf(keys);
+    }
+
+    private static String capitalize(String header)
+    {
+        return Splitter.on('-').splitToStream(header)
+                .map(part -> Character.toUpperCase(part.charAt(0)) + part.substring(1))
+                .collect(Collectors.joining("-"));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.spi.collections;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestImmutableMultiMap
+{
+    @Test
+    public void testCollidingKeys()
+    {
+        // every key has the same hash code, so all of them probe past each other
+        List<String> keys = collidingKeys(6);
+        assertThat(keys).hasSize(64);
+        assertThat(keys.stream().map(String::hashCode).distinct()).hasSize(1);
+
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        keys.forEach(key -> builder.add(key, "value-" + key));
+        ImmutableMultiMap map = builder.build();
+
+        assertThat(map.keySet()).containsExactlyElementsOf(keys);
+        for (String key : keys) {
+            assertThat(map.get(key)).containsExactly("value-" + key);
+            assertThat(map.containsKey(key)).isTrue();
+        }
+        // a missing key with the same hash code probes to the end of the cluster
+        assertThat("AaAaAaAaAaC#".hashCode()).isEqualTo(keys.getFirst().hashCode());
+        assertThat(map.get("AaAaAaAaAaC#")).isEmpty();
+        assertThat(map.containsKey("C#C#C#C#C#C#")).isFalse();
+        assertThat(map.keySet().contains("C#C#C#C#C#C#")).isFalse();
+    }
+
+    @Test
+    public void testManyKeys()
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        // the builder scans its keys linearly up to 16 keys and indexes them beyond that
+        for (int i = 0; i < 40; i++) {
+            builder.add("key" + i, "first" + i);
+            if (i == 15 || i == 16 || i == 39) {
+                // adding to an existing key must find it before and after the switch
+                for (int j = 0; j <= i; j++) {
+                    builder.add("key" + j, "again" + i);
+                }
+            }
+        }
+        builder.addAll("key3", List.of("x", "y"));
+        builder.addAll("new", List.of("a", "b"));
+        builder.addAll("empty", List.of());
+        ImmutableMultiMap map = builder.build();
+
+        assertThat(map.keySet()).hasSize(41);
+        assertThat(map.get("key0")).containsExactly("first0", "again15", "again16", "again39");
+        assertThat(map.get("key3")).containsExactly("first3", "again15", "again16", "again39", "x", "y");
+        assertThat(map.get("key16")).containsExactly("first16", "again16", "again39");
+        assertThat(map.get("key17")).containsExactly("first17", "again39");
+        assertThat(map.get("new")).containsExactly("a", "b");
+        assertThat(map.containsKey("empty")).isFalse();
+        assertThat(map.get("key40")).isEmpty();
+
+        Map<String, List<String>> entries = new LinkedHashMap<>();
+        map.forEach(entries::put);
+        assertThat(entries.keySet()).startsWith("key0", "key1", "key2").endsWith("key39", "new");
+        assertThat(map.entrySet()).hasSize(41);
+    }
+
+    @Test
+    public void testPutOrReplaceSingle()
+    {
+        for (int keyCount : new int[] {1, 16, 17, 30}) {
+            ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(false);
+            for (int i = 0; i < keyCount; i++) {
+                builder.add("Key" + i, "a").add("key" + i, "b");
+            }
+            builder.putOrReplaceSingle("KEY0", "replaced")
+                    .putOrReplaceSingle("other", "single")
+                    .add("other", "added");
+            ImmutableMultiMap map = builder.build();
+
+            assertThat(map.get("key0")).containsExactly("replaced");
+            assertThat(map.get("other")).containsExactly("single", "added");
+            if (keyCount > 1) {
+                assertThat(map.get("Key1")).containsExactly("a", "b");
+            }
+            assertThat(map.keySet()).hasSize(keyCount + 1);
+        }
+    }
+
+    @Test
+    public void testCaseInsensitiveLookup()
+    {
+        ImmutableMultiMap map = ImmutableMultiMap.builder(false)
+                .add("Content-Type", "text/plain")
+                .add("X-Amz-Meta-Custom", "one")
+                .add("x-amz-meta-custom", "two")
+                .add("ETag", "\"abc\"")
+                .build();
+
+        assertThat(map.isCaseSensitiveKeys()).isFalse();
+        assertThat(map.keySet()).containsExactly("content-type", "x-amz-meta-custom", "etag");
+        assertThat(map.get("CONTENT-TYPE")).containsExactly("text/plain");
+        assertThat(map.get("X-AMZ-META-CUSTOM")).containsExactly("one", "two");
+        assertThat(map.getFirst("etag")).contains("\"abc\"");
+        assertThat(map.getFirst("Etag")).contains("\"abc\"");
+        assertThat(map.containsKey("Content-type")).isTrue();
+        // the key set holds the lowercase keys
+        assertThat(map.keySet().contains("Content-Type")).isFalse();
+
+        ImmutableMultiMap caseSensitive = ImmutableMultiMap.builder(true)
+                .add("Content-Type", "text/plain")
+                .build();
+        assertThat(caseSensitive.get("Content-Type")).containsExactly("text/plain");
+        assertThat(caseSensitive.get("content-type")).isEmpty();
+
+        assertThatThrownBy(() -> map.get(null)).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        ImmutableMultiMap empty = ImmutableMultiMap.empty();
+        assertThat(empty.keySet()).isEmpty();
+        assertThat(empty.entrySet()).isEmpty();
+        assertThat(empty.get("key")).isEmpty();
+        assertThat(empty.getFirst("key")).isEmpty();
+        assertThat(empty.isCaseSensitiveKeys()).isFalse();
+
+        // empty case-insensitive maps share one instance, empty case-sensitive maps keep their case sensitivity
+        assertThat(ImmutableMultiMap.builder(false).build()).isSameAs(empty);
+        assertThat(ImmutableMultiMap.builder(false).addAll("key", List.of()).build()).isSameAs(empty);
+        assertThat(ImmutableMultiMap.copyOfCaseInsensitive(ImmutableMap.<String, List<String>>of().entrySet())).isSameAs(empty);
+        ImmutableMultiMap emptyCaseSensitive = ImmutableMultiMap.builder(true).build();
+        assertThat(emptyCaseSensitive).isNotSameAs(empty);
+        assertThat(emptyCaseSensitive.isCaseSensitiveKeys()).isTrue();
+        assertThat(emptyCaseSensitive.keySet()).isEmpty();
+    }
+
+    @Test
+    public void testBuilderReuse()
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        for (int i = 0; i < 8; i++) {
+            builder.add("key" + i, "value");
+        }
+        // the first map shares the full keys array of the builder
+        ImmutableMultiMap first = builder.build();
+        builder.add("key8", "value").putOrReplaceSingle("key0", "replaced");
+        ImmutableMultiMap second = builder.build();
+
+        assertThat(first.keySet()).hasSize(8);
+        assertThat(first.get("key0")).containsExactly("value");
+        assertThat(first.containsKey("key8")).isFalse();
+        assertThat(second.keySet()).hasSize(9);
+        assertThat(second.get("key0")).containsExactly("replaced");
+    }
+
+    @Test
+    public void testCopies()
+    {
+        ImmutableMultiMap caseSensitive = ImmutableMultiMap.builder(true)
+                .add("Content-Type", "text/plain")
+                .add("X-Amz-Date", "20240601T000000Z")
+                .add("x-amz-date", "20240601T000001Z")
+                .build();
+
+        // copies of immutable maps return the map itself unless the case sensitivity changes
+        assertThat(ImmutableMultiMap.copyOf(caseSensitive)).isSameAs(caseSensitive);
+        ImmutableMultiMap caseInsensitive = ImmutableMultiMap.copyOfCaseInsensitive(caseSensitive);
+        assertThat(ImmutableMultiMap.copyOfCaseInsensitive(caseInsensitive)).isSameAs(caseInsensitive);
+
+        // keys of a case-sensitive source are lowercased and values of keys that only differ in case are merged
+        assertThat(caseInsensitive.isCaseSensitiveKeys()).isFalse();
+        assertThat(caseInsensitive.keySet()).containsExactly("content-type", "x-amz-date");
+        assertThat(caseInsensitive.get("X-Amz-Date")).containsExactly("20240601T000000Z", "20240601T000001Z");
+
+        Map<String, List<String>> source = ImmutableMap.of("Host", ImmutableList.of("localhost"), "Range", ImmutableList.of("bytes=0-9"));
+        ImmutableMultiMap copied = ImmutableMultiMap.copyOf(source.entrySet());
+        assertThat(copied.isCaseSensitiveKeys()).isTrue();
+        assertThat(copied.get("host")).isEmpty();
+        assertThat(ImmutableMultiMap.copyOfCaseInsensitive(source.entrySet()).keySet()).containsExactly("host", "range");
+    }
+
+    private static List<String> collidingKeys(int length)
+    {
+        // "Aa" and "BB" have the same hash code, and so does every concatenation of them of the same length
+        List<String> keys = new ArrayList<>();
+        keys.add("");
+        for (int i = 0; i < length; i++) {
+            List<String> longer = new ArrayList<>();
+            for (String key : keys) {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+            keys = longer;
+        }
+        return keys;
+    }
+}
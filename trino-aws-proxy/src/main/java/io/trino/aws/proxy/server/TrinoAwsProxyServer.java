@@ -17,12 +17,22 @@ import com.google.common.collect.ImmutableList;
 import com.google.inject.Injector;
 import com.google.inject.Module;
 import io.airlift.bootstrap.Bootstrap;
+import io.airlift.configuration.ConfigurationFactory;
 import io.airlift.event.client.EventModule;
 import io.airlift.http.server.HttpServerModule;
 import io.airlift.jaxrs.JaxrsModule;
+import io.airlift.jmx.JmxModule;
 import io.airlift.json.JsonModule;
 import io.airlift.log.Logger;
 import io.airlift.node.NodeModule;
+import io.trino.aws.proxy.server.dns.CachingInetAddressResolverProvider;
+import io.trino.aws.proxy.server.dns.DnsCacheConfig;
+import org.weakref.jmx.guice.MBeanModule;
+
+import java.io.IOException;
+
+import static io.airlift.configuration.ConfigurationLoader.loadProperties;
+import static io.airlift.configuration.ConfigurationUtils.replaceEnvironmentVariables;
 
 public final class TrinoAwsProxyServer
 {
@@ -31,14 +41,20 @@ public final class TrinoAwsProxyServer
     private TrinoAwsProxyServer() {}
 
     public static void main(String[] args)
+            throws IOException
     {
+        // the resolver of the JVM is chosen on the first name lookup, before the injector is created
+        CachingInetAddressResolverProvider.install(new ConfigurationFactory(replaceEnvironmentVariables(loadProperties())).build(DnsCacheConfig.class));
+
         ImmutableList.Builder<Module> modules = ImmutableList.<Module>builder()
                 .add(new TrinoAwsProxyServerModule())
                 .add(new NodeModule())
                 .add(new EventModule())
                 .add(new HttpServerModule())
                 .add(new JsonModule())
-                .add(new JaxrsModule());
+                .add(new JaxrsModule())
+                .add(new MBeanModule())
+                .add(new JmxModule());
 
         Bootstrap app = new Bootstrap(modules.build());
         Injector injector = app.initialize();
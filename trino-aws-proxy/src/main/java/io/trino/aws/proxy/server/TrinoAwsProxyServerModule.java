@@ -18,25 +18,79 @@ import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.google.inject.Binder;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.MapBinder;
+import com.google.inject.multibindings.Multibinder;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
+import io.airlift.http.server.TheServlet;
 import io.airlift.jaxrs.JaxrsBinder;
+import io.airlift.jaxrs.tracing.JaxrsTracingModule;
 import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import io.trino.aws.proxy.server.accesslog.AccessLogConfig;
+import io.trino.aws.proxy.server.accesslog.AccessLogWriter;
+import io.trino.aws.proxy.server.admin.AdminAuthenticationFilter;
+import io.trino.aws.proxy.server.admin.AdminAuthenticator;
+import io.trino.aws.proxy.server.admin.AdminConfig;
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimitConfig;
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimiter;
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import io.trino.aws.proxy.server.buffer.BufferPoolConfig;
+import io.trino.aws.proxy.server.cache.ListObjectsCache;
+import io.trino.aws.proxy.server.cache.ListObjectsCacheConfig;
+import io.trino.aws.proxy.server.cache.ObjectMetadataCache;
+import io.trino.aws.proxy.server.cache.ObjectMetadataCacheConfig;
+import io.trino.aws.proxy.server.cache.RangeCoalescer;
+import io.trino.aws.proxy.server.cache.RangeCoalescingConfig;
+import io.trino.aws.proxy.server.cache.ReadAheadConfig;
+import io.trino.aws.proxy.server.cache.ReadAheadController;
+import io.trino.aws.proxy.server.cluster.ClusterConfig;
+import io.trino.aws.proxy.server.cluster.PeerCache;
+import io.trino.aws.proxy.server.cluster.PeerCache.ForPeerClient;
+import io.trino.aws.proxy.server.compression.GzipHandlerExclusionFilter;
+import io.trino.aws.proxy.server.compression.ResponseCompressionConfig;
+import io.trino.aws.proxy.server.compression.ResponseCompressor;
 import io.trino.aws.proxy.server.credentials.CredentialsController;
+import io.trino.aws.proxy.server.dns.DnsCache;
+import io.trino.aws.proxy.server.dns.DnsCacheConfig;
+import io.trino.aws.proxy.server.drain.DrainConfig;
+import io.trino.aws.proxy.server.drain.DrainController;
+import io.trino.aws.proxy.server.drain.ShutdownDrainer;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.ProxyMetricsConfig;
+import io.trino.aws.proxy.server.metrics.RequestRecorder;
+import io.trino.aws.proxy.server.metrics.RequestRecorderConfig;
 import io.trino.aws.proxy.server.remote.RemoteS3Facade;
+import io.trino.aws.proxy.server.remote.RoutingConfig;
+import io.trino.aws.proxy.server.remote.RoutingModule;
 import io.trino.aws.proxy.server.remote.VirtualHostStyleRemoteS3Facade;
+import io.trino.aws.proxy.server.rest.CacheWarmer;
+import io.trino.aws.proxy.server.rest.CacheWarmupConfig;
 import io.trino.aws.proxy.server.rest.RequestFilter;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
+import io.trino.aws.proxy.server.rest.ResponseCompressionFilter;
+import io.trino.aws.proxy.server.rest.TrinoDrainResource;
+import io.trino.aws.proxy.server.rest.TrinoMetricsResource;
+import io.trino.aws.proxy.server.rest.TrinoPeerResource;
+import io.trino.aws.proxy.server.rest.TrinoRequestLoggingResource;
+import io.trino.aws.proxy.server.rest.TrinoRequestsResource;
 import io.trino.aws.proxy.server.rest.TrinoS3ProxyClient;
 import io.trino.aws.proxy.server.rest.TrinoS3ProxyClient.ForProxyClient;
 import io.trino.aws.proxy.server.rest.TrinoS3ProxyConfig;
 import io.trino.aws.proxy.server.rest.TrinoS3Resource;
 import io.trino.aws.proxy.server.rest.TrinoStsResource;
+import io.trino.aws.proxy.server.rest.TrinoWarmupResource;
+import io.trino.aws.proxy.server.scheduling.FairScheduler;
+import io.trino.aws.proxy.server.scheduling.SchedulingConfig;
+import io.trino.aws.proxy.server.scheduling.SchedulingModule;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.server.signing.InternalSigningController;
 import io.trino.aws.proxy.server.signing.SigningControllerConfig;
 import io.trino.aws.proxy.server.signing.SigningModule;
+import io.trino.aws.proxy.server.tracing.ProxySpans;
 import io.trino.aws.proxy.spi.TrinoAwsProxyServerPlugin;
 import io.trino.aws.proxy.spi.credentials.AssumedRoleProvider;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
@@ -45,17 +99,22 @@ import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.signing.SigningController;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.servlet.Filter;
 import org.glassfish.jersey.server.model.Resource;
 
 import java.util.Optional;
 import java.util.ServiceLoader;
 
 import static com.google.inject.multibindings.MapBinder.newMapBinder;
+import static com.google.inject.multibindings.Multibinder.newSetBinder;
 import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
+import static io.airlift.configuration.ConditionalModule.conditionalModule;
 import static io.airlift.configuration.ConfigBinder.configBinder;
 import static io.airlift.http.client.HttpClientBinder.httpClientBinder;
 import static io.airlift.http.server.HttpServerBinder.httpServerBinder;
 import static io.airlift.jaxrs.JaxrsBinder.jaxrsBinder;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class TrinoAwsProxyServerModule
         extends AbstractConfigurationAwareModule
@@ -66,24 +125,92 @@ public class TrinoAwsProxyServerModule
     protected void setup(Binder binder)
     {
         configBinder(binder).bindConfig(SigningControllerConfig.class);
+        configBinder(binder).bindConfig(ReadAheadConfig.class);
+        configBinder(binder).bindConfig(RangeCoalescingConfig.class);
+        configBinder(binder).bindConfig(ObjectMetadataCacheConfig.class);
+        configBinder(binder).bindConfig(ListObjectsCacheConfig.class);
+        configBinder(binder).bindConfig(ProxyMetricsConfig.class);
+        configBinder(binder).bindConfig(RequestRecorderConfig.class);
+        configBinder(binder).bindConfig(AccessLogConfig.class);
+        configBinder(binder).bindConfig(BufferPoolConfig.class);
+        configBinder(binder).bindConfig(DnsCacheConfig.class);
+        configBinder(binder).bindConfig(ClusterConfig.class);
+        configBinder(binder).bindConfig(ResponseCompressionConfig.class);
+        configBinder(binder).bindConfig(SchedulingConfig.class);
+        configBinder(binder).bindConfig(BandwidthLimitConfig.class);
+        configBinder(binder).bindConfig(DrainConfig.class);
+        configBinder(binder).bindConfig(AdminConfig.class);
         TrinoS3ProxyConfig builtConfig = buildConfigObject(TrinoS3ProxyConfig.class);
+        CacheWarmupConfig cacheWarmupConfig = buildConfigObject(CacheWarmupConfig.class);
 
         JaxrsBinder jaxrsBinder = jaxrsBinder(binder);
 
         MapBinder<Class<?>, SigningServiceType> signingServiceTypesMapBinder = newMapBinder(binder, new TypeLiteral<>() {}, new TypeLiteral<>() {});
 
         jaxrsBinder.bind(RequestFilter.class);
+        jaxrsBinder.bind(AdminAuthenticationFilter.class);
+        jaxrsBinder.bind(ResponseCompressionFilter.class);
         bindResourceAtPath(jaxrsBinder, signingServiceTypesMapBinder, SigningServiceType.S3, TrinoS3Resource.class, builtConfig.getS3Path());
         bindResourceAtPath(jaxrsBinder, signingServiceTypesMapBinder, SigningServiceType.STS, TrinoStsResource.class, builtConfig.getStsPath());
 
+        Multibinder<Class<?>> unsignedResourcesBinder = newSetBinder(binder, new TypeLiteral<>() {});
+        bindUnsignedResourceAtPath(jaxrsBinder, unsignedResourcesBinder, TrinoMetricsResource.class, builtConfig.getMetricsPath());
+        bindUnsignedResourceAtPath(jaxrsBinder, unsignedResourcesBinder, TrinoRequestsResource.class, builtConfig.getRequestsPath());
+        bindUnsignedResourceAtPath(jaxrsBinder, unsignedResourcesBinder, TrinoRequestLoggingResource.class, builtConfig.getRequestLoggingPath());
+        bindUnsignedResourceAtPath(jaxrsBinder, unsignedResourcesBinder, TrinoPeerResource.class, builtConfig.getPeerPath());
+        if (cacheWarmupConfig.isEnabled()) {
+            bindUnsignedResourceAtPath(jaxrsBinder, unsignedResourcesBinder, TrinoWarmupResource.class, builtConfig.getWarmupPath());
+        }
+        bindUnsignedResourceAtPath(jaxrsBinder, unsignedResourcesBinder, TrinoDrainResource.class, builtConfig.getDrainPath());
+
         binder.bind(SigningController.class).to(InternalSigningController.class).in(Scopes.SINGLETON);
+        binder.bind(AdminAuthenticator.class).in(Scopes.SINGLETON);
         binder.bind(CredentialsController.class).in(Scopes.SINGLETON);
         binder.bind(RequestLoggerController.class).in(Scopes.SINGLETON);
+        binder.bind(ProxyMetrics.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(ProxyMetrics.class).withGeneratedName();
+        binder.bind(RequestRecorder.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(RequestRecorder.class).withGeneratedName();
+        binder.bind(AccessLogWriter.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(AccessLogWriter.class).withGeneratedName();
+        binder.bind(BufferPool.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(BufferPool.class).withGeneratedName();
+        binder.bind(DnsCache.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(DnsCache.class).withGeneratedName();
+        binder.bind(ResponseCompressor.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(ResponseCompressor.class).withGeneratedName();
+        newSetBinder(binder, Filter.class, TheServlet.class).addBinding().to(GzipHandlerExclusionFilter.class).in(Scopes.SINGLETON);
 
         // TODO config, etc.
         httpClientBinder(binder).bindHttpClient("ProxyClient", ForProxyClient.class);
         binder.bind(TrinoS3ProxyClient.class).in(Scopes.SINGLETON);
 
+        httpClientBinder(binder).bindHttpClient("PeerClient", ForPeerClient.class)
+                .withConfigDefaults(config -> config.setRequestTimeout(new Duration(1, SECONDS))
+                        .setIdleTimeout(new Duration(1, SECONDS)));
+        binder.bind(PeerCache.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(PeerCache.class).withGeneratedName();
+
+        binder.bind(ReadAheadController.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(ReadAheadController.class).withGeneratedName();
+        binder.bind(RangeCoalescer.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(RangeCoalescer.class).withGeneratedName();
+        binder.bind(ObjectMetadataCache.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(ObjectMetadataCache.class).withGeneratedName();
+        binder.bind(ListObjectsCache.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(ListObjectsCache.class).withGeneratedName();
+        if (cacheWarmupConfig.isEnabled()) {
+            binder.bind(CacheWarmer.class).in(Scopes.SINGLETON);
+            newExporter(binder).export(CacheWarmer.class).withGeneratedName();
+        }
+        install(new SchedulingModule());
+        newExporter(binder).export(FairScheduler.class).withGeneratedName();
+        binder.bind(BandwidthLimiter.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(BandwidthLimiter.class).withGeneratedName();
+        binder.bind(DrainController.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(DrainController.class).withGeneratedName();
+        binder.bind(ShutdownDrainer.class).in(Scopes.SINGLETON);
+
         // deprecation is removed in next release of Airlift
         httpServerBinder(binder).enableLegacyUriCompliance();
 
@@ -94,6 +221,10 @@ public class TrinoAwsProxyServerModule
         newOptionalBinder(binder, CredentialsProvider.class).setDefault().toInstance((_, _) -> Optional.empty());
         newOptionalBinder(binder, AssumedRoleProvider.class).setDefault().toInstance((_, _, _, _, _, _) -> Optional.empty());
 
+        // no tracing unless a plugin binds an OpenTelemetry instance
+        newOptionalBinder(binder, OpenTelemetry.class).setDefault().toInstance(OpenTelemetry.noop());
+        install(new JaxrsTracingModule());
+
         install(new SigningModule());
 
         installPlugins();
@@ -110,11 +241,22 @@ public class TrinoAwsProxyServerModule
         return xmlMapper;
     }
 
+    @Provides
+    @Singleton
+    public Tracer newTracer(OpenTelemetry openTelemetry)
+    {
+        return openTelemetry.getTracer(ProxySpans.TRACER_NAME);
+    }
+
     protected void moduleSpecificBinding(Binder binder)
     {
         binder.bind(S3SecurityController.class).in(Scopes.SINGLETON);
         newOptionalBinder(binder, S3SecurityFacadeProvider.class).setDefault().toInstance(_ -> _ -> SecurityResponse.DEFAULT);
-        binder.bind(RemoteS3Facade.class).to(VirtualHostStyleRemoteS3Facade.class).in(Scopes.SINGLETON);
+        install(conditionalModule(
+                RoutingConfig.class,
+                RoutingConfig::isEnabled,
+                new RoutingModule(),
+                innerBinder -> innerBinder.bind(RemoteS3Facade.class).to(VirtualHostStyleRemoteS3Facade.class).in(Scopes.SINGLETON)));
     }
 
     private void installPlugins()
@@ -133,4 +275,12 @@ public class TrinoAwsProxyServerModule
         jaxrsBinder.bindInstance(resource);
         signingServiceTypesMapBinder.addBinding(resourceClass).toInstance(signingServiceType);
     }
+
+    private static void bindUnsignedResourceAtPath(JaxrsBinder jaxrsBinder, Multibinder<Class<?>> unsignedResourcesBinder, Class<?> resourceClass, String resourcePathPrefix)
+    {
+        Resource resource = Resource.builder(resourceClass).path(resourcePathPrefix).build();
+        jaxrsBinder.bind(resourceClass);
+        jaxrsBinder.bindInstance(resource);
+        unsignedResourcesBinder.addBinding().toInstance(resourceClass);
+    }
 }
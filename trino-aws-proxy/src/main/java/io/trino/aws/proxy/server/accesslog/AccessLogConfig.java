@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.accesslog;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class AccessLogConfig
+{
+    private boolean enabled;
+    private String path = "var/log/s3proxy-access.log";
+    private AccessLogFormat format = AccessLogFormat.JSON;
+    private int queueSize = 65_536;
+    private int maxBatchSize = 1024;
+    private Duration flushInterval = new Duration(1, TimeUnit.SECONDS);
+    private DataSize maxFileSize = DataSize.of(100, MEGABYTE);
+    private int maxHistory = 30;
+    private boolean compressionEnabled = true;
+
+    @Config("s3proxy.access-log.enabled")
+    @ConfigDescription("Write a record of every request to the access log")
+    public AccessLogConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.access-log.path")
+    @ConfigDescription("Path of the current access log file. Rotated files are written next to it")
+    public AccessLogConfig setPath(String path)
+    {
+        this.path = path;
+        return this;
+    }
+
+    @NotNull
+    public String getPath()
+    {
+        return path;
+    }
+
+    @Config("s3proxy.access-log.format")
+    @ConfigDescription("Format of access log records: JSON lines or the S3 server access log format")
+    public AccessLogConfig setFormat(AccessLogFormat format)
+    {
+        this.format = format;
+        return this;
+    }
+
+    @NotNull
+    public AccessLogFormat getFormat()
+    {
+        return format;
+    }
+
+    @Config("s3proxy.access-log.queue-size")
+    @ConfigDescription("Maximum number of records waiting to be written. Records are dropped when the queue is full")
+    public AccessLogConfig setQueueSize(int queueSize)
+    {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    @Config("s3proxy.access-log.max-batch-size")
+    @ConfigDescription("Maximum number of records written at once")
+    public AccessLogConfig setMaxBatchSize(int maxBatchSize)
+    {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    @Config("s3proxy.access-log.flush-interval")
+    @ConfigDescription("Maximum time before written records are flushed to the file")
+    public AccessLogConfig setFlushInterval(Duration flushInterval)
+    {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getFlushInterval()
+    {
+        return flushInterval;
+    }
+
+    @Config("s3proxy.access-log.max-file-size")
+    @ConfigDescription("Size at which the access log file is rotated")
+    public AccessLogConfig setMaxFileSize(DataSize maxFileSize)
+    {
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    public DataSize getMaxFileSize()
+    {
+        return maxFileSize;
+    }
+
+    @Config("s3proxy.access-log.max-history")
+    @ConfigDescription("Number of rotated access log files to keep")
+    public AccessLogConfig setMaxHistory(int maxHistory)
+    {
+        this.maxHistory = maxHistory;
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxHistory()
+    {
+        return maxHistory;
+    }
+
+    @Config("s3proxy.access-log.compression.enabled")
+    @ConfigDescription("Compress rotated access log files with gzip")
+    public AccessLogConfig setCompressionEnabled(boolean compressionEnabled)
+    {
+        this.compressionEnabled = compressionEnabled;
+        return this;
+    }
+
+    public boolean isCompressionEnabled()
+    {
+        return compressionEnabled;
+    }
+}
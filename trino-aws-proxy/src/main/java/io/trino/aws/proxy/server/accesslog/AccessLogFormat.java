@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.accesslog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import io.airlift.json.ObjectMapperProvider;
+
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Optional;
+
+public enum AccessLogFormat
+{
+    /**
+     * One JSON object per line
+     */
+    JSON {
+        @Override
+        String format(AccessLogRecord record)
+        {
+            try {
+                return JSON_WRITER.writeValueAsString(record);
+            }
+            catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+
+    /**
+     * The Amazon S3 server access log format, so that existing tooling for S3 logs can read the proxy's logs.
+     * Fields the proxy does not know, such as the bucket owner, are written as {@code -}.
+     */
+    S3 {
+        @Override
+        String format(AccessLogRecord record)
+        {
+            StringBuilder line = new StringBuilder(256);
+            field(line, "-");
+            field(line, record.bucket());
+            line.append('[').append(S3_TIME_FORMAT.format(record.time())).append("] ");
+            field(line, record.clientAddress());
+            field(line, record.accessKey());
+            field(line, record.requestId().toString());
+            field(line, operation(record));
+            field(line, record.key().map(KEY_ESCAPER::escape));
+            quotedField(line, Optional.of(record.httpVerb() + " " + record.requestUri() + " HTTP/1.1"));
+            field(line, Integer.toString(record.statusCode()));
+            field(line, "-");
+            field(line, (record.bytesOut() > 0) ? Long.toString(record.bytesOut()) : "-");
+            field(line, "-");
+            field(line, Long.toString(record.totalTimeMillis()));
+            field(line, record.turnAroundTimeMillis().isPresent() ? Long.toString(record.turnAroundTimeMillis().getAsLong()) : "-");
+            quotedField(line, record.referer());
+            quotedField(line, record.userAgent());
+            // version id, host id, signature version, cipher suite, authentication type
+            for (int i = 0; i < 5; i++) {
+                field(line, "-");
+            }
+            field(line, record.host());
+            // TLS version, access point ARN, ACL required
+            line.append("- - -");
+            return line.toString();
+        }
+    };
+
+    private static final ObjectWriter JSON_WRITER = new ObjectMapperProvider().get().writerFor(AccessLogRecord.class);
+    private static final DateTimeFormatter S3_TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneOffset.UTC);
+    private static final Escaper KEY_ESCAPER = UrlEscapers.urlFragmentEscaper();
+
+    /**
+     * Format a record as a single line, without the line terminator
+     */
+    abstract String format(AccessLogRecord record);
+
+    private static String operation(AccessLogRecord record)
+    {
+        String resource = switch (record.action()) {
+            case "ListBuckets" -> "SERVICE";
+            case "CreateMultipartUpload" -> "UPLOADS";
+            case "CompleteMultipartUpload", "AbortMultipartUpload", "ListParts" -> "UPLOAD";
+            case "UploadPart", "UploadPartCopy" -> "PART";
+            case "DeleteObjects" -> "MULTI_OBJECT_DELETE";
+            default -> {
+                if (record.key().isPresent()) {
+                    yield "OBJECT";
+                }
+                yield record.bucket().isPresent() ? "BUCKET" : "SERVICE";
+            }
+        };
+        return "REST." + record.httpVerb() + "." + resource;
+    }
+
+    private static void field(StringBuilder line, Optional<String> value)
+    {
+        field(line, value.filter(text -> !text.isEmpty()).orElse("-"));
+    }
+
+    private static void field(StringBuilder line, String value)
+    {
+        line.append(value.replace(' ', '+')).append(' ');
+    }
+
+    private static void quotedField(StringBuilder line, Optional<String> value)
+    {
+        if (value.isEmpty() || value.get().isEmpty()) {
+            line.append("\"-\" ");
+            return;
+        }
+        line.append('"').append(value.get().replace("\"", "\\\"")).append("\" ");
+    }
+}
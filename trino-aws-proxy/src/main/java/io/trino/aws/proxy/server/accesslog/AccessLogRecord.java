@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.accesslog;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * One line of the access log, describing a request once its response has been written
+ */
+public record AccessLogRecord(
+        Instant time,
+        UUID requestId,
+        String clientAddress,
+        Optional<String> accessKey,
+        String service,
+        String httpVerb,
+        String action,
+        Optional<String> bucket,
+        Optional<String> key,
+        String requestUri,
+        int statusCode,
+        long bytesIn,
+        long bytesOut,
+        long totalTimeMillis,
+        OptionalLong turnAroundTimeMillis,
+        Optional<String> userAgent,
+        Optional<String> referer,
+        Optional<String> host)
+{
+    public AccessLogRecord
+    {
+        requireNonNull(time, "time is null");
+        requireNonNull(requestId, "requestId is null");
+        requireNonNull(clientAddress, "clientAddress is null");
+        requireNonNull(accessKey, "accessKey is null");
+        requireNonNull(service, "service is null");
+        requireNonNull(httpVerb, "httpVerb is null");
+        requireNonNull(action, "action is null");
+        requireNonNull(bucket, "bucket is null");
+        requireNonNull(key, "key is null");
+        requireNonNull(requestUri, "requestUri is null");
+        requireNonNull(turnAroundTimeMillis, "turnAroundTimeMillis is null");
+        requireNonNull(userAgent, "userAgent is null");
+        requireNonNull(referer, "referer is null");
+        requireNonNull(host, "host is null");
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.accesslog;
+
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.Managed;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.Comparator.reverseOrder;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Writes access log records from a background thread. Request threads only add records to a bounded queue,
+ * and records are dropped and counted when the queue is full so that a slow disk never holds up requests.
+ * The writer takes records from the queue in batches, flushes at least once per flush interval and rotates
+ * the file once it reaches the maximum size.
+ */
+public class AccessLogWriter
+{
+    private static final Logger log = Logger.get(AccessLogWriter.class);
+
+    private static final DateTimeFormatter ROTATED_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss.SSS").withZone(ZoneOffset.UTC);
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path path;
+    private final AccessLogFormat format;
+    private final BlockingQueue<AccessLogRecord> queue;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final long maxFileSize;
+    private final int maxHistory;
+    private final boolean compressionEnabled;
+    private final Thread writerThread;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+
+    private volatile boolean stopping;
+
+    // only accessed by the writer thread
+    private OutputStream output;
+    private long fileSize;
+    private long lastFlushNanos;
+
+    @Inject
+    public AccessLogWriter(AccessLogConfig accessLogConfig)
+    {
+        requireNonNull(accessLogConfig, "accessLogConfig is null");
+        enabled = accessLogConfig.isEnabled();
+        path = Paths.get(accessLogConfig.getPath()).toAbsolutePath();
+        format = accessLogConfig.getFormat();
+        queue = new ArrayBlockingQueue<>(accessLogConfig.getQueueSize());
+        maxBatchSize = accessLogConfig.getMaxBatchSize();
+        flushIntervalNanos = accessLogConfig.getFlushInterval().roundTo(NANOSECONDS);
+        maxFileSize = accessLogConfig.getMaxFileSize().toBytes();
+        maxHistory = accessLogConfig.getMaxHistory();
+        compressionEnabled = accessLogConfig.isCompressionEnabled();
+        writerThread = Thread.ofPlatform().name("access-log-writer").daemon().unstarted(this::run);
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (enabled) {
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Stop accepting records, write the records still queued and close the file
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        stopping = true;
+        if (!writerThread.isAlive()) {
+            return;
+        }
+        try {
+            writerThread.join(NANOSECONDS.toMillis(flushIntervalNanos) + 10_000);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("Access log writer did not finish, %s records were not written", queue.size());
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Queue a record to be written. Never blocks: the record is dropped if the queue is full.
+     */
+    public void write(AccessLogRecord record)
+    {
+        if (stopping || !queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Managed
+    public long getQueued()
+    {
+        return queue.size();
+    }
+
+    @Managed
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    @Managed
+    public long getWritten()
+    {
+        return written.get();
+    }
+
+    @Managed
+    public long getWriteFailures()
+    {
+        return writeFailures.get();
+    }
+
+    @Managed
+    public long getRotations()
+    {
+        return rotations.get();
+    }
+
+    private void run()
+    {
+        List<AccessLogRecord> batch = new ArrayList<>(maxBatchSize);
+        lastFlushNanos = System.nanoTime();
+        while (true) {
+            AccessLogRecord first;
+            try {
+                first = queue.poll(flushIntervalNanos, NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                flush();
+                if (stopping && queue.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+            writeBatch(batch);
+            batch.clear();
+
+            if (queue.isEmpty() || (System.nanoTime() - lastFlushNanos >= flushIntervalNanos)) {
+                flush();
+            }
+        }
+        closeOutput();
+    }
+
+    private void writeBatch(List<AccessLogRecord> batch)
+    {
+        try {
+            if (output == null) {
+                openOutput();
+            }
+            for (AccessLogRecord record : batch) {
+                byte[] line = (format.format(record) + "\n").getBytes(UTF_8);
+                output.write(line);
+                fileSize += line.length;
+            }
+            written.addAndGet(batch.size());
+            if (fileSize >= maxFileSize) {
+                rotate();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            writeFailures.incrementAndGet();
+            log.warn(e, "Could not write %s records to access log %s", batch.size(), path);
+            closeOutput();
+        }
+    }
+
+    private void flush()
+    {
+        lastFlushNanos = System.nanoTime();
+        if (output == null) {
+            return;
+        }
+        try {
+            output.flush();
+        }
+        catch (IOException e) {
+            writeFailures.incrementAndGet();
+            log.warn(e, "Could not flush access log %s", path);
+            closeOutput();
+        }
+    }
+
+    private void openOutput()
+            throws IOException
+    {
+        Files.createDirectories(path.getParent());
+        output = new BufferedOutputStream(Files.newOutputStream(path, CREATE, APPEND), BUFFER_SIZE);
+        fileSize = Files.size(path);
+    }
+
+    private void closeOutput()
+    {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.close();
+        }
+        catch (IOException e) {
+            log.warn(e, "Could not close access log %s", path);
+        }
+        output = null;
+    }
+
+    private void rotate()
+            throws IOException
+    {
+        output.close();
+        output = null;
+
+        Path rotated = rotatedPath();
+        Files.move(path, rotated, ATOMIC_MOVE);
+        rotations.incrementAndGet();
+        if (compressionEnabled) {
+            compress(rotated);
+        }
+        removeOldFiles();
+    }
+
+    private Path rotatedPath()
+    {
+        String name = path.getFileName() + "." + ROTATED_SUFFIX_FORMAT.format(Instant.now());
+        Path rotated = path.resolveSibling(name);
+        for (int i = 1; Files.exists(rotated) || Files.exists(rotated.resolveSibling(rotated.getFileName() + COMPRESSED_SUFFIX)); i++) {
+            rotated = path.resolveSibling(name + "-" + i);
+        }
+        return rotated;
+    }
+
+    private static void compress(Path file)
+            throws IOException
+    {
+        Path compressed = file.resolveSibling(file.getFileName() + COMPRESSED_SUFFIX);
+        try (InputStream input = Files.newInputStream(file);
+                OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(compressed), BUFFER_SIZE)) {
+            input.transferTo(gzip);
+        }
+        Files.delete(file);
+    }
+
+    private void removeOldFiles()
+            throws IOException
+    {
+        List<Path> rotatedFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(), path.getFileName() + ".*")) {
+            files.forEach(rotatedFiles::add);
+        }
+        // the rotated suffix sorts by time, newest first
+        rotatedFiles.sort(reverseOrder());
+        for (Path file : rotatedFiles.subList(Math.min(maxHistory, rotatedFiles.size()), rotatedFiles.size())) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
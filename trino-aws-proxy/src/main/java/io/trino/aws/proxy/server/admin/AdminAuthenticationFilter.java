@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.admin;
+
+import com.google.inject.Inject;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.model.ResourceMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Rejects requests to {@link AdminOnly} resources that are not signed with the admin shared secret
+ */
+@Priority(Priorities.AUTHENTICATION)
+public class AdminAuthenticationFilter
+        implements ContainerRequestFilter
+{
+    private final AdminAuthenticator adminAuthenticator;
+
+    @Inject
+    public AdminAuthenticationFilter(AdminAuthenticator adminAuthenticator)
+    {
+        this.adminAuthenticator = requireNonNull(adminAuthenticator, "adminAuthenticator is null");
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext)
+            throws IOException
+    {
+        if (!(requestContext.getRequest() instanceof ContainerRequest containerRequest) || !isAdminOnly(containerRequest.getUriInfo().getMatchedResourceMethod())) {
+            return;
+        }
+
+        String signature = requestContext.getHeaderString(AdminAuthenticator.SIGNATURE_HEADER);
+        adminAuthenticator.checkRequest(signature, requestContext.getLength());
+
+        byte[] body;
+        try (InputStream entityStream = requestContext.getEntityStream()) {
+            // the length is not declared for chunked bodies
+            body = entityStream.readNBytes(adminAuthenticator.getMaxBodySize() + 1);
+        }
+        if (body.length > adminAuthenticator.getMaxBodySize()) {
+            throw new WebApplicationException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+        // the resource reads the body after it has been verified
+        requestContext.setEntityStream(new ByteArrayInputStream(body));
+
+        UriInfo uriInfo = requestContext.getUriInfo();
+        String rawQuery = uriInfo.getRequestUri().getRawQuery();
+        adminAuthenticator.authenticate(
+                signature,
+                requestContext.getMethod(),
+                uriInfo.getRequestUri().getRawPath(),
+                (rawQuery == null) ? "" : rawQuery,
+                body);
+    }
+
+    private static boolean isAdminOnly(ResourceMethod resourceMethod)
+    {
+        if (resourceMethod == null) {
+            return false;
+        }
+        Method method = resourceMethod.getInvocable().getDefinitionMethod();
+        return method.isAnnotationPresent(AdminOnly.class) || method.getDeclaringClass().isAnnotationPresent(AdminOnly.class);
+    }
+}
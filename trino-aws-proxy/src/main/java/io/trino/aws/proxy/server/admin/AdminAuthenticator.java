@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.admin;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.cluster.PeerAuthenticator;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Authenticates requests to the administrative endpoints. Requests are signed like the requests between
+ * the nodes of a cluster, with an HMAC of the admin shared secret that covers the time, the method, the
+ * raw path and query, and the body. When no secret is configured the endpoints do not exist.
+ */
+public class AdminAuthenticator
+{
+    public static final String SIGNATURE_HEADER = "X-Trino-Proxy-Admin-Signature";
+
+    private final Optional<PeerAuthenticator> authenticator;
+    private final int maxBodySize;
+
+    @Inject
+    public AdminAuthenticator(AdminConfig adminConfig)
+    {
+        this(adminConfig, Clock.systemUTC());
+    }
+
+    AdminAuthenticator(AdminConfig adminConfig, Clock clock)
+    {
+        requireNonNull(clock, "clock is null");
+        authenticator = adminConfig.getSharedSecret().map(sharedSecret -> new PeerAuthenticator(sharedSecret, clock));
+        maxBodySize = toIntExact(adminConfig.getMaxBodySize().toBytes());
+    }
+
+    public boolean isEnabled()
+    {
+        return authenticator.isPresent();
+    }
+
+    public int getMaxBodySize()
+    {
+        return maxBodySize;
+    }
+
+    /**
+     * Reject a request that cannot be authenticated before its body is read: the endpoints are disabled, there
+     * is no signature, or the declared body is larger than any request that is accepted
+     */
+    public void checkRequest(String signature, long contentLength)
+    {
+        if (authenticator.isEmpty()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        if (isNullOrEmpty(signature)) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        if (contentLength > maxBodySize) {
+            throw new WebApplicationException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+    }
+
+    public String sign(String method, String rawPath, String rawQuery, byte[] body)
+    {
+        return authenticator.orElseThrow(() -> new IllegalStateException("admin shared secret is not configured"))
+                .sign(method, List.of(rawPath, rawQuery), body);
+    }
+
+    public void authenticate(String signature, String method, String rawPath, String rawQuery, byte[] body)
+    {
+        if (authenticator.isEmpty()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        if (!authenticator.get().verify(signature, method, List.of(rawPath, rawQuery), body)) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+    }
+}
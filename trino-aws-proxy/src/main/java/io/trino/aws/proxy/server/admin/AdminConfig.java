@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.admin;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.configuration.ConfigSecuritySensitive;
+import io.airlift.units.DataSize;
+import io.airlift.units.MaxDataSize;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class AdminConfig
+{
+    private Optional<String> sharedSecret = Optional.empty();
+    private DataSize maxBodySize = DataSize.of(1, MEGABYTE);
+
+    @Config("s3proxy.admin.shared-secret")
+    @ConfigDescription("Secret used to authenticate requests to the administrative endpoints. The endpoints are disabled when it is not set")
+    @ConfigSecuritySensitive
+    public AdminConfig setSharedSecret(String sharedSecret)
+    {
+        this.sharedSecret = Optional.ofNullable(sharedSecret);
+        return this;
+    }
+
+    @NotNull
+    public Optional<String> getSharedSecret()
+    {
+        return sharedSecret;
+    }
+
+    @Config("s3proxy.admin.max-body-size")
+    @ConfigDescription("Largest request body accepted by the administrative endpoints. Bodies are held in memory until their signature is verified")
+    public AdminConfig setMaxBodySize(DataSize maxBodySize)
+    {
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    @NotNull
+    @MaxDataSize("64MB")
+    public DataSize getMaxBodySize()
+    {
+        return maxBodySize;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.bandwidth;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDuration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+public class BandwidthLimitConfig
+{
+    private Optional<DataSize> globalLimit = Optional.empty();
+    private Optional<DataSize> accessKeyLimit = Optional.empty();
+    private Duration burst = new Duration(100, MILLISECONDS);
+
+    @Config("s3proxy.bandwidth.global-limit")
+    @ConfigDescription("Bytes per second that all clients together may transfer through the proxy, unlimited if not set")
+    public BandwidthLimitConfig setGlobalLimit(DataSize globalLimit)
+    {
+        this.globalLimit = Optional.ofNullable(globalLimit);
+        return this;
+    }
+
+    @NotNull
+    public Optional<DataSize> getGlobalLimit()
+    {
+        return globalLimit;
+    }
+
+    @Config("s3proxy.bandwidth.access-key-limit")
+    @ConfigDescription("Bytes per second that each emulated access key may transfer through the proxy, unlimited if not set")
+    public BandwidthLimitConfig setAccessKeyLimit(DataSize accessKeyLimit)
+    {
+        this.accessKeyLimit = Optional.ofNullable(accessKeyLimit);
+        return this;
+    }
+
+    @NotNull
+    public Optional<DataSize> getAccessKeyLimit()
+    {
+        return accessKeyLimit;
+    }
+
+    @Config("s3proxy.bandwidth.burst")
+    @ConfigDescription("How long an idle client may transfer at full speed before it is held to its limit")
+    public BandwidthLimitConfig setBurst(Duration burst)
+    {
+        this.burst = burst;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    @MaxDuration("1m")
+    public Duration getBurst()
+    {
+        return burst;
+    }
+}
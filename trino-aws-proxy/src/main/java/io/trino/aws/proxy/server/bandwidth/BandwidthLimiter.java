@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.bandwidth;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.inject.Inject;
+import io.airlift.stats.CounterStat;
+import io.airlift.units.DataSize;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Caps the bytes per second relayed through the proxy, for all clients together and for each emulated access key.
+ * Limits start from {@link BandwidthLimitConfig} and can be changed at runtime over JMX; a limit of zero means
+ * unlimited. Changes apply to transfers already in progress.
+ */
+public class BandwidthLimiter
+{
+    private final long burstNanos;
+    private final Ticker ticker;
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> accessKeyBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Long> accessKeyOverrides = new ConcurrentHashMap<>();
+    private volatile long accessKeyLimit;
+
+    private final CounterStat pacedWrites = new CounterStat();
+    private final CounterStat pacedNanos = new CounterStat();
+
+    @Inject
+    public BandwidthLimiter(BandwidthLimitConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    BandwidthLimiter(BandwidthLimitConfig config, Ticker ticker)
+    {
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        burstNanos = config.getBurst().roundTo(NANOSECONDS);
+        globalBucket = new TokenBucket(bytesPerSecond(config.getGlobalLimit()), burstNanos, ticker);
+        accessKeyLimit = bytesPerSecond(config.getAccessKeyLimit());
+    }
+
+    /**
+     * The throttle for transfers made on behalf of the given emulated access key
+     */
+    public Throttle throttle(String accessKey)
+    {
+        TokenBucket accessKeyBucket = accessKeyBuckets.computeIfAbsent(accessKey, key -> new TokenBucket(limitFor(key), burstNanos, ticker));
+        return new Throttle(accessKeyBucket);
+    }
+
+    @Managed
+    public long getGlobalLimit()
+    {
+        return globalBucket.getBytesPerSecond();
+    }
+
+    @Managed
+    public void setGlobalLimit(long bytesPerSecond)
+    {
+        globalBucket.setBytesPerSecond(bytesPerSecond);
+    }
+
+    @Managed
+    public long getAccessKeyLimit()
+    {
+        return accessKeyLimit;
+    }
+
+    @Managed
+    public void setAccessKeyLimit(long bytesPerSecond)
+    {
+        checkArgument(bytesPerSecond >= 0, "bytesPerSecond is negative");
+        accessKeyLimit = bytesPerSecond;
+        refreshBuckets();
+    }
+
+    @Managed(description = "Limit of one access key, overriding the access key limit")
+    public void setLimitForAccessKey(String accessKey, long bytesPerSecond)
+    {
+        checkArgument(bytesPerSecond >= 0, "bytesPerSecond is negative");
+        accessKeyOverrides.put(requireNonNull(accessKey, "accessKey is null"), bytesPerSecond);
+        refreshBuckets();
+    }
+
+    @Managed(description = "Return an access key to the access key limit")
+    public void removeLimitForAccessKey(String accessKey)
+    {
+        accessKeyOverrides.remove(requireNonNull(accessKey, "accessKey is null"));
+        refreshBuckets();
+    }
+
+    @Managed
+    public long getLimitForAccessKey(String accessKey)
+    {
+        return limitFor(accessKey);
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getPacedWrites()
+    {
+        return pacedWrites;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getPacedNanos()
+    {
+        return pacedNanos;
+    }
+
+    private long limitFor(String accessKey)
+    {
+        return accessKeyOverrides.getOrDefault(accessKey, accessKeyLimit);
+    }
+
+    private void refreshBuckets()
+    {
+        accessKeyBuckets.forEach((accessKey, bucket) -> bucket.setBytesPerSecond(limitFor(accessKey)));
+    }
+
+    private static long bytesPerSecond(Optional<DataSize> limit)
+    {
+        return limit.map(DataSize::toBytes).orElse(0L);
+    }
+
+    /**
+     * Paces the transfers of one access key
+     */
+    public final class Throttle
+    {
+        private final TokenBucket accessKeyBucket;
+
+        private Throttle(TokenBucket accessKeyBucket)
+        {
+            this.accessKeyBucket = requireNonNull(accessKeyBucket, "accessKeyBucket is null");
+        }
+
+        /**
+         * Wait until the given number of bytes may be transferred
+         */
+        public void acquire(int bytes)
+                throws InterruptedIOException
+        {
+            long waitNanos = Math.max(globalBucket.take(bytes), accessKeyBucket.take(bytes));
+            if (waitNanos == 0) {
+                return;
+            }
+            pacedWrites.update(1);
+            pacedNanos.update(waitNanos);
+            try {
+                NANOSECONDS.sleep(waitNanos);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+}
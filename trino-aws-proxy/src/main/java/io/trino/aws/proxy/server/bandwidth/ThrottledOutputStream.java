@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.bandwidth;
+
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimiter.Throttle;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Paces writes through a {@link Throttle}. Large writes are split so that the stream never waits for more than one
+ * chunk at a time.
+ */
+public class ThrottledOutputStream
+        extends FilterOutputStream
+{
+    private static final int MAX_CHUNK_SIZE = 16 * 1024;
+
+    private final Throttle throttle;
+
+    public ThrottledOutputStream(OutputStream delegate, Throttle throttle)
+    {
+        super(requireNonNull(delegate, "delegate is null"));
+        this.throttle = requireNonNull(throttle, "throttle is null");
+    }
+
+    @Override
+    public void write(int b)
+            throws IOException
+    {
+        throttle.acquire(1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length)
+            throws IOException
+    {
+        while (length > 0) {
+            int chunk = Math.min(length, MAX_CHUNK_SIZE);
+            throttle.acquire(chunk);
+            out.write(buffer, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.bandwidth;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A token bucket kept as the time at which the tokens taken so far are paid for (the generic cell rate algorithm),
+ * so that taking tokens is a single compare-and-set. Takers may go into debt and are told how long to wait, which
+ * lets them pace each write instead of waiting for a large refill.
+ */
+class TokenBucket
+{
+    private final Ticker ticker;
+    private final long burstNanos;
+    private final AtomicLong paidUntilNanos;
+    private volatile long bytesPerSecond;
+
+    TokenBucket(long bytesPerSecond, long burstNanos, Ticker ticker)
+    {
+        checkArgument(burstNanos > 0, "burstNanos must be positive");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.burstNanos = burstNanos;
+        setBytesPerSecond(bytesPerSecond);
+        // start with a full bucket
+        paidUntilNanos = new AtomicLong(ticker.read() - burstNanos);
+    }
+
+    /**
+     * The refill rate, or zero if the bucket is unlimited
+     */
+    long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    void setBytesPerSecond(long bytesPerSecond)
+    {
+        checkArgument(bytesPerSecond >= 0, "bytesPerSecond is negative");
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Take tokens for the given number of bytes
+     *
+     * @return how long the caller must wait before transferring them, in nanoseconds
+     */
+    long take(long bytes)
+    {
+        long rate = bytesPerSecond;
+        if (rate == 0) {
+            return 0;
+        }
+        long costNanos = (long) (bytes * 1_000_000_000.0 / rate);
+        long now = ticker.read();
+        while (true) {
+            long paidUntil = paidUntilNanos.get();
+            // an idle bucket fills up to the burst size and no further
+            long updated = Math.max(paidUntil, now - burstNanos) + costNanos;
+            if (paidUntilNanos.compareAndSet(paidUntil, updated)) {
+                return Math.max(0, updated - now);
+            }
+        }
+    }
+}
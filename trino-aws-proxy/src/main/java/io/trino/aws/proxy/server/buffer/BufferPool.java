@@ -0,0 +1,314 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.buffer;
+
+import com.google.inject.Inject;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Heap buffers shared by the streaming paths of the proxy. Buffers come in power of two size classes.
+ * Released buffers are kept in stripes picked by thread id rather than in thread locals, as requests run
+ * on short-lived virtual threads that would each fill a thread local cache only to drop it. The bytes
+ * held by released buffers are bounded; buffers released beyond the bound are left to the garbage collector.
+ */
+public class BufferPool
+{
+    public static final int TRANSFER_BUFFER_SIZE = 16384;
+
+    private static final int MIN_BUFFER_SIZE = 4096;
+
+    private final int maxBufferSize;
+    private final long maxRetainedBytes;
+    private final SizeClass[] sizeClasses;
+    private final Optional<Map<BufferIdentity, Throwable>> outstandingTraces;
+
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    private final AtomicLong outstandingBuffers = new AtomicLong();
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    private final CounterStat allocations = new CounterStat();
+    private final CounterStat allocatedBytes = new CounterStat();
+    private final CounterStat reuses = new CounterStat();
+    private final CounterStat discards = new CounterStat();
+
+    @Inject
+    public BufferPool(BufferPoolConfig bufferPoolConfig)
+    {
+        maxBufferSize = Integer.highestOneBit((int) bufferPoolConfig.getMaxBufferSize().toBytes());
+        maxRetainedBytes = bufferPoolConfig.getMaxRetainedSize().toBytes();
+        outstandingTraces = bufferPoolConfig.isLeakDetectionEnabled() ? Optional.of(new ConcurrentHashMap<>()) : Optional.empty();
+
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2;
+        sizeClasses = new SizeClass[Integer.numberOfTrailingZeros(maxBufferSize) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE) + 1];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass(stripes);
+        }
+    }
+
+    /**
+     * Borrow a buffer of at least the given size. The buffer must be released with {@link #release(byte[])}.
+     */
+    public byte[] borrow(int minimumSize)
+    {
+        checkArgument(minimumSize >= 0, "minimumSize is negative");
+
+        byte[] buffer;
+        if (minimumSize <= maxBufferSize) {
+            int size = Math.max(MIN_BUFFER_SIZE, ceilingPowerOfTwo(minimumSize));
+            buffer = sizeClasses[sizeClassIndex(size)].poll();
+            if (buffer == null) {
+                buffer = allocate(size);
+            }
+            else {
+                retainedBytes.addAndGet(-buffer.length);
+                reuses.update(1);
+            }
+        }
+        else {
+            buffer = allocate(minimumSize);
+        }
+
+        outstandingBytes.addAndGet(buffer.length);
+        outstandingBuffers.incrementAndGet();
+        byte[] borrowed = buffer;
+        outstandingTraces.ifPresent(traces -> traces.put(new BufferIdentity(borrowed), new Throwable("Buffer borrowed here")));
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. The buffer must not be used after it is released.
+     */
+    public void release(byte[] buffer)
+    {
+        requireNonNull(buffer, "buffer is null");
+        if (outstandingTraces.isPresent() && (outstandingTraces.get().remove(new BufferIdentity(buffer)) == null)) {
+            throw new IllegalStateException("Buffer was not borrowed from this pool or was already released");
+        }
+        outstandingBytes.addAndGet(-buffer.length);
+        outstandingBuffers.decrementAndGet();
+
+        if ((buffer.length < MIN_BUFFER_SIZE) || (buffer.length > maxBufferSize) || (Integer.bitCount(buffer.length) != 1)) {
+            // allocated on demand, never pooled
+            return;
+        }
+        if (retainedBytes.addAndGet(buffer.length) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-buffer.length);
+            discards.update(1);
+            return;
+        }
+        sizeClasses[sizeClassIndex(buffer.length)].offer(buffer);
+    }
+
+    /**
+     * Copy the input to the output through a pooled buffer, returning the number of bytes copied
+     */
+    public long transferTo(InputStream input, OutputStream output)
+            throws IOException
+    {
+        byte[] buffer = borrow(TRANSFER_BUFFER_SIZE);
+        try {
+            long transferred = 0;
+            while (true) {
+                int count = input.read(buffer);
+                if (count < 0) {
+                    return transferred;
+                }
+                output.write(buffer, 0, count);
+                transferred += count;
+            }
+        }
+        finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Fail if any borrowed buffer has not been released. With leak detection enabled the failure
+     * includes the stack trace of the borrower of one of the outstanding buffers.
+     */
+    public void checkNoOutstandingBuffers()
+    {
+        long outstanding = outstandingBuffers.get();
+        if (outstanding == 0) {
+            return;
+        }
+        IllegalStateException exception = new IllegalStateException("%s buffers were not released".formatted(outstanding));
+        outstandingTraces.flatMap(traces -> traces.values().stream().findFirst()).ifPresent(exception::initCause);
+        throw exception;
+    }
+
+    @Managed
+    public long getOutstandingBytes()
+    {
+        return outstandingBytes.get();
+    }
+
+    @Managed
+    public long getOutstandingBuffers()
+    {
+        return outstandingBuffers.get();
+    }
+
+    @Managed
+    public long getRetainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    @Managed
+    public long getMaxRetainedBytes()
+    {
+        return maxRetainedBytes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getAllocations()
+    {
+        return allocations;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getReuses()
+    {
+        return reuses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getDiscards()
+    {
+        return discards;
+    }
+
+    private byte[] allocate(int size)
+    {
+        allocations.update(1);
+        allocatedBytes.update(size);
+        return new byte[size];
+    }
+
+    private static int sizeClassIndex(int size)
+    {
+        return Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+
+    private static int ceilingPowerOfTwo(int value)
+    {
+        return (value <= 1) ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class SizeClass
+    {
+        private final Stripe[] stripes;
+
+        private SizeClass(int stripeCount)
+        {
+            stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        private byte[] poll()
+        {
+            int home = homeStripe();
+            for (int i = 0; i < stripes.length; i++) {
+                byte[] buffer = stripes[(home + i) & (stripes.length - 1)].poll();
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+            return null;
+        }
+
+        private void offer(byte[] buffer)
+        {
+            stripes[homeStripe()].offer(buffer);
+        }
+
+        private int homeStripe()
+        {
+            long threadId = Thread.currentThread().threadId();
+            return (int) (threadId ^ (threadId >>> 16)) & (stripes.length - 1);
+        }
+    }
+
+    private static final class Stripe
+    {
+        // a lock rather than synchronized so that virtual threads do not pin their carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<byte[]> buffers = new ArrayDeque<>();
+
+        private byte[] poll()
+        {
+            lock.lock();
+            try {
+                return buffers.pollLast();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private void offer(byte[] buffer)
+        {
+            lock.lock();
+            try {
+                buffers.addLast(buffer);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record BufferIdentity(byte[] buffer)
+    {
+        @Override
+        public boolean equals(Object other)
+        {
+            return (other instanceof BufferIdentity identity) && (identity.buffer == buffer);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(buffer);
+        }
+    }
+}
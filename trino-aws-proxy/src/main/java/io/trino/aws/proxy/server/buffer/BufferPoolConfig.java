@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.buffer;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import jakarta.validation.constraints.NotNull;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class BufferPoolConfig
+{
+    private DataSize maxRetainedSize = DataSize.of(64, MEGABYTE);
+    private DataSize maxBufferSize = DataSize.of(1, MEGABYTE);
+    private boolean leakDetectionEnabled;
+
+    @Config("s3proxy.buffer-pool.max-retained-size")
+    @ConfigDescription("Maximum number of bytes held by released buffers waiting to be reused")
+    public BufferPoolConfig setMaxRetainedSize(DataSize maxRetainedSize)
+    {
+        this.maxRetainedSize = maxRetainedSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMaxRetainedSize()
+    {
+        return maxRetainedSize;
+    }
+
+    @Config("s3proxy.buffer-pool.max-buffer-size")
+    @ConfigDescription("Largest buffer that is pooled. Larger buffers are allocated on demand and never reused")
+    public BufferPoolConfig setMaxBufferSize(DataSize maxBufferSize)
+    {
+        this.maxBufferSize = maxBufferSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("4kB")
+    @MaxDataSize("64MB")
+    public DataSize getMaxBufferSize()
+    {
+        return maxBufferSize;
+    }
+
+    @Config("s3proxy.buffer-pool.leak-detection.enabled")
+    @ConfigDescription("Track the borrowing stack trace of every outstanding buffer and fail on buffers released twice. Expensive; meant for tests")
+    public BufferPoolConfig setLeakDetectionEnabled(boolean leakDetectionEnabled)
+    {
+        this.leakDetectionEnabled = leakDetectionEnabled;
+        return this;
+    }
+
+    public boolean isLeakDetectionEnabled()
+    {
+        return leakDetectionEnabled;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Inclusive byte range as used by the HTTP {@code Range} and {@code Content-Range} headers
+ */
+public record ByteRange(long start, long end)
+{
+    private static final String BYTES_UNIT = "bytes";
+
+    public ByteRange
+    {
+        checkArgument(start >= 0, "start is negative");
+        checkArgument(end >= start, "end is less than start");
+    }
+
+    public long length()
+    {
+        return end - start + 1;
+    }
+
+    public boolean contains(ByteRange other)
+    {
+        return (other.start >= start) && (other.end <= end);
+    }
+
+    public String toRangeHeader()
+    {
+        return "%s=%s-%s".formatted(BYTES_UNIT, start, end);
+    }
+
+    public String toContentRangeHeader(OptionalLong objectSize)
+    {
+        return "%s %s-%s/%s".formatted(BYTES_UNIT, start, end, objectSize.isPresent() ? Long.toString(objectSize.getAsLong()) : "*");
+    }
+
+    /**
+     * Parse a {@code Range} header value. Only a single, fully bounded range (i.e. {@code bytes=100-199})
+     * is supported. Suffix ranges, open ended ranges and multiple ranges return empty.
+     */
+    public static Optional<ByteRange> parseRangeHeader(String value)
+    {
+        String trimmed = value.trim();
+        if (!trimmed.startsWith(BYTES_UNIT + "=") || (trimmed.indexOf(',') >= 0)) {
+            return Optional.empty();
+        }
+        return parseBounds(trimmed.substring(BYTES_UNIT.length() + 1));
+    }
+
+    /**
+     * Parse the range portion of a {@code Content-Range} header value, i.e. {@code bytes 100-199/1000}
+     */
+    public static Optional<ByteRange> parseContentRangeHeader(String value)
+    {
+        String trimmed = value.trim();
+        int slash = trimmed.indexOf('/');
+        if (!trimmed.startsWith(BYTES_UNIT + " ") || (slash < 0)) {
+            return Optional.empty();
+        }
+        return parseBounds(trimmed.substring(BYTES_UNIT.length() + 1, slash));
+    }
+
+    /**
+     * Parse the complete object size portion of a {@code Content-Range} header value. Empty if the size is unknown ({@code *})
+     */
+    public static OptionalLong parseContentRangeObjectSize(String value)
+    {
+        String trimmed = value.trim();
+        int slash = trimmed.indexOf('/');
+        if (slash < 0) {
+            return OptionalLong.empty();
+        }
+        try {
+            long size = Long.parseLong(trimmed.substring(slash + 1).trim());
+            return (size >= 0) ? OptionalLong.of(size) : OptionalLong.empty();
+        }
+        catch (NumberFormatException _) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private static Optional<ByteRange> parseBounds(String bounds)
+    {
+        int dash = bounds.indexOf('-');
+        if ((dash <= 0) || (dash == (bounds.length() - 1))) {
+            return Optional.empty();
+        }
+        try {
+            long start = Long.parseLong(bounds.substring(0, dash).trim());
+            long end = Long.parseLong(bounds.substring(dash + 1).trim());
+            if ((start < 0) || (end < start)) {
+                return Optional.empty();
+            }
+            return Optional.of(new ByteRange(start, end));
+        }
+        catch (NumberFormatException _) {
+            return Optional.empty();
+        }
+    }
+}
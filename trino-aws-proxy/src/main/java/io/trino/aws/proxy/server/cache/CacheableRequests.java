@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Classifies incoming S3 requests for the purposes of the proxy's caches
+ */
+public final class CacheableRequests
+{
+    private static final Set<String> CONDITIONAL_HEADERS = ImmutableSet.of("if-match", "if-none-match", "if-modified-since", "if-unmodified-since");
+    private static final String CUSTOMER_ENCRYPTION_HEADER = "x-amz-server-side-encryption-customer-algorithm";
+    private static final String CHECKSUM_MODE_HEADER = "x-amz-checksum-mode";
+    private static final String REQUEST_PAYER_HEADER = "x-amz-request-payer";
+    private static final String EXPECTED_BUCKET_OWNER_HEADER = "x-amz-expected-bucket-owner";
+    private static final Set<String> LIST_OBJECTS_V2_PARAMETERS = ImmutableSet.of("list-type", "prefix", "delimiter", "continuation-token", "start-after", "max-keys", "encoding-type");
+
+    private CacheableRequests() {}
+
+    /**
+     * Returns the requested range if the request is a plain GetObject with a single bounded range. Requests that
+     * are conditional, use customer provided encryption keys or have any query parameters (versionId, partNumber, etc.)
+     * are never served from cached data.
+     */
+    public static Optional<ByteRange> rangedGetObject(ParsedS3Request request)
+    {
+        if (!request.httpVerb().equalsIgnoreCase("GET") || !isObjectRequest(request) || hasQuery(request) || hasUncacheableHeaders(request)) {
+            return Optional.empty();
+        }
+
+        List<String> ranges = request.requestHeaders().get("range");
+        if (ranges.size() != 1) {
+            return Optional.empty();
+        }
+        return ByteRange.parseRangeHeader(ranges.getFirst());
+    }
+
+    /**
+     * Returns the parameters of the request if it is a ListObjectsV2 request whose response can be cached. Requests
+     * with any query parameter that is not modeled by {@link ListObjectsV2Parameters} (fetch-owner, etc.) or with
+     * request payer or expected bucket owner headers are not cached.
+     */
+    public static Optional<ListObjectsV2Parameters> listObjectsV2(ParsedS3Request request)
+    {
+        MultiMap query = request.queryParameters();
+        if (!request.httpVerb().equalsIgnoreCase("GET")
+                || request.bucketName().isEmpty()
+                || !request.keyInBucket().isEmpty()
+                || !query.getFirst("list-type").equals(Optional.of("2"))
+                || !LIST_OBJECTS_V2_PARAMETERS.containsAll(query.keySet())
+                || query.keySet().stream().anyMatch(name -> query.get(name).size() != 1)
+                || request.requestHeaders().containsKey(REQUEST_PAYER_HEADER)
+                || request.requestHeaders().containsKey(EXPECTED_BUCKET_OWNER_HEADER)) {
+            return Optional.empty();
+        }
+
+        OptionalInt maxKeys = OptionalInt.empty();
+        Optional<String> maxKeysValue = query.getFirst("max-keys");
+        if (maxKeysValue.isPresent()) {
+            try {
+                maxKeys = OptionalInt.of(Integer.parseInt(maxKeysValue.get()));
+            }
+            catch (NumberFormatException _) {
+                // let the remote reject it
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(new ListObjectsV2Parameters(
+                query.getFirst("prefix").orElse(""),
+                query.getFirst("delimiter"),
+                query.getFirst("continuation-token"),
+                query.getFirst("start-after"),
+                maxKeys,
+                query.getFirst("encoding-type")));
+    }
+
+    /**
+     * Returns the query to send to the remote for a ListObjectsV2 request whose continuation token was issued from
+     * a {@link ListingIndex}. The remote does not know such tokens, so the token is replaced by the equivalent start-after
+     * whether or not the listing can be cached.
+     */
+    public static Optional<MultiMap> remoteListQuery(ParsedS3Request request)
+    {
+        MultiMap query = request.queryParameters();
+        if (!request.httpVerb().equalsIgnoreCase("GET")
+                || request.bucketName().isEmpty()
+                || !request.keyInBucket().isEmpty()
+                || !query.getFirst("list-type").equals(Optional.of("2"))) {
+            return Optional.empty();
+        }
+
+        return query.getFirst("continuation-token").flatMap(ListContinuationToken::decode).map(token -> {
+            ImmutableMultiMap.Builder queryBuilder = ImmutableMultiMap.builder(true);
+            query.forEach((name, values) -> {
+                if (!name.equals("continuation-token") && !name.equals("start-after")) {
+                    queryBuilder.addAll(name, values);
+                }
+            });
+            return queryBuilder.putOrReplaceSingle("start-after", token.toStartAfter()).build();
+        });
+    }
+
+    /**
+     * Returns true if the request is a plain HeadObject whose response can be cached
+     */
+    public static boolean isCacheableHeadObject(ParsedS3Request request)
+    {
+        return request.httpVerb().equalsIgnoreCase("HEAD")
+                && isObjectRequest(request)
+                && !hasQuery(request)
+                && !hasUncacheableHeaders(request)
+                && !request.requestHeaders().containsKey("range")
+                && !request.requestHeaders().containsKey(CHECKSUM_MODE_HEADER);
+    }
+
+    /**
+     * Returns true if the request may modify or delete an object (PutObject, CopyObject, DeleteObject, CompleteMultipartUpload, etc.)
+     */
+    public static boolean isObjectWrite(ParsedS3Request request)
+    {
+        return isObjectRequest(request) && switch (request.httpVerb().toUpperCase(Locale.ROOT)) {
+            case "PUT", "POST", "DELETE" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Returns true if the request is a DeleteObjects request. The deleted keys are in the request body so
+     * everything cached for the bucket must be considered stale.
+     */
+    public static boolean isBulkDelete(ParsedS3Request request)
+    {
+        return request.httpVerb().equalsIgnoreCase("POST")
+                && !request.bucketName().isEmpty()
+                && request.keyInBucket().isEmpty()
+                && request.queryParameters().containsKey("delete");
+    }
+
+    private static boolean isObjectRequest(ParsedS3Request request)
+    {
+        return !request.bucketName().isEmpty() && !request.keyInBucket().isEmpty();
+    }
+
+    private static boolean hasQuery(ParsedS3Request request)
+    {
+        return request.rawQuery().filter(rawQuery -> !rawQuery.isEmpty()).isPresent();
+    }
+
+    private static boolean hasUncacheableHeaders(ParsedS3Request request)
+    {
+        for (String header : CONDITIONAL_HEADERS) {
+            if (request.requestHeaders().containsKey(header)) {
+                return true;
+            }
+        }
+        return request.requestHeaders().containsKey(CUSTOMER_ENCRYPTION_HEADER);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A parsed ListObjectsV2 response. The XML is regenerated when the listing is served. Instances are
+ * intentionally compared by identity.
+ */
+public final class CachedListing
+        implements StreamingListing
+{
+    private final MultiMap headers;
+    private final ListObjectsPage page;
+
+    public CachedListing(MultiMap headers, ListObjectsPage page)
+    {
+        this.headers = requireNonNull(headers, "headers is null");
+        this.page = requireNonNull(page, "page is null");
+    }
+
+    @Override
+    public MultiMap headers()
+    {
+        return headers;
+    }
+
+    public ListObjectsPage page()
+    {
+        return page;
+    }
+
+    @Override
+    public void writeTo(OutputStream output)
+            throws IOException
+    {
+        ListObjectsXml.writePage(output, page);
+    }
+
+    long getRetainedSizeInBytes()
+    {
+        return page.getRetainedSizeInBytes();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import static io.trino.aws.proxy.server.cache.ReplayableHeaders.replayableHeaders;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The status and headers of a remote HeadObject response. There is no body - the object's ETag, length,
+ * last modified time, content type, user metadata, etc. are all carried in the headers.
+ */
+public record CachedObjectMetadata(int statusCode, MultiMap headers)
+{
+    public CachedObjectMetadata
+    {
+        requireNonNull(headers, "headers is null");
+    }
+
+    public static CachedObjectMetadata fromRemoteResponse(int statusCode, MultiMap remoteHeaders)
+    {
+        return new CachedObjectMetadata(statusCode, replayableHeaders(remoteHeaders, ImmutableSet.of()));
+    }
+}
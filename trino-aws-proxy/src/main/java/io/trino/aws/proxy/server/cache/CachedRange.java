@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.OptionalLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A range of an object's bytes held in memory along with the headers of the remote response that produced it
+ */
+public record CachedRange(ByteRange range, OptionalLong objectSize, MultiMap headers, byte[] data)
+{
+    public CachedRange
+    {
+        requireNonNull(range, "range is null");
+        requireNonNull(objectSize, "objectSize is null");
+        requireNonNull(headers, "headers is null");
+        requireNonNull(data, "data is null");
+        checkArgument(range.length() == data.length, "range length does not match data length");
+    }
+
+    public void writeTo(ByteRange subRange, OutputStream output)
+            throws IOException
+    {
+        checkArgument(range.contains(subRange), "subRange is not contained in this range");
+        output.write(data, toIntExact(subRange.start() - range.start()), toIntExact(subRange.length()));
+    }
+}
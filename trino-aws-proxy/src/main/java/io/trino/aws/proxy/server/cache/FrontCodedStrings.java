@@ -0,0 +1,260 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An immutable list of strings stored with front coding. Strings are stored as UTF-8 in blocks. The first
+ * string of a block is stored in full and each following string is stored as the length of the prefix it
+ * shares with the previous string and the remaining suffix. Sorted lists of S3 keys, which share long
+ * prefixes, typically take a fraction of the memory of the equivalent {@code String[]}.
+ * <p>
+ * When the strings were added in UTF-8 binary order, which is the order S3 lists keys in, the list can be
+ * searched with {@link #lowerBound(String)}, {@link #upperBound(String)} and {@link #prefixEnd(String)}.
+ */
+public final class FrontCodedStrings
+{
+    private static final int BLOCK_SIZE = 16;
+    private static final int INSTANCE_SIZE = 64;
+
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int size;
+    private final boolean sorted;
+
+    private FrontCodedStrings(byte[] data, int[] blockOffsets, int size, boolean sorted)
+    {
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.size = size;
+        this.sorted = sorted;
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isSorted()
+    {
+        return sorted;
+    }
+
+    public String get(int position)
+    {
+        return new String(getBytes(position), UTF_8);
+    }
+
+    public byte[] getBytes(int position)
+    {
+        checkElementIndex(position, size);
+        BlockReader reader = new BlockReader(position / BLOCK_SIZE);
+        for (int i = 0; i < (position % BLOCK_SIZE); i++) {
+            reader.next();
+        }
+        return reader.next();
+    }
+
+    /**
+     * Returns the position of the first string that is greater than or equal to the value, or {@link #size()} if there is none
+     */
+    public int lowerBound(String value)
+    {
+        return search(value.getBytes(UTF_8), false);
+    }
+
+    /**
+     * Returns the position of the first string that is greater than the value, or {@link #size()} if there is none
+     */
+    public int upperBound(String value)
+    {
+        return search(value.getBytes(UTF_8), true);
+    }
+
+    /**
+     * Returns the position of the first string, at or after the strings that start with the prefix, that does not start with the prefix
+     */
+    public int prefixEnd(String prefix)
+    {
+        byte[] bytes = prefix.getBytes(UTF_8);
+        // the smallest value that is greater than every string that starts with the prefix
+        int length = bytes.length;
+        while ((length > 0) && (bytes[length - 1] == (byte) 0xFF)) {
+            length--;
+        }
+        if (length == 0) {
+            return size;
+        }
+        byte[] successor = Arrays.copyOf(bytes, length);
+        successor[length - 1]++;
+        return search(successor, false);
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + data.length + (Integer.BYTES * (long) blockOffsets.length);
+    }
+
+    private int search(byte[] value, boolean strict)
+    {
+        checkState(sorted, "strings were not added in sorted order");
+
+        // find the last block whose first string precedes the value
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (precedes(new BlockReader(middle).next(), value, strict)) {
+                block = middle;
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+
+        BlockReader reader = new BlockReader(block);
+        int position = block * BLOCK_SIZE;
+        int blockEnd = Math.min(size, position + BLOCK_SIZE);
+        while ((position < blockEnd) && precedes(reader.next(), value, strict)) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean precedes(byte[] string, byte[] value, boolean strict)
+    {
+        int comparison = Arrays.compareUnsigned(string, value);
+        return strict ? (comparison <= 0) : (comparison < 0);
+    }
+
+    private final class BlockReader
+    {
+        private int offset;
+        private byte[] previous = new byte[0];
+        private boolean first = true;
+
+        private BlockReader(int block)
+        {
+            offset = blockOffsets[block];
+        }
+
+        private byte[] next()
+        {
+            int shared = 0;
+            if (!first) {
+                shared = readVarInt();
+            }
+            int suffixLength = readVarInt();
+            byte[] value = new byte[shared + suffixLength];
+            System.arraycopy(previous, 0, value, 0, shared);
+            System.arraycopy(data, offset, value, shared, suffixLength);
+            offset += suffixLength;
+
+            previous = value;
+            first = false;
+            return value;
+        }
+
+        private int readVarInt()
+        {
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = data[offset++];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((current & 0x80) != 0);
+            return value;
+        }
+    }
+
+    public static final class Builder
+    {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private int[] blockOffsets = new int[16];
+        private byte[] previous;
+        private int size;
+        private boolean sorted = true;
+
+        private Builder() {}
+
+        public Builder add(String value)
+        {
+            byte[] bytes = value.getBytes(UTF_8);
+            if ((previous != null) && (Arrays.compareUnsigned(previous, bytes) >= 0)) {
+                sorted = false;
+            }
+
+            if ((size % BLOCK_SIZE) == 0) {
+                int block = size / BLOCK_SIZE;
+                if (block == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                }
+                blockOffsets[block] = data.size();
+                writeVarInt(bytes.length);
+                data.writeBytes(bytes);
+            }
+            else {
+                int mismatch = Arrays.mismatch(previous, bytes);
+                // mismatch is -1 when the strings are equal
+                int shared = (mismatch < 0) ? bytes.length : mismatch;
+                writeVarInt(shared);
+                writeVarInt(bytes.length - shared);
+                data.write(bytes, shared, bytes.length - shared);
+            }
+
+            previous = bytes;
+            size++;
+            return this;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        public FrontCodedStrings build()
+        {
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new FrontCodedStrings(data.toByteArray(), Arrays.copyOf(blockOffsets, blocks), size, sorted);
+        }
+
+        private void writeVarInt(int value)
+        {
+            while ((value & ~0x7F) != 0) {
+                data.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data.write(value);
+        }
+    }
+}
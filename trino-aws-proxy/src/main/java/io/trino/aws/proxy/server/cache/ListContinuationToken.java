@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import java.util.Base64;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Continuation tokens for listings served from a {@link ListingIndex}. A token records the last key or common prefix
+ * returned so that the next page can be served from any index covering the prefix or, if there is none, from the
+ * remote using start-after. Tokens issued by S3 are base64 and never contain the '.' of the token marker.
+ */
+public record ListContinuationToken(String lastItem, boolean isCommonPrefix)
+{
+    private static final String MARKER = "pxy1.";
+    private static final char KEY = 'K';
+    private static final char COMMON_PREFIX = 'P';
+    // the largest code point - with UTF-8 ordering no key that starts with the common prefix sorts after it
+    private static final String MAX_CODE_POINT = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    public ListContinuationToken
+    {
+        requireNonNull(lastItem, "lastItem is null");
+    }
+
+    public static Optional<ListContinuationToken> decode(String token)
+    {
+        if (!token.startsWith(MARKER)) {
+            return Optional.empty();
+        }
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(token.substring(MARKER.length())), UTF_8);
+        }
+        catch (IllegalArgumentException _) {
+            return Optional.empty();
+        }
+        if (value.isEmpty()) {
+            return Optional.empty();
+        }
+        return switch (value.charAt(0)) {
+            case KEY -> Optional.of(new ListContinuationToken(value.substring(1), false));
+            case COMMON_PREFIX -> Optional.of(new ListContinuationToken(value.substring(1), true));
+            default -> Optional.empty();
+        };
+    }
+
+    public String encode()
+    {
+        String value = (isCommonPrefix ? COMMON_PREFIX : KEY) + lastItem;
+        return MARKER + Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(UTF_8));
+    }
+
+    /**
+     * The start-after value that continues the listing when the remote is asked for the next page
+     */
+    public String toStartAfter()
+    {
+        // a key longer than the common prefix followed by the largest code point is not skipped - S3 keys never contain it in practice
+        return isCommonPrefix ? (lastItem + MAX_CODE_POINT) : lastItem;
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Ints;
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkState;
+import static io.trino.aws.proxy.server.cache.ReplayableHeaders.replayableHeaders;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches ListObjectsV2 responses. Listings are indexed by bucket and prefix so that a write through the proxy
+ * invalidates every cached listing whose prefix covers the written key, for all access keys.
+ * <p>
+ * Optionally, a miss for a prefix starts a background build of a {@link ListingIndex} containing every key under
+ * the prefix. Once built, the index answers any page of any listing of the prefix or a longer prefix.
+ */
+public class ListObjectsCache
+{
+    private static final Logger log = Logger.get(ListObjectsCache.class);
+
+    // the body is regenerated so its length and encoding may differ from the remote response
+    private static final Set<String> REGENERATED_HEADERS = ImmutableSet.of("content-length", "content-encoding");
+    // bucket names come from clients, so the buckets that are tracked must be bounded
+    @VisibleForTesting
+    static final int MAX_TRACKED_BUCKETS = 10_000;
+
+    private final boolean enabled;
+    private final boolean indexEnabled;
+    private final int indexMaxKeys;
+    private final Cache<ListObjectsCacheKey, CachedListing> listings;
+    private final Cache<IndexKey, ListingIndex> indexes;
+    // prefixes recently found to have too many keys to index
+    private final Cache<IndexKey, Boolean> unindexablePrefixes;
+    private final Set<IndexKey> indexesInFlight = ConcurrentHashMap.newKeySet();
+    private final Semaphore indexBuildPermits;
+    private final Cache<String, BucketIndex> buckets;
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat indexHits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat invalidations = new CounterStat();
+    private final CounterStat parseFailures = new CounterStat();
+    private final CounterStat indexBuilds = new CounterStat();
+    private final CounterStat failedIndexBuilds = new CounterStat();
+    private final CounterStat rejectedIndexBuilds = new CounterStat();
+
+    private record IndexKey(String emulatedAccessKey, String bucket, String prefix)
+    {
+        private IndexKey
+        {
+            requireNonNull(emulatedAccessKey, "emulatedAccessKey is null");
+            requireNonNull(bucket, "bucket is null");
+            requireNonNull(prefix, "prefix is null");
+        }
+    }
+
+    @Inject
+    public ListObjectsCache(ListObjectsCacheConfig listObjectsCacheConfig)
+    {
+        enabled = listObjectsCacheConfig.isEnabled();
+        indexEnabled = enabled && listObjectsCacheConfig.isIndexEnabled();
+        indexMaxKeys = listObjectsCacheConfig.getIndexMaxKeys();
+        long ttlMillis = listObjectsCacheConfig.getTtl().toMillis();
+
+        listings = CacheBuilder.newBuilder()
+                .maximumWeight(listObjectsCacheConfig.getMaxMemory().toBytes())
+                .<ListObjectsCacheKey, CachedListing>weigher((_, listing) -> Ints.saturatedCast(listing.getRetainedSizeInBytes()))
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .removalListener(this::listingRemoved)
+                .build();
+        indexes = CacheBuilder.newBuilder()
+                .maximumWeight(listObjectsCacheConfig.getIndexMaxMemory().toBytes())
+                .<IndexKey, ListingIndex>weigher((_, index) -> Ints.saturatedCast(index.getRetainedSizeInBytes()))
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .removalListener(this::indexRemoved)
+                .build();
+        unindexablePrefixes = CacheBuilder.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        // a bucket that has been idle for the TTL has no live listings or indexes left
+        buckets = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TRACKED_BUCKETS)
+                .expireAfterAccess(ttlMillis, TimeUnit.MILLISECONDS)
+                .removalListener(this::bucketRemoved)
+                .build();
+        indexBuildPermits = new Semaphore(listObjectsCacheConfig.getIndexMaxConcurrentBuilds());
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Look up a cached listing. On a miss, the body of a successful remote response should be passed to
+     * {@link Lookup#store(MultiMap, byte[])} which discards it if the bucket was written to in the meantime.
+     */
+    public Lookup lookup(ListObjectsCacheKey key)
+    {
+        BucketIndex bucketIndex = buckets.asMap().computeIfAbsent(key.bucket(), _ -> new BucketIndex());
+        long writeCount = bucketIndex.writeCount.get();
+
+        Optional<StreamingListing> cached = serveFromIndex(key);
+        if (cached.isPresent()) {
+            indexHits.update(1);
+        }
+        else {
+            cached = Optional.ofNullable(listings.getIfPresent(key));
+        }
+
+        if (cached.isPresent()) {
+            hits.update(1);
+        }
+        else {
+            misses.update(1);
+        }
+        return new Lookup(key, bucketIndex, writeCount, cached);
+    }
+
+    /**
+     * Drop cached listings that may contain the key
+     */
+    public void invalidate(String bucket, String key)
+    {
+        if (enabled) {
+            invalidate(bucket, prefix -> key.startsWith(prefix));
+        }
+    }
+
+    public void invalidateBucket(String bucket)
+    {
+        if (enabled) {
+            invalidate(bucket, _ -> true);
+        }
+    }
+
+    @Managed
+    public long getCachedListings()
+    {
+        return listings.size();
+    }
+
+    @Managed
+    public long getTrackedBuckets()
+    {
+        return buckets.size();
+    }
+
+    @Managed
+    public long getCachedIndexes()
+    {
+        return indexes.size();
+    }
+
+    @Managed
+    public int getIndexBuildsInFlight()
+    {
+        return indexesInFlight.size();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        long hitCount = hits.getTotalCount();
+        long total = hitCount + misses.getTotalCount();
+        return (total == 0) ? 0 : ((double) hitCount / total);
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getIndexHits()
+    {
+        return indexHits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getInvalidations()
+    {
+        return invalidations;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getParseFailures()
+    {
+        return parseFailures;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getIndexBuilds()
+    {
+        return indexBuilds;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailedIndexBuilds()
+    {
+        return failedIndexBuilds;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejectedIndexBuilds()
+    {
+        return rejectedIndexBuilds;
+    }
+
+    private Optional<StreamingListing> serveFromIndex(ListObjectsCacheKey key)
+    {
+        if (!indexEnabled) {
+            return Optional.empty();
+        }
+        for (String prefix : coveringPrefixes(key.parameters().prefix())) {
+            ListingIndex index = indexes.getIfPresent(new IndexKey(key.emulatedAccessKey(), key.bucket(), prefix));
+            if (index != null) {
+                Optional<StreamingListing> listing = index.serve(key.parameters());
+                if (listing.isPresent()) {
+                    return listing;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // the prefix itself, each of its leading path segments, and the whole bucket
+    private static List<String> coveringPrefixes(String prefix)
+    {
+        List<String> prefixes = new ArrayList<>();
+        prefixes.add(prefix);
+        for (int index = prefix.lastIndexOf('/', prefix.length() - 2); index >= 0; index = prefix.lastIndexOf('/', index - 1)) {
+            prefixes.add(prefix.substring(0, index + 1));
+        }
+        if (!prefix.isEmpty()) {
+            prefixes.add("");
+        }
+        return prefixes;
+    }
+
+    private void invalidate(String bucket, Predicate<String> prefixCoversWrite)
+    {
+        BucketIndex bucketIndex = buckets.getIfPresent(bucket);
+        if (bucketIndex == null) {
+            return;
+        }
+
+        bucketIndex.writeCount.incrementAndGet();
+        bucketIndex.listingsByPrefix.removeMatching(prefixCoversWrite, listings);
+        bucketIndex.indexesByPrefix.removeMatching(prefixCoversWrite, indexes);
+    }
+
+    private void listingRemoved(RemovalNotification<ListObjectsCacheKey, CachedListing> notification)
+    {
+        ListObjectsCacheKey key = requireNonNull(notification.getKey(), "key is null");
+        BucketIndex bucketIndex = buckets.asMap().get(key.bucket());
+        if (bucketIndex != null) {
+            bucketIndex.listingsByPrefix.remove(key.parameters().prefix(), key, requireNonNull(notification.getValue(), "value is null"));
+        }
+    }
+
+    private void indexRemoved(RemovalNotification<IndexKey, ListingIndex> notification)
+    {
+        IndexKey key = requireNonNull(notification.getKey(), "key is null");
+        BucketIndex bucketIndex = buckets.asMap().get(key.bucket());
+        if (bucketIndex != null) {
+            bucketIndex.indexesByPrefix.remove(key.prefix(), key, requireNonNull(notification.getValue(), "value is null"));
+        }
+    }
+
+    private void bucketRemoved(RemovalNotification<String, BucketIndex> notification)
+    {
+        // writes to the bucket can no longer find what is left of its listings and indexes to invalidate them
+        BucketIndex bucketIndex = requireNonNull(notification.getValue(), "value is null");
+        bucketIndex.listingsByPrefix.removeAll(listings);
+        bucketIndex.indexesByPrefix.removeAll(indexes);
+    }
+
+    public final class Lookup
+    {
+        private final ListObjectsCacheKey key;
+        private final BucketIndex bucketIndex;
+        private final long writeCount;
+        private final Optional<StreamingListing> cached;
+
+        private Lookup(ListObjectsCacheKey key, BucketIndex bucketIndex, long writeCount, Optional<StreamingListing> cached)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.bucketIndex = requireNonNull(bucketIndex, "bucketIndex is null");
+            this.writeCount = writeCount;
+            this.cached = requireNonNull(cached, "cached is null");
+        }
+
+        public Optional<StreamingListing> cached()
+        {
+            return cached;
+        }
+
+        public void store(MultiMap remoteHeaders, byte[] xml)
+        {
+            ListObjectsPage page;
+            try {
+                page = ListObjectsXml.parsePage(xml);
+            }
+            catch (IOException e) {
+                // unexpected elements, compressed body, etc. - the response is still returned to the client as-is
+                log.debug(e, "Could not parse ListObjectsV2 response. Key: %s", key);
+                parseFailures.update(1);
+                return;
+            }
+
+            CachedListing listing = new CachedListing(replayableHeaders(remoteHeaders, REGENERATED_HEADERS), page);
+            bucketIndex.listingsByPrefix.add(key.parameters().prefix(), key, listing);
+            listings.put(key, listing);
+            // the listing may be missing objects written while it was in flight, or written after the bucket was no longer tracked
+            if (bucketIndex.isStale(key.bucket(), writeCount)) {
+                listings.asMap().remove(key, listing);
+            }
+        }
+
+        /**
+         * Start building an index of the requested prefix. Only the first page of a listing starts a build, and at most
+         * one build per prefix runs at a time. A returned {@link IndexBuild} must be either completed or abandoned.
+         */
+        public Optional<IndexBuild> startIndexBuild()
+        {
+            ListObjectsV2Parameters parameters = key.parameters();
+            if (!indexEnabled || cached.isPresent() || parameters.continuationToken().isPresent() || parameters.startAfter().isPresent() || parameters.encodingType().isPresent()) {
+                return Optional.empty();
+            }
+
+            IndexKey indexKey = new IndexKey(key.emulatedAccessKey(), key.bucket(), parameters.prefix());
+            if ((unindexablePrefixes.getIfPresent(indexKey) != null) || !indexesInFlight.add(indexKey)) {
+                return Optional.empty();
+            }
+            if (!indexBuildPermits.tryAcquire()) {
+                indexesInFlight.remove(indexKey);
+                rejectedIndexBuilds.update(1);
+                return Optional.empty();
+            }
+            return Optional.of(new IndexBuild(indexKey, bucketIndex, writeCount));
+        }
+    }
+
+    /**
+     * Accumulates the pages of a full listing of a prefix, fetched without a delimiter
+     */
+    public final class IndexBuild
+    {
+        private final IndexKey key;
+        private final BucketIndex bucketIndex;
+        private final long writeCount;
+        private final ObjectListing.Builder contents = ObjectListing.builder();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private Optional<MultiMap> headers = Optional.empty();
+
+        private IndexBuild(IndexKey key, BucketIndex bucketIndex, long writeCount)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.bucketIndex = requireNonNull(bucketIndex, "bucketIndex is null");
+            this.writeCount = writeCount;
+        }
+
+        public String prefix()
+        {
+            return key.prefix();
+        }
+
+        /**
+         * Add the next page of the listing. Returns the continuation token of the following page, or empty if this was the last page.
+         *
+         * @throws IOException if the page can not be parsed or the prefix has too many keys to index
+         */
+        public synchronized Optional<String> addPage(MultiMap remoteHeaders, byte[] xml)
+                throws IOException
+        {
+            checkState(!done.get(), "index build is done");
+            List<String> commonPrefixes = new ArrayList<>();
+            ListBucketResultHeader header = ListObjectsXml.parse(xml, contents, commonPrefixes);
+            if (!commonPrefixes.isEmpty()) {
+                throw new IOException("Listing for index contains common prefixes");
+            }
+            if (contents.size() > indexMaxKeys) {
+                unindexablePrefixes.put(key, true);
+                throw new IOException("Prefix has more than %s keys".formatted(indexMaxKeys));
+            }
+            if (headers.isEmpty()) {
+                headers = Optional.of(replayableHeaders(remoteHeaders, REGENERATED_HEADERS));
+            }
+            return header.isTruncated() ? header.nextContinuationToken() : Optional.empty();
+        }
+
+        public synchronized void complete()
+        {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                ObjectListing listing = contents.build();
+                if (!listing.keys().isSorted()) {
+                    log.debug("Listing of %s is not sorted, not indexing", key);
+                    failedIndexBuilds.update(1);
+                    return;
+                }
+
+                ListingIndex index = new ListingIndex(key.bucket(), key.prefix(), headers.orElseThrow(), listing);
+                bucketIndex.indexesByPrefix.add(key.prefix(), key, index);
+                indexes.put(key, index);
+                // the index may be missing objects written while it was built
+                if (bucketIndex.isStale(key.bucket(), writeCount)) {
+                    indexes.asMap().remove(key, index);
+                    failedIndexBuilds.update(1);
+                }
+                else {
+                    indexBuilds.update(1);
+                }
+            }
+            finally {
+                release();
+            }
+        }
+
+        public void abandon()
+        {
+            if (done.compareAndSet(false, true)) {
+                failedIndexBuilds.update(1);
+                release();
+            }
+        }
+
+        private void release()
+        {
+            indexesInFlight.remove(key);
+            indexBuildPermits.release();
+        }
+    }
+
+    private final class BucketIndex
+    {
+        private final PrefixEntries<ListObjectsCacheKey, CachedListing> listingsByPrefix = new PrefixEntries<>();
+        private final PrefixEntries<IndexKey, ListingIndex> indexesByPrefix = new PrefixEntries<>();
+        private final AtomicLong writeCount = new AtomicLong();
+
+        private boolean isStale(String bucket, long expectedWriteCount)
+        {
+            return (writeCount.get() != expectedWriteCount) || (buckets.asMap().get(bucket) != this);
+        }
+    }
+
+    private final class PrefixEntries<K, V>
+    {
+        // values are compared by identity so that removing a stale value never removes a newer value for the same key
+        private final ConcurrentMap<String, ConcurrentMap<K, V>> entriesByPrefix = new ConcurrentHashMap<>();
+
+        private void add(String prefix, K key, V value)
+        {
+            entriesByPrefix.compute(prefix, (_, entries) -> {
+                ConcurrentMap<K, V> result = (entries == null) ? new ConcurrentHashMap<>() : entries;
+                result.put(key, value);
+                return result;
+            });
+        }
+
+        private void remove(String prefix, K key, V value)
+        {
+            entriesByPrefix.computeIfPresent(prefix, (_, entries) -> {
+                entries.remove(key, value);
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+
+        private void removeAll(Cache<K, V> cache)
+        {
+            entriesByPrefix.values().forEach(entries -> entries.forEach((key, value) -> cache.asMap().remove(key, value)));
+        }
+
+        private void removeMatching(Predicate<String> prefixCoversWrite, Cache<K, V> cache)
+        {
+            entriesByPrefix.forEach((prefix, entries) -> {
+                if (prefixCoversWrite.test(prefix)) {
+                    entries.forEach((key, value) -> {
+                        if (cache.asMap().remove(key, value)) {
+                            invalidations.update(1);
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class ListObjectsCacheConfig
+{
+    private boolean enabled;
+    private Duration ttl = new Duration(10, TimeUnit.SECONDS);
+    private DataSize maxMemory = DataSize.of(64, MEGABYTE);
+    private boolean indexEnabled;
+    private int indexMaxKeys = 100_000;
+    private DataSize indexMaxMemory = DataSize.of(128, MEGABYTE);
+    private int indexMaxConcurrentBuilds = 4;
+
+    @Config("s3proxy.list-cache.enabled")
+    @ConfigDescription("Cache the responses of ListObjectsV2 requests")
+    public ListObjectsCacheConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.list-cache.ttl")
+    @ConfigDescription("How long a listing is cached. Objects written without going through this proxy are not visible until the listing expires")
+    public ListObjectsCacheConfig setTtl(Duration ttl)
+    {
+        this.ttl = ttl;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getTtl()
+    {
+        return ttl;
+    }
+
+    @Config("s3proxy.list-cache.max-memory")
+    @ConfigDescription("Approximate limit on the memory used by cached listings")
+    public ListObjectsCacheConfig setMaxMemory(DataSize maxMemory)
+    {
+        this.maxMemory = maxMemory;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    @MaxDataSize("1GB")
+    public DataSize getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    @Config("s3proxy.list-cache.index.enabled")
+    @ConfigDescription("Build an index of every key under a listed prefix and answer later listings of the prefix, and of longer prefixes, from it")
+    public ListObjectsCacheConfig setIndexEnabled(boolean indexEnabled)
+    {
+        this.indexEnabled = indexEnabled;
+        return this;
+    }
+
+    public boolean isIndexEnabled()
+    {
+        return indexEnabled;
+    }
+
+    @Config("s3proxy.list-cache.index.max-keys")
+    @ConfigDescription("Prefixes with more keys than this are not indexed")
+    public ListObjectsCacheConfig setIndexMaxKeys(int indexMaxKeys)
+    {
+        this.indexMaxKeys = indexMaxKeys;
+        return this;
+    }
+
+    @Min(1)
+    public int getIndexMaxKeys()
+    {
+        return indexMaxKeys;
+    }
+
+    @Config("s3proxy.list-cache.index.max-memory")
+    @ConfigDescription("Approximate limit on the memory used by listing indexes")
+    public ListObjectsCacheConfig setIndexMaxMemory(DataSize indexMaxMemory)
+    {
+        this.indexMaxMemory = indexMaxMemory;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    @MaxDataSize("8GB")
+    public DataSize getIndexMaxMemory()
+    {
+        return indexMaxMemory;
+    }
+
+    @Config("s3proxy.list-cache.index.max-concurrent-builds")
+    @ConfigDescription("Maximum number of indexes being built at once. Each build lists the whole prefix from the remote")
+    public ListObjectsCacheConfig setIndexMaxConcurrentBuilds(int indexMaxConcurrentBuilds)
+    {
+        this.indexMaxConcurrentBuilds = indexMaxConcurrentBuilds;
+        return this;
+    }
+
+    @Min(1)
+    public int getIndexMaxConcurrentBuilds()
+    {
+        return indexMaxConcurrentBuilds;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single ListObjectsV2 response
+ */
+public record ListObjectsPage(ListBucketResultHeader header, ObjectListing contents, List<String> commonPrefixes)
+{
+    public ListObjectsPage
+    {
+        requireNonNull(header, "header is null");
+        requireNonNull(contents, "contents is null");
+        commonPrefixes = ImmutableList.copyOf(commonPrefixes);
+    }
+
+    /**
+     * Parse the body of a ListObjectsV2 response
+     */
+    public static ListObjectsPage parse(byte[] xml)
+            throws IOException
+    {
+        return ListObjectsXml.parsePage(xml);
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        long size = contents.getRetainedSizeInBytes() + 256;
+        for (String commonPrefix : commonPrefixes) {
+            size += 64 + commonPrefix.length();
+        }
+        return size;
+    }
+}
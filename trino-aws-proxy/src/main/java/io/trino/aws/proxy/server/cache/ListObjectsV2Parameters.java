@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The query parameters of a ListObjectsV2 request that determine its result
+ */
+public record ListObjectsV2Parameters(
+        String prefix,
+        Optional<String> delimiter,
+        Optional<String> continuationToken,
+        Optional<String> startAfter,
+        OptionalInt maxKeys,
+        Optional<String> encodingType)
+{
+    public ListObjectsV2Parameters
+    {
+        requireNonNull(prefix, "prefix is null");
+        requireNonNull(delimiter, "delimiter is null");
+        requireNonNull(continuationToken, "continuationToken is null");
+        requireNonNull(startAfter, "startAfter is null");
+        requireNonNull(maxKeys, "maxKeys is null");
+        requireNonNull(encodingType, "encodingType is null");
+    }
+}
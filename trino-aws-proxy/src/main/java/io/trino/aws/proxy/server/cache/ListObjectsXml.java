@@ -0,0 +1,319 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
+
+/**
+ * Reads and writes ListObjectsV2 response bodies with StAX. Responses are parsed straight into an
+ * {@link ObjectListing} and written straight to the output stream, without an intermediate tree.
+ * Parsing fails for any element that is not part of the ListObjectsV2 response so that responses
+ * that cannot be reproduced faithfully are never cached.
+ */
+final class ListObjectsXml
+{
+    static final String S3_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private ListObjectsXml() {}
+
+    static ListObjectsPage parsePage(byte[] xml)
+            throws IOException
+    {
+        ObjectListing.Builder contents = ObjectListing.builder();
+        List<String> commonPrefixes = new ArrayList<>();
+        ListBucketResultHeader header = parse(xml, contents, commonPrefixes);
+        return new ListObjectsPage(header, contents.build(), commonPrefixes);
+    }
+
+    /**
+     * Parse a response, adding its objects to the listing builder and its common prefixes to the list
+     */
+    static ListBucketResultHeader parse(byte[] xml, ObjectListing.Builder contents, List<String> commonPrefixes)
+            throws IOException
+    {
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            try {
+                return parseListBucketResult(reader, contents, commonPrefixes);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Invalid ListObjectsV2 response", e);
+        }
+    }
+
+    static void writePage(OutputStream output, ListObjectsPage page)
+            throws IOException
+    {
+        write(output, page.header(), page.contents(), IntStream.range(0, page.contents().size()).toArray(), page.commonPrefixes());
+    }
+
+    /**
+     * Write a response containing the objects of the listing at the given positions
+     */
+    static void write(OutputStream output, ListBucketResultHeader header, ObjectListing listing, int[] positions, List<String> commonPrefixes)
+            throws IOException
+    {
+        try {
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(output, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("", "ListBucketResult", S3_NAMESPACE);
+            writer.writeDefaultNamespace(S3_NAMESPACE);
+
+            writeElement(writer, "Name", header.name());
+            writeElement(writer, "Prefix", header.prefix());
+            writeElement(writer, "KeyCount", header.keyCount());
+            writeElement(writer, "MaxKeys", header.maxKeys());
+            writeElement(writer, "Delimiter", header.delimiter());
+            writeElement(writer, "IsTruncated", Boolean.toString(header.isTruncated()));
+            writeElement(writer, "ContinuationToken", header.continuationToken());
+            writeElement(writer, "NextContinuationToken", header.nextContinuationToken());
+            writeElement(writer, "StartAfter", header.startAfter());
+            writeElement(writer, "EncodingType", header.encodingType());
+
+            for (int position : positions) {
+                writer.writeStartElement("Contents");
+                writeElement(writer, "Key", listing.key(position));
+                writeElement(writer, "LastModified", listing.lastModified(position));
+                writeElement(writer, "ETag", listing.eTag(position));
+                for (String checksumAlgorithm : listing.checksumAlgorithms(position)) {
+                    writeElement(writer, "ChecksumAlgorithm", checksumAlgorithm);
+                }
+                writeElement(writer, "Size", Long.toString(listing.objectSize(position)));
+                writeElement(writer, "StorageClass", listing.storageClass(position));
+                writer.writeEndElement();
+            }
+
+            for (String commonPrefix : commonPrefixes) {
+                writer.writeStartElement("CommonPrefixes");
+                writeElement(writer, "Prefix", commonPrefix);
+                writer.writeEndElement();
+            }
+
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            // does not close the output stream
+            writer.close();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Could not write ListObjectsV2 response", e);
+        }
+    }
+
+    private static ListBucketResultHeader parseListBucketResult(XMLStreamReader reader, ObjectListing.Builder contents, List<String> commonPrefixes)
+            throws XMLStreamException
+    {
+        reader.nextTag();
+        expectElement(reader, "ListBucketResult");
+
+        Optional<String> name = Optional.empty();
+        String prefix = "";
+        OptionalInt keyCount = OptionalInt.empty();
+        OptionalInt maxKeys = OptionalInt.empty();
+        Optional<String> delimiter = Optional.empty();
+        boolean isTruncated = false;
+        Optional<String> continuationToken = Optional.empty();
+        Optional<String> nextContinuationToken = Optional.empty();
+        Optional<String> startAfter = Optional.empty();
+        Optional<String> encodingType = Optional.empty();
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "Name" -> {
+                    name = Optional.of(reader.getElementText());
+                }
+                case "Prefix" -> {
+                    prefix = reader.getElementText();
+                }
+                case "KeyCount" -> {
+                    keyCount = OptionalInt.of(Integer.parseInt(reader.getElementText().trim()));
+                }
+                case "MaxKeys" -> {
+                    maxKeys = OptionalInt.of(Integer.parseInt(reader.getElementText().trim()));
+                }
+                case "Delimiter" -> {
+                    delimiter = Optional.of(reader.getElementText());
+                }
+                case "IsTruncated" -> {
+                    isTruncated = Boolean.parseBoolean(reader.getElementText().trim());
+                }
+                case "ContinuationToken" -> {
+                    continuationToken = Optional.of(reader.getElementText());
+                }
+                case "NextContinuationToken" -> {
+                    nextContinuationToken = Optional.of(reader.getElementText());
+                }
+                case "StartAfter" -> {
+                    startAfter = Optional.of(reader.getElementText());
+                }
+                case "EncodingType" -> {
+                    encodingType = Optional.of(reader.getElementText());
+                }
+                case "Contents" -> parseContents(reader, contents);
+                case "CommonPrefixes" -> commonPrefixes.add(parseCommonPrefix(reader));
+                default -> throw unexpectedElement(reader);
+            }
+        }
+
+        return new ListBucketResultHeader(
+                name.orElseThrow(() -> new XMLStreamException("Missing Name element")),
+                prefix,
+                keyCount,
+                maxKeys,
+                delimiter,
+                isTruncated,
+                continuationToken,
+                nextContinuationToken,
+                startAfter,
+                encodingType);
+    }
+
+    private static void parseContents(XMLStreamReader reader, ObjectListing.Builder contents)
+            throws XMLStreamException
+    {
+        Optional<String> key = Optional.empty();
+        Optional<Long> size = Optional.empty();
+        Optional<String> lastModified = Optional.empty();
+        Optional<String> eTag = Optional.empty();
+        Optional<String> storageClass = Optional.empty();
+        ImmutableList.Builder<String> checksumAlgorithms = ImmutableList.builder();
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "Key" -> {
+                    key = Optional.of(reader.getElementText());
+                }
+                case "Size" -> {
+                    size = Optional.of(Long.parseLong(reader.getElementText().trim()));
+                }
+                case "LastModified" -> {
+                    lastModified = Optional.of(reader.getElementText());
+                }
+                case "ETag" -> {
+                    eTag = Optional.of(reader.getElementText());
+                }
+                case "StorageClass" -> {
+                    storageClass = Optional.of(reader.getElementText());
+                }
+                case "ChecksumAlgorithm" -> checksumAlgorithms.add(reader.getElementText());
+                // only returned when the client asks for it with fetch-owner, which is never cached
+                case "Owner" -> skipElement(reader);
+                default -> throw unexpectedElement(reader);
+            }
+        }
+
+        contents.add(
+                key.orElseThrow(() -> new XMLStreamException("Missing Key element")),
+                size.orElseThrow(() -> new XMLStreamException("Missing Size element")),
+                lastModified,
+                eTag,
+                storageClass,
+                checksumAlgorithms.build());
+    }
+
+    private static String parseCommonPrefix(XMLStreamReader reader)
+            throws XMLStreamException
+    {
+        Optional<String> prefix = Optional.empty();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!reader.getLocalName().equals("Prefix")) {
+                throw unexpectedElement(reader);
+            }
+            prefix = Optional.of(reader.getElementText());
+        }
+        return prefix.orElseThrow(() -> new XMLStreamException("Missing Prefix element"));
+    }
+
+    private static void skipElement(XMLStreamReader reader)
+            throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                default -> {}
+            }
+        }
+    }
+
+    private static void expectElement(XMLStreamReader reader, String name)
+            throws XMLStreamException
+    {
+        if (!reader.isStartElement() || !reader.getLocalName().equals(name)) {
+            throw unexpectedElement(reader);
+        }
+    }
+
+    private static XMLStreamException unexpectedElement(XMLStreamReader reader)
+    {
+        return new XMLStreamException("Unexpected element: " + (reader.isStartElement() ? reader.getLocalName() : "none"), reader.getLocation());
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value)
+            throws XMLStreamException
+    {
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, Optional<String> value)
+            throws XMLStreamException
+    {
+        if (value.isPresent()) {
+            writeElement(writer, name, value.get());
+        }
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, OptionalInt value)
+            throws XMLStreamException
+    {
+        if (value.isPresent()) {
+            writeElement(writer, name, Integer.toString(value.getAsInt()));
+        }
+    }
+
+    private static XMLInputFactory createInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
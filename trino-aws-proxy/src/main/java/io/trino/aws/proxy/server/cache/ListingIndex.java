@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableList;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Every object under a prefix of a bucket. Any ListObjectsV2 request for the prefix, or a longer prefix, can be
+ * answered from the index: pages are selected with binary searches of the front coded keys and delimiter rollups
+ * skip over all keys of a common prefix at once.
+ */
+public final class ListingIndex
+{
+    private static final int MAX_KEYS = 1000;
+
+    private final String bucket;
+    private final String prefix;
+    private final MultiMap headers;
+    private final ObjectListing listing;
+
+    public ListingIndex(String bucket, String prefix, MultiMap headers, ObjectListing listing)
+    {
+        this.bucket = requireNonNull(bucket, "bucket is null");
+        this.prefix = requireNonNull(prefix, "prefix is null");
+        this.headers = requireNonNull(headers, "headers is null");
+        this.listing = requireNonNull(listing, "listing is null");
+        checkArgument(listing.keys().isSorted(), "listing keys are not sorted");
+    }
+
+    public String prefix()
+    {
+        return prefix;
+    }
+
+    public int size()
+    {
+        return listing.size();
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return 128 + listing.getRetainedSizeInBytes();
+    }
+
+    /**
+     * Returns the response to the request, or empty if the request can not be answered from this index
+     */
+    public Optional<StreamingListing> serve(ListObjectsV2Parameters parameters)
+    {
+        String requestPrefix = parameters.prefix();
+        Optional<String> delimiter = parameters.delimiter().filter(value -> !value.isEmpty());
+        int maxKeys = Math.min(parameters.maxKeys().orElse(MAX_KEYS), MAX_KEYS);
+        if (!requestPrefix.startsWith(prefix) || parameters.encodingType().isPresent() || (maxKeys <= 0)) {
+            return Optional.empty();
+        }
+
+        int position = listing.keys().lowerBound(requestPrefix);
+        int end = listing.keys().prefixEnd(requestPrefix);
+        if (parameters.continuationToken().isPresent()) {
+            Optional<ListContinuationToken> token = parameters.continuationToken().flatMap(ListContinuationToken::decode);
+            if (token.isEmpty()) {
+                // issued by the remote
+                return Optional.empty();
+            }
+            position = Math.max(position, token.get().isCommonPrefix() ? listing.keys().prefixEnd(token.get().lastItem()) : listing.keys().upperBound(token.get().lastItem()));
+        }
+        else if (parameters.startAfter().isPresent()) {
+            position = Math.max(position, listing.keys().upperBound(parameters.startAfter().get()));
+        }
+
+        int[] positions = new int[Math.min(maxKeys, Math.max(end - position, 0))];
+        int objectCount = 0;
+        ImmutableList.Builder<String> commonPrefixes = ImmutableList.builder();
+        int count = 0;
+        Optional<ListContinuationToken> lastItem = Optional.empty();
+        while ((position < end) && (count < maxKeys)) {
+            String key = listing.key(position);
+            Optional<String> commonPrefix = delimiter.flatMap(value -> commonPrefix(key, requestPrefix, value));
+            if (commonPrefix.isPresent()) {
+                commonPrefixes.add(commonPrefix.get());
+                lastItem = Optional.of(new ListContinuationToken(commonPrefix.get(), true));
+                position = listing.keys().prefixEnd(commonPrefix.get());
+            }
+            else {
+                positions[objectCount++] = position;
+                lastItem = Optional.of(new ListContinuationToken(key, false));
+                position++;
+            }
+            count++;
+        }
+
+        boolean isTruncated = position < end;
+        ListBucketResultHeader header = new ListBucketResultHeader(
+                bucket,
+                requestPrefix,
+                OptionalInt.of(count),
+                OptionalInt.of(maxKeys),
+                delimiter,
+                isTruncated,
+                parameters.continuationToken(),
+                isTruncated ? lastItem.map(ListContinuationToken::encode) : Optional.empty(),
+                parameters.startAfter(),
+                Optional.empty());
+
+        return Optional.of(new IndexListing(header, Arrays.copyOf(positions, objectCount), commonPrefixes.build()));
+    }
+
+    private static Optional<String> commonPrefix(String key, String requestPrefix, String delimiter)
+    {
+        int index = key.indexOf(delimiter, requestPrefix.length());
+        return (index < 0) ? Optional.empty() : Optional.of(key.substring(0, index + delimiter.length()));
+    }
+
+    private final class IndexListing
+            implements StreamingListing
+    {
+        private final ListBucketResultHeader header;
+        private final int[] positions;
+        private final List<String> commonPrefixes;
+
+        private IndexListing(ListBucketResultHeader header, int[] positions, List<String> commonPrefixes)
+        {
+            this.header = requireNonNull(header, "header is null");
+            this.positions = requireNonNull(positions, "positions is null");
+            this.commonPrefixes = requireNonNull(commonPrefixes, "commonPrefixes is null");
+        }
+
+        @Override
+        public MultiMap headers()
+        {
+            return headers;
+        }
+
+        @Override
+        public void writeTo(OutputStream output)
+                throws IOException
+        {
+            ListObjectsXml.write(output, header, listing, positions, commonPrefixes);
+        }
+    }
+}
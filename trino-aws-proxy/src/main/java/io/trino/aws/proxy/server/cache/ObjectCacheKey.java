@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Identifies an object as seen by a single emulated access key. Cached object data is never
+ * shared between access keys as each one may map to different remote credentials.
+ */
+public record ObjectCacheKey(String emulatedAccessKey, String bucket, String key)
+{
+    public ObjectCacheKey
+    {
+        requireNonNull(emulatedAccessKey, "emulatedAccessKey is null");
+        requireNonNull(bucket, "bucket is null");
+        requireNonNull(key, "key is null");
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The objects of a listing stored column-wise. Keys are front coded, and sizes, last modified times and
+ * ETags are held in primitive arrays. Values that do not fit the compact encodings, such as ETags of
+ * objects encrypted with KMS keys, are kept as strings on the side.
+ */
+public final class ObjectListing
+{
+    private static final int INSTANCE_SIZE = 256;
+    // S3 and compatible stores format LastModified with millisecond precision
+    private static final DateTimeFormatter LAST_MODIFIED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    // hex MD5 of the object or of the part checksums followed by the number of parts
+    private static final Pattern ETAG_PATTERN = Pattern.compile("\"([0-9a-f]{32})(?:-([1-9][0-9]{0,4}))?\"");
+    private static final HexFormat HEX = HexFormat.of();
+    private static final Splitter CHECKSUM_SPLITTER = Splitter.on(',');
+
+    private static final long ABSENT_LAST_MODIFIED = Long.MIN_VALUE;
+    private static final long IRREGULAR_LAST_MODIFIED = Long.MIN_VALUE + 1;
+    private static final int ABSENT_ETAG = -1;
+    private static final int IRREGULAR_ETAG = -2;
+
+    private final FrontCodedStrings keys;
+    private final long[] sizes;
+    private final long[] lastModified;
+    private final long[] eTagHigh;
+    private final long[] eTagLow;
+    private final int[] eTagParts;
+    private final byte[] storageClassCodes;
+    private final byte[] checksumCodes;
+    private final List<String> dictionary;
+    private final Map<Integer, String> irregularLastModified;
+    private final Map<Integer, String> irregularETags;
+
+    private ObjectListing(Builder builder)
+    {
+        int size = builder.keys.size();
+        keys = builder.keys.build();
+        sizes = Arrays.copyOf(builder.sizes, size);
+        lastModified = Arrays.copyOf(builder.lastModified, size);
+        eTagHigh = Arrays.copyOf(builder.eTagHigh, size);
+        eTagLow = Arrays.copyOf(builder.eTagLow, size);
+        eTagParts = Arrays.copyOf(builder.eTagParts, size);
+        storageClassCodes = Arrays.copyOf(builder.storageClassCodes, size);
+        checksumCodes = Arrays.copyOf(builder.checksumCodes, size);
+        dictionary = ImmutableList.copyOf(builder.dictionary);
+        irregularLastModified = ImmutableMap.copyOf(builder.irregularLastModified);
+        irregularETags = ImmutableMap.copyOf(builder.irregularETags);
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public int size()
+    {
+        return sizes.length;
+    }
+
+    public FrontCodedStrings keys()
+    {
+        return keys;
+    }
+
+    public String key(int position)
+    {
+        return keys.get(position);
+    }
+
+    public long objectSize(int position)
+    {
+        return sizes[position];
+    }
+
+    public Optional<String> lastModified(int position)
+    {
+        long value = lastModified[position];
+        if (value == ABSENT_LAST_MODIFIED) {
+            return Optional.empty();
+        }
+        if (value == IRREGULAR_LAST_MODIFIED) {
+            return Optional.of(irregularLastModified.get(position));
+        }
+        return Optional.of(LAST_MODIFIED_FORMAT.format(Instant.ofEpochMilli(value)));
+    }
+
+    public Optional<String> eTag(int position)
+    {
+        checkElementIndex(position, size());
+        return switch (eTagParts[position]) {
+            case ABSENT_ETAG -> Optional.empty();
+            case IRREGULAR_ETAG -> Optional.of(irregularETags.get(position));
+            case 0 -> Optional.of('"' + HEX.toHexDigits(eTagHigh[position]) + HEX.toHexDigits(eTagLow[position]) + '"');
+            default -> Optional.of('"' + HEX.toHexDigits(eTagHigh[position]) + HEX.toHexDigits(eTagLow[position]) + '-' + eTagParts[position] + '"');
+        };
+    }
+
+    public Optional<String> storageClass(int position)
+    {
+        return decode(storageClassCodes[position]);
+    }
+
+    public List<String> checksumAlgorithms(int position)
+    {
+        return decode(checksumCodes[position])
+                .map(CHECKSUM_SPLITTER::splitToList)
+                .orElse(ImmutableList.of());
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        long size = INSTANCE_SIZE + keys.getRetainedSizeInBytes();
+        size += (long) sizes.length * ((Long.BYTES * 4) + Integer.BYTES + 2);
+        for (String value : irregularLastModified.values()) {
+            size += 64 + value.length();
+        }
+        for (String value : irregularETags.values()) {
+            size += 64 + value.length();
+        }
+        return size;
+    }
+
+    private Optional<String> decode(byte code)
+    {
+        int index = Byte.toUnsignedInt(code);
+        return (index == 0) ? Optional.empty() : Optional.of(dictionary.get(index - 1));
+    }
+
+    public static final class Builder
+    {
+        private static final int MAX_DICTIONARY_SIZE = 255;
+
+        private final FrontCodedStrings.Builder keys = FrontCodedStrings.builder();
+        private long[] sizes = new long[64];
+        private long[] lastModified = new long[64];
+        private long[] eTagHigh = new long[64];
+        private long[] eTagLow = new long[64];
+        private int[] eTagParts = new int[64];
+        private byte[] storageClassCodes = new byte[64];
+        private byte[] checksumCodes = new byte[64];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+        private final Map<Integer, String> irregularLastModified = new HashMap<>();
+        private final Map<Integer, String> irregularETags = new HashMap<>();
+        private boolean built;
+
+        private Builder() {}
+
+        public Builder add(String key, long size, Optional<String> lastModified, Optional<String> eTag, Optional<String> storageClass, List<String> checksumAlgorithms)
+        {
+            checkState(!built, "listing already built");
+            requireNonNull(key, "key is null");
+            checkArgument(size >= 0, "size is negative");
+
+            int position = keys.size();
+            ensureCapacity(position + 1);
+
+            keys.add(key);
+            sizes[position] = size;
+            this.lastModified[position] = lastModified.map(value -> encodeLastModified(position, value)).orElse(ABSENT_LAST_MODIFIED);
+            eTag.ifPresentOrElse(value -> encodeETag(position, value), () -> eTagParts[position] = ABSENT_ETAG);
+            storageClassCodes[position] = encode(storageClass);
+            checksumCodes[position] = encode(checksumAlgorithms.isEmpty() ? Optional.empty() : Optional.of(String.join(",", checksumAlgorithms)));
+            return this;
+        }
+
+        public int size()
+        {
+            return keys.size();
+        }
+
+        public ObjectListing build()
+        {
+            checkState(!built, "listing already built");
+            built = true;
+            return new ObjectListing(this);
+        }
+
+        private long encodeLastModified(int position, String value)
+        {
+            try {
+                long millis = Instant.parse(value).toEpochMilli();
+                if (LAST_MODIFIED_FORMAT.format(Instant.ofEpochMilli(millis)).equals(value)) {
+                    return millis;
+                }
+            }
+            catch (DateTimeParseException _) {
+                // stored as is
+            }
+            irregularLastModified.put(position, value);
+            return IRREGULAR_LAST_MODIFIED;
+        }
+
+        private void encodeETag(int position, String value)
+        {
+            Matcher matcher = ETAG_PATTERN.matcher(value);
+            if (!matcher.matches()) {
+                irregularETags.put(position, value);
+                eTagParts[position] = IRREGULAR_ETAG;
+                return;
+            }
+            String hex = matcher.group(1);
+            eTagHigh[position] = HEX.fromHexDigitsToLong(hex, 0, 16);
+            eTagLow[position] = HEX.fromHexDigitsToLong(hex, 16, 32);
+            eTagParts[position] = (matcher.group(2) == null) ? 0 : Integer.parseInt(matcher.group(2));
+        }
+
+        private byte encode(Optional<String> value)
+        {
+            if (value.isEmpty()) {
+                return 0;
+            }
+            Integer index = dictionaryIndex.get(value.get());
+            if (index == null) {
+                checkState(dictionary.size() < MAX_DICTIONARY_SIZE, "too many distinct storage classes and checksum algorithms");
+                dictionary.add(value.get());
+                index = dictionary.size();
+                dictionaryIndex.put(value.get(), index);
+            }
+            return (byte) index.intValue();
+        }
+
+        private void ensureCapacity(int capacity)
+        {
+            if (capacity > sizes.length) {
+                int newCapacity = Math.max(capacity, sizes.length * 2);
+                sizes = Arrays.copyOf(sizes, newCapacity);
+                lastModified = Arrays.copyOf(lastModified, newCapacity);
+                eTagHigh = Arrays.copyOf(eTagHigh, newCapacity);
+                eTagLow = Arrays.copyOf(eTagLow, newCapacity);
+                eTagParts = Arrays.copyOf(eTagParts, newCapacity);
+                storageClassCodes = Arrays.copyOf(storageClassCodes, newCapacity);
+                checksumCodes = Arrays.copyOf(checksumCodes, newCapacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Caches HeadObject responses for a short time. Entries are grouped by object so that a write through
+ * the proxy invalidates the object's metadata for every access key at once.
+ */
+public class ObjectMetadataCache
+{
+    private static final int OK = 200;
+    private static final int NOT_FOUND = 404;
+
+    private final boolean enabled;
+    private final boolean cacheMissingObjects;
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final Cache<ObjectLocation, ObjectEntries> objects;
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat invalidations = new CounterStat();
+
+    @Inject
+    public ObjectMetadataCache(ObjectMetadataCacheConfig objectMetadataCacheConfig)
+    {
+        this(objectMetadataCacheConfig, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    ObjectMetadataCache(ObjectMetadataCacheConfig objectMetadataCacheConfig, Ticker ticker)
+    {
+        enabled = objectMetadataCacheConfig.isEnabled();
+        cacheMissingObjects = objectMetadataCacheConfig.isCacheMissingObjects();
+        ttlNanos = objectMetadataCacheConfig.getTtl().roundTo(NANOSECONDS);
+        this.ticker = requireNonNull(ticker, "ticker is null");
+
+        objects = CacheBuilder.newBuilder()
+                .maximumSize(objectMetadataCacheConfig.getMaxObjects())
+                .expireAfterAccess(ttlNanos, NANOSECONDS)
+                .ticker(ticker)
+                .build();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Look up the cached metadata of an object. On a miss, the remote response should be passed to
+     * {@link Lookup#store(CachedObjectMetadata)} which discards it if the object was invalidated in the meantime.
+     */
+    public Lookup lookup(ObjectCacheKey key)
+    {
+        ObjectEntries entries = objects.asMap().computeIfAbsent(new ObjectLocation(key.bucket(), key.key()), _ -> new ObjectEntries());
+        Optional<CachedObjectMetadata> cached = entries.get(key.emulatedAccessKey());
+        if (cached.isPresent()) {
+            hits.update(1);
+        }
+        else {
+            misses.update(1);
+        }
+        return new Lookup(key, entries, cached);
+    }
+
+    /**
+     * Store metadata fetched by another node of a cluster. Unlike {@link Lookup#store(CachedObjectMetadata)} this cannot
+     * detect an invalidation that raced with the fetch, so such metadata may be served until it expires.
+     */
+    public void store(ObjectCacheKey key, CachedObjectMetadata metadata)
+    {
+        if (enabled && isCacheable(metadata)) {
+            objects.asMap().computeIfAbsent(new ObjectLocation(key.bucket(), key.key()), _ -> new ObjectEntries())
+                    .put(key.emulatedAccessKey(), metadata);
+        }
+    }
+
+    public void invalidate(String bucket, String key)
+    {
+        if (enabled) {
+            invalidations.update(1);
+            objects.invalidate(new ObjectLocation(bucket, key));
+        }
+    }
+
+    public void invalidateBucket(String bucket)
+    {
+        if (enabled) {
+            invalidations.update(1);
+            objects.asMap().keySet().removeIf(location -> location.bucket().equals(bucket));
+        }
+    }
+
+    @Managed
+    public long getCachedObjects()
+    {
+        return objects.size();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        long hitCount = hits.getTotalCount();
+        long total = hitCount + misses.getTotalCount();
+        return (total == 0) ? 0 : ((double) hitCount / total);
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getInvalidations()
+    {
+        return invalidations;
+    }
+
+    public final class Lookup
+    {
+        private final ObjectCacheKey key;
+        private final ObjectEntries entries;
+        private final Optional<CachedObjectMetadata> cached;
+
+        private Lookup(ObjectCacheKey key, ObjectEntries entries, Optional<CachedObjectMetadata> cached)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.entries = requireNonNull(entries, "entries is null");
+            this.cached = requireNonNull(cached, "cached is null");
+        }
+
+        public Optional<CachedObjectMetadata> cached()
+        {
+            return cached;
+        }
+
+        public void store(CachedObjectMetadata metadata)
+        {
+            // entries are replaced when the object is invalidated - if so, the metadata may describe the previous version of the object
+            if (isCacheable(metadata) && (objects.getIfPresent(new ObjectLocation(key.bucket(), key.key())) == entries)) {
+                entries.put(key.emulatedAccessKey(), metadata);
+            }
+        }
+    }
+
+    private boolean isCacheable(CachedObjectMetadata metadata)
+    {
+        return (metadata.statusCode() == OK) || (cacheMissingObjects && (metadata.statusCode() == NOT_FOUND));
+    }
+
+    private record ObjectLocation(String bucket, String key)
+    {
+        private ObjectLocation
+        {
+            requireNonNull(bucket, "bucket is null");
+            requireNonNull(key, "key is null");
+        }
+    }
+
+    private record TimedMetadata(CachedObjectMetadata metadata, long storedAtNanos) {}
+
+    private final class ObjectEntries
+    {
+        private final ConcurrentMap<String, TimedMetadata> byAccessKey = new ConcurrentHashMap<>();
+
+        private Optional<CachedObjectMetadata> get(String accessKey)
+        {
+            TimedMetadata timedMetadata = byAccessKey.get(accessKey);
+            if (timedMetadata == null) {
+                return Optional.empty();
+            }
+            if ((ticker.read() - timedMetadata.storedAtNanos()) >= ttlNanos) {
+                byAccessKey.remove(accessKey, timedMetadata);
+                return Optional.empty();
+            }
+            return Optional.of(timedMetadata.metadata());
+        }
+
+        private void put(String accessKey, CachedObjectMetadata metadata)
+        {
+            byAccessKey.put(accessKey, new TimedMetadata(metadata, ticker.read()));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+public class ObjectMetadataCacheConfig
+{
+    private boolean enabled;
+    private Duration ttl = new Duration(5, TimeUnit.SECONDS);
+    private int maxObjects = 100_000;
+    private boolean cacheMissingObjects = true;
+
+    @Config("s3proxy.metadata-cache.enabled")
+    @ConfigDescription("Cache the responses of HeadObject requests")
+    public ObjectMetadataCacheConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.metadata-cache.ttl")
+    @ConfigDescription("How long a HeadObject response is cached. Changes made to an object without going through this proxy are not visible until the entry expires")
+    public ObjectMetadataCacheConfig setTtl(Duration ttl)
+    {
+        this.ttl = ttl;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getTtl()
+    {
+        return ttl;
+    }
+
+    @Config("s3proxy.metadata-cache.max-objects")
+    @ConfigDescription("Maximum number of objects with cached metadata")
+    public ObjectMetadataCacheConfig setMaxObjects(int maxObjects)
+    {
+        this.maxObjects = maxObjects;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxObjects()
+    {
+        return maxObjects;
+    }
+
+    @Config("s3proxy.metadata-cache.cache-missing-objects")
+    @ConfigDescription("Also cache HeadObject responses for objects that do not exist")
+    public ObjectMetadataCacheConfig setCacheMissingObjects(boolean cacheMissingObjects)
+    {
+        this.cacheMissingObjects = cacheMissingObjects;
+        return this;
+    }
+
+    public boolean isCacheMissingObjects()
+    {
+        return cacheMissingObjects;
+    }
+}
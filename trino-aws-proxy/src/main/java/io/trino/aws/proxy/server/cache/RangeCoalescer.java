@@ -0,0 +1,321 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Inject;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Merges ranged reads of the same object that arrive within a short window and are overlapping or close
+ * to each other. A read of an object that has no other read in flight is sent directly. Otherwise, the
+ * read opens a merge; it waits for the merge window to elapse and then fetches the combined range with a
+ * single remote request. Each merged request is served a slice of
+ * the combined response. Requests are only merged when they use the same emulated access key.
+ */
+public class RangeCoalescer
+{
+    private final boolean enabled;
+    private final long maxGap;
+    private final long maxMergedSize;
+    private final long windowNanos;
+    private final int maxRequestsPerMerge;
+    private final ConcurrentMap<ObjectCacheKey, Merge> openMerges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ObjectCacheKey, Integer> activeReads = new ConcurrentHashMap<>();
+
+    private final CounterStat mergedFetches = new CounterStat();
+    private final CounterStat mergedRequests = new CounterStat();
+    private final CounterStat unmergedRequests = new CounterStat();
+    private final CounterStat uncontendedRequests = new CounterStat();
+    private final CounterStat fallbackRequests = new CounterStat();
+    private final CounterStat fetchedBytes = new CounterStat();
+    private final CounterStat gapBytes = new CounterStat();
+
+    /**
+     * A request's membership in a merge. The leader of a merge must call {@link Merge#awaitMerge()}
+     * and then complete or fail the merge. A solo member has no merge and sends its request directly.
+     * Members must be closed once their request has been served.
+     */
+    public final class Member
+            implements AutoCloseable
+    {
+        private final ObjectCacheKey key;
+        private final Optional<Merge> merge;
+        private final ByteRange range;
+        private final boolean isLeader;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Member(ObjectCacheKey key, Optional<Merge> merge, ByteRange range, boolean isLeader)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.merge = requireNonNull(merge, "merge is null");
+            this.range = requireNonNull(range, "range is null");
+            this.isLeader = isLeader;
+        }
+
+        public boolean isLeader()
+        {
+            return isLeader;
+        }
+
+        public boolean isSolo()
+        {
+            return merge.isEmpty();
+        }
+
+        public Merge merge()
+        {
+            return merge.orElseThrow(() -> new IllegalStateException("solo member has no merge"));
+        }
+
+        public ByteRange range()
+        {
+            return range;
+        }
+
+        /**
+         * Completes with the data covering this member's range, or empty if the request must be sent to the remote on its own
+         */
+        public ListenableFuture<Optional<CachedRange>> result()
+        {
+            return merge.map(value -> value.resultFor(range)).orElseGet(() -> immediateFuture(Optional.empty()));
+        }
+
+        @Override
+        public void close()
+        {
+            if (closed.compareAndSet(false, true)) {
+                activeReads.computeIfPresent(key, (_, count) -> (count == 1) ? null : count - 1);
+            }
+        }
+    }
+
+    @Inject
+    public RangeCoalescer(RangeCoalescingConfig rangeCoalescingConfig)
+    {
+        enabled = rangeCoalescingConfig.isEnabled();
+        maxGap = rangeCoalescingConfig.getMaxGap().toBytes();
+        maxMergedSize = rangeCoalescingConfig.getMaxMergedSize().toBytes();
+        windowNanos = rangeCoalescingConfig.getWindow().roundTo(NANOSECONDS);
+        maxRequestsPerMerge = rangeCoalescingConfig.getMaxRequestsPerMerge();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public Member join(ObjectCacheKey key, ByteRange range)
+    {
+        checkState(enabled, "range coalescing is not enabled");
+
+        // only wait for other requests when there is already demand for the object
+        boolean contended = activeReads.merge(key, 1, Integer::sum) > 1;
+        while (true) {
+            Merge existing = openMerges.get(key);
+            if ((existing != null) && existing.tryAdd(range)) {
+                return new Member(key, Optional.of(existing), range, false);
+            }
+            if (!contended) {
+                uncontendedRequests.update(1);
+                return new Member(key, Optional.empty(), range, false);
+            }
+
+            Merge merge = new Merge(key, range);
+            boolean opened = (existing == null) ? (openMerges.putIfAbsent(key, merge) == null) : openMerges.replace(key, existing, merge);
+            if (opened) {
+                return new Member(key, Optional.of(merge), range, true);
+            }
+        }
+    }
+
+    @Managed
+    public long getOpenMerges()
+    {
+        return openMerges.size();
+    }
+
+    @Managed
+    public long getActiveObjects()
+    {
+        return activeReads.size();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMergedFetches()
+    {
+        return mergedFetches;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMergedRequests()
+    {
+        return mergedRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getUnmergedRequests()
+    {
+        return unmergedRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getUncontendedRequests()
+    {
+        return uncontendedRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFallbackRequests()
+    {
+        return fallbackRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFetchedBytes()
+    {
+        return fetchedBytes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getGapBytes()
+    {
+        return gapBytes;
+    }
+
+    public final class Merge
+    {
+        private final ObjectCacheKey key;
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final SettableFuture<Optional<CachedRange>> result = SettableFuture.create();
+        private ByteRange span;
+        private long requestedBytes;
+        private int requests;
+        private boolean closed;
+
+        private Merge(ObjectCacheKey key, ByteRange range)
+        {
+            this.key = requireNonNull(key, "key is null");
+            span = requireNonNull(range, "range is null");
+            requestedBytes = range.length();
+            requests = 1;
+        }
+
+        /**
+         * Waits for the merge window to elapse, or for the merge to fill up, and closes the merge to new requests.
+         * Returns the range to fetch if other requests have joined. Otherwise, the merge completes empty and
+         * the leader should send its own request.
+         */
+        public Optional<ByteRange> awaitMerge()
+                throws InterruptedException
+        {
+            full.await(windowNanos, NANOSECONDS);
+            openMerges.remove(key, this);
+
+            ByteRange merged;
+            synchronized (this) {
+                closed = true;
+                if (requests == 1) {
+                    unmergedRequests.update(1);
+                    result.set(Optional.empty());
+                    return Optional.empty();
+                }
+                mergedFetches.update(1);
+                mergedRequests.update(requests);
+                // overlapping requests can ask for more bytes than the span
+                gapBytes.update(max(0, span.length() - requestedBytes));
+                merged = span;
+            }
+            return Optional.of(merged);
+        }
+
+        public void complete(CachedRange cachedRange)
+        {
+            fetchedBytes.update(cachedRange.range().length());
+            result.set(Optional.of(cachedRange));
+        }
+
+        public void fail()
+        {
+            openMerges.remove(key, this);
+            synchronized (this) {
+                closed = true;
+                if (!result.isDone()) {
+                    fallbackRequests.update(requests);
+                }
+            }
+            result.set(Optional.empty());
+        }
+
+        private ListenableFuture<Optional<CachedRange>> resultFor(ByteRange range)
+        {
+            return transform(result, cachedRange -> cachedRange.filter(value -> {
+                if (value.range().contains(range)) {
+                    return true;
+                }
+                // the object is shorter than the merged range
+                fallbackRequests.update(1);
+                return false;
+            }), directExecutor());
+        }
+
+        private synchronized boolean tryAdd(ByteRange range)
+        {
+            if (closed) {
+                return false;
+            }
+            if ((range.start() > (span.end() + maxGap + 1)) || (range.end() < (span.start() - maxGap - 1))) {
+                return false;
+            }
+            ByteRange merged = new ByteRange(min(span.start(), range.start()), max(span.end(), range.end()));
+            if (merged.length() > maxMergedSize) {
+                return false;
+            }
+
+            span = merged;
+            requestedBytes += range.length();
+            requests++;
+            if (requests >= maxRequestsPerMerge) {
+                closed = true;
+                full.countDown();
+            }
+            return true;
+        }
+    }
+}
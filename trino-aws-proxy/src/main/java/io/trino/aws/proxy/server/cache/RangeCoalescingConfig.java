@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MaxDuration;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class RangeCoalescingConfig
+{
+    private boolean enabled;
+    private DataSize maxGap = DataSize.of(32, KILOBYTE);
+    private DataSize maxMergedSize = DataSize.of(4, MEGABYTE);
+    private Duration window = new Duration(5, TimeUnit.MILLISECONDS);
+    private int maxRequestsPerMerge = 32;
+
+    @Config("s3proxy.range-coalescing.enabled")
+    @ConfigDescription("Merge overlapping or nearby ranged GETs of the same object that arrive close together into a single remote request")
+    public RangeCoalescingConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.range-coalescing.max-gap")
+    @ConfigDescription("Largest gap between two ranges that are still merged - the bytes in the gap are fetched and discarded")
+    public RangeCoalescingConfig setMaxGap(DataSize maxGap)
+    {
+        this.maxGap = maxGap;
+        return this;
+    }
+
+    @NotNull
+    @MaxDataSize("16MB")
+    public DataSize getMaxGap()
+    {
+        return maxGap;
+    }
+
+    @Config("s3proxy.range-coalescing.max-merged-size")
+    @ConfigDescription("Largest range fetched by a merged remote request")
+    public RangeCoalescingConfig setMaxMergedSize(DataSize maxMergedSize)
+    {
+        this.maxMergedSize = maxMergedSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    @MaxDataSize("64MB")
+    public DataSize getMaxMergedSize()
+    {
+        return maxMergedSize;
+    }
+
+    @Config("s3proxy.range-coalescing.window")
+    @ConfigDescription("How long the first ranged GET of an object waits for other requests to merge with. This is added to the latency of every coalesced request")
+    public RangeCoalescingConfig setWindow(Duration window)
+    {
+        this.window = window;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0ms")
+    @MaxDuration("1s")
+    public Duration getWindow()
+    {
+        return window;
+    }
+
+    @Config("s3proxy.range-coalescing.max-requests-per-merge")
+    @ConfigDescription("Maximum number of client requests served by one merged remote request")
+    public RangeCoalescingConfig setMaxRequestsPerMerge(int maxRequestsPerMerge)
+    {
+        this.maxRequestsPerMerge = maxRequestsPerMerge;
+        return this;
+    }
+
+    @Min(2)
+    public int getMaxRequestsPerMerge()
+    {
+        return maxRequestsPerMerge;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class ReadAheadConfig
+{
+    private boolean enabled;
+    private DataSize windowSize = DataSize.of(8, MEGABYTE);
+    private DataSize maxMemory = DataSize.of(256, MEGABYTE);
+    private int minSequentialReads = 2;
+    private int maxTrackedObjects = 10_000;
+    private Duration idleTimeout = new Duration(30, TimeUnit.SECONDS);
+
+    @Config("s3proxy.read-ahead.enabled")
+    @ConfigDescription("Prefetch the next window of an object when a client reads it sequentially using ranged GETs")
+    public ReadAheadConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.read-ahead.window-size")
+    @ConfigDescription("Number of bytes fetched by each prefetch")
+    public ReadAheadConfig setWindowSize(DataSize windowSize)
+    {
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    @MaxDataSize("64MB")
+    public DataSize getWindowSize()
+    {
+        return windowSize;
+    }
+
+    @Config("s3proxy.read-ahead.max-memory")
+    @ConfigDescription("Hard limit on the memory used by prefetched data, including prefetches in flight")
+    public ReadAheadConfig setMaxMemory(DataSize maxMemory)
+    {
+        this.maxMemory = maxMemory;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1kB")
+    public DataSize getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    @Config("s3proxy.read-ahead.min-sequential-reads")
+    @ConfigDescription("Number of adjacent ranged reads of an object before prefetching starts")
+    public ReadAheadConfig setMinSequentialReads(int minSequentialReads)
+    {
+        this.minSequentialReads = minSequentialReads;
+        return this;
+    }
+
+    @Min(1)
+    public int getMinSequentialReads()
+    {
+        return minSequentialReads;
+    }
+
+    @Config("s3proxy.read-ahead.max-tracked-objects")
+    @ConfigDescription("Maximum number of objects whose access pattern is tracked at once")
+    public ReadAheadConfig setMaxTrackedObjects(int maxTrackedObjects)
+    {
+        this.maxTrackedObjects = maxTrackedObjects;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxTrackedObjects()
+    {
+        return maxTrackedObjects;
+    }
+
+    @Config("s3proxy.read-ahead.idle-timeout")
+    @ConfigDescription("Time after which an object that has not been read is no longer tracked and its prefetched data is released")
+    public ReadAheadConfig setIdleTimeout(Duration idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.inject.Inject;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Detects clients reading an object sequentially with adjacent ranged GETs and plans prefetches of the
+ * next window of the object. Prefetched windows are held in memory, bounded by a hard limit, and are
+ * used to answer subsequent reads that fall entirely within a window.
+ */
+public class ReadAheadController
+{
+    private static final Access NO_ACCESS = new Access(Optional.empty(), Optional.empty());
+    private static final PlannedAccess NO_PLANNED_ACCESS = new PlannedAccess(Optional.empty(), Optional.empty());
+
+    private final boolean enabled;
+    private final long windowSize;
+    private final long maxMemory;
+    private final int minSequentialReads;
+    // grouped by object so that a write drops the state of every access key without scanning the cache
+    private final Cache<ObjectLocation, TrackedObject> objectStates;
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat hitBytes = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat prefetches = new CounterStat();
+    private final CounterStat prefetchedBytes = new CounterStat();
+    private final CounterStat failedPrefetches = new CounterStat();
+    private final CounterStat rejectedPrefetches = new CounterStat();
+    private final CounterStat wastedPrefetches = new CounterStat();
+    private final CounterStat wastedBytes = new CounterStat();
+
+    public record Access(Optional<CachedRange> hit, Optional<Prefetch> prefetch)
+    {
+        public Access
+        {
+            requireNonNull(hit, "hit is null");
+            requireNonNull(prefetch, "prefetch is null");
+        }
+    }
+
+    @Inject
+    public ReadAheadController(ReadAheadConfig readAheadConfig)
+    {
+        enabled = readAheadConfig.isEnabled();
+        windowSize = readAheadConfig.getWindowSize().toBytes();
+        maxMemory = readAheadConfig.getMaxMemory().toBytes();
+        minSequentialReads = readAheadConfig.getMinSequentialReads();
+
+        objectStates = CacheBuilder.newBuilder()
+                .maximumSize(readAheadConfig.getMaxTrackedObjects())
+                .expireAfterAccess(readAheadConfig.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .removalListener((RemovalListener<ObjectLocation, TrackedObject>) notification -> notification.getValue().close())
+                .build();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Record a ranged read of an object. The result contains the prefetched data that covers the range, if any,
+     * and the next window to prefetch, if any. A returned {@link Prefetch} holds reserved memory and must be either
+     * completed or abandoned.
+     */
+    public Access access(ObjectCacheKey key, ByteRange range)
+    {
+        if (!enabled) {
+            return NO_ACCESS;
+        }
+
+        ObjectReadState state = readState(key);
+        PlannedAccess planned = state.access(range);
+        // memory is reserved outside the state's lock: forcing cache maintenance closes evicted states, which takes their locks
+        Optional<Prefetch> prefetch = planned.prefetch().flatMap(next -> {
+            if (tryReserve(next.length())) {
+                return Optional.of(new Prefetch(state, next));
+            }
+            rejectedPrefetches.update(1);
+            state.prefetchAbandoned(OptionalLong.empty());
+            return Optional.empty();
+        });
+        return new Access(planned.hit(), prefetch);
+    }
+
+    /**
+     * Install a range fetched ahead of any read, for example by a cache warmup. Unlike prefetched windows, a warmed
+     * range is kept when the reader jumps around the object, until the object is idle or invalidated. Returns false
+     * if read-ahead is disabled or there is not enough memory.
+     */
+    public boolean warm(ObjectCacheKey key, CachedRange cachedRange)
+    {
+        if (!enabled) {
+            return false;
+        }
+        if (!tryReserve(cachedRange.range().length())) {
+            rejectedPrefetches.update(1);
+            return false;
+        }
+        prefetches.update(1);
+        prefetchedBytes.update(cachedRange.range().length());
+        readState(key).installWarmed(cachedRange);
+        return true;
+    }
+
+    /**
+     * Drop any prefetched data for the object, for all access keys. Called when the object is written through the proxy.
+     */
+    public void invalidate(String bucket, String key)
+    {
+        if (enabled) {
+            objectStates.invalidate(new ObjectLocation(bucket, key));
+        }
+    }
+
+    /**
+     * Drop any prefetched data for all objects in the bucket. Called for bulk deletes whose keys are not known to the proxy.
+     */
+    public void invalidateBucket(String bucket)
+    {
+        if (enabled) {
+            objectStates.asMap().keySet().removeIf(location -> location.bucket().equals(bucket));
+        }
+    }
+
+    @Managed
+    public long getReservedBytes()
+    {
+        return reservedBytes.get();
+    }
+
+    @Managed
+    public long getMaxMemoryBytes()
+    {
+        return maxMemory;
+    }
+
+    @Managed
+    public long getTrackedObjects()
+    {
+        return objectStates.size();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHitBytes()
+    {
+        return hitBytes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getPrefetches()
+    {
+        return prefetches;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getPrefetchedBytes()
+    {
+        return prefetchedBytes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailedPrefetches()
+    {
+        return failedPrefetches;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejectedPrefetches()
+    {
+        return rejectedPrefetches;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getWastedPrefetches()
+    {
+        return wastedPrefetches;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getWastedBytes()
+    {
+        return wastedBytes;
+    }
+
+    private ObjectReadState readState(ObjectCacheKey key)
+    {
+        return objectStates.asMap().computeIfAbsent(new ObjectLocation(key.bucket(), key.key()), _ -> new TrackedObject()).readState(key.emulatedAccessKey());
+    }
+
+    private boolean tryReserve(long bytes)
+    {
+        if (internalTryReserve(bytes)) {
+            return true;
+        }
+        // expired objects are only released during cache maintenance - force it and try again
+        objectStates.cleanUp();
+        return internalTryReserve(bytes);
+    }
+
+    private boolean internalTryReserve(long bytes)
+    {
+        while (true) {
+            long current = reservedBytes.get();
+            if ((current + bytes) > maxMemory) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(long bytes)
+    {
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    public final class Prefetch
+    {
+        private final ObjectReadState state;
+        private final ByteRange range;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Prefetch(ObjectReadState state, ByteRange range)
+        {
+            this.state = requireNonNull(state, "state is null");
+            this.range = requireNonNull(range, "range is null");
+        }
+
+        public ByteRange range()
+        {
+            return range;
+        }
+
+        public void complete(CachedRange cachedRange)
+        {
+            checkArgument(cachedRange.range().start() == range.start(), "prefetched range does not start at the requested position");
+            checkArgument(range.contains(cachedRange.range()), "prefetched range is larger than the requested range");
+
+            if (done.compareAndSet(false, true)) {
+                // the remote object may be shorter than the requested window
+                release(range.length() - cachedRange.range().length());
+                prefetches.update(1);
+                prefetchedBytes.update(cachedRange.range().length());
+                state.install(cachedRange);
+            }
+        }
+
+        public void abandon()
+        {
+            abandon(OptionalLong.empty());
+        }
+
+        /**
+         * Abandon the prefetch, recording the object size if the failed response reported it, as a 416 response to
+         * a window past the end of the object does. Later windows are then clamped to the object.
+         */
+        public void abandon(OptionalLong objectSize)
+        {
+            if (done.compareAndSet(false, true)) {
+                release(range.length());
+                failedPrefetches.update(1);
+                state.prefetchAbandoned(objectSize);
+            }
+        }
+    }
+
+    private record ObjectLocation(String bucket, String key)
+    {
+        private ObjectLocation
+        {
+            requireNonNull(bucket, "bucket is null");
+            requireNonNull(key, "key is null");
+        }
+    }
+
+    private record PlannedAccess(Optional<CachedRange> hit, Optional<ByteRange> prefetch)
+    {
+        private PlannedAccess
+        {
+            requireNonNull(hit, "hit is null");
+            requireNonNull(prefetch, "prefetch is null");
+        }
+    }
+
+    private final class TrackedObject
+    {
+        private final Map<String, ObjectReadState> readStates = new HashMap<>();
+        private boolean closed;
+
+        private synchronized ObjectReadState readState(String accessKey)
+        {
+            if (closed) {
+                // evicted or invalidated while being looked up, hand out state that tracks nothing
+                ObjectReadState readState = new ObjectReadState();
+                readState.close();
+                return readState;
+            }
+            return readStates.computeIfAbsent(accessKey, _ -> new ObjectReadState());
+        }
+
+        private synchronized void close()
+        {
+            closed = true;
+            readStates.values().forEach(ObjectReadState::close);
+            readStates.clear();
+        }
+    }
+
+    private static final class Window
+    {
+        private final CachedRange cachedRange;
+        private final boolean warmed;
+        private long servedBytes;
+
+        private Window(CachedRange cachedRange, boolean warmed)
+        {
+            this.cachedRange = requireNonNull(cachedRange, "cachedRange is null");
+            this.warmed = warmed;
+        }
+
+        private ByteRange range()
+        {
+            return cachedRange.range();
+        }
+    }
+
+    private final class ObjectReadState
+    {
+        // start at -2 so that the first read is never considered adjacent
+        private long lastEnd = -2;
+        private int sequentialReads;
+        private boolean prefetchInFlight;
+        private boolean closed;
+        private OptionalLong objectSize = OptionalLong.empty();
+        private final List<Window> windows = new ArrayList<>();
+
+        private synchronized PlannedAccess access(ByteRange range)
+        {
+            if (closed) {
+                return NO_PLANNED_ACCESS;
+            }
+
+            boolean sequential = range.start() == (lastEnd + 1);
+            // the count includes the read that started the run
+            sequentialReads = sequential ? (sequentialReads + 1) : 1;
+            lastEnd = range.end();
+
+            Optional<CachedRange> hit = Optional.empty();
+            Iterator<Window> iterator = windows.iterator();
+            while (iterator.hasNext()) {
+                Window window = iterator.next();
+                if (window.range().contains(range)) {
+                    window.servedBytes += range.length();
+                    hit = Optional.of(window.cachedRange);
+                }
+                else if (!window.warmed && (!sequential || (window.range().end() < range.start()))) {
+                    // the reader has moved past this window or is no longer reading sequentially
+                    iterator.remove();
+                    releaseWindow(window);
+                }
+            }
+
+            if (hit.isPresent()) {
+                hits.update(1);
+                hitBytes.update(range.length());
+            }
+            else {
+                misses.update(1);
+            }
+
+            return new PlannedAccess(hit, planPrefetch(range));
+        }
+
+        private Optional<ByteRange> planPrefetch(ByteRange range)
+        {
+            if (prefetchInFlight || (sequentialReads < minSequentialReads)) {
+                return Optional.empty();
+            }
+
+            // only windows that continue from the reader count, a warmed range further on does not
+            long bufferedEnd = range.end();
+            for (Window window : windows) {
+                if ((window.range().start() <= (bufferedEnd + 1)) && (window.range().end() > bufferedEnd)) {
+                    bufferedEnd = window.range().end();
+                }
+            }
+            if ((bufferedEnd - range.end()) >= windowSize) {
+                // there is already a full window buffered ahead of the reader
+                return Optional.empty();
+            }
+
+            long start = bufferedEnd + 1;
+            long end = start + windowSize - 1;
+            if (objectSize.isPresent()) {
+                if (start >= objectSize.getAsLong()) {
+                    return Optional.empty();
+                }
+                end = Math.min(end, objectSize.getAsLong() - 1);
+            }
+
+            // claimed until the caller has reserved memory for it, see prefetchAbandoned
+            prefetchInFlight = true;
+            return Optional.of(new ByteRange(start, end));
+        }
+
+        private synchronized void install(CachedRange cachedRange)
+        {
+            prefetchInFlight = false;
+
+            Window window = new Window(cachedRange, false);
+            if (closed || (cachedRange.range().end() <= lastEnd)) {
+                // object is no longer tracked or the reader has already moved past the window
+                releaseWindow(window);
+                return;
+            }
+
+            if (cachedRange.objectSize().isPresent()) {
+                objectSize = cachedRange.objectSize();
+            }
+            windows.add(window);
+            windows.sort(Comparator.comparingLong(value -> value.range().start()));
+        }
+
+        private synchronized void installWarmed(CachedRange cachedRange)
+        {
+            Window window = new Window(cachedRange, true);
+            if (closed) {
+                releaseWindow(window);
+                return;
+            }
+
+            if (cachedRange.objectSize().isPresent()) {
+                objectSize = cachedRange.objectSize();
+            }
+            windows.add(window);
+            windows.sort(Comparator.comparingLong(value -> value.range().start()));
+        }
+
+        private synchronized void prefetchAbandoned(OptionalLong objectSize)
+        {
+            prefetchInFlight = false;
+            if (objectSize.isPresent()) {
+                this.objectSize = objectSize;
+            }
+        }
+
+        private synchronized void close()
+        {
+            closed = true;
+            windows.forEach(this::releaseWindow);
+            windows.clear();
+        }
+
+        private void releaseWindow(Window window)
+        {
+            long length = window.range().length();
+            release(length);
+
+            long wasted = length - Math.min(window.servedBytes, length);
+            if (window.servedBytes == 0) {
+                wastedPrefetches.update(1);
+            }
+            wastedBytes.update(wasted);
+        }
+    }
+}
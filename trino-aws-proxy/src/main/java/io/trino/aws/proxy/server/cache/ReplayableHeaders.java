@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.util.Set;
+
+final class ReplayableHeaders
+{
+    // headers that are specific to a single remote response and must not be replayed
+    private static final Set<String> PER_RESPONSE_HEADERS = ImmutableSet.of("date", "x-amz-request-id", "x-amz-id-2", "connection", "keep-alive", "transfer-encoding");
+
+    private ReplayableHeaders() {}
+
+    static MultiMap replayableHeaders(MultiMap remoteHeaders, Set<String> excludedHeaders)
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(false);
+        remoteHeaders.forEach((name, values) -> {
+            if (!PER_RESPONSE_HEADERS.contains(name) && !excludedHeaders.contains(name)) {
+                builder.addAll(name, values);
+            }
+        });
+        return builder.build();
+    }
+}
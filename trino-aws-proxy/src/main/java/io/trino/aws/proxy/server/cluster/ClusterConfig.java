@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.configuration.ConfigSecuritySensitive;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+
+public class ClusterConfig
+{
+    private boolean enabled;
+    private List<String> peers = ImmutableList.of();
+    private Optional<String> sharedSecret = Optional.empty();
+    private int virtualNodes = 128;
+
+    @Config("s3proxy.cluster.enabled")
+    @ConfigDescription("Shard cached object metadata across the proxy nodes listed in s3proxy.cluster.peers")
+    public ClusterConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.cluster.peers")
+    @ConfigDescription("Every node of the cluster, including this one, as <node id>=<base URI>")
+    public ClusterConfig setPeers(List<String> peers)
+    {
+        this.peers = ImmutableList.copyOf(peers);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getPeers()
+    {
+        return peers;
+    }
+
+    @Config("s3proxy.cluster.shared-secret")
+    @ConfigDescription("Secret used to authenticate requests between the nodes of the cluster")
+    @ConfigSecuritySensitive
+    public ClusterConfig setSharedSecret(String sharedSecret)
+    {
+        this.sharedSecret = Optional.ofNullable(sharedSecret);
+        return this;
+    }
+
+    @NotNull
+    public Optional<String> getSharedSecret()
+    {
+        return sharedSecret;
+    }
+
+    @Config("s3proxy.cluster.virtual-nodes")
+    @ConfigDescription("Number of points each node has on the consistent hash ring")
+    public ClusterConfig setVirtualNodes(int virtualNodes)
+    {
+        this.virtualNodes = virtualNodes;
+        return this;
+    }
+
+    @Min(1)
+    public int getVirtualNodes()
+    {
+        return virtualNodes;
+    }
+
+    @AssertTrue(message = "s3proxy.cluster.shared-secret and s3proxy.cluster.peers must be set when the cluster is enabled")
+    public boolean isClusterDefined()
+    {
+        return !enabled || (sharedSecret.isPresent() && !peers.isEmpty());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import java.net.URI;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A node of the cluster, identified by its airlift node id
+ */
+public record ClusterPeer(String nodeId, URI uri)
+{
+    public ClusterPeer
+    {
+        requireNonNull(nodeId, "nodeId is null");
+        requireNonNull(uri, "uri is null");
+    }
+
+    /**
+     * Parse a peer in the {@code <node id>=<base URI>} form used by {@code s3proxy.cluster.peers}
+     */
+    public static ClusterPeer parse(String peer)
+    {
+        int separator = peer.indexOf('=');
+        checkArgument(separator > 0, "Peer must be <node id>=<base URI>: %s", peer);
+        URI uri = URI.create(peer.substring(separator + 1).trim());
+        checkArgument((uri.getScheme() != null) && (uri.getHost() != null), "Peer URI must be absolute: %s", peer);
+        return new ClusterPeer(peer.substring(0, separator).trim(), uri);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Maps objects to the peer that owns them. Each peer has a number of virtual nodes on the ring so that
+ * adding or removing a peer only moves the objects of that peer. Objects are hashed on their bucket and
+ * key, so every access key's view of an object lands on the same peer.
+ */
+public final class ConsistentHashRing
+{
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final long[] points;
+    private final ClusterPeer[] owners;
+
+    private ConsistentHashRing(long[] points, ClusterPeer[] owners)
+    {
+        this.points = points;
+        this.owners = owners;
+    }
+
+    public static ConsistentHashRing build(List<ClusterPeer> peers, int virtualNodes)
+    {
+        checkArgument(!peers.isEmpty(), "peers is empty");
+        checkArgument(virtualNodes > 0, "virtualNodes must be positive");
+
+        Set<String> nodeIds = new HashSet<>();
+        peers.forEach(peer -> checkArgument(nodeIds.add(peer.nodeId()), "Duplicate peer: %s", peer.nodeId()));
+
+        ImmutableList.Builder<Point> builder = ImmutableList.builderWithExpectedSize(peers.size() * virtualNodes);
+        for (ClusterPeer peer : peers) {
+            for (int i = 0; i < virtualNodes; i++) {
+                builder.add(new Point(hash(peer.nodeId() + "#" + i), peer));
+            }
+        }
+        // ties are broken by node id so that every node builds the same ring
+        List<Point> sorted = builder.build().stream()
+                .sorted(Comparator.comparingLong(Point::hash).thenComparing(point -> point.peer().nodeId()))
+                .toList();
+
+        long[] points = new long[sorted.size()];
+        ClusterPeer[] owners = new ClusterPeer[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            points[i] = sorted.get(i).hash();
+            owners[i] = sorted.get(i).peer();
+        }
+        return new ConsistentHashRing(points, owners);
+    }
+
+    public ClusterPeer owner(String bucket, String key)
+    {
+        long hash = hash(bucket + "/" + key);
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            // first point after the hash, wrapping around the ring
+            index = -(index + 1);
+        }
+        return owners[index % owners.length];
+    }
+
+    private static long hash(String value)
+    {
+        return HASH_FUNCTION.hashString(value, UTF_8).asLong();
+    }
+
+    private record Point(long hash, ClusterPeer peer) {}
+}
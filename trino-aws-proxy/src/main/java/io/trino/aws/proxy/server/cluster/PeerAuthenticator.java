@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Signs and verifies requests between the nodes of a cluster with an HMAC of the shared secret. The
+ * signature covers the time, the method, the request parameters and the body, and is accepted for
+ * {@link #MAX_CLOCK_SKEW} on either side of the signing time.
+ */
+public final class PeerAuthenticator
+{
+    public static final String SIGNATURE_HEADER = "X-Trino-Proxy-Peer-Signature";
+    public static final Duration MAX_CLOCK_SKEW = Duration.ofMinutes(5);
+
+    private final HashFunction hmac;
+    private final Clock clock;
+
+    public PeerAuthenticator(String sharedSecret, Clock clock)
+    {
+        hmac = Hashing.hmacSha256(sharedSecret.getBytes(UTF_8));
+        this.clock = requireNonNull(clock, "clock is null");
+    }
+
+    public String sign(String method, List<String> parameters, byte[] body)
+    {
+        long epochSecond = clock.instant().getEpochSecond();
+        return epochSecond + ":" + signature(epochSecond, method, parameters, body);
+    }
+
+    public boolean verify(String header, String method, List<String> parameters, byte[] body)
+    {
+        if (header == null) {
+            return false;
+        }
+        int separator = header.indexOf(':');
+        if (separator <= 0) {
+            return false;
+        }
+        long epochSecond;
+        try {
+            epochSecond = Long.parseLong(header.substring(0, separator));
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(clock.instant().getEpochSecond() - epochSecond) > MAX_CLOCK_SKEW.toSeconds()) {
+            return false;
+        }
+        byte[] expected = signature(epochSecond, method, parameters, body).getBytes(UTF_8);
+        return MessageDigest.isEqual(expected, header.substring(separator + 1).getBytes(UTF_8));
+    }
+
+    private String signature(long epochSecond, String method, List<String> parameters, byte[] body)
+    {
+        Hasher hasher = hmac.newHasher()
+                .putLong(epochSecond);
+        // length prefixes keep parameters from running into each other
+        putString(hasher, method);
+        hasher.putInt(parameters.size());
+        parameters.forEach(parameter -> putString(hasher, parameter));
+        hasher.putBytes(Hashing.sha256().hashBytes(body).asBytes());
+        return HexFormat.of().formatHex(hasher.hash().asBytes());
+    }
+
+    private static void putString(Hasher hasher, String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        hasher.putInt(bytes.length).putBytes(bytes);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.inject.BindingAnnotation;
+import com.google.inject.Inject;
+import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpClient.HttpResponseFuture;
+import io.airlift.http.client.HttpUriBuilder;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.StatusResponseHandler.StatusResponse;
+import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
+import io.airlift.node.NodeInfo;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.server.cache.CachedObjectMetadata;
+import io.trino.aws.proxy.server.cache.ObjectCacheKey;
+import io.trino.aws.proxy.server.rest.TrinoS3ProxyConfig;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.net.URI;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
+import static io.airlift.http.client.Request.Builder.prepareDelete;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.Request.Builder.preparePut;
+import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
+import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shards cached object metadata across the nodes of a cluster. Each object is owned by one node, chosen on a
+ * {@link ConsistentHashRing}, and only the owner caches it. Other nodes ask the owner before going to S3 and
+ * hand it what they fetched. Failures talking to a peer are never fatal - the request goes to S3 instead.
+ */
+public class PeerCache
+{
+    private static final Logger log = Logger.get(PeerCache.class);
+
+    public static final String METADATA_PATH = "metadata";
+    public static final String BUCKET_PATH = "bucket";
+
+    private static final JsonCodec<PeerMetadata> PEER_METADATA_CODEC = jsonCodec(PeerMetadata.class);
+
+    private final boolean enabled;
+    private final String nodeId;
+    private final List<ClusterPeer> peers;
+    private final Optional<ConsistentHashRing> ring;
+    private final Optional<PeerAuthenticator> authenticator;
+    private final String peerPath;
+    private final HttpClient httpClient;
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat failures = new CounterStat();
+
+    @Retention(RUNTIME)
+    @Target({FIELD, PARAMETER, METHOD})
+    @BindingAnnotation
+    public @interface ForPeerClient {}
+
+    @Inject
+    public PeerCache(ClusterConfig clusterConfig, TrinoS3ProxyConfig trinoS3ProxyConfig, NodeInfo nodeInfo, @ForPeerClient HttpClient httpClient)
+    {
+        this(clusterConfig, trinoS3ProxyConfig.getPeerPath(), nodeInfo.getNodeId(), httpClient, Clock.systemUTC());
+    }
+
+    PeerCache(ClusterConfig clusterConfig, String peerPath, String nodeId, HttpClient httpClient, Clock clock)
+    {
+        enabled = clusterConfig.isEnabled();
+        this.nodeId = requireNonNull(nodeId, "nodeId is null");
+        this.peerPath = requireNonNull(peerPath, "peerPath is null");
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+
+        if (enabled) {
+            List<ClusterPeer> clusterPeers = clusterConfig.getPeers().stream().map(ClusterPeer::parse).collect(toImmutableList());
+            checkArgument(clusterPeers.stream().anyMatch(peer -> peer.nodeId().equals(nodeId)), "s3proxy.cluster.peers does not contain this node: %s", nodeId);
+            peers = clusterPeers.stream().filter(peer -> !peer.nodeId().equals(nodeId)).collect(toImmutableList());
+            ring = Optional.of(ConsistentHashRing.build(clusterPeers, clusterConfig.getVirtualNodes()));
+            authenticator = clusterConfig.getSharedSecret().map(sharedSecret -> new PeerAuthenticator(sharedSecret, clock));
+        }
+        else {
+            peers = ImmutableList.of();
+            ring = Optional.empty();
+            authenticator = Optional.empty();
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * The peer that owns the object, or empty if this node owns it or the cluster is not enabled
+     */
+    public Optional<ClusterPeer> remoteOwner(String bucket, String key)
+    {
+        return ring.map(hashRing -> hashRing.owner(bucket, key))
+                .filter(owner -> !owner.nodeId().equals(nodeId));
+    }
+
+    public Optional<CachedObjectMetadata> fetchMetadata(ClusterPeer owner, ObjectCacheKey key)
+    {
+        Request request = signed(prepareGet().setUri(metadataUri(owner, key)), List.of(METADATA_PATH, key.emulatedAccessKey(), key.bucket(), key.key()), new byte[0]);
+        try {
+            JsonResponse<PeerMetadata> response = httpClient.execute(request, createFullJsonResponseHandler(PEER_METADATA_CODEC));
+            if ((response.getStatusCode() == 200) && response.hasValue()) {
+                hits.update(1);
+                return Optional.of(response.getValue().toCached());
+            }
+            if (response.getStatusCode() != 404) {
+                failed(owner, "fetch metadata", "status " + response.getStatusCode());
+            }
+            else {
+                misses.update(1);
+            }
+        }
+        catch (RuntimeException e) {
+            failed(owner, "fetch metadata", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    public void storeMetadata(ClusterPeer owner, ObjectCacheKey key, CachedObjectMetadata metadata)
+    {
+        byte[] body = PEER_METADATA_CODEC.toJsonBytes(PeerMetadata.fromCached(metadata));
+        Request request = signed(preparePut()
+                        .setUri(metadataUri(owner, key))
+                        .setHeader("Content-Type", "application/json")
+                        .setBodyGenerator(createStaticBodyGenerator(body)),
+                List.of(METADATA_PATH, key.emulatedAccessKey(), key.bucket(), key.key()),
+                body);
+        sendAsync(owner, "store metadata", request);
+    }
+
+    public void invalidate(String bucket, String key)
+    {
+        remoteOwner(bucket, key).ifPresent(owner -> {
+            Request request = signed(prepareDelete().setUri(peerUri(owner, METADATA_PATH).addParameter("bucket", bucket).addParameter("key", key).build()), List.of(METADATA_PATH, bucket, key), new byte[0]);
+            sendAsync(owner, "invalidate", request);
+        });
+    }
+
+    public void invalidateBucket(String bucket)
+    {
+        // objects of a bucket are spread over every node
+        for (ClusterPeer peer : peers) {
+            Request request = signed(prepareDelete().setUri(peerUri(peer, BUCKET_PATH).addParameter("bucket", bucket).build()), List.of(BUCKET_PATH, bucket), new byte[0]);
+            sendAsync(peer, "invalidate bucket", request);
+        }
+    }
+
+    /**
+     * Verify a request received from another node of the cluster
+     */
+    public boolean verify(String signature, String method, List<String> parameters, byte[] body)
+    {
+        return authenticator.map(peerAuthenticator -> peerAuthenticator.verify(signature, method, parameters, body)).orElse(false);
+    }
+
+    @Managed
+    public int getPeers()
+    {
+        return peers.size();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailures()
+    {
+        return failures;
+    }
+
+    private URI metadataUri(ClusterPeer peer, ObjectCacheKey key)
+    {
+        return peerUri(peer, METADATA_PATH)
+                .addParameter("accessKey", key.emulatedAccessKey())
+                .addParameter("bucket", key.bucket())
+                .addParameter("key", key.key())
+                .build();
+    }
+
+    private HttpUriBuilder peerUri(ClusterPeer peer, String path)
+    {
+        return HttpUriBuilder.uriBuilderFrom(peer.uri())
+                .appendPath(peerPath)
+                .appendPath(path);
+    }
+
+    private Request signed(Request.Builder builder, List<String> parameters, byte[] body)
+    {
+        Request unsigned = builder.build();
+        String signature = authenticator.orElseThrow(() -> new IllegalStateException("Cluster is not enabled")).sign(unsigned.getMethod(), parameters, body);
+        return Request.Builder.fromRequest(unsigned)
+                .setHeader(PeerAuthenticator.SIGNATURE_HEADER, signature)
+                .build();
+    }
+
+    private void sendAsync(ClusterPeer peer, String operation, Request request)
+    {
+        HttpResponseFuture<StatusResponse> future = httpClient.executeAsync(request, createStatusResponseHandler());
+        Futures.addCallback(future, new FutureCallback<>()
+        {
+            @Override
+            public void onSuccess(StatusResponse response)
+            {
+                if (response.getStatusCode() >= 300) {
+                    failed(peer, operation, "status " + response.getStatusCode());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                failed(peer, operation, t.getMessage());
+            }
+        }, directExecutor());
+    }
+
+    private void failed(ClusterPeer peer, String operation, String reason)
+    {
+        failures.update(1);
+        log.debug("Could not %s on peer %s: %s", operation, peer.nodeId(), reason);
+    }
+}
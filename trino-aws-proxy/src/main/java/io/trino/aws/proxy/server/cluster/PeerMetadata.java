@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.trino.aws.proxy.server.cache.CachedObjectMetadata;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cached object metadata as exchanged between the nodes of a cluster
+ */
+public record PeerMetadata(int statusCode, Map<String, List<String>> headers)
+{
+    public PeerMetadata
+    {
+        headers = ImmutableMap.copyOf(requireNonNull(headers, "headers is null"));
+    }
+
+    public static PeerMetadata fromCached(CachedObjectMetadata metadata)
+    {
+        ImmutableMap.Builder<String, List<String>> headers = ImmutableMap.builder();
+        metadata.headers().forEach((name, values) -> headers.put(name, ImmutableList.copyOf(values)));
+        return new PeerMetadata(metadata.statusCode(), headers.buildKeepingLast());
+    }
+
+    public CachedObjectMetadata toCached()
+    {
+        return new CachedObjectMetadata(statusCode, ImmutableMultiMap.copyOfCaseInsensitive(headers.entrySet()));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.compression;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.rest.TrinoS3ProxyConfig;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The HTTP server wraps its servlet context in a gzip handler that compresses every response whose client
+ * accepts gzip, object data included, and rewrites the ETag of what it compresses. This filter takes the S3
+ * and STS paths out of that handler when the context starts, leaving proxied responses to {@link ResponseCompressor}.
+ */
+public class GzipHandlerExclusionFilter
+        implements Filter
+{
+    private final List<String> excludedPaths;
+
+    @Inject
+    public GzipHandlerExclusionFilter(TrinoS3ProxyConfig trinoS3ProxyConfig)
+    {
+        excludedPaths = ImmutableList.of(trinoS3ProxyConfig.getS3Path() + "/*", trinoS3ProxyConfig.getStsPath() + "/*");
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig)
+    {
+        // filters are initialized while the context starts, before any request is handled
+        ServletContextHandler contextHandler = ServletContextHandler.getServletContextHandler(filterConfig.getServletContext());
+        GzipHandler gzipHandler = contextHandler.getDescendant(GzipHandler.class);
+        if (gzipHandler != null) {
+            gzipHandler.addExcludedPaths(excludedPaths.toArray(String[]::new));
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException
+    {
+        chain.doFilter(request, response);
+    }
+}
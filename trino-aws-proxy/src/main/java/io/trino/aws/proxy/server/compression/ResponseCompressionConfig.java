@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.compression;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+
+public class ResponseCompressionConfig
+{
+    private boolean enabled = true;
+    private List<String> contentTypes = ImmutableList.of("application/xml", "text/xml", "application/json");
+    private DataSize minSize = DataSize.of(1, KILOBYTE);
+    private int level = 6;
+    private int maxPooledCompressors = 64;
+
+    @Config("s3proxy.response-compression.enabled")
+    @ConfigDescription("Compress XML and JSON responses for clients that accept gzip. Object data is never compressed")
+    public ResponseCompressionConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.response-compression.content-types")
+    @ConfigDescription("Media types of the responses that are compressed")
+    public ResponseCompressionConfig setContentTypes(List<String> contentTypes)
+    {
+        this.contentTypes = ImmutableList.copyOf(contentTypes);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getContentTypes()
+    {
+        return contentTypes;
+    }
+
+    @Config("s3proxy.response-compression.min-size")
+    @ConfigDescription("Responses with a smaller Content-Length are sent uncompressed")
+    public ResponseCompressionConfig setMinSize(DataSize minSize)
+    {
+        this.minSize = minSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMinSize()
+    {
+        return minSize;
+    }
+
+    @Config("s3proxy.response-compression.level")
+    @ConfigDescription("Deflate compression level, from 1 (fastest) to 9 (smallest)")
+    public ResponseCompressionConfig setLevel(int level)
+    {
+        this.level = level;
+        return this;
+    }
+
+    @Min(1)
+    @Max(9)
+    public int getLevel()
+    {
+        return level;
+    }
+
+    @Config("s3proxy.response-compression.max-pooled-compressors")
+    @ConfigDescription("Maximum number of idle compressors kept for reuse")
+    public ResponseCompressionConfig setMaxPooledCompressors(int maxPooledCompressors)
+    {
+        this.maxPooledCompressors = maxPooledCompressors;
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxPooledCompressors()
+    {
+        return maxPooledCompressors;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.compression;
+
+import com.google.common.base.Splitter;
+import com.google.inject.Inject;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Gzip encodes XML and JSON responses while they are streamed to the client. Deflaters hold native memory
+ * that is costly to set up, so idle ones are kept in a bounded pool. The gzip framing is written here rather
+ * than with {@link java.util.zip.GZIPOutputStream}, which always creates its own deflater.
+ */
+public class ResponseCompressor
+{
+    public static final String GZIP = "gzip";
+
+    private static final Splitter CODING_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter PARAMETER_SPLITTER = Splitter.on(';').trimResults();
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final boolean enabled;
+    private final Set<String> contentTypes;
+    private final long minSize;
+    private final int level;
+    private final int maxPooledCompressors;
+    private final BufferPool bufferPool;
+
+    private final Queue<Deflater> pooledCompressors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCompressorCount = new AtomicInteger();
+
+    private final CounterStat compressedResponses = new CounterStat();
+    private final CounterStat uncompressedBytes = new CounterStat();
+    private final CounterStat compressedBytes = new CounterStat();
+
+    @Inject
+    public ResponseCompressor(ResponseCompressionConfig config, BufferPool bufferPool)
+    {
+        enabled = config.isEnabled();
+        contentTypes = config.getContentTypes().stream()
+                .map(contentType -> contentType.toLowerCase(Locale.ROOT))
+                .collect(toImmutableSet());
+        minSize = config.getMinSize().toBytes();
+        level = config.getLevel();
+        maxPooledCompressors = config.getMaxPooledCompressors();
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Whether a response with the given Content-Type and, if known, Content-Length is worth compressing
+     */
+    public boolean isCompressible(Optional<String> contentType, OptionalLong contentLength)
+    {
+        if (contentLength.isPresent() && (contentLength.getAsLong() < minSize)) {
+            return false;
+        }
+        return contentType
+                .map(value -> PARAMETER_SPLITTER.split(value).iterator().next().toLowerCase(Locale.ROOT))
+                .filter(contentTypes::contains)
+                .isPresent();
+    }
+
+    /**
+     * Whether the values of the Accept-Encoding request header allow a gzip encoded response
+     */
+    public static boolean acceptsGzip(List<String> acceptEncoding)
+    {
+        double gzipQuality = -1;
+        double anyQuality = -1;
+        for (String value : acceptEncoding) {
+            for (String coding : CODING_SPLITTER.split(value)) {
+                List<String> parts = PARAMETER_SPLITTER.splitToList(coding);
+                double quality = quality(parts);
+                String name = parts.getFirst().toLowerCase(Locale.ROOT);
+                if (name.equals(GZIP) || name.equals("x-gzip")) {
+                    gzipQuality = Math.max(gzipQuality, quality);
+                }
+                else if (name.equals("*")) {
+                    anyQuality = Math.max(anyQuality, quality);
+                }
+            }
+        }
+        // an explicit gzip entry takes precedence over the wildcard
+        return ((gzipQuality >= 0) ? gzipQuality : anyQuality) > 0;
+    }
+
+    /**
+     * Wrap the given stream so that everything written to it is gzip encoded. Closing the returned stream
+     * completes the encoding and closes the given stream.
+     */
+    public OutputStream compress(OutputStream output)
+    {
+        compressedResponses.update(1);
+        return new GzipOutputStream(output);
+    }
+
+    @Managed
+    public int getPooledCompressors()
+    {
+        return pooledCompressorCount.get();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCompressedResponses()
+    {
+        return compressedResponses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getUncompressedBytes()
+    {
+        return uncompressedBytes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCompressedBytes()
+    {
+        return compressedBytes;
+    }
+
+    private static double quality(List<String> parts)
+    {
+        for (String parameter : parts.subList(1, parts.size())) {
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                }
+                catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private Deflater borrowCompressor()
+    {
+        Deflater deflater = pooledCompressors.poll();
+        if (deflater == null) {
+            return new Deflater(level, true);
+        }
+        pooledCompressorCount.decrementAndGet();
+        return deflater;
+    }
+
+    private void releaseCompressor(Deflater deflater)
+    {
+        deflater.reset();
+        if (pooledCompressorCount.incrementAndGet() > maxPooledCompressors) {
+            pooledCompressorCount.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        pooledCompressors.offer(deflater);
+    }
+
+    private final class GzipOutputStream
+            extends OutputStream
+    {
+        private final OutputStream output;
+        private final Deflater deflater = borrowCompressor();
+        private final byte[] buffer = bufferPool.borrow(BufferPool.TRANSFER_BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private boolean headerWritten;
+        private boolean closed;
+        private long bytesIn;
+        private long bytesOut;
+
+        private GzipOutputStream(OutputStream output)
+        {
+            this.output = requireNonNull(output, "output is null");
+        }
+
+        @Override
+        public void write(int b)
+                throws IOException
+        {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+                throws IOException
+        {
+            checkState(!closed, "stream is closed");
+            if (len == 0) {
+                return;
+            }
+            writeHeader();
+            crc.update(b, off, len);
+            bytesIn += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate(Deflater.NO_FLUSH);
+            }
+        }
+
+        @Override
+        public void flush()
+                throws IOException
+        {
+            if (closed) {
+                return;
+            }
+            if (headerWritten) {
+                // push everything written so far to the client so that streamed responses are not held back
+                int count;
+                do {
+                    count = deflate(Deflater.SYNC_FLUSH);
+                }
+                while (count == buffer.length);
+            }
+            output.flush();
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeHeader();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate(Deflater.NO_FLUSH);
+                }
+                writeTrailer();
+                output.close();
+            }
+            finally {
+                releaseCompressor(deflater);
+                bufferPool.release(buffer);
+                uncompressedBytes.update(bytesIn);
+                compressedBytes.update(bytesOut);
+            }
+        }
+
+        private void writeHeader()
+                throws IOException
+        {
+            if (!headerWritten) {
+                headerWritten = true;
+                output.write(GZIP_HEADER);
+                bytesOut += GZIP_HEADER.length;
+            }
+        }
+
+        private void writeTrailer()
+                throws IOException
+        {
+            byte[] trailer = new byte[8];
+            writeIntLittleEndian(trailer, 0, (int) crc.getValue());
+            // the size is stored modulo 2^32
+            writeIntLittleEndian(trailer, 4, (int) bytesIn);
+            output.write(trailer);
+            bytesOut += trailer.length;
+        }
+
+        private int deflate(int flush)
+                throws IOException
+        {
+            int count = deflater.deflate(buffer, 0, buffer.length, flush);
+            if (count > 0) {
+                output.write(buffer, 0, count);
+                bytesOut += count;
+            }
+            return count;
+        }
+
+        private static void writeIntLittleEndian(byte[] target, int offset, int value)
+        {
+            target[offset] = (byte) value;
+            target[offset + 1] = (byte) (value >>> 8);
+            target[offset + 2] = (byte) (value >>> 16);
+            target[offset + 3] = (byte) (value >>> 24);
+        }
+    }
+}
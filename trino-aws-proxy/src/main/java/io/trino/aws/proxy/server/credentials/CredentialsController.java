@@ -15,6 +15,11 @@ package io.trino.aws.proxy.server.credentials;
 
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.RequestPhase;
 import io.trino.aws.proxy.server.remote.RemoteS3Facade;
 import io.trino.aws.proxy.spi.credentials.Credential;
 import io.trino.aws.proxy.spi.credentials.Credentials;
@@ -34,11 +39,14 @@ import java.io.Closeable;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkState;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.recordFailure;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.startSpan;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 
@@ -48,6 +56,8 @@ public class CredentialsController
 
     private final RemoteS3Facade remoteS3Facade;
     private final CredentialsProvider credentialsProvider;
+    private final ProxyMetrics proxyMetrics;
+    private final Tracer tracer;
     private final Map<String, Session> remoteSessions = new ConcurrentHashMap<>();
 
     private final class Session
@@ -120,10 +130,12 @@ public class CredentialsController
     }
 
     @Inject
-    public CredentialsController(RemoteS3Facade remoteS3Facade, CredentialsProvider credentialsProvider)
+    public CredentialsController(RemoteS3Facade remoteS3Facade, CredentialsProvider credentialsProvider, ProxyMetrics proxyMetrics, Tracer tracer)
     {
         this.remoteS3Facade = requireNonNull(remoteS3Facade, "remoteS3Facade is null");
         this.credentialsProvider = requireNonNull(credentialsProvider, "credentialsProvider is null");
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+        this.tracer = requireNonNull(tracer, "tracer is null");
     }
 
     @PreDestroy
@@ -133,9 +145,24 @@ public class CredentialsController
     }
 
     @SuppressWarnings("resource")
-    public <T> Optional<T> withCredentials(String emulatedAccessKey, Optional<String> emulatedSessionToken, Function<Credentials, Optional<T>> credentialsConsumer)
+    public <T> Optional<T> withCredentials(UUID requestId, String emulatedAccessKey, Optional<String> emulatedSessionToken, Function<Credentials, Optional<T>> credentialsConsumer)
     {
-        Optional<T> result = credentialsProvider.credentials(emulatedAccessKey, emulatedSessionToken)
+        long lookupStart = System.nanoTime();
+        Optional<Credentials> emulatedCredentials;
+        Span span = startSpan(tracer, RequestPhase.CREDENTIALS_LOOKUP.phaseName(), requestId);
+        try (Scope _ = span.makeCurrent()) {
+            emulatedCredentials = credentialsProvider.credentials(emulatedAccessKey, emulatedSessionToken);
+        }
+        catch (RuntimeException e) {
+            recordFailure(span, e);
+            throw e;
+        }
+        finally {
+            span.end();
+            proxyMetrics.recordPhase(requestId, RequestPhase.CREDENTIALS_LOOKUP, lookupStart);
+        }
+
+        Optional<T> result = emulatedCredentials
                 .flatMap(credentials -> credentials.remoteSessionRole()
                         .flatMap(remoteSessionRole -> internalRemoteSession(remoteSessionRole, credentials).withUsage(credentials, credentialsConsumer))
                         .or(() -> credentialsConsumer.apply(credentials)));
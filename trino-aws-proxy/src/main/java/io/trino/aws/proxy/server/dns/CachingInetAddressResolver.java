@@ -0,0 +1,232 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.dns;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.Duration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Caches every address of a name. Until spreading is enabled, names are cached for a fixed TTL and lookups
+ * return addresses in the order of the answer. Once enabled, names are refreshed in
+ * the background instead of expiring, each lookup starts at the next address so that new connections are
+ * spread over all of them, and addresses that refused connections are moved to the end until their
+ * eviction ends. Lookups never block on the name service once a name is cached.
+ */
+public final class CachingInetAddressResolver
+        implements InetAddressResolver
+{
+    private final InetAddressResolver delegate;
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Spreading spreading;
+
+    private record Key(String host, int characteristics) {}
+
+    private record Spreading(long expireAfterAccessNanos, long evictionNanos) {}
+
+    public CachingInetAddressResolver(InetAddressResolver delegate, Duration ttl, Ticker ticker)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        ttlNanos = ttl.roundTo(NANOSECONDS);
+        this.ticker = requireNonNull(ticker, "ticker is null");
+    }
+
+    public void enableSpreading(Duration expireAfterAccess, Duration evictionTime)
+    {
+        spreading = new Spreading(expireAfterAccess.roundTo(NANOSECONDS), evictionTime.roundTo(NANOSECONDS));
+    }
+
+    public void disableSpreading()
+    {
+        spreading = null;
+    }
+
+    public boolean isSpreading()
+    {
+        return spreading != null;
+    }
+
+    @Override
+    public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy)
+            throws UnknownHostException
+    {
+        Spreading spreading = this.spreading;
+        long now = ticker.read();
+        Key key = new Key(host, lookupPolicy.characteristics());
+        Entry entry = entries.get(key);
+        if ((entry == null) || ((spreading == null) && isExpired(entry, now))) {
+            entry = new Entry(lookupPolicy, resolve(host, lookupPolicy), now);
+            entries.put(key, entry);
+            if (spreading == null) {
+                // names are only pruned by refresh while spreading
+                entries.values().removeIf(cached -> isExpired(cached, now));
+            }
+        }
+        entry.lastAccess = now;
+        if (spreading == null) {
+            return Arrays.stream(entry.addresses);
+        }
+        return entry.spread(now).stream();
+    }
+
+    @Override
+    public String lookupByAddress(byte[] address)
+            throws UnknownHostException
+    {
+        return delegate.lookupByAddress(address);
+    }
+
+    /**
+     * Resolve every cached name again, dropping names that have not been looked up recently. Names that
+     * fail to resolve keep their previous addresses.
+     *
+     * @return the number of names that failed to resolve
+     */
+    public int refresh()
+    {
+        Spreading spreading = this.spreading;
+        if (spreading == null) {
+            return 0;
+        }
+        long now = ticker.read();
+        int failures = 0;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> mapEntry = iterator.next();
+            Entry entry = mapEntry.getValue();
+            if (now - entry.lastAccess > spreading.expireAfterAccessNanos()) {
+                iterator.remove();
+                continue;
+            }
+            try {
+                entry.update(resolve(mapEntry.getKey().host(), entry.lookupPolicy), now);
+            }
+            catch (UnknownHostException e) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Move the address to the end of the lookups of the name until the eviction time passes
+     */
+    public void evict(String host, InetAddress address)
+    {
+        Spreading spreading = this.spreading;
+        if (spreading == null) {
+            return;
+        }
+        long until = ticker.read() + spreading.evictionNanos();
+        entries.forEach((key, entry) -> {
+            if (key.host().equals(host)) {
+                entry.evictedUntil.put(address, until);
+            }
+        });
+    }
+
+    /**
+     * The cached addresses of the name, for all lookup policies
+     */
+    public Set<InetAddress> addresses(String host)
+    {
+        ImmutableSet.Builder<InetAddress> addresses = ImmutableSet.builder();
+        entries.forEach((key, entry) -> {
+            if (key.host().equals(host)) {
+                addresses.add(entry.addresses);
+            }
+        });
+        return addresses.build();
+    }
+
+    private boolean isExpired(Entry entry, long now)
+    {
+        return now - entry.resolvedAt >= ttlNanos;
+    }
+
+    private InetAddress[] resolve(String host, LookupPolicy lookupPolicy)
+            throws UnknownHostException
+    {
+        InetAddress[] addresses = delegate.lookupByName(host, lookupPolicy).toArray(InetAddress[]::new);
+        if (addresses.length == 0) {
+            throw new UnknownHostException(host);
+        }
+        return addresses;
+    }
+
+    private static final class Entry
+    {
+        private final LookupPolicy lookupPolicy;
+        private final AtomicInteger next = new AtomicInteger();
+        private final Map<InetAddress, Long> evictedUntil = new ConcurrentHashMap<>();
+        private volatile InetAddress[] addresses;
+        private volatile long resolvedAt;
+        private volatile long lastAccess;
+
+        private Entry(LookupPolicy lookupPolicy, InetAddress[] addresses, long now)
+        {
+            this.lookupPolicy = lookupPolicy;
+            this.addresses = addresses;
+            this.resolvedAt = now;
+            this.lastAccess = now;
+        }
+
+        private void update(InetAddress[] addresses, long now)
+        {
+            this.addresses = addresses;
+            this.resolvedAt = now;
+            evictedUntil.entrySet().removeIf(eviction -> (now - eviction.getValue() >= 0) || !Arrays.asList(addresses).contains(eviction.getKey()));
+        }
+
+        private List<InetAddress> spread(long now)
+        {
+            InetAddress[] current = addresses;
+            int start = Math.floorMod(next.getAndIncrement(), current.length);
+            List<InetAddress> available = new ArrayList<>(current.length);
+            List<InetAddress> evicted = new ArrayList<>(0);
+            for (int i = 0; i < current.length; i++) {
+                InetAddress address = current[(start + i) % current.length];
+                Long until = evictedUntil.isEmpty() ? null : evictedUntil.get(address);
+                if ((until != null) && (now - until < 0)) {
+                    evicted.add(address);
+                }
+                else {
+                    available.add(address);
+                }
+            }
+            // evicted addresses are tried last rather than left out, so that a lookup is never empty
+            available.addAll(evicted);
+            return available;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.dns;
+
+import com.google.common.base.Ticker;
+import io.airlift.units.Duration;
+
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolverProvider;
+import java.security.Security;
+import java.util.Optional;
+
+/**
+ * Installs {@link CachingInetAddressResolver} as the resolver of the JVM when the DNS cache is enabled, and the
+ * built-in resolver otherwise. The JDK loads the provider on the first name lookup, which is why the DNS cache must
+ * be {@link #install(DnsCacheConfig) installed} before any name is resolved, and why the resolver is reached
+ * through {@link #resolver()} rather than injected.
+ */
+public class CachingInetAddressResolverProvider
+        extends InetAddressResolverProvider
+{
+    private static volatile Duration ttl;
+    private static volatile CachingInetAddressResolver resolver;
+
+    /**
+     * Resolve names with {@link CachingInetAddressResolver} if the DNS cache is enabled. Has no effect once the JDK has loaded the provider.
+     */
+    public static void install(DnsCacheConfig dnsCacheConfig)
+    {
+        if (!dnsCacheConfig.isEnabled()) {
+            return;
+        }
+        // a JVM cache in front of the resolver would pin connections to one address
+        if (Security.getProperty("networkaddress.cache.ttl") == null) {
+            Security.setProperty("networkaddress.cache.ttl", "0");
+        }
+        ttl = dnsCacheConfig.getTtl();
+    }
+
+    @Override
+    public InetAddressResolver get(Configuration configuration)
+    {
+        Duration ttl = CachingInetAddressResolverProvider.ttl;
+        if (ttl == null) {
+            return configuration.builtinResolver();
+        }
+        CachingInetAddressResolver cachingResolver = new CachingInetAddressResolver(configuration.builtinResolver(), ttl, Ticker.systemTicker());
+        resolver = cachingResolver;
+        return cachingResolver;
+    }
+
+    @Override
+    public String name()
+    {
+        return "s3proxy-caching-resolver";
+    }
+
+    /**
+     * The resolver of the JVM, empty if the JDK has not loaded this provider
+     */
+    public static Optional<CachingInetAddressResolver> resolver()
+    {
+        return Optional.ofNullable(resolver);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.dns;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.net.InetAddresses;
+import com.google.common.primitives.Ints;
+import com.google.inject.Inject;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.RequestStats;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Drives the {@link CachingInetAddressResolver} of the JVM: enables spreading, refreshes names in the
+ * background, and finds the addresses to evict when connecting to a name fails. Jetty tries the addresses
+ * of a name in order and only reports a failure once none of them accepted the connection, so after a
+ * connect error each address of the name is probed and the ones that refuse connections are evicted.
+ */
+public class DnsCache
+{
+    private static final Logger log = Logger.get(DnsCache.class);
+
+    private final DnsCacheConfig config;
+    private final Optional<CachingInetAddressResolver> resolver;
+    private final Set<String> probingHosts = ConcurrentHashMap.newKeySet();
+    private final ExecutorService probeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CounterStat refreshFailures = new CounterStat();
+    private final CounterStat connectFailures = new CounterStat();
+    private final CounterStat evictions = new CounterStat();
+    private ScheduledExecutorService refreshExecutor;
+
+    @Inject
+    public DnsCache(DnsCacheConfig config)
+    {
+        this(config, config.isEnabled() ? installedResolver() : Optional.empty());
+    }
+
+    @VisibleForTesting
+    DnsCache(DnsCacheConfig config, Optional<CachingInetAddressResolver> resolver)
+    {
+        this.config = requireNonNull(config, "config is null");
+        this.resolver = requireNonNull(resolver, "resolver is null");
+    }
+
+    @PostConstruct
+    public synchronized void start()
+    {
+        resolver.ifPresent(cachingResolver -> {
+            cachingResolver.enableSpreading(config.getExpireAfterAccess(), config.getEvictionTime());
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("s3proxy-dns-refresh").factory());
+            long interval = config.getRefreshInterval().toMillis();
+            refreshExecutor.scheduleWithFixedDelay(this::refresh, interval, interval, MILLISECONDS);
+        });
+    }
+
+    @PreDestroy
+    public synchronized void stop()
+    {
+        resolver.ifPresent(CachingInetAddressResolver::disableSpreading);
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * Wrap the client so that its connect errors lead to probing the addresses of the remote name
+     */
+    public HttpClient monitor(HttpClient httpClient)
+    {
+        return resolver.isPresent() ? new ConnectFailureReportingHttpClient(httpClient) : httpClient;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRefreshFailures()
+    {
+        return refreshFailures;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getConnectFailures()
+    {
+        return connectFailures;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getEvictions()
+    {
+        return evictions;
+    }
+
+    @VisibleForTesting
+    void reportConnectFailure(URI uri)
+    {
+        String host = uri.getHost();
+        // evictions only take effect while spreading
+        if ((host == null) || InetAddresses.isUriInetAddress(host) || resolver.isEmpty() || !resolver.get().isSpreading()) {
+            return;
+        }
+        connectFailures.update(1);
+        // a single probe of a name at a time, however many requests fail meanwhile
+        if (!probingHosts.add(host)) {
+            return;
+        }
+        int port = (uri.getPort() >= 0) ? uri.getPort() : (uri.getScheme().equals("https") ? 443 : 80);
+        probeExecutor.execute(() -> {
+            try {
+                probe(host, port);
+            }
+            finally {
+                probingHosts.remove(host);
+            }
+        });
+    }
+
+    private void probe(String host, int port)
+    {
+        CachingInetAddressResolver cachingResolver = resolver.orElseThrow();
+        int timeout = Ints.saturatedCast(config.getConnectProbeTimeout().toMillis());
+        for (InetAddress address : cachingResolver.addresses(host)) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(address, port), timeout);
+            }
+            catch (IOException e) {
+                log.info("Evicting address %s of %s after failed connection: %s", address.getHostAddress(), host, e.getMessage());
+                cachingResolver.evict(host, address);
+                evictions.update(1);
+            }
+        }
+    }
+
+    private void refresh()
+    {
+        try {
+            refreshFailures.update(resolver.orElseThrow().refresh());
+        }
+        catch (Throwable e) {
+            log.error(e, "DNS cache refresh failed");
+        }
+    }
+
+    private static Optional<CachingInetAddressResolver> installedResolver()
+    {
+        try {
+            // the JDK loads resolver providers on the first lookup
+            InetAddress.getAllByName("localhost");
+        }
+        catch (UnknownHostException _) {
+            // only needed to load the provider
+        }
+        Optional<CachingInetAddressResolver> resolver = CachingInetAddressResolverProvider.resolver();
+        if (resolver.isEmpty()) {
+            log.warn("DNS cache is enabled but %s was not installed before the first name lookup, names are resolved by the JVM", CachingInetAddressResolverProvider.class.getSimpleName());
+        }
+        return resolver;
+    }
+
+    private static boolean isConnectFailure(Throwable throwable)
+    {
+        return Throwables.getCausalChain(throwable).stream().anyMatch(cause ->
+                (cause instanceof ConnectException) ||
+                        (cause instanceof NoRouteToHostException) ||
+                        ((cause instanceof SocketTimeoutException) && String.valueOf(cause.getMessage()).startsWith("Connect")));
+    }
+
+    private final class ConnectFailureReportingHttpClient
+            implements HttpClient
+    {
+        private final HttpClient delegate;
+
+        private ConnectFailureReportingHttpClient(HttpClient delegate)
+        {
+            this.delegate = requireNonNull(delegate, "delegate is null");
+        }
+
+        @Override
+        public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
+                throws E
+        {
+            return delegate.execute(request, new ReportingResponseHandler<>(responseHandler));
+        }
+
+        @Override
+        public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+        {
+            return delegate.executeAsync(request, new ReportingResponseHandler<>(responseHandler));
+        }
+
+        @Override
+        public RequestStats getStats()
+        {
+            return delegate.getStats();
+        }
+
+        @Override
+        public long getMaxContentLength()
+        {
+            return delegate.getMaxContentLength();
+        }
+
+        @Override
+        public void close()
+        {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return delegate.isClosed();
+        }
+    }
+
+    private final class ReportingResponseHandler<T, E extends Exception>
+            implements ResponseHandler<T, E>
+    {
+        private final ResponseHandler<T, E> delegate;
+
+        private ReportingResponseHandler(ResponseHandler<T, E> delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T handleException(Request request, Exception exception)
+                throws E
+        {
+            if (isConnectFailure(exception)) {
+                reportConnectFailure(request.getUri());
+            }
+            return delegate.handleException(request, exception);
+        }
+
+        @Override
+        public T handle(Request request, Response response)
+                throws E
+        {
+            return delegate.handle(request, response);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.dns;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class DnsCacheConfig
+{
+    private boolean enabled;
+    private Duration ttl = new Duration(30, SECONDS);
+    private Duration refreshInterval = new Duration(5, SECONDS);
+    private Duration expireAfterAccess = new Duration(10, MINUTES);
+    private Duration evictionTime = new Duration(1, MINUTES);
+    private Duration connectProbeTimeout = new Duration(1, SECONDS);
+
+    @Config("s3proxy.dns-cache.enabled")
+    @ConfigDescription("Refresh resolved names in the background and spread new connections over all of their addresses")
+    public DnsCacheConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.dns-cache.ttl")
+    @ConfigDescription("How long names are cached while they are not refreshed in the background, such as during startup")
+    public DnsCacheConfig setTtl(Duration ttl)
+    {
+        this.ttl = ttl;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getTtl()
+    {
+        return ttl;
+    }
+
+    @Config("s3proxy.dns-cache.refresh-interval")
+    @ConfigDescription("How often cached names are resolved again")
+    public DnsCacheConfig setRefreshInterval(Duration refreshInterval)
+    {
+        this.refreshInterval = refreshInterval;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("100ms")
+    public Duration getRefreshInterval()
+    {
+        return refreshInterval;
+    }
+
+    @Config("s3proxy.dns-cache.expire-after-access")
+    @ConfigDescription("Names that are not looked up for this long are no longer refreshed")
+    public DnsCacheConfig setExpireAfterAccess(Duration expireAfterAccess)
+    {
+        this.expireAfterAccess = expireAfterAccess;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getExpireAfterAccess()
+    {
+        return expireAfterAccess;
+    }
+
+    @Config("s3proxy.dns-cache.eviction-time")
+    @ConfigDescription("How long an address that refused connections is left out of lookups")
+    public DnsCacheConfig setEvictionTime(Duration evictionTime)
+    {
+        this.evictionTime = evictionTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getEvictionTime()
+    {
+        return evictionTime;
+    }
+
+    @Config("s3proxy.dns-cache.connect-probe-timeout")
+    @ConfigDescription("Timeout of the connections used to find the failing addresses of a name after a connect error")
+    public DnsCacheConfig setConnectProbeTimeout(Duration connectProbeTimeout)
+    {
+        this.connectProbeTimeout = connectProbeTimeout;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getConnectProbeTimeout()
+    {
+        return connectProbeTimeout;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.drain;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class DrainConfig
+{
+    private Duration deadline = new Duration(5, MINUTES);
+    private Duration gracePeriod = new Duration(0, SECONDS);
+
+    @Config("s3proxy.drain.deadline")
+    @ConfigDescription("How long a drain waits for in-flight requests to finish before shutdown goes ahead")
+    public DrainConfig setDeadline(Duration deadline)
+    {
+        this.deadline = deadline;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getDeadline()
+    {
+        return deadline;
+    }
+
+    @Config("s3proxy.drain.grace-period")
+    @ConfigDescription("How long new requests are still accepted after readiness fails, so that load balancers can stop routing to the proxy first")
+    public DrainConfig setGracePeriod(Duration gracePeriod)
+    {
+        this.gracePeriod = gracePeriod;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getGracePeriod()
+    {
+        return gracePeriod;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.drain;
+
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkState;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_XML;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Takes the proxy out of service without cutting off transfers. Once a drain starts, readiness fails; after the
+ * grace period new S3 and STS requests are turned away with a 503 SlowDown, which clients retry against another
+ * proxy, while requests already in flight run to completion or until the drain deadline.
+ */
+public class DrainController
+{
+    private static final Logger log = Logger.get(DrainController.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final String SLOW_DOWN_ERROR = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Error><Code>SlowDown</Code><Message>The proxy is shutting down, please retry.</Message></Error>""";
+
+    public enum State
+    {
+        ACTIVE,
+        DRAINING,
+        DRAINED
+    }
+
+    private final ProxyMetrics proxyMetrics;
+    private final long deadlineNanos;
+    private final long gracePeriodNanos;
+    private final CounterStat rejectedRequests = new CounterStat();
+
+    // replaced as a whole so that the per-request checks read it without locking
+    private final AtomicReference<Drain> drain = new AtomicReference<>(Drain.NONE);
+
+    @Inject
+    public DrainController(DrainConfig config, ProxyMetrics proxyMetrics)
+    {
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+        deadlineNanos = config.getDeadline().roundTo(NANOSECONDS);
+        gracePeriodNanos = config.getGracePeriod().roundTo(NANOSECONDS);
+    }
+
+    /**
+     * Whether load balancers should send requests to this proxy
+     */
+    public boolean isReady()
+    {
+        return drain.get().state() == State.ACTIVE;
+    }
+
+    /**
+     * Whether new S3 and STS requests are served
+     */
+    public boolean isAccepting()
+    {
+        Drain current = drain.get();
+        return switch (current.state()) {
+            case ACTIVE -> true;
+            case DRAINING -> System.nanoTime() - current.startNanos() < gracePeriodNanos;
+            case DRAINED -> false;
+        };
+    }
+
+    /**
+     * Count a request that is turned away and return the error to fail it with
+     */
+    public WebApplicationException rejectRequest()
+    {
+        rejectedRequests.update(1);
+        return new WebApplicationException(Response.status(SERVICE_UNAVAILABLE)
+                .type(APPLICATION_XML)
+                .entity(SLOW_DOWN_ERROR)
+                .build());
+    }
+
+    public DrainStatus startDrain()
+    {
+        Drain current = drain.get();
+        if ((current.state() == State.ACTIVE) && drain.compareAndSet(current, new Drain(State.DRAINING, System.nanoTime(), Optional.of(Instant.now()), false))) {
+            log.info("Draining, %s requests in flight", proxyMetrics.getInFlightRequests());
+        }
+        return getStatus();
+    }
+
+    /**
+     * Return to service, unless the drain has already finished or the proxy is shutting down
+     */
+    public DrainStatus cancelDrain()
+    {
+        Drain current = drain.get();
+        if ((current.state() == State.DRAINING) && !current.shutdown() && drain.compareAndSet(current, Drain.NONE)) {
+            log.info("Drain cancelled");
+        }
+        return getStatus();
+    }
+
+    /**
+     * Start a drain if none is running, which can then no longer be cancelled, and wait until the grace period
+     * is over and no requests are in flight, or until the deadline passes
+     *
+     * @return whether all requests finished
+     */
+    public boolean awaitDrained()
+    {
+        Drain shutdownDrain = startShutdownDrain();
+        if (shutdownDrain.state() == State.DRAINED) {
+            return proxyMetrics.getInFlightRequests() == 0;
+        }
+
+        long elapsedNanos = System.nanoTime() - shutdownDrain.startNanos();
+        long remainingNanos = deadlineNanos - elapsedNanos;
+        try {
+            // load balancers keep sending requests until they have seen readiness fail, even to an idle proxy
+            long graceNanos = Math.min(remainingNanos, gracePeriodNanos - elapsedNanos);
+            if (graceNanos > 0) {
+                NANOSECONDS.sleep(graceNanos);
+                remainingNanos -= graceNanos;
+            }
+            while ((proxyMetrics.getInFlightRequests() > 0) && (remainingNanos > 0)) {
+                long sleepNanos = Math.min(remainingNanos, MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS));
+                NANOSECONDS.sleep(sleepNanos);
+                remainingNanos -= sleepNanos;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // a shutdown drain is not cancelled or restarted, so it is still the current one
+        checkState(drain.compareAndSet(shutdownDrain, new Drain(State.DRAINED, shutdownDrain.startNanos(), shutdownDrain.started(), true)), "Shutdown drain was replaced");
+        return proxyMetrics.getInFlightRequests() == 0;
+    }
+
+    /**
+     * Start a drain, or take over the one that is running, so that it can no longer be cancelled
+     */
+    private Drain startShutdownDrain()
+    {
+        while (true) {
+            Drain current = drain.get();
+            Drain next = switch (current.state()) {
+                case ACTIVE -> new Drain(State.DRAINING, System.nanoTime(), Optional.of(Instant.now()), true);
+                case DRAINING -> new Drain(State.DRAINING, current.startNanos(), current.started(), true);
+                case DRAINED -> current;
+            };
+            if ((next == current) || drain.compareAndSet(current, next)) {
+                if (current.state() == State.ACTIVE) {
+                    log.info("Draining for shutdown, %s requests in flight", proxyMetrics.getInFlightRequests());
+                }
+                return next;
+            }
+        }
+    }
+
+    public DrainStatus getStatus()
+    {
+        Drain current = drain.get();
+        return new DrainStatus(
+                current.state(),
+                proxyMetrics.getInFlightRequests(),
+                rejectedRequests.getTotalCount(),
+                current.started(),
+                current.started().map(instant -> instant.plusNanos(deadlineNanos)));
+    }
+
+    @Managed
+    public boolean isDraining()
+    {
+        return drain.get().state() != State.ACTIVE;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejectedRequests()
+    {
+        return rejectedRequests;
+    }
+
+    /**
+     * @param shutdown whether the drain was started or taken over by the shutdown of the proxy
+     */
+    private record Drain(State state, long startNanos, Optional<Instant> started, boolean shutdown)
+    {
+        static final Drain NONE = new Drain(State.ACTIVE, 0, Optional.empty(), false);
+
+        Drain
+        {
+            requireNonNull(state, "state is null");
+            requireNonNull(started, "started is null");
+        }
+    }
+}
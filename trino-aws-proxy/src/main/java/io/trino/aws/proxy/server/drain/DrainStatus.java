@@ -0,0 +1,32 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.drain;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Progress of a drain, as reported by the drain resource
+ */
+public record DrainStatus(DrainController.State state, long inFlightRequests, long rejectedRequests, Optional<Instant> started, Optional<Instant> deadline)
+{
+    public DrainStatus
+    {
+        requireNonNull(state, "state is null");
+        requireNonNull(started, "started is null");
+        requireNonNull(deadline, "deadline is null");
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.drain;
+
+import com.google.inject.Inject;
+import io.airlift.http.server.HttpServer;
+import io.airlift.log.Logger;
+import jakarta.annotation.PreDestroy;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Drains the proxy when it shuts down. Depending on the {@link HttpServer} makes the lifecycle manager stop this
+ * before the server, so in-flight transfers can finish while the server still serves them.
+ */
+public class ShutdownDrainer
+{
+    private static final Logger log = Logger.get(ShutdownDrainer.class);
+
+    private final DrainController drainController;
+
+    @Inject
+    public ShutdownDrainer(DrainController drainController, HttpServer httpServer)
+    {
+        this.drainController = requireNonNull(drainController, "drainController is null");
+        requireNonNull(httpServer, "httpServer is null");
+    }
+
+    @PreDestroy
+    public void drain()
+    {
+        if (!drainController.awaitDrained()) {
+            log.warn("Shutting down with %s requests still in flight", drainController.getStatus().inFlightRequests());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import org.weakref.jmx.Managed;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, allocation-free latency histogram with fixed bucket boundaries. Recording a value is a binary search
+ * of the boundaries and two {@link LongAdder} increments, so it is safe to use on the request hot path.
+ * Quantiles are estimated as the upper boundary of the bucket that contains them.
+ */
+public class LatencyHistogram
+{
+    // upper bounds of the buckets, the last bucket has no upper bound
+    private static final double[] BUCKET_BOUNDS_SECONDS = {
+            0.0001, 0.00025, 0.0005,
+            0.001, 0.0025, 0.005,
+            0.01, 0.025, 0.05,
+            0.1, 0.25, 0.5,
+            1, 2.5, 5,
+            10, 30, 60};
+    private static final long[] BUCKET_BOUNDS_NANOS = Arrays.stream(BUCKET_BOUNDS_SECONDS)
+            .mapToLong(seconds -> (long) (seconds * TimeUnit.SECONDS.toNanos(1)))
+            .toArray();
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram()
+    {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void addNanos(long nanos)
+    {
+        long value = Math.max(nanos, 0);
+        int index = Arrays.binarySearch(BUCKET_BOUNDS_NANOS, value);
+        // a value equal to a bound belongs to that bucket, otherwise the insertion point is the first larger bound
+        buckets[(index >= 0) ? index : (-index - 1)].increment();
+        sumNanos.add(value);
+    }
+
+    /**
+     * Record the time since {@code startNanos}, a value previously returned by {@link System#nanoTime()}
+     */
+    public void addSince(long startNanos)
+    {
+        addNanos(System.nanoTime() - startNanos);
+    }
+
+    @Managed
+    public long getCount()
+    {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    @Managed
+    public double getAvgMillis()
+    {
+        long count = getCount();
+        return (count == 0) ? Double.NaN : (sumNanos.sum() / (double) count) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Managed
+    public double getP50Millis()
+    {
+        return quantileMillis(0.5);
+    }
+
+    @Managed
+    public double getP90Millis()
+    {
+        return quantileMillis(0.9);
+    }
+
+    @Managed
+    public double getP99Millis()
+    {
+        return quantileMillis(0.99);
+    }
+
+    public double getSumSeconds()
+    {
+        return sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Upper bounds of the buckets in seconds, excluding the last bucket which has no upper bound
+     */
+    public static double[] bucketBoundsSeconds()
+    {
+        return BUCKET_BOUNDS_SECONDS.clone();
+    }
+
+    /**
+     * Non-cumulative bucket counts, one more than the number of bounds
+     */
+    public long[] bucketCounts()
+    {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    private double quantileMillis(double quantile)
+    {
+        long[] counts = bucketCounts();
+        long total = Arrays.stream(counts).sum();
+        if (total == 0) {
+            return Double.NaN;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                // values in the last bucket are reported as its lower bound
+                long bound = BUCKET_BOUNDS_NANOS[Math.min(i, BUCKET_BOUNDS_NANOS.length - 1)];
+                return bound / (double) TimeUnit.MILLISECONDS.toNanos(1);
+            }
+        }
+        throw new IllegalStateException("unreachable");
+    }
+}
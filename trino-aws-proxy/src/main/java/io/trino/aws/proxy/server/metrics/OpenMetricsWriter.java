@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.ActionKey;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes {@link ProxyMetrics} in the OpenMetrics text format. The per-bucket series are written separately, as
+ * bucket names are client data that an unauthenticated scrape must not see.
+ */
+public final class OpenMetricsWriter
+{
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final double[] BUCKET_BOUNDS = LatencyHistogram.bucketBoundsSeconds();
+    private static final List<String> STATUS_CLASSES = List.of("1xx", "2xx", "3xx", "4xx", "5xx");
+
+    private final Writer writer;
+
+    private OpenMetricsWriter(Writer writer)
+    {
+        this.writer = writer;
+    }
+
+    public static void write(ProxyMetrics metrics, Writer writer)
+            throws IOException
+    {
+        new OpenMetricsWriter(writer).writeMetrics(metrics);
+    }
+
+    public static void writeBuckets(ProxyMetrics metrics, Writer writer)
+            throws IOException
+    {
+        new OpenMetricsWriter(writer).writeBucketMetrics(metrics);
+    }
+
+    private void writeMetrics(ProxyMetrics metrics)
+            throws IOException
+    {
+        Map<ActionKey, RequestStats> actionStats = metrics.getActionStats();
+        Function<ActionKey, String> actionLabels = key -> labels("service", key.service(), "verb", key.httpVerb(), "action", key.action());
+
+        header("s3proxy_requests", "counter", "Requests handled by the proxy");
+        counters("s3proxy_requests_total", actionStats, actionLabels, RequestStats::getRequests);
+        header("s3proxy_responses", "counter", "Responses by status class");
+        for (Map.Entry<ActionKey, RequestStats> entry : actionStats.entrySet()) {
+            for (int statusClass = 1; statusClass <= STATUS_CLASSES.size(); statusClass++) {
+                String labels = actionLabels.apply(entry.getKey());
+                sample("s3proxy_responses_total", withLabel(labels, "status_class", STATUS_CLASSES.get(statusClass - 1)), entry.getValue().getResponses(statusClass));
+            }
+        }
+        header("s3proxy_request_duration_seconds", "histogram", "Time from receiving a request until its response has been written");
+        for (Map.Entry<ActionKey, RequestStats> entry : actionStats.entrySet()) {
+            histogram("s3proxy_request_duration_seconds", actionLabels.apply(entry.getKey()), entry.getValue().getLatency());
+        }
+        header("s3proxy_request_bytes", "counter", "Request body bytes received from clients");
+        counters("s3proxy_request_bytes_total", actionStats, actionLabels, RequestStats::getBytesIn);
+        header("s3proxy_response_bytes", "counter", "Response body bytes sent to clients");
+        counters("s3proxy_response_bytes_total", actionStats, actionLabels, RequestStats::getBytesOut);
+
+        header("s3proxy_in_flight_requests", "gauge", "Requests currently being handled");
+        sample("s3proxy_in_flight_requests", "", metrics.getInFlightRequests());
+
+        header("s3proxy_request_phase_duration_seconds", "histogram", "Time spent in each phase of handling requests");
+        for (RequestPhase phase : RequestPhase.values()) {
+            histogram("s3proxy_request_phase_duration_seconds", labels("phase", phase.phaseName()), metrics.getPhaseLatency(phase));
+        }
+
+        header("s3proxy_upstream_responses", "counter", "Remote responses by status code");
+        for (Map.Entry<Integer, Long> entry : metrics.getUpstreamStatusCodes().entrySet()) {
+            sample("s3proxy_upstream_responses_total", labels("status", entry.getKey().toString()), entry.getValue());
+        }
+        header("s3proxy_upstream_failures", "counter", "Remote requests that failed without a response");
+        sample("s3proxy_upstream_failures_total", "", metrics.getUpstreamFailures());
+
+        writer.write("# EOF\n");
+    }
+
+    private void writeBucketMetrics(ProxyMetrics metrics)
+            throws IOException
+    {
+        Map<String, RequestStats> bucketStats = metrics.getBucketStats();
+        Function<String, String> bucketLabels = bucket -> labels("bucket", bucket);
+
+        header("s3proxy_bucket_requests", "counter", "Requests by bucket");
+        counters("s3proxy_bucket_requests_total", bucketStats, bucketLabels, RequestStats::getRequests);
+        header("s3proxy_bucket_request_duration_seconds", "histogram", "Request duration by bucket");
+        for (Map.Entry<String, RequestStats> entry : bucketStats.entrySet()) {
+            histogram("s3proxy_bucket_request_duration_seconds", bucketLabels.apply(entry.getKey()), entry.getValue().getLatency());
+        }
+        header("s3proxy_bucket_request_bytes", "counter", "Request body bytes by bucket");
+        counters("s3proxy_bucket_request_bytes_total", bucketStats, bucketLabels, RequestStats::getBytesIn);
+        header("s3proxy_bucket_response_bytes", "counter", "Response body bytes by bucket");
+        counters("s3proxy_bucket_response_bytes_total", bucketStats, bucketLabels, RequestStats::getBytesOut);
+
+        writer.write("# EOF\n");
+    }
+
+    private <K> void counters(String name, Map<K, RequestStats> stats, Function<K, String> labels, ToLongFunction<RequestStats> value)
+            throws IOException
+    {
+        for (Map.Entry<K, RequestStats> entry : stats.entrySet()) {
+            sample(name, labels.apply(entry.getKey()), value.applyAsLong(entry.getValue()));
+        }
+    }
+
+    private void histogram(String name, String labels, LatencyHistogram histogram)
+            throws IOException
+    {
+        long[] counts = histogram.bucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = (i < BUCKET_BOUNDS.length) ? Double.toString(BUCKET_BOUNDS[i]) : "+Inf";
+            sample(name + "_bucket", withLabel(labels, "le", bound), cumulative);
+        }
+        sample(name + "_count", labels, cumulative);
+        writer.write(name + "_sum" + labels + " " + histogram.getSumSeconds() + "\n");
+    }
+
+    private void header(String name, String type, String help)
+            throws IOException
+    {
+        writer.write("# TYPE " + name + " " + type + "\n");
+        writer.write("# HELP " + name + " " + help + "\n");
+    }
+
+    private void sample(String name, String labels, long value)
+            throws IOException
+    {
+        writer.write(name + labels + " " + value + "\n");
+    }
+
+    private static String labels(String... namesAndValues)
+    {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(namesAndValues[i]).append("=\"").append(escape(namesAndValues[i + 1])).append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String withLabel(String labels, String name, String value)
+    {
+        String label = labels(name, value);
+        return labels.isEmpty() ? label : labels.substring(0, labels.length() - 1) + "," + label.substring(1);
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
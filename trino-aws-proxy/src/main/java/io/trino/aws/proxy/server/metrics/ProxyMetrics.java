@@ -0,0 +1,488 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.MBeanExport;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Metrics for the request hot path. Every request is tracked from the request filter until its response has been
+ * written and recorded per service, HTTP verb and S3 action, and per bucket for a bounded number of buckets.
+ * Per-action and per-bucket stats are exported to JMX as they are first used, and all metrics are available
+ * in OpenMetrics format via {@link OpenMetricsWriter}.
+ */
+public class ProxyMetrics
+{
+    private static final Logger log = Logger.get(ProxyMetrics.class);
+
+    // requests for buckets beyond the tracked limit are recorded under this name, which is not a valid bucket name
+    public static final String OTHER_BUCKETS = "_other";
+
+    private static final int MAX_STATUS_CODE = 599;
+
+    private final int maxTrackedBuckets;
+    private final MBeanExporter exporter;
+    private final Queue<MBeanExport> exports = new ConcurrentLinkedQueue<>();
+
+    private final Map<UUID, RequestTracker> requests = new ConcurrentHashMap<>();
+    private final Map<ActionKey, RequestStats> actionStats = new ConcurrentHashMap<>();
+    private final Map<String, RequestStats> bucketStats = new ConcurrentHashMap<>();
+    private final AtomicLong inFlightRequests = new AtomicLong();
+
+    private final Map<RequestPhase, LatencyHistogram> phaseLatencies;
+    private final AtomicLongArray upstreamStatusCodes = new AtomicLongArray(MAX_STATUS_CODE + 1);
+    private final LongAdder upstreamFailures = new LongAdder();
+
+    public record ActionKey(String service, String httpVerb, String action)
+    {
+        public ActionKey
+        {
+            requireNonNull(service, "service is null");
+            requireNonNull(httpVerb, "httpVerb is null");
+            requireNonNull(action, "action is null");
+        }
+    }
+
+    @Inject
+    public ProxyMetrics(ProxyMetricsConfig proxyMetricsConfig, MBeanExporter exporter)
+    {
+        maxTrackedBuckets = proxyMetricsConfig.getMaxTrackedBuckets();
+        this.exporter = requireNonNull(exporter, "exporter is null");
+
+        Map<RequestPhase, LatencyHistogram> phaseLatencies = new EnumMap<>(RequestPhase.class);
+        for (RequestPhase phase : RequestPhase.values()) {
+            phaseLatencies.put(phase, new LatencyHistogram());
+        }
+        this.phaseLatencies = Collections.unmodifiableMap(phaseLatencies);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        MBeanExport export;
+        while ((export = exports.poll()) != null) {
+            try {
+                export.unexport();
+            }
+            catch (RuntimeException e) {
+                log.warn(e, "Could not unexport %s", export.getObjectName());
+            }
+        }
+    }
+
+    /**
+     * Start tracking a request. The returned tracker must be finished once the response has been written.
+     */
+    public RequestTracker startRequest(UUID requestId, SigningServiceType serviceType, String httpVerb, long bytesIn)
+    {
+        RequestTracker tracker = new RequestTracker(requestId, serviceType.serviceName(), httpVerb, bytesIn);
+        requests.put(requestId, tracker);
+        inFlightRequests.incrementAndGet();
+        return tracker;
+    }
+
+    public Optional<RequestTracker> currentRequest(UUID requestId)
+    {
+        return Optional.ofNullable(requests.get(requestId));
+    }
+
+    /**
+     * Record a phase of the given request that started at {@code startNanos}. The phase is added to the request's
+     * timings if the request is still being tracked.
+     */
+    public void recordPhase(UUID requestId, RequestPhase phase, long startNanos)
+    {
+        long nanos = System.nanoTime() - startNanos;
+        RequestTracker tracker = requests.get(requestId);
+        if (tracker != null) {
+            tracker.addPhaseNanos(phase, nanos);
+        }
+        else {
+            phaseLatencies.get(phase).addNanos(nanos);
+        }
+    }
+
+    /**
+     * Wrap a handler for a request to the remote that is not made on behalf of a single client request,
+     * such as a prefetch, so that its time to first byte and status code are recorded.
+     * Call immediately before executing the request.
+     */
+    public <T, E extends Exception> ResponseHandler<T, E> upstream(ResponseHandler<T, E> delegate)
+    {
+        return upstream(Optional.empty(), delegate);
+    }
+
+    /**
+     * Wrap a handler for a request to the remote made on behalf of the given client request so that its time to
+     * first byte and status code are recorded. Call immediately before executing the request.
+     */
+    public <T, E extends Exception> ResponseHandler<T, E> upstream(UUID requestId, ResponseHandler<T, E> delegate)
+    {
+        return upstream(Optional.of(requestId), delegate);
+    }
+
+    private <T, E extends Exception> ResponseHandler<T, E> upstream(Optional<UUID> requestId, ResponseHandler<T, E> delegate)
+    {
+        requireNonNull(delegate, "delegate is null");
+        long startNanos = System.nanoTime();
+        return new ResponseHandler<>()
+        {
+            @Override
+            public T handleException(Request request, Exception exception)
+                    throws E
+            {
+                upstreamFailures.increment();
+                return delegate.handleException(request, exception);
+            }
+
+            @Override
+            public T handle(Request request, Response response)
+                    throws E
+            {
+                requestId.ifPresentOrElse(
+                        id -> recordPhase(id, RequestPhase.UPSTREAM_TIME_TO_FIRST_BYTE, startNanos),
+                        () -> phaseLatencies.get(RequestPhase.UPSTREAM_TIME_TO_FIRST_BYTE).addSince(startNanos));
+                int statusCode = response.getStatusCode();
+                if ((statusCode >= 0) && (statusCode <= MAX_STATUS_CODE)) {
+                    upstreamStatusCodes.incrementAndGet(statusCode);
+                }
+                return delegate.handle(request, response);
+            }
+        };
+    }
+
+    @Managed
+    public long getInFlightRequests()
+    {
+        return inFlightRequests.get();
+    }
+
+    @Managed
+    public long getUpstreamFailures()
+    {
+        return upstreamFailures.sum();
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getCredentialsLookup()
+    {
+        return phaseLatencies.get(RequestPhase.CREDENTIALS_LOOKUP);
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getSignatureVerification()
+    {
+        return phaseLatencies.get(RequestPhase.SIGNATURE_VERIFICATION);
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getSecurityDecision()
+    {
+        return phaseLatencies.get(RequestPhase.SECURITY_DECISION);
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getUpstreamTimeToFirstByte()
+    {
+        return phaseLatencies.get(RequestPhase.UPSTREAM_TIME_TO_FIRST_BYTE);
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getUpstreamRead()
+    {
+        return phaseLatencies.get(RequestPhase.UPSTREAM_READ);
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getClientWrite()
+    {
+        return phaseLatencies.get(RequestPhase.CLIENT_WRITE);
+    }
+
+    public LatencyHistogram getPhaseLatency(RequestPhase phase)
+    {
+        return phaseLatencies.get(phase);
+    }
+
+    public Map<ActionKey, RequestStats> getActionStats()
+    {
+        return ImmutableMap.copyOf(actionStats);
+    }
+
+    public Map<String, RequestStats> getBucketStats()
+    {
+        return ImmutableMap.copyOf(bucketStats);
+    }
+
+    /**
+     * Number of remote responses by status code, for status codes that have been seen
+     */
+    public Map<Integer, Long> getUpstreamStatusCodes()
+    {
+        ImmutableMap.Builder<Integer, Long> result = ImmutableMap.builder();
+        for (int statusCode = 0; statusCode <= MAX_STATUS_CODE; statusCode++) {
+            long count = upstreamStatusCodes.get(statusCode);
+            if (count > 0) {
+                result.put(statusCode, count);
+            }
+        }
+        return result.buildOrThrow();
+    }
+
+    private RequestStats actionStats(ActionKey key)
+    {
+        RequestStats stats = actionStats.get(key);
+        if (stats != null) {
+            return stats;
+        }
+        return register(actionStats, key, ImmutableMap.of("type", "RequestStats", "service", key.service(), "verb", key.httpVerb(), "action", key.action()));
+    }
+
+    private RequestStats bucketStats(String bucket)
+    {
+        RequestStats stats = bucketStats.get(bucket);
+        if (stats != null) {
+            return stats;
+        }
+        if (bucketStats.size() >= maxTrackedBuckets) {
+            stats = bucketStats.get(OTHER_BUCKETS);
+            if (stats != null) {
+                return stats;
+            }
+            return register(bucketStats, OTHER_BUCKETS, ImmutableMap.of("type", "RequestStats", "bucket", OTHER_BUCKETS));
+        }
+        // the limit may be exceeded slightly by concurrent requests for new buckets
+        return register(bucketStats, bucket, ImmutableMap.of("type", "RequestStats", "bucket", bucket));
+    }
+
+    private <K> RequestStats register(Map<K, RequestStats> statsMap, K key, Map<String, String> nameProperties)
+    {
+        RequestStats stats = new RequestStats();
+        RequestStats existing = statsMap.putIfAbsent(key, stats);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            exports.add(exporter.exportWithGeneratedName(stats, RequestStats.class, nameProperties));
+        }
+        catch (RuntimeException e) {
+            log.warn(e, "Could not export request stats for %s", nameProperties);
+        }
+        return stats;
+    }
+
+    public final class RequestTracker
+    {
+        private final UUID requestId;
+        private final String service;
+        private final String httpVerb;
+        private final long bytesIn;
+        private final long startNanos = System.nanoTime();
+        private final long startEpochMillis = System.currentTimeMillis();
+        private final AtomicLong bytesOut = new AtomicLong();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final AtomicLongArray phaseNanos = new AtomicLongArray(RequestPhase.values().length);
+        private volatile Optional<String> bucket = Optional.empty();
+        private volatile Optional<String> key = Optional.empty();
+        private volatile String action = S3Actions.UNKNOWN;
+        private volatile int statusCode;
+        private volatile long elapsedNanos;
+
+        private RequestTracker(UUID requestId, String service, String httpVerb, long bytesIn)
+        {
+            this.requestId = requireNonNull(requestId, "requestId is null");
+            this.service = requireNonNull(service, "service is null");
+            this.httpVerb = requireNonNull(httpVerb, "httpVerb is null");
+            this.bytesIn = bytesIn;
+        }
+
+        public void setAction(Optional<String> bucket, String action)
+        {
+            this.bucket = requireNonNull(bucket, "bucket is null").filter(value -> !value.isEmpty());
+            this.action = requireNonNull(action, "action is null");
+        }
+
+        public void setKey(String key)
+        {
+            this.key = Optional.of(requireNonNull(key, "key is null")).filter(value -> !value.isEmpty());
+        }
+
+        public void setStatusCode(int statusCode)
+        {
+            this.statusCode = statusCode;
+        }
+
+        public void addBytesOut(long bytes)
+        {
+            bytesOut.addAndGet(bytes);
+        }
+
+        public UUID requestId()
+        {
+            return requestId;
+        }
+
+        public String service()
+        {
+            return service;
+        }
+
+        public String httpVerb()
+        {
+            return httpVerb;
+        }
+
+        public String action()
+        {
+            return action;
+        }
+
+        public Optional<String> bucket()
+        {
+            return bucket;
+        }
+
+        public Optional<String> key()
+        {
+            return key;
+        }
+
+        public int statusCode()
+        {
+            return statusCode;
+        }
+
+        public long bytesIn()
+        {
+            return bytesIn;
+        }
+
+        public long bytesOut()
+        {
+            return bytesOut.get();
+        }
+
+        public long startEpochMillis()
+        {
+            return startEpochMillis;
+        }
+
+        /**
+         * Total time of the request, once it has finished
+         */
+        public long elapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        public long phaseNanos(RequestPhase phase)
+        {
+            return phaseNanos.get(phase.ordinal());
+        }
+
+        /**
+         * Record a phase of this request that started at {@code startNanos}
+         */
+        public void recordPhase(RequestPhase phase, long startNanos)
+        {
+            addPhaseNanos(phase, System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Add to the time of a phase without recording it in the phase histogram. Use for phases that are
+         * made up of many short intervals, and call {@link #completePhase(RequestPhase)} once they are complete.
+         */
+        public void accumulatePhaseNanos(RequestPhase phase, long nanos)
+        {
+            phaseNanos.addAndGet(phase.ordinal(), nanos);
+        }
+
+        /**
+         * Record the time accumulated for a phase in the phase histogram, if the request went through the phase
+         */
+        public void completePhase(RequestPhase phase)
+        {
+            long nanos = phaseNanos.get(phase.ordinal());
+            if (nanos > 0) {
+                phaseLatencies.get(phase).addNanos(nanos);
+            }
+        }
+
+        /**
+         * Time spent in each phase so far, for the phases this request has gone through
+         */
+        public Map<RequestPhase, Long> phaseNanos()
+        {
+            ImmutableMap.Builder<RequestPhase, Long> result = ImmutableMap.builder();
+            for (RequestPhase phase : RequestPhase.values()) {
+                long nanos = phaseNanos.get(phase.ordinal());
+                if (nanos > 0) {
+                    result.put(phase, nanos);
+                }
+            }
+            return result.buildOrThrow();
+        }
+
+        private void addPhaseNanos(RequestPhase phase, long nanos)
+        {
+            phaseNanos.addAndGet(phase.ordinal(), nanos);
+            phaseLatencies.get(phase).addNanos(nanos);
+        }
+
+        public void finish()
+        {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            this.elapsedNanos = elapsedNanos;
+            requests.remove(requestId);
+            inFlightRequests.decrementAndGet();
+
+            actionStats(new ActionKey(service, httpVerb, action)).record(statusCode, bytesIn, bytesOut.get(), elapsedNanos);
+            bucket.ifPresent(name -> bucketStats(name).record(statusCode, bytesIn, bytesOut.get(), elapsedNanos));
+        }
+    }
+}
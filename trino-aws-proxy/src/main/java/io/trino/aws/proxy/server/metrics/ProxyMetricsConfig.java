@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import jakarta.validation.constraints.Min;
+
+public class ProxyMetricsConfig
+{
+    private int maxTrackedBuckets = 100;
+
+    @Config("s3proxy.metrics.max-tracked-buckets")
+    @ConfigDescription("Maximum number of buckets with their own request metrics. Requests for other buckets are recorded together")
+    public ProxyMetricsConfig setMaxTrackedBuckets(int maxTrackedBuckets)
+    {
+        this.maxTrackedBuckets = maxTrackedBuckets;
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxTrackedBuckets()
+    {
+        return maxTrackedBuckets;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.Objects.requireNonNull;
+
+public record RecordedRequest(
+        UUID requestId,
+        Instant startTime,
+        String service,
+        String httpVerb,
+        String action,
+        Optional<String> bucket,
+        String path,
+        int statusCode,
+        long bytesIn,
+        long bytesOut,
+        Duration elapsed,
+        Map<String, Duration> phases)
+{
+    public RecordedRequest
+    {
+        requireNonNull(requestId, "requestId is null");
+        requireNonNull(startTime, "startTime is null");
+        requireNonNull(service, "service is null");
+        requireNonNull(httpVerb, "httpVerb is null");
+        requireNonNull(action, "action is null");
+        requireNonNull(bucket, "bucket is null");
+        requireNonNull(path, "path is null");
+        requireNonNull(elapsed, "elapsed is null");
+        phases = ImmutableMap.copyOf(phases);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The phases of handling a request whose latency is measured separately. Phases do not necessarily add up to the
+ * total request time: time spent in the proxy itself is not attributed to any phase.
+ */
+public enum RequestPhase
+{
+    CREDENTIALS_LOOKUP("credentials_lookup"),
+    SIGNATURE_VERIFICATION("signature_verification"),
+    SECURITY_DECISION("security_decision"),
+    SCHEDULER_QUEUE("scheduler_queue"),
+    // includes connecting to the remote, which the HTTP client does not report separately
+    UPSTREAM_TIME_TO_FIRST_BYTE("upstream_time_to_first_byte"),
+    UPSTREAM_READ("upstream_read"),
+    CLIENT_WRITE("client_write");
+
+    private final String phaseName;
+
+    RequestPhase(String phaseName)
+    {
+        this.phaseName = requireNonNull(phaseName, "phaseName is null");
+    }
+
+    public String phaseName()
+    {
+        return phaseName;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+import org.weakref.jmx.Managed;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Keeps fixed size records of the most recent requests, and separately of the most recent slow requests,
+ * for inspection without enabling request logging. Recording is lock free and does not allocate.
+ */
+public class RequestRecorder
+{
+    private final RequestRing recent;
+    private final RequestRing slow;
+    private final long slowThresholdNanos;
+
+    @Inject
+    public RequestRecorder(RequestRecorderConfig requestRecorderConfig)
+    {
+        requireNonNull(requestRecorderConfig, "requestRecorderConfig is null");
+        recent = new RequestRing(requestRecorderConfig.getCapacity(), requestRecorderConfig.isOffHeap());
+        slow = new RequestRing(requestRecorderConfig.getSlowCapacity(), requestRecorderConfig.isOffHeap());
+        slowThresholdNanos = requestRecorderConfig.getSlowThreshold().roundTo(NANOSECONDS);
+    }
+
+    /**
+     * Record a finished request
+     */
+    public void record(RequestTracker tracker, String path)
+    {
+        recent.record(tracker, path);
+        if (tracker.elapsedNanos() >= slowThresholdNanos) {
+            slow.record(tracker, path);
+        }
+    }
+
+    /**
+     * The most recent requests, newest first
+     */
+    public List<RecordedRequest> recentRequests(int limit)
+    {
+        return recent.newest(limit);
+    }
+
+    /**
+     * The most recent slow requests, newest first
+     */
+    public List<RecordedRequest> slowRequests(int limit)
+    {
+        return slow.newest(limit);
+    }
+
+    @Managed
+    public long getRecordedRequests()
+    {
+        return recent.getRecorded();
+    }
+
+    @Managed
+    public long getRecordedSlowRequests()
+    {
+        return slow.getRecorded();
+    }
+
+    @Managed
+    public long getDroppedRecords()
+    {
+        return recent.getDropped() + slow.getDropped();
+    }
+}
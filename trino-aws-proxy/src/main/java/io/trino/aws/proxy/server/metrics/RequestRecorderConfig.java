@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class RequestRecorderConfig
+{
+    // keeps the buffer of a ring within the size of a ByteBuffer
+    static final int MAX_CAPACITY = 1_000_000;
+
+    private int capacity = 1024;
+    private int slowCapacity = 256;
+    private Duration slowThreshold = new Duration(1, SECONDS);
+    private boolean offHeap;
+
+    @Config("s3proxy.request-recorder.capacity")
+    @ConfigDescription("Number of recent requests to keep. Set to 0 to disable recording")
+    public RequestRecorderConfig setCapacity(int capacity)
+    {
+        this.capacity = capacity;
+        return this;
+    }
+
+    @Min(0)
+    @Max(MAX_CAPACITY)
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Config("s3proxy.request-recorder.slow-capacity")
+    @ConfigDescription("Number of recent slow requests to keep. Set to 0 to disable")
+    public RequestRecorderConfig setSlowCapacity(int slowCapacity)
+    {
+        this.slowCapacity = slowCapacity;
+        return this;
+    }
+
+    @Min(0)
+    @Max(MAX_CAPACITY)
+    public int getSlowCapacity()
+    {
+        return slowCapacity;
+    }
+
+    @Config("s3proxy.request-recorder.slow-threshold")
+    @ConfigDescription("Requests taking at least this long are also kept as slow requests")
+    public RequestRecorderConfig setSlowThreshold(Duration slowThreshold)
+    {
+        this.slowThreshold = slowThreshold;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0ms")
+    public Duration getSlowThreshold()
+    {
+        return slowThreshold;
+    }
+
+    @Config("s3proxy.request-recorder.off-heap")
+    @ConfigDescription("Keep recorded requests in off-heap memory")
+    public RequestRecorderConfig setOffHeap(boolean offHeap)
+    {
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    public boolean isOffHeap()
+    {
+        return offHeap;
+    }
+}
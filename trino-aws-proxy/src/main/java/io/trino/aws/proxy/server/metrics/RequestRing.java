@@ -0,0 +1,230 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.multiplyExact;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A fixed capacity ring of request records. Each record occupies a fixed size slot of a single buffer, which
+ * can be allocated off-heap, so recording a request does not allocate. Writers claim slots with an atomic
+ * sequence and publish them with a per-slot stamp. Readers skip slots that are being written or that were
+ * overwritten while they were read.
+ */
+final class RequestRing
+{
+    private static final long WRITING = -1;
+    private static final long EMPTY = -2;
+
+    private static final int MAX_SERVICE_LENGTH = 8;
+    private static final int MAX_VERB_LENGTH = 8;
+    private static final int MAX_ACTION_LENGTH = 40;
+    // bucket names are at most 63 characters
+    private static final int MAX_BUCKET_LENGTH = 63;
+    private static final int MAX_PATH_LENGTH = 200;
+
+    private static final int REQUEST_ID_MSB = 0;
+    private static final int REQUEST_ID_LSB = REQUEST_ID_MSB + Long.BYTES;
+    private static final int START_EPOCH_MILLIS = REQUEST_ID_LSB + Long.BYTES;
+    private static final int ELAPSED_NANOS = START_EPOCH_MILLIS + Long.BYTES;
+    private static final int BYTES_IN = ELAPSED_NANOS + Long.BYTES;
+    private static final int BYTES_OUT = BYTES_IN + Long.BYTES;
+    private static final int PHASE_NANOS = BYTES_OUT + Long.BYTES;
+    private static final int STATUS_CODE = PHASE_NANOS + (RequestPhase.values().length * Long.BYTES);
+    private static final int SERVICE = STATUS_CODE + Integer.BYTES;
+    private static final int VERB = stringEnd(SERVICE, MAX_SERVICE_LENGTH);
+    private static final int ACTION = stringEnd(VERB, MAX_VERB_LENGTH);
+    private static final int BUCKET = stringEnd(ACTION, MAX_ACTION_LENGTH);
+    private static final int PATH = stringEnd(BUCKET, MAX_BUCKET_LENGTH);
+    static final int SLOT_SIZE = stringEnd(PATH, MAX_PATH_LENGTH);
+
+    private final int capacity;
+    private final ByteBuffer buffer;
+    private final AtomicLongArray stamps;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    RequestRing(int capacity, boolean offHeap)
+    {
+        checkArgument(capacity >= 0, "capacity is negative");
+        this.capacity = capacity;
+        int bufferSize = multiplyExact(capacity, SLOT_SIZE);
+        buffer = offHeap ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        stamps = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            stamps.set(slot, EMPTY);
+        }
+    }
+
+    long getRecorded()
+    {
+        return nextSequence.get();
+    }
+
+    long getDropped()
+    {
+        return dropped.sum();
+    }
+
+    void record(RequestTracker tracker, String path)
+    {
+        if (capacity == 0) {
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+        long current = stamps.get(slot);
+        // a writer that wrapped around the whole ring is still writing the slot
+        if ((current == WRITING) || !stamps.compareAndSet(slot, current, WRITING)) {
+            dropped.increment();
+            return;
+        }
+
+        int offset = slot * SLOT_SIZE;
+        buffer.putLong(offset + REQUEST_ID_MSB, tracker.requestId().getMostSignificantBits());
+        buffer.putLong(offset + REQUEST_ID_LSB, tracker.requestId().getLeastSignificantBits());
+        buffer.putLong(offset + START_EPOCH_MILLIS, tracker.startEpochMillis());
+        buffer.putLong(offset + ELAPSED_NANOS, tracker.elapsedNanos());
+        buffer.putLong(offset + BYTES_IN, tracker.bytesIn());
+        buffer.putLong(offset + BYTES_OUT, tracker.bytesOut());
+        for (RequestPhase phase : RequestPhase.values()) {
+            buffer.putLong(offset + PHASE_NANOS + (phase.ordinal() * Long.BYTES), tracker.phaseNanos(phase));
+        }
+        buffer.putInt(offset + STATUS_CODE, tracker.statusCode());
+        putString(offset + SERVICE, MAX_SERVICE_LENGTH, tracker.service());
+        putString(offset + VERB, MAX_VERB_LENGTH, tracker.httpVerb());
+        putString(offset + ACTION, MAX_ACTION_LENGTH, tracker.action());
+        putString(offset + BUCKET, MAX_BUCKET_LENGTH, tracker.bucket().orElse(""));
+        putString(offset + PATH, MAX_PATH_LENGTH, path);
+
+        stamps.setRelease(slot, sequence);
+    }
+
+    /**
+     * The most recent records, newest first
+     */
+    List<RecordedRequest> newest(int limit)
+    {
+        ImmutableList.Builder<RecordedRequest> result = ImmutableList.builder();
+        long end = nextSequence.get();
+        long start = Math.max(0, end - capacity);
+        int count = 0;
+        for (long sequence = end - 1; (sequence >= start) && (count < limit); sequence--) {
+            Optional<RecordedRequest> record = read(sequence);
+            if (record.isPresent()) {
+                result.add(record.get());
+                count++;
+            }
+        }
+        return result.build();
+    }
+
+    private Optional<RecordedRequest> read(long sequence)
+    {
+        int slot = (int) (sequence % capacity);
+        if (stamps.getAcquire(slot) != sequence) {
+            return Optional.empty();
+        }
+
+        int offset = slot * SLOT_SIZE;
+        UUID requestId = new UUID(buffer.getLong(offset + REQUEST_ID_MSB), buffer.getLong(offset + REQUEST_ID_LSB));
+        long startEpochMillis = buffer.getLong(offset + START_EPOCH_MILLIS);
+        long elapsedNanos = buffer.getLong(offset + ELAPSED_NANOS);
+        long bytesIn = buffer.getLong(offset + BYTES_IN);
+        long bytesOut = buffer.getLong(offset + BYTES_OUT);
+        ImmutableMap.Builder<String, Duration> phases = ImmutableMap.builder();
+        for (RequestPhase phase : RequestPhase.values()) {
+            long nanos = buffer.getLong(offset + PHASE_NANOS + (phase.ordinal() * Long.BYTES));
+            if (nanos > 0) {
+                phases.put(phase.phaseName(), duration(nanos));
+            }
+        }
+        int statusCode = buffer.getInt(offset + STATUS_CODE);
+        String service = getString(offset + SERVICE, MAX_SERVICE_LENGTH);
+        String httpVerb = getString(offset + VERB, MAX_VERB_LENGTH);
+        String action = getString(offset + ACTION, MAX_ACTION_LENGTH);
+        String bucket = getString(offset + BUCKET, MAX_BUCKET_LENGTH);
+        String path = getString(offset + PATH, MAX_PATH_LENGTH);
+
+        // the slot may have been overwritten while it was read
+        VarHandle.acquireFence();
+        if (stamps.get(slot) != sequence) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new RecordedRequest(
+                requestId,
+                Instant.ofEpochMilli(startEpochMillis),
+                service,
+                httpVerb,
+                action,
+                Optional.of(bucket).filter(value -> !value.isEmpty()),
+                path,
+                statusCode,
+                bytesIn,
+                bytesOut,
+                duration(elapsedNanos),
+                phases.buildOrThrow()));
+    }
+
+    private void putString(int offset, int maxLength, String value)
+    {
+        int length = Math.min(value.length(), maxLength);
+        // do not split a surrogate pair when truncating
+        if ((length < value.length()) && (length > 0) && Character.isHighSurrogate(value.charAt(length - 1))) {
+            length--;
+        }
+        buffer.putShort(offset, (short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.putChar(offset + Short.BYTES + (i * Character.BYTES), value.charAt(i));
+        }
+    }
+
+    private String getString(int offset, int maxLength)
+    {
+        // the length is validated as the slot may be concurrently overwritten
+        int length = Math.clamp(buffer.getShort(offset), 0, maxLength);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(offset + Short.BYTES + (i * Character.BYTES));
+        }
+        return new String(chars);
+    }
+
+    private static Duration duration(long nanos)
+    {
+        return new Duration(nanos, NANOSECONDS).convertToMostSuccinctTimeUnit();
+    }
+
+    private static int stringEnd(int offset, int maxLength)
+    {
+        return offset + Short.BYTES + (maxLength * Character.BYTES);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counts, response status classes, bytes transferred and latency for a group of requests
+ */
+public class RequestStats
+{
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder[] statusClasses = new LongAdder[5];
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public RequestStats()
+    {
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusClasses[i] = new LongAdder();
+        }
+    }
+
+    void record(int statusCode, long requestBytes, long responseBytes, long latencyNanos)
+    {
+        requests.increment();
+        int statusClass = statusCode / 100;
+        if ((statusClass >= 1) && (statusClass <= statusClasses.length)) {
+            statusClasses[statusClass - 1].increment();
+        }
+        bytesIn.add(requestBytes);
+        bytesOut.add(responseBytes);
+        latency.addNanos(latencyNanos);
+    }
+
+    @Managed
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    @Managed
+    public long getSuccessfulResponses()
+    {
+        return statusClasses[1].sum();
+    }
+
+    @Managed
+    public long getRedirectResponses()
+    {
+        return statusClasses[2].sum();
+    }
+
+    @Managed
+    public long getClientErrorResponses()
+    {
+        return statusClasses[3].sum();
+    }
+
+    @Managed
+    public long getServerErrorResponses()
+    {
+        return statusClasses[4].sum();
+    }
+
+    @Managed
+    public long getBytesIn()
+    {
+        return bytesIn.sum();
+    }
+
+    @Managed
+    public long getBytesOut()
+    {
+        return bytesOut.sum();
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Number of responses with a status code in the class, where {@code statusClass} is 1 for 1xx through 5 for 5xx
+     */
+    public long getResponses(int statusClass)
+    {
+        return statusClasses[statusClass - 1].sum();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Names the S3 API action of a request, for use as a metrics dimension. The set of names is fixed so that the
+ * number of time series does not depend on client input.
+ */
+public final class S3Actions
+{
+    public static final String UNKNOWN = "Unknown";
+
+    private static final Set<String> OBJECT_ACTIONS = ImmutableSet.of(
+            "GetObject",
+            "GetObjectConfiguration",
+            "HeadObject",
+            "ListParts",
+            "PutObject",
+            "PutObjectConfiguration",
+            "CopyObject",
+            "UploadPart",
+            "UploadPartCopy",
+            "CreateMultipartUpload",
+            "CompleteMultipartUpload",
+            "AbortMultipartUpload",
+            "RestoreObject",
+            "DeleteObject",
+            "DeleteObjectConfiguration");
+
+    private S3Actions() {}
+
+    /**
+     * Whether the action names a request for a single object rather than for a bucket or the service
+     */
+    public static boolean isObjectAction(String action)
+    {
+        return OBJECT_ACTIONS.contains(action);
+    }
+
+    public static String actionName(ParsedS3Request request)
+    {
+        MultiMap query = request.queryParameters();
+        if (request.bucketName().isEmpty()) {
+            return request.httpVerb().equals("GET") ? "ListBuckets" : UNKNOWN;
+        }
+
+        if (request.keyInBucket().isEmpty()) {
+            return switch (request.httpVerb()) {
+                case "GET" -> {
+                    if (query.getFirst("list-type").filter("2"::equals).isPresent()) {
+                        yield "ListObjectsV2";
+                    }
+                    if (query.containsKey("uploads")) {
+                        yield "ListMultipartUploads";
+                    }
+                    if (query.containsKey("versions")) {
+                        yield "ListObjectVersions";
+                    }
+                    if (query.containsKey("location")) {
+                        yield "GetBucketLocation";
+                    }
+                    yield onlyListParameters(query) ? "ListObjects" : "GetBucketConfiguration";
+                }
+                case "HEAD" -> "HeadBucket";
+                case "PUT" -> hasSubresource(query) ? "PutBucketConfiguration" : "CreateBucket";
+                case "POST" -> query.containsKey("delete") ? "DeleteObjects" : UNKNOWN;
+                case "DELETE" -> hasSubresource(query) ? "DeleteBucketConfiguration" : "DeleteBucket";
+                default -> UNKNOWN;
+            };
+        }
+
+        return switch (request.httpVerb()) {
+            case "GET" -> {
+                if (query.containsKey("uploadId")) {
+                    yield "ListParts";
+                }
+                yield hasSubresource(query) ? "GetObjectConfiguration" : "GetObject";
+            }
+            case "HEAD" -> "HeadObject";
+            case "PUT" -> {
+                boolean isCopy = request.requestHeaders().containsKey("x-amz-copy-source");
+                if (query.containsKey("uploadId") && query.containsKey("partNumber")) {
+                    yield isCopy ? "UploadPartCopy" : "UploadPart";
+                }
+                if (hasSubresource(query)) {
+                    yield "PutObjectConfiguration";
+                }
+                yield isCopy ? "CopyObject" : "PutObject";
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) {
+                    yield "CreateMultipartUpload";
+                }
+                if (query.containsKey("uploadId")) {
+                    yield "CompleteMultipartUpload";
+                }
+                yield query.containsKey("restore") ? "RestoreObject" : UNKNOWN;
+            }
+            case "DELETE" -> {
+                if (query.containsKey("uploadId")) {
+                    yield "AbortMultipartUpload";
+                }
+                yield hasSubresource(query) ? "DeleteObjectConfiguration" : "DeleteObject";
+            }
+            default -> UNKNOWN;
+        };
+    }
+
+    private static boolean onlyListParameters(MultiMap query)
+    {
+        return query.keySet().stream().allMatch(name -> switch (name) {
+            case "prefix", "delimiter", "marker", "max-keys", "encoding-type" -> true;
+            default -> isRequestOption(name);
+        });
+    }
+
+    // tagging, acl, retention, etc. as opposed to request options
+    private static boolean hasSubresource(MultiMap query)
+    {
+        return !query.keySet().stream().allMatch(S3Actions::isRequestOption);
+    }
+
+    // versionId, response-content-type, presigned URL parameters, etc.
+    private static boolean isRequestOption(String name)
+    {
+        return name.equals("versionId") || name.equals("partNumber") || name.startsWith("response-") || name.toLowerCase(Locale.ROOT).startsWith("x-amz-");
+    }
+}
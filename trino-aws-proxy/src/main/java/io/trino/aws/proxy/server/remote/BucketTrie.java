@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable character trie of bucket patterns. A pattern is either an exact bucket name or a prefix
+ * followed by {@code *}. An exact match wins, otherwise the longest matching prefix does. Lookups
+ * walk the bucket name once and never lock or allocate.
+ */
+public final class BucketTrie<T>
+{
+    private final Node<T> root;
+
+    private BucketTrie(Node<T> root)
+    {
+        this.root = root;
+    }
+
+    public static <T> BucketTrie<T> build(Map<String, T> patterns)
+    {
+        BuilderNode<T> root = new BuilderNode<>();
+        patterns.forEach((pattern, target) -> {
+            requireNonNull(target, "target is null");
+            boolean prefix = pattern.endsWith("*");
+            String chars = prefix ? pattern.substring(0, pattern.length() - 1) : pattern;
+            checkArgument(chars.indexOf('*') < 0, "Only a trailing * is supported: %s", pattern);
+            BuilderNode<T> node = root;
+            for (int i = 0; i < chars.length(); i++) {
+                node = node.children.computeIfAbsent(chars.charAt(i), _ -> new BuilderNode<>());
+            }
+            if (prefix) {
+                node.prefix = target;
+            }
+            else {
+                node.exact = target;
+            }
+        });
+        return new BucketTrie<>(root.freeze());
+    }
+
+    public Optional<T> match(String bucket)
+    {
+        Node<T> node = root;
+        T match = node.prefix;
+        for (int i = 0; i < bucket.length(); i++) {
+            node = node.child(bucket.charAt(i));
+            if (node == null) {
+                return Optional.ofNullable(match);
+            }
+            if (node.prefix != null) {
+                match = node.prefix;
+            }
+        }
+        return Optional.ofNullable((node.exact != null) ? node.exact : match);
+    }
+
+    private record Node<T>(char[] labels, Node<T>[] children, T exact, T prefix)
+    {
+        Node<T> child(char label)
+        {
+            int index = Arrays.binarySearch(labels, label);
+            return (index < 0) ? null : children[index];
+        }
+    }
+
+    private static final class BuilderNode<T>
+    {
+        private final TreeMap<Character, BuilderNode<T>> children = new TreeMap<>();
+        private T exact;
+        private T prefix;
+
+        @SuppressWarnings("unchecked")
+        private Node<T> freeze()
+        {
+            char[] labels = new char[children.size()];
+            Node<T>[] frozen = new Node[children.size()];
+            int index = 0;
+            for (Map.Entry<Character, BuilderNode<T>> entry : children.entrySet()) {
+                labels[index] = entry.getKey();
+                frozen[index] = entry.getValue().freeze();
+                index++;
+            }
+            return new Node<>(labels, frozen, exact, prefix);
+        }
+    }
+}
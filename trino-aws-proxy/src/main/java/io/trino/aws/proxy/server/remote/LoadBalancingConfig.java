@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Load balancing across the endpoints of a routing backend, bound under {@code s3proxy.routing.backend.<name>}
+ */
+public class LoadBalancingConfig
+{
+    public enum Policy
+    {
+        LEAST_OUTSTANDING_REQUESTS,
+        POWER_OF_TWO_CHOICES,
+    }
+
+    private Policy policy = Policy.POWER_OF_TWO_CHOICES;
+    private boolean healthCheckEnabled = true;
+    private String healthCheckPath = "/";
+    private Duration healthCheckInterval = new Duration(10, SECONDS);
+    private Duration healthCheckTimeout = new Duration(2, SECONDS);
+    private int consecutiveFailures = 5;
+    private Duration baseEjectionTime = new Duration(30, SECONDS);
+    private Duration maxEjectionTime = new Duration(5, MINUTES);
+    private int maxEjectedPercent = 50;
+
+    @Config("load-balancing.policy")
+    @ConfigDescription("How an endpoint is chosen for each request")
+    public LoadBalancingConfig setPolicy(Policy policy)
+    {
+        this.policy = policy;
+        return this;
+    }
+
+    @NotNull
+    public Policy getPolicy()
+    {
+        return policy;
+    }
+
+    @Config("health-check.enabled")
+    @ConfigDescription("Probe endpoints periodically and stop sending requests to endpoints that fail the probe")
+    public LoadBalancingConfig setHealthCheckEnabled(boolean healthCheckEnabled)
+    {
+        this.healthCheckEnabled = healthCheckEnabled;
+        return this;
+    }
+
+    public boolean isHealthCheckEnabled()
+    {
+        return healthCheckEnabled;
+    }
+
+    @Config("health-check.path")
+    @ConfigDescription("Path probed with unsigned HEAD requests. Any response other than a server error counts as healthy")
+    public LoadBalancingConfig setHealthCheckPath(String healthCheckPath)
+    {
+        this.healthCheckPath = healthCheckPath;
+        return this;
+    }
+
+    @NotNull
+    public String getHealthCheckPath()
+    {
+        return healthCheckPath;
+    }
+
+    @Config("health-check.interval")
+    public LoadBalancingConfig setHealthCheckInterval(Duration healthCheckInterval)
+    {
+        this.healthCheckInterval = healthCheckInterval;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("100ms")
+    public Duration getHealthCheckInterval()
+    {
+        return healthCheckInterval;
+    }
+
+    @Config("health-check.timeout")
+    public LoadBalancingConfig setHealthCheckTimeout(Duration healthCheckTimeout)
+    {
+        this.healthCheckTimeout = healthCheckTimeout;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getHealthCheckTimeout()
+    {
+        return healthCheckTimeout;
+    }
+
+    @Config("outlier-ejection.consecutive-failures")
+    @ConfigDescription("Consecutive server errors or connection failures after which an endpoint is ejected")
+    public LoadBalancingConfig setConsecutiveFailures(int consecutiveFailures)
+    {
+        this.consecutiveFailures = consecutiveFailures;
+        return this;
+    }
+
+    @Min(1)
+    public int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+
+    @Config("outlier-ejection.base-time")
+    @ConfigDescription("Time an endpoint is ejected for. Doubled for each ejection that follows without a success in between")
+    public LoadBalancingConfig setBaseEjectionTime(Duration baseEjectionTime)
+    {
+        this.baseEjectionTime = baseEjectionTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getBaseEjectionTime()
+    {
+        return baseEjectionTime;
+    }
+
+    @Config("outlier-ejection.max-time")
+    public LoadBalancingConfig setMaxEjectionTime(Duration maxEjectionTime)
+    {
+        this.maxEjectionTime = maxEjectionTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getMaxEjectionTime()
+    {
+        return maxEjectionTime;
+    }
+
+    @Config("outlier-ejection.max-ejected-percent")
+    @ConfigDescription("Upper bound on the share of endpoints ejected at the same time")
+    public LoadBalancingConfig setMaxEjectedPercent(int maxEjectedPercent)
+    {
+        this.maxEjectedPercent = maxEjectedPercent;
+        return this;
+    }
+
+    @Min(0)
+    @Max(100)
+    public int getMaxEjectedPercent()
+    {
+        return maxEjectedPercent;
+    }
+}
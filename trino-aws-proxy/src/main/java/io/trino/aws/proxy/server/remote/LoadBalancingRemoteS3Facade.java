@@ -0,0 +1,342 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.RequestStats;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.StatusResponseHandler.StatusResponse;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import jakarta.ws.rs.core.UriBuilder;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.http.client.Request.Builder.prepareHead;
+import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Spreads the requests of a backend over several endpoints, typically the gateway nodes of an on-prem
+ * S3-compatible cluster. Endpoints are chosen by least outstanding requests or by the better of two random
+ * choices. Endpoints that fail the periodic health check are skipped, and endpoints that return consecutive
+ * server errors are ejected for a time that doubles with each repeated ejection. When no endpoint is
+ * available, all of them are used rather than failing every request.
+ * <p>
+ * Requests are counted against their endpoint by the {@link HttpClient} returned from {@link #httpClient(String)}.
+ * All endpoints share the Jetty client of the backend, which keeps a separate connection pool for each endpoint.
+ */
+public class LoadBalancingRemoteS3Facade
+        implements RemoteS3Facade
+{
+    private static final Logger log = Logger.get(LoadBalancingRemoteS3Facade.class);
+
+    private final String name;
+    private final List<UpstreamEndpoint> endpoints;
+    private final LoadBalancingConfig config;
+    private final HttpClient httpClient;
+    private final Optional<HttpClient> trackingHttpClient;
+    private final Ticker ticker;
+    private ScheduledExecutorService healthCheckExecutor;
+
+    public LoadBalancingRemoteS3Facade(String name, List<UpstreamEndpoint> endpoints, LoadBalancingConfig config, HttpClient httpClient, Ticker ticker)
+    {
+        this.name = requireNonNull(name, "name is null");
+        this.endpoints = ImmutableList.copyOf(endpoints);
+        this.config = requireNonNull(config, "config is null");
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.trackingHttpClient = Optional.of(new TrackingHttpClient());
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        checkArgument(!endpoints.isEmpty(), "no endpoints for backend %s", name);
+    }
+
+    public synchronized void start()
+    {
+        checkState(healthCheckExecutor == null, "already started");
+        if (!config.isHealthCheckEnabled()) {
+            return;
+        }
+        healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("s3-health-check-" + name).factory());
+        long interval = config.getHealthCheckInterval().toMillis();
+        healthCheckExecutor.scheduleWithFixedDelay(this::checkHealth, 0, interval, MILLISECONDS);
+    }
+
+    public synchronized void stop()
+    {
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdownNow();
+        }
+    }
+
+    public List<UpstreamEndpoint> getEndpoints()
+    {
+        return endpoints;
+    }
+
+    @Override
+    public URI buildEndpoint(UriBuilder uriBuilder, String path, String bucket, String region)
+    {
+        return select().facade().buildEndpoint(uriBuilder, path, bucket, region);
+    }
+
+    @Override
+    public URI buildEndpoint(String rawPath, MultiMap queryParameters, String bucket, String region)
+    {
+        return select().facade().buildEndpoint(rawPath, queryParameters, bucket, region);
+    }
+
+    @Override
+    public Optional<HttpClient> httpClient(String bucket)
+    {
+        return trackingHttpClient;
+    }
+
+    public UpstreamEndpoint select()
+    {
+        if (endpoints.size() == 1) {
+            return endpoints.getFirst();
+        }
+        long now = ticker.read();
+        return switch (config.getPolicy()) {
+            case LEAST_OUTSTANDING_REQUESTS -> leastOutstanding(now);
+            case POWER_OF_TWO_CHOICES -> powerOfTwoChoices(now);
+        };
+    }
+
+    private UpstreamEndpoint powerOfTwoChoices(long now)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int firstIndex = random.nextInt(endpoints.size());
+        int secondIndex = random.nextInt(endpoints.size() - 1);
+        if (secondIndex >= firstIndex) {
+            secondIndex++;
+        }
+        UpstreamEndpoint first = endpoints.get(firstIndex);
+        UpstreamEndpoint second = endpoints.get(secondIndex);
+        boolean firstAvailable = first.isAvailable(now);
+        boolean secondAvailable = second.isAvailable(now);
+        if (firstAvailable && secondAvailable) {
+            return (first.outstandingRequests() <= second.outstandingRequests()) ? first : second;
+        }
+        if (firstAvailable) {
+            return first;
+        }
+        if (secondAvailable) {
+            return second;
+        }
+        return leastOutstanding(now);
+    }
+
+    private UpstreamEndpoint leastOutstanding(long now)
+    {
+        // start at a random endpoint so that ties are spread evenly
+        int start = ThreadLocalRandom.current().nextInt(endpoints.size());
+        UpstreamEndpoint best = null;
+        UpstreamEndpoint bestOfAll = null;
+        for (int i = 0; i < endpoints.size(); i++) {
+            UpstreamEndpoint endpoint = endpoints.get((start + i) % endpoints.size());
+            if ((bestOfAll == null) || (endpoint.outstandingRequests() < bestOfAll.outstandingRequests())) {
+                bestOfAll = endpoint;
+            }
+            if (endpoint.isAvailable(now) && ((best == null) || (endpoint.outstandingRequests() < best.outstandingRequests()))) {
+                best = endpoint;
+            }
+        }
+        return (best != null) ? best : bestOfAll;
+    }
+
+    void recordSuccess(UpstreamEndpoint endpoint)
+    {
+        if (endpoint.recordSuccess()) {
+            synchronized (this) {
+                if (!endpoint.isEjected(ticker.read())) {
+                    endpoint.restore();
+                }
+            }
+        }
+    }
+
+    void recordFailure(UpstreamEndpoint endpoint)
+    {
+        if (endpoint.recordFailure() >= config.getConsecutiveFailures()) {
+            eject(endpoint);
+        }
+    }
+
+    private synchronized void eject(UpstreamEndpoint endpoint)
+    {
+        long now = ticker.read();
+        if (endpoint.isEjected(now)) {
+            return;
+        }
+        long ejected = endpoints.stream().filter(value -> value.isEjected(now)).count();
+        if ((ejected + 1) * 100 > (long) config.getMaxEjectedPercent() * endpoints.size()) {
+            return;
+        }
+        long baseNanos = config.getBaseEjectionTime().roundTo(NANOSECONDS);
+        long duration = Math.min(config.getMaxEjectionTime().roundTo(NANOSECONDS), baseNanos << Math.min(endpoint.ejections(), 20));
+        endpoint.eject(now + duration);
+        log.warn("Ejected endpoint %s of backend %s for %sms after consecutive failures", endpoint, name, NANOSECONDS.toMillis(duration));
+    }
+
+    private void checkHealth()
+    {
+        for (UpstreamEndpoint endpoint : endpoints) {
+            Request request = prepareHead().setUri(endpoint.healthCheckUri()).build();
+            Futures.addCallback(
+                    Futures.withTimeout(httpClient.executeAsync(request, createStatusResponseHandler()), config.getHealthCheckTimeout().toMillis(), MILLISECONDS, healthCheckExecutor),
+                    new FutureCallback<>()
+                    {
+                        @Override
+                        public void onSuccess(StatusResponse response)
+                        {
+                            setHealthy(endpoint, response.getStatusCode() < 500);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t)
+                        {
+                            setHealthy(endpoint, false);
+                        }
+                    },
+                    directExecutor());
+        }
+    }
+
+    private void setHealthy(UpstreamEndpoint endpoint, boolean healthy)
+    {
+        if (endpoint.isHealthy() != healthy) {
+            log.info("Endpoint %s of backend %s is %s", endpoint, name, healthy ? "healthy" : "unhealthy");
+            endpoint.setHealthy(healthy);
+        }
+    }
+
+    private UpstreamEndpoint endpointFor(URI uri)
+    {
+        for (UpstreamEndpoint endpoint : endpoints) {
+            if (endpoint.serves(uri)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private final class TrackingHttpClient
+            implements HttpClient
+    {
+        @Override
+        public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
+                throws E
+        {
+            UpstreamEndpoint endpoint = endpointFor(request.getUri());
+            if (endpoint == null) {
+                return httpClient.execute(request, responseHandler);
+            }
+            endpoint.requestStarted();
+            try {
+                return httpClient.execute(request, new TrackingResponseHandler<>(endpoint, responseHandler));
+            }
+            finally {
+                endpoint.requestFinished();
+            }
+        }
+
+        @Override
+        public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+        {
+            UpstreamEndpoint endpoint = endpointFor(request.getUri());
+            if (endpoint == null) {
+                return httpClient.executeAsync(request, responseHandler);
+            }
+            endpoint.requestStarted();
+            HttpResponseFuture<T> future = httpClient.executeAsync(request, new TrackingResponseHandler<>(endpoint, responseHandler));
+            future.addListener(endpoint::requestFinished, directExecutor());
+            return future;
+        }
+
+        @Override
+        public RequestStats getStats()
+        {
+            return httpClient.getStats();
+        }
+
+        @Override
+        public long getMaxContentLength()
+        {
+            return httpClient.getMaxContentLength();
+        }
+
+        @Override
+        public void close()
+        {
+            // the backend client is closed by its owner
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return httpClient.isClosed();
+        }
+    }
+
+    private final class TrackingResponseHandler<T, E extends Exception>
+            implements ResponseHandler<T, E>
+    {
+        private final UpstreamEndpoint endpoint;
+        private final ResponseHandler<T, E> delegate;
+
+        private TrackingResponseHandler(UpstreamEndpoint endpoint, ResponseHandler<T, E> delegate)
+        {
+            this.endpoint = endpoint;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T handleException(Request request, Exception exception)
+                throws E
+        {
+            recordFailure(endpoint);
+            return delegate.handleException(request, exception);
+        }
+
+        @Override
+        public T handle(Request request, Response response)
+                throws E
+        {
+            if (response.getStatusCode() >= 500) {
+                recordFailure(endpoint);
+            }
+            else {
+                recordSuccess(endpoint);
+            }
+            return delegate.handle(request, response);
+        }
+    }
+}
@@ -13,6 +13,7 @@
  */
 package io.trino.aws.proxy.server.remote;
 
+import io.trino.aws.proxy.spi.collections.MultiMap;
 import jakarta.ws.rs.core.UriBuilder;
 
 import java.net.URI;
@@ -27,6 +28,7 @@ public class PathStyleRemoteS3Facade
     private final RemoteS3HostBuilder hostBuilder;
     private final boolean https;
     private final Optional<Integer> port;
+    private final RemoteEndpointResolver endpointResolver;
 
     public PathStyleRemoteS3Facade()
     {
@@ -38,6 +40,7 @@ public class PathStyleRemoteS3Facade
         this.hostBuilder = requireNonNull(hostBuilder, "hostBuilder is null");
         this.port = requireNonNull(port, "port is null");
         this.https = https;
+        this.endpointResolver = new RemoteEndpointResolver(hostBuilder, https, port, true);
     }
 
     @Override
@@ -53,4 +56,10 @@ public class PathStyleRemoteS3Facade
 
         return builder.build();
     }
+
+    @Override
+    public URI buildEndpoint(String rawPath, MultiMap queryParameters, String bucket, String region)
+    {
+        return endpointResolver.resolve(rawPath, queryParameters, bucket, region);
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An S3-compatible backend of the routing facade, bound under {@code s3proxy.routing.backend.<name>}.
+ * The HTTP client of the backend is configured with {@code http-client.*} properties under the same prefix.
+ */
+public class RemoteBackendConfig
+{
+    private List<String> buckets = ImmutableList.of();
+    private Optional<String> hostname = Optional.empty();
+    private List<String> endpoints = ImmutableList.of();
+    private Optional<Integer> port = Optional.empty();
+    private boolean https = true;
+    private boolean pathStyle;
+    private Optional<String> region = Optional.empty();
+
+    @Config("buckets")
+    @ConfigDescription("Bucket names routed to the backend. A trailing * matches any bucket starting with the preceding characters")
+    public RemoteBackendConfig setBuckets(List<String> buckets)
+    {
+        this.buckets = ImmutableList.copyOf(buckets);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getBuckets()
+    {
+        return buckets;
+    }
+
+    @Config("hostname")
+    @ConfigDescription("Hostname of the backend, AWS S3 of the request region if not set")
+    public RemoteBackendConfig setHostname(String hostname)
+    {
+        this.hostname = Optional.ofNullable(hostname);
+        return this;
+    }
+
+    @NotNull
+    public Optional<String> getHostname()
+    {
+        return hostname;
+    }
+
+    @Config("endpoints")
+    @ConfigDescription("Endpoints of the backend as host or host:port, balanced per request. Alternative to hostname")
+    public RemoteBackendConfig setEndpoints(List<String> endpoints)
+    {
+        this.endpoints = ImmutableList.copyOf(endpoints);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getEndpoints()
+    {
+        return endpoints;
+    }
+
+    @AssertTrue(message = "Only one of hostname and endpoints can be set")
+    public boolean isHostnameOrEndpoints()
+    {
+        return hostname.isEmpty() || endpoints.isEmpty();
+    }
+
+    @Config("port")
+    @ConfigDescription("Port of the backend and of endpoints without one, optional")
+    public RemoteBackendConfig setPort(Integer port)
+    {
+        this.port = Optional.ofNullable(port);
+        return this;
+    }
+
+    @NotNull
+    public Optional<Integer> getPort()
+    {
+        return port;
+    }
+
+    @Config("https")
+    @ConfigDescription("Connect to the backend with TLS")
+    public RemoteBackendConfig setHttps(boolean https)
+    {
+        this.https = https;
+        return this;
+    }
+
+    public boolean isHttps()
+    {
+        return https;
+    }
+
+    @Config("path-style")
+    @ConfigDescription("Address buckets in the path rather than in the hostname")
+    public RemoteBackendConfig setPathStyle(boolean pathStyle)
+    {
+        this.pathStyle = pathStyle;
+        return this;
+    }
+
+    public boolean isPathStyle()
+    {
+        return pathStyle;
+    }
+
+    @Config("region")
+    @ConfigDescription("Region used to address and sign requests to the backend, the request region if not set")
+    public RemoteBackendConfig setRegion(String region)
+    {
+        this.region = Optional.ofNullable(region);
+        return this;
+    }
+
+    @NotNull
+    public Optional<String> getRegion()
+    {
+        return region;
+    }
+}
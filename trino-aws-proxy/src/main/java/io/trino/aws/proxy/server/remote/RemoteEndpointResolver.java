@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Assembles remote URIs in a single pass. The scheme, host and port of each bucket and region are built
+ * once and memoized. Raw paths are passed through, and query parameters are encoded as in the canonical
+ * request of SigV4: everything except unreserved characters is percent-encoded.
+ */
+public final class RemoteEndpointResolver
+{
+    private static final int MAX_CACHED_ORIGINS = 10_000;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final RemoteS3HostBuilder hostBuilder;
+    private final String scheme;
+    private final Optional<Integer> port;
+    private final boolean bucketInPath;
+    // region -> bucket -> scheme, host and port
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> origins = new ConcurrentHashMap<>();
+
+    public RemoteEndpointResolver(RemoteS3HostBuilder hostBuilder, boolean https, Optional<Integer> port, boolean bucketInPath)
+    {
+        this.hostBuilder = requireNonNull(hostBuilder, "hostBuilder is null");
+        this.scheme = https ? "https" : "http";
+        this.port = requireNonNull(port, "port is null");
+        this.bucketInPath = bucketInPath;
+    }
+
+    public URI resolve(String rawPath, MultiMap queryParameters, String bucket, String region)
+    {
+        String origin = origin(bucket, region);
+        String path = rawPath.startsWith("/") ? rawPath.substring(1) : rawPath;
+
+        StringBuilder uri = new StringBuilder(origin.length() + bucket.length() + path.length() + 64);
+        uri.append(origin).append('/');
+        if (bucketInPath && !bucket.isEmpty()) {
+            appendPath(uri, bucket);
+            if (!rawPath.isEmpty()) {
+                uri.append('/');
+            }
+        }
+        appendPath(uri, path);
+        appendQuery(uri, queryParameters);
+        return URI.create(uri.toString());
+    }
+
+    /**
+     * The encoded query of the parameters, empty if there are none
+     */
+    public static Optional<String> rawQuery(MultiMap queryParameters)
+    {
+        StringBuilder query = new StringBuilder();
+        appendQuery(query, queryParameters);
+        return query.isEmpty() ? Optional.empty() : Optional.of(query.substring(1));
+    }
+
+    private String origin(String bucket, String region)
+    {
+        ConcurrentMap<String, String> regionOrigins = origins.get(region);
+        if (regionOrigins == null) {
+            if (origins.size() >= MAX_CACHED_ORIGINS) {
+                origins.clear();
+            }
+            regionOrigins = origins.computeIfAbsent(region, _ -> new ConcurrentHashMap<>());
+        }
+        String origin = regionOrigins.get(bucket);
+        if (origin == null) {
+            if (regionOrigins.size() >= MAX_CACHED_ORIGINS) {
+                regionOrigins.clear();
+            }
+            origin = buildOrigin(bucket, region);
+            regionOrigins.put(bucket, origin);
+        }
+        return origin;
+    }
+
+    private String buildOrigin(String bucket, String region)
+    {
+        return scheme + "://" + hostBuilder.build(bucket, region) + port.map(value -> ":" + value).orElse("");
+    }
+
+    private static void appendPath(StringBuilder uri, String rawPath)
+    {
+        append(uri, rawPath, true);
+    }
+
+    private static void appendQuery(StringBuilder uri, MultiMap queryParameters)
+    {
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : queryParameters.entrySet()) {
+            for (String value : entry.getValue()) {
+                uri.append(first ? '?' : '&');
+                first = false;
+                append(uri, entry.getKey(), false);
+                uri.append('=');
+                append(uri, value, false);
+            }
+        }
+    }
+
+    private static void append(StringBuilder uri, String value, boolean path)
+    {
+        int position = 0;
+        while (position < value.length()) {
+            char c = value.charAt(position);
+            if (path ? isPathCharacter(c) : isUnreserved(c)) {
+                uri.append(c);
+                position++;
+                continue;
+            }
+            int end = (Character.isHighSurrogate(c) && (position + 1 < value.length())) ? position + 2 : position + 1;
+            for (byte b : value.substring(position, end).getBytes(StandardCharsets.UTF_8)) {
+                uri.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+            position = end;
+        }
+    }
+
+    private static boolean isUnreserved(char c)
+    {
+        return ((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) || ((c >= '0') && (c <= '9')) || (c == '-') || (c == '_') || (c == '.') || (c == '~');
+    }
+
+    private static boolean isPathCharacter(char c)
+    {
+        // unreserved, sub-delims, ':', '@', '/' and the '%' of existing escapes
+        return isUnreserved(c) || ("!$&'()*+,;=:@/%".indexOf(c) >= 0);
+    }
+}
@@ -13,16 +13,46 @@
  */
 package io.trino.aws.proxy.server.remote;
 
+import io.airlift.http.client.HttpClient;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
 import jakarta.ws.rs.core.UriBuilder;
 
 import java.net.URI;
+import java.util.Optional;
 
 public interface RemoteS3Facade
 {
     URI buildEndpoint(UriBuilder uriBuilder, String path, String bucket, String region);
 
+    /**
+     * Build the remote URI of a request from its raw path and its decoded query parameters
+     */
+    default URI buildEndpoint(String rawPath, MultiMap queryParameters, String bucket, String region)
+    {
+        UriBuilder uriBuilder = UriBuilder.newInstance();
+        queryParameters.forEachEntry(uriBuilder::queryParam);
+        return buildEndpoint(uriBuilder, rawPath, bucket, region);
+    }
+
+    /**
+     * The region used to sign requests for the bucket
+     */
+    default String remoteRegion(String bucket, String region)
+    {
+        return region;
+    }
+
+    /**
+     * The HTTP client dedicated to the backend of the bucket, if any. Otherwise the shared proxy client is used
+     */
+    default Optional<HttpClient> httpClient(String bucket)
+    {
+        return Optional.empty();
+    }
+
     default URI remoteUri(String region)
     {
-        return buildEndpoint(UriBuilder.newInstance(), "/", "", region);
+        return buildEndpoint("/", ImmutableMultiMap.empty(), "", region);
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+
+public class RoutingConfig
+{
+    private boolean enabled;
+    private List<String> backends = ImmutableList.of();
+    private Optional<String> defaultBackend = Optional.empty();
+
+    @Config("s3proxy.routing.enabled")
+    @ConfigDescription("Route requests to the backend configured for their bucket instead of AWS S3")
+    public RoutingConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.routing.backends")
+    @ConfigDescription("Names of the backends. Each is configured with s3proxy.routing.backend.<name>.* properties")
+    public RoutingConfig setBackends(List<String> backends)
+    {
+        this.backends = ImmutableList.copyOf(backends);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getBackends()
+    {
+        return backends;
+    }
+
+    @Config("s3proxy.routing.default-backend")
+    @ConfigDescription("Backend for buckets that match no pattern and for requests without a bucket, optional")
+    public RoutingConfig setDefaultBackend(String defaultBackend)
+    {
+        this.defaultBackend = Optional.ofNullable(defaultBackend);
+        return this;
+    }
+
+    @NotNull
+    public Optional<String> getDefaultBackend()
+    {
+        return defaultBackend;
+    }
+
+    @AssertTrue(message = "s3proxy.routing.default-backend must be one of s3proxy.routing.backends")
+    public boolean isDefaultBackendValid()
+    {
+        return defaultBackend.map(backends::contains).orElse(true);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Binder;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import io.airlift.configuration.AbstractConfigurationAwareModule;
+import io.airlift.http.client.HttpClientConfig;
+import io.airlift.http.client.jetty.JettyHttpClient;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import io.trino.aws.proxy.server.dns.DnsCache;
+import io.trino.aws.proxy.server.remote.RoutingRemoteS3Facade.Backend;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binds a {@link RoutingRemoteS3Facade} built from {@code s3proxy.routing.*} properties
+ */
+public class RoutingModule
+        extends AbstractConfigurationAwareModule
+{
+    private static final String BACKEND_PREFIX = "s3proxy.routing.backend.";
+
+    @Override
+    protected void setup(Binder binder)
+    {
+        RoutingConfig routingConfig = buildConfigObject(RoutingConfig.class);
+
+        ImmutableList.Builder<BackendDefinition> backends = ImmutableList.builder();
+        for (String name : routingConfig.getBackends()) {
+            String prefix = BACKEND_PREFIX + name;
+            backends.add(new BackendDefinition(
+                    name,
+                    buildConfigObject(RemoteBackendConfig.class, prefix),
+                    buildConfigObject(LoadBalancingConfig.class, prefix),
+                    buildConfigObject(HttpClientConfig.class, prefix)));
+        }
+        binder.bind(RoutingDefinition.class).toInstance(new RoutingDefinition(backends.build(), routingConfig.getDefaultBackend()));
+    }
+
+    @Provides
+    @Singleton
+    public RemoteS3Facade newRoutingRemoteS3Facade(RoutingDefinition routing, DnsCache dnsCache, OpenTelemetry openTelemetry, Tracer tracer)
+    {
+        List<Backend> backends = routing.backends().stream()
+                .map(definition -> Backend.fromConfig(
+                        definition.name(),
+                        definition.config(),
+                        definition.loadBalancingConfig(),
+                        dnsCache.monitor(new JettyHttpClient("S3Backend-" + definition.name(), definition.httpClientConfig(), ImmutableList.of(), openTelemetry, tracer, Optional.empty(), Optional.empty()))))
+                .collect(toImmutableList());
+        return new RoutingRemoteS3Facade(backends, routing.defaultBackend());
+    }
+
+    record BackendDefinition(String name, RemoteBackendConfig config, LoadBalancingConfig loadBalancingConfig, HttpClientConfig httpClientConfig)
+    {
+        BackendDefinition
+        {
+            requireNonNull(name, "name is null");
+            requireNonNull(config, "config is null");
+            requireNonNull(loadBalancingConfig, "loadBalancingConfig is null");
+            requireNonNull(httpClientConfig, "httpClientConfig is null");
+        }
+    }
+
+    record RoutingDefinition(List<BackendDefinition> backends, Optional<String> defaultBackend)
+    {
+        RoutingDefinition
+        {
+            backends = ImmutableList.copyOf(backends);
+            requireNonNull(defaultBackend, "defaultBackend is null");
+        }
+    }
+}
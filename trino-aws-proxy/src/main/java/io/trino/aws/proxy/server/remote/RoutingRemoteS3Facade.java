@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
+import io.airlift.http.client.HttpClient;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.trino.aws.proxy.server.remote.AwsRemoteS3FacadeConstants.PATH_BUILDER;
+import static io.trino.aws.proxy.server.remote.AwsRemoteS3FacadeConstants.VIRTUAL_HOST_BUILDER;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends the requests of each bucket to the backend whose pattern matches the bucket. Every backend has
+ * its own endpoint, addressing style, region and HTTP client. Routes are compiled into a {@link BucketTrie}
+ * at startup so that selecting a backend is a lock-free walk of the bucket name.
+ */
+public class RoutingRemoteS3Facade
+        implements RemoteS3Facade
+{
+    private static final Logger log = Logger.get(RoutingRemoteS3Facade.class);
+
+    public record Backend(String name, List<String> buckets, RemoteS3Facade facade, Optional<String> region, HttpClient httpClient)
+    {
+        public Backend
+        {
+            requireNonNull(name, "name is null");
+            buckets = ImmutableList.copyOf(buckets);
+            requireNonNull(facade, "facade is null");
+            requireNonNull(region, "region is null");
+            requireNonNull(httpClient, "httpClient is null");
+        }
+
+        public static Backend fromConfig(String name, RemoteBackendConfig config, LoadBalancingConfig loadBalancingConfig, HttpClient httpClient)
+        {
+            RemoteS3Facade facade;
+            if (config.getEndpoints().isEmpty()) {
+                facade = facade(config.getHostname(), config.getPort(), config.isHttps(), config.isPathStyle());
+            }
+            else {
+                List<UpstreamEndpoint> endpoints = config.getEndpoints().stream()
+                        .map(HostAndPort::fromString)
+                        .map(address -> {
+                            Optional<Integer> port = address.hasPort() ? Optional.of(address.getPort()) : config.getPort();
+                            RemoteS3Facade endpointFacade = facade(Optional.of(address.getHost()), port, config.isHttps(), config.isPathStyle());
+                            URI healthCheckUri = UriBuilder.newInstance()
+                                    .scheme(config.isHttps() ? "https" : "http")
+                                    .host(address.getHost())
+                                    .port(port.orElse(-1))
+                                    .path(loadBalancingConfig.getHealthCheckPath())
+                                    .build();
+                            return new UpstreamEndpoint(address.getHost(), port, endpointFacade, healthCheckUri);
+                        })
+                        .collect(toImmutableList());
+                facade = new LoadBalancingRemoteS3Facade(name, endpoints, loadBalancingConfig, httpClient, Ticker.systemTicker());
+            }
+            return new Backend(name, config.getBuckets(), facade, config.getRegion(), httpClient);
+        }
+
+        private static RemoteS3Facade facade(Optional<String> hostname, Optional<Integer> port, boolean https, boolean pathStyle)
+        {
+            return hostname
+                    .map(host -> pathStyle
+                            ? new PathStyleRemoteS3Facade((_, _) -> host, https, port)
+                            : new VirtualHostStyleRemoteS3Facade((bucket, _) -> bucket.isEmpty() ? host : bucket + "." + host, https, port))
+                    .orElseGet(() -> pathStyle
+                            ? new PathStyleRemoteS3Facade(PATH_BUILDER, https, port)
+                            : new VirtualHostStyleRemoteS3Facade(VIRTUAL_HOST_BUILDER, https, port));
+        }
+    }
+
+    private final List<Backend> backends;
+    private final BucketTrie<Backend> routes;
+    private final Optional<Backend> defaultBackend;
+
+    public RoutingRemoteS3Facade(List<Backend> backends, Optional<String> defaultBackend)
+    {
+        this.backends = ImmutableList.copyOf(backends);
+        requireNonNull(defaultBackend, "defaultBackend is null");
+
+        Map<String, Backend> backendsByName = new HashMap<>();
+        Map<String, Backend> patterns = new HashMap<>();
+        for (Backend backend : this.backends) {
+            checkArgument(backendsByName.put(backend.name(), backend) == null, "Duplicate backend: %s", backend.name());
+            for (String pattern : backend.buckets()) {
+                Backend previous = patterns.put(pattern, backend);
+                if (previous != null) {
+                    throw new IllegalArgumentException("Bucket pattern %s is routed to both %s and %s".formatted(pattern, previous.name(), backend.name()));
+                }
+            }
+        }
+        this.routes = BucketTrie.build(ImmutableMap.copyOf(patterns));
+        this.defaultBackend = defaultBackend.map(name -> {
+            Backend backend = backendsByName.get(name);
+            checkArgument(backend != null, "Unknown default backend: %s", name);
+            return backend;
+        });
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        loadBalancers().forEach(LoadBalancingRemoteS3Facade::start);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        loadBalancers().forEach(LoadBalancingRemoteS3Facade::stop);
+        backends.forEach(backend -> backend.httpClient().close());
+    }
+
+    @Override
+    public URI buildEndpoint(UriBuilder uriBuilder, String path, String bucket, String region)
+    {
+        Backend backend = backend(bucket);
+        return backend.facade().buildEndpoint(uriBuilder, path, bucket, backend.region().orElse(region));
+    }
+
+    @Override
+    public URI buildEndpoint(String rawPath, MultiMap queryParameters, String bucket, String region)
+    {
+        Backend backend = backend(bucket);
+        return backend.facade().buildEndpoint(rawPath, queryParameters, bucket, backend.region().orElse(region));
+    }
+
+    @Override
+    public String remoteRegion(String bucket, String region)
+    {
+        return backend(bucket).region().orElse(region);
+    }
+
+    @Override
+    public Optional<HttpClient> httpClient(String bucket)
+    {
+        Backend backend = backend(bucket);
+        return backend.facade().httpClient(bucket).or(() -> Optional.of(backend.httpClient()));
+    }
+
+    public List<Backend> getBackends()
+    {
+        return backends;
+    }
+
+    private List<LoadBalancingRemoteS3Facade> loadBalancers()
+    {
+        return backends.stream()
+                .map(Backend::facade)
+                .filter(LoadBalancingRemoteS3Facade.class::isInstance)
+                .map(LoadBalancingRemoteS3Facade.class::cast)
+                .collect(toImmutableList());
+    }
+
+    private Backend backend(String bucket)
+    {
+        Optional<Backend> backend = bucket.isEmpty() ? defaultBackend : routes.match(bucket).or(() -> defaultBackend);
+        return backend.orElseThrow(() -> {
+            log.debug("No backend for bucket: %s", bucket);
+            return new WebApplicationException(Response.Status.NOT_FOUND);
+        });
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * One endpoint of a load balanced backend, with its outstanding requests and health. Everything read when
+ * selecting an endpoint is a volatile or atomic field, so selection never locks.
+ */
+public final class UpstreamEndpoint
+{
+    private final String host;
+    private final Optional<Integer> port;
+    private final RemoteS3Facade facade;
+    private final URI healthCheckUri;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean healthy = true;
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+    // guarded by the owning LoadBalancingRemoteS3Facade
+    private int ejections;
+
+    public UpstreamEndpoint(String host, Optional<Integer> port, RemoteS3Facade facade, URI healthCheckUri)
+    {
+        this.host = requireNonNull(host, "host is null");
+        this.port = requireNonNull(port, "port is null");
+        this.facade = requireNonNull(facade, "facade is null");
+        this.healthCheckUri = requireNonNull(healthCheckUri, "healthCheckUri is null");
+    }
+
+    public String host()
+    {
+        return host;
+    }
+
+    public Optional<Integer> port()
+    {
+        return port;
+    }
+
+    public RemoteS3Facade facade()
+    {
+        return facade;
+    }
+
+    public URI healthCheckUri()
+    {
+        return healthCheckUri;
+    }
+
+    public int outstandingRequests()
+    {
+        return outstandingRequests.get();
+    }
+
+    public boolean isHealthy()
+    {
+        return healthy;
+    }
+
+    public boolean isEjected(long now)
+    {
+        return ejected && (now - ejectedUntil < 0);
+    }
+
+    boolean isAvailable(long now)
+    {
+        return healthy && !isEjected(now);
+    }
+
+    /**
+     * Whether the URI addresses this endpoint, directly or through a virtual-host style bucket subdomain
+     */
+    boolean serves(URI uri)
+    {
+        if (uri.getPort() != port.orElse(-1)) {
+            return false;
+        }
+        String uriHost = uri.getHost();
+        return (uriHost != null) && (uriHost.equals(host) || (uriHost.endsWith(host) && (uriHost.charAt(uriHost.length() - host.length() - 1) == '.')));
+    }
+
+    void requestStarted()
+    {
+        outstandingRequests.incrementAndGet();
+    }
+
+    void requestFinished()
+    {
+        outstandingRequests.decrementAndGet();
+    }
+
+    void setHealthy(boolean healthy)
+    {
+        this.healthy = healthy;
+    }
+
+    int recordFailure()
+    {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Clear the consecutive failures, returning whether the endpoint had been ejected before
+     */
+    boolean recordSuccess()
+    {
+        // avoid writing the shared counter on the common path
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        return ejected;
+    }
+
+    int ejections()
+    {
+        return ejections;
+    }
+
+    void eject(long until)
+    {
+        ejections++;
+        consecutiveFailures.set(0);
+        ejectedUntil = until;
+        ejected = true;
+    }
+
+    void restore()
+    {
+        ejections = 0;
+        ejected = false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return port.map(value -> host + ":" + value).orElse(host);
+    }
+}
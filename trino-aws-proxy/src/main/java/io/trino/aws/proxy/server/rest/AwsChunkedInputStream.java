@@ -14,6 +14,7 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.common.base.Splitter;
+import io.trino.aws.proxy.server.buffer.BufferPool;
 import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
 import org.apache.commons.httpclient.util.EncodingUtil;
 
@@ -34,6 +35,7 @@ class AwsChunkedInputStream
 {
     private final InputStream delegate;
     private final Optional<ChunkSigningSession> chunkSigningSession;
+    private final BufferPool bufferPool;
 
     private int chunkSize;
     private int position;
@@ -41,10 +43,11 @@ class AwsChunkedInputStream
     private boolean eof;
     private boolean closed;
 
-    AwsChunkedInputStream(InputStream delegate, Optional<ChunkSigningSession> chunkSigningSession)
+    AwsChunkedInputStream(InputStream delegate, Optional<ChunkSigningSession> chunkSigningSession, BufferPool bufferPool)
     {
         this.delegate = requireNonNull(delegate, "delegate is null");
         this.chunkSigningSession = requireNonNull(chunkSigningSession, "chunkSigningSession is null");
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
     }
 
     public int read()
@@ -232,7 +235,7 @@ class AwsChunkedInputStream
         if (!closed) {
             try {
                 if (!eof) {
-                    exhaustInputStream(this);
+                    exhaustInputStream(this, bufferPool);
                 }
             }
             finally {
@@ -243,13 +246,18 @@ class AwsChunkedInputStream
     }
 
     @SuppressWarnings("StatementWithEmptyBody")
-    private static void exhaustInputStream(InputStream inStream)
+    private static void exhaustInputStream(InputStream inStream, BufferPool bufferPool)
             throws IOException
     {
         // read and discard the remainder of the message
-        byte[] buffer = new byte[8192];
-        while (inStream.read(buffer) >= 0) {
-            // NOP
+        byte[] buffer = bufferPool.borrow(BufferPool.TRANSFER_BUFFER_SIZE);
+        try {
+            while (inStream.read(buffer) >= 0) {
+                // NOP
+            }
+        }
+        finally {
+            bufferPool.release(buffer);
         }
     }
 }
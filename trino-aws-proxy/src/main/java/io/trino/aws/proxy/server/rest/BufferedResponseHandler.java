@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.http.client.ResponseHandlerUtils.propagate;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads a remote response fully into memory. Used when the proxy, rather than the client, consumes a remote response.
+ */
+class BufferedResponseHandler
+        implements ResponseHandler<BufferedResponseHandler.BufferedResponse, RuntimeException>
+{
+    // headers that describe the transfer rather than the entity. They are recomputed when a buffered response is replayed.
+    private static final Set<String> NON_ENTITY_HEADERS = ImmutableSet.of("content-length", "content-range", "transfer-encoding", "connection", "keep-alive", "date");
+
+    private static final long MAX_ERROR_BODY_SIZE = 64 * 1024;
+
+    private final long maxBodySize;
+
+    record BufferedResponse(int statusCode, MultiMap headers, byte[] body)
+    {
+        BufferedResponse
+        {
+            requireNonNull(headers, "headers is null");
+            requireNonNull(body, "body is null");
+        }
+
+        boolean isSuccess()
+        {
+            return HttpStatus.familyForStatusCode(statusCode) == HttpStatus.Family.SUCCESSFUL;
+        }
+
+        MultiMap entityHeaders()
+        {
+            ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(false);
+            headers.forEach((name, values) -> {
+                if (!NON_ENTITY_HEADERS.contains(name)) {
+                    builder.addAll(name, values);
+                }
+            });
+            return builder.build();
+        }
+    }
+
+    BufferedResponseHandler(long maxBodySize)
+    {
+        checkArgument(maxBodySize >= 0, "maxBodySize is negative");
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public BufferedResponse handleException(Request request, Exception exception)
+    {
+        throw propagate(request, exception);
+    }
+
+    @Override
+    public BufferedResponse handle(Request request, Response response)
+    {
+        ImmutableMultiMap.Builder headers = ImmutableMultiMap.builder(false);
+        response.getHeaders().forEach((name, value) -> headers.add(name.toString(), value));
+
+        // error bodies are small XML documents that are returned to the client as-is
+        long limit = (HttpStatus.familyForStatusCode(response.getStatusCode()) == HttpStatus.Family.SUCCESSFUL) ? maxBodySize : Math.max(maxBodySize, MAX_ERROR_BODY_SIZE);
+        byte[] body;
+        try (InputStream inputStream = response.getInputStream()) {
+            body = ByteStreams.toByteArray(ByteStreams.limit(inputStream, limit + 1));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (body.length > limit) {
+            throw new IllegalStateException("Remote response body exceeds maximum of %s bytes. Request: %s".formatted(limit, request.getUri()));
+        }
+
+        return new BufferedResponse(response.getStatusCode(), headers.build(), body);
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.cache.ByteRange;
+import io.trino.aws.proxy.server.cache.CachedObjectMetadata;
+import io.trino.aws.proxy.server.cache.CachedRange;
+import io.trino.aws.proxy.server.cache.ListObjectsCache;
+import io.trino.aws.proxy.server.cache.ListObjectsCache.IndexBuild;
+import io.trino.aws.proxy.server.cache.ListObjectsCacheKey;
+import io.trino.aws.proxy.server.cache.ListObjectsPage;
+import io.trino.aws.proxy.server.cache.ListObjectsV2Parameters;
+import io.trino.aws.proxy.server.cache.ObjectCacheKey;
+import io.trino.aws.proxy.server.cache.ObjectListing;
+import io.trino.aws.proxy.server.cache.ObjectMetadataCache;
+import io.trino.aws.proxy.server.cache.ReadAheadController;
+import io.trino.aws.proxy.server.cluster.ClusterPeer;
+import io.trino.aws.proxy.server.cluster.PeerCache;
+import io.trino.aws.proxy.server.credentials.CredentialsController;
+import io.trino.aws.proxy.server.remote.RemoteEndpointResolver;
+import io.trino.aws.proxy.server.rest.BufferedResponseHandler.BufferedResponse;
+import io.trino.aws.proxy.server.rest.WarmupRequest.Target;
+import io.trino.aws.proxy.server.rest.WarmupRequest.WarmupObject;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.Managed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.net.UrlEscapers.urlPathSegmentEscaper;
+import static java.util.Objects.requireNonNull;
+import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Runs cache warmup jobs in the background. Jobs list the requested prefixes and fetch the metadata, footers,
+ * ranges or whole objects into the proxy caches, using the same remote requests and caches as client requests.
+ * The remote request rate of all jobs together is limited so that a warmup does not compete with client traffic.
+ */
+public class CacheWarmer
+{
+    private static final Logger log = Logger.get(CacheWarmer.class);
+
+    private static final String DEFAULT_REGION = "us-east-1";
+    // 1000 keys of up to 1024 bytes each, URL encoded, plus the XML around them
+    private static final long MAX_LIST_RESPONSE_SIZE = 16 * 1024 * 1024;
+
+    private final TrinoS3ProxyClient proxyClient;
+    private final CredentialsController credentialsController;
+    private final ObjectMetadataCache objectMetadataCache;
+    private final ListObjectsCache listObjectsCache;
+    private final ReadAheadController readAheadController;
+    private final PeerCache peerCache;
+    private final long footerSize;
+    private final long maxObjectSize;
+    private final int maxRetainedJobs;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService executor;
+    // guarded by this, in creation order
+    private final Map<String, WarmupJob> jobs = new LinkedHashMap<>();
+
+    @Inject
+    public CacheWarmer(
+            CacheWarmupConfig cacheWarmupConfig,
+            TrinoS3ProxyClient proxyClient,
+            CredentialsController credentialsController,
+            ObjectMetadataCache objectMetadataCache,
+            ListObjectsCache listObjectsCache,
+            ReadAheadController readAheadController,
+            PeerCache peerCache)
+    {
+        this.proxyClient = requireNonNull(proxyClient, "proxyClient is null");
+        this.credentialsController = requireNonNull(credentialsController, "credentialsController is null");
+        this.objectMetadataCache = requireNonNull(objectMetadataCache, "objectMetadataCache is null");
+        this.listObjectsCache = requireNonNull(listObjectsCache, "listObjectsCache is null");
+        this.readAheadController = requireNonNull(readAheadController, "readAheadController is null");
+        this.peerCache = requireNonNull(peerCache, "peerCache is null");
+        footerSize = cacheWarmupConfig.getFooterSize().toBytes();
+        maxObjectSize = cacheWarmupConfig.getMaxObjectSize().toBytes();
+        maxRetainedJobs = cacheWarmupConfig.getMaxRetainedJobs();
+        rateLimiter = RateLimiter.create(cacheWarmupConfig.getMaxRequestsPerSecond());
+        executor = Executors.newFixedThreadPool(cacheWarmupConfig.getMaxConcurrentJobs(), Thread.ofVirtual().name("s3proxy-cache-warmup-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue a warmup job. Returns empty if the access key is not known.
+     */
+    public Optional<WarmupJob> start(WarmupRequest request)
+    {
+        if (credentialsController.withCredentials(randomUUID(), request.accessKey(), Optional.empty(), _ -> Optional.of(true)).isEmpty()) {
+            return Optional.empty();
+        }
+
+        WarmupJob job = new WarmupJob(randomUUID().toString(), request);
+        synchronized (this) {
+            jobs.put(job.getId(), job);
+            pruneJobs();
+        }
+        job.setFuture(executor.submit(() -> run(job)));
+        return Optional.of(job);
+    }
+
+    public synchronized List<WarmupJob> getJobs()
+    {
+        return ImmutableList.copyOf(jobs.values());
+    }
+
+    public synchronized Optional<WarmupJob> getJob(String id)
+    {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public Optional<WarmupJob> cancel(String id)
+    {
+        Optional<WarmupJob> job = getJob(id);
+        job.ifPresent(WarmupJob::cancel);
+        return job;
+    }
+
+    @Managed
+    public synchronized long getActiveJobs()
+    {
+        return jobs.values().stream().filter(job -> !job.getState().isDone()).count();
+    }
+
+    private void pruneJobs()
+    {
+        long finishedJobs = jobs.values().stream().filter(job -> job.getState().isDone()).count();
+        Iterator<WarmupJob> iterator = jobs.values().iterator();
+        while ((finishedJobs > maxRetainedJobs) && iterator.hasNext()) {
+            if (iterator.next().getState().isDone()) {
+                iterator.remove();
+                finishedJobs--;
+            }
+        }
+    }
+
+    private void run(WarmupJob job)
+    {
+        if (!job.start()) {
+            return;
+        }
+
+        Optional<String> error = Optional.empty();
+        try {
+            for (String prefix : job.getRequest().prefixes()) {
+                warmPrefix(job, prefix);
+            }
+            for (WarmupObject object : job.getRequest().objects()) {
+                warmObject(job, object.key(), OptionalLong.empty(), object.ranges());
+            }
+        }
+        catch (CancellationException _) {
+            // the job is already marked as cancelled
+        }
+        catch (RuntimeException e) {
+            log.warn(e, "Cache warmup failed. Job: %s", job.getId());
+            error = Optional.of(firstNonNull(e.getMessage(), e.getClass().getName()));
+        }
+        job.finish(error);
+    }
+
+    private void warmPrefix(WarmupJob job, String prefix)
+    {
+        WarmupRequest request = job.getRequest();
+        Optional<IndexBuild> indexBuild = Optional.empty();
+        if (request.targets().contains(Target.LISTING)) {
+            if (listObjectsCache.isEnabled()) {
+                ListObjectsV2Parameters parameters = new ListObjectsV2Parameters(prefix, Optional.empty(), Optional.empty(), Optional.empty(), OptionalInt.empty(), Optional.empty());
+                indexBuild = listObjectsCache.lookup(new ListObjectsCacheKey(request.accessKey(), request.bucket(), parameters)).startIndexBuild();
+            }
+            if (indexBuild.isEmpty()) {
+                job.skipped();
+            }
+        }
+
+        try {
+            Optional<String> continuationToken = Optional.empty();
+            do {
+                ImmutableMultiMap.Builder queryBuilder = ImmutableMultiMap.builder(true)
+                        .putOrReplaceSingle("list-type", "2")
+                        .putOrReplaceSingle("prefix", prefix)
+                        .putOrReplaceSingle("max-keys", "1000");
+                continuationToken.ifPresent(token -> queryBuilder.putOrReplaceSingle("continuation-token", token));
+
+                BufferedResponse response = execute(job, "GET", "", queryBuilder.build(), Optional.empty(), MAX_LIST_RESPONSE_SIZE);
+                if (!response.isSuccess()) {
+                    throw new IllegalStateException("Listing failed with status %s. Prefix: %s".formatted(response.statusCode(), prefix));
+                }
+                indexBuild = addIndexPage(job, indexBuild, response);
+
+                ListObjectsPage page = ListObjectsPage.parse(response.body());
+                ObjectListing contents = page.contents();
+                for (int position = 0; position < contents.size(); position++) {
+                    warmObject(job, contents.key(position), OptionalLong.of(contents.objectSize(position)), ImmutableList.of());
+                }
+                continuationToken = page.header().isTruncated() ? page.header().nextContinuationToken() : Optional.empty();
+            }
+            while (continuationToken.isPresent());
+
+            indexBuild.ifPresent(build -> {
+                build.complete();
+                job.listingWarmed();
+            });
+        }
+        catch (IOException | RuntimeException e) {
+            indexBuild.ifPresent(IndexBuild::abandon);
+            checkCancelled(job);
+            log.debug(e, "Could not warm prefix. Job: %s, Prefix: %s", job.getId(), prefix);
+            job.failed();
+        }
+    }
+
+    private static Optional<IndexBuild> addIndexPage(WarmupJob job, Optional<IndexBuild> indexBuild, BufferedResponse response)
+    {
+        if (indexBuild.isEmpty()) {
+            return indexBuild;
+        }
+        try {
+            indexBuild.get().addPage(response.headers(), response.body());
+            return indexBuild;
+        }
+        catch (IOException e) {
+            // the prefix can not be indexed, but its objects can still be warmed
+            indexBuild.get().abandon();
+            job.skipped();
+            return Optional.empty();
+        }
+    }
+
+    private void warmObject(WarmupJob job, String key, OptionalLong listedSize, List<ByteRange> ranges)
+    {
+        Set<Target> targets = job.getRequest().targets();
+        ObjectCacheKey cacheKey = new ObjectCacheKey(job.getRequest().accessKey(), job.getRequest().bucket(), key);
+        try {
+            OptionalLong objectSize = listedSize;
+            boolean wantsData = targets.contains(Target.FOOTERS) || targets.contains(Target.OBJECTS);
+            if (targets.contains(Target.METADATA) || (objectSize.isEmpty() && wantsData)) {
+                Optional<CachedObjectMetadata> metadata = warmMetadata(job, cacheKey, targets.contains(Target.METADATA));
+                if (metadata.isEmpty() || (metadata.get().statusCode() != 200)) {
+                    // missing objects have no data to warm
+                    job.objectProcessed();
+                    return;
+                }
+                if (objectSize.isEmpty()) {
+                    objectSize = contentLength(metadata.get());
+                }
+            }
+
+            List<ByteRange> fetches = new ArrayList<>(ranges);
+            if (objectSize.isPresent() && (objectSize.getAsLong() > 0)) {
+                long size = objectSize.getAsLong();
+                if (targets.contains(Target.OBJECTS) && (size <= maxObjectSize)) {
+                    fetches.add(new ByteRange(0, size - 1));
+                }
+                else if (targets.contains(Target.FOOTERS)) {
+                    fetches.add(new ByteRange(Math.max(0, size - footerSize), size - 1));
+                }
+                if (targets.contains(Target.OBJECTS) && (size > maxObjectSize)) {
+                    job.skipped();
+                }
+            }
+            for (ByteRange range : fetches) {
+                warmRange(job, cacheKey, range);
+            }
+            job.objectProcessed();
+        }
+        catch (RuntimeException e) {
+            checkCancelled(job);
+            log.debug(e, "Could not warm object. Job: %s, Key: %s", job.getId(), key);
+            job.failed();
+        }
+    }
+
+    /**
+     * Fetch the metadata of the object, storing it in the metadata cache of its owner if requested
+     */
+    private Optional<CachedObjectMetadata> warmMetadata(WarmupJob job, ObjectCacheKey cacheKey, boolean store)
+    {
+        Optional<ClusterPeer> owner = peerCache.remoteOwner(cacheKey.bucket(), cacheKey.key());
+        Optional<ObjectMetadataCache.Lookup> lookup = Optional.empty();
+        if (store && owner.isEmpty() && objectMetadataCache.isEnabled()) {
+            // the lookup is made before the remote request so that an invalidation in between is detected
+            lookup = Optional.of(objectMetadataCache.lookup(cacheKey));
+            Optional<CachedObjectMetadata> cached = lookup.get().cached();
+            if (cached.isPresent()) {
+                job.metadataWarmed();
+                return cached;
+            }
+        }
+
+        // HeadObject responses have no body
+        BufferedResponse response = execute(job, "HEAD", cacheKey.key(), ImmutableMultiMap.empty(), Optional.empty(), 0);
+        CachedObjectMetadata metadata = CachedObjectMetadata.fromRemoteResponse(response.statusCode(), response.headers());
+        if (store) {
+            if (owner.isPresent()) {
+                peerCache.storeMetadata(owner.get(), cacheKey, metadata);
+                job.metadataWarmed();
+            }
+            else if (lookup.isPresent()) {
+                lookup.get().store(metadata);
+                job.metadataWarmed();
+            }
+            else {
+                job.skipped();
+            }
+        }
+        return Optional.of(metadata);
+    }
+
+    private void warmRange(WarmupJob job, ObjectCacheKey cacheKey, ByteRange range)
+    {
+        if (!readAheadController.isEnabled() || (range.length() > maxObjectSize)) {
+            job.skipped();
+            return;
+        }
+
+        BufferedResponse response = execute(job, "GET", cacheKey.key(), ImmutableMultiMap.empty(), Optional.of(range), range.length());
+        Optional<CachedRange> cachedRange = TrinoS3ProxyClient.toCachedRange(response, range);
+        if (cachedRange.isPresent() && readAheadController.warm(cacheKey, cachedRange.get())) {
+            job.rangeWarmed(cachedRange.get().range().length());
+        }
+        else {
+            job.skipped();
+        }
+    }
+
+    private BufferedResponse execute(WarmupJob job, String httpVerb, String key, MultiMap queryParameters, Optional<ByteRange> range, long maxBodySize)
+    {
+        checkCancelled(job);
+        rateLimiter.acquire();
+        checkCancelled(job);
+
+        WarmupRequest warmupRequest = job.getRequest();
+        ImmutableMultiMap.Builder headers = ImmutableMultiMap.builder(false)
+                // replaced when the remote request is built
+                .putOrReplaceSingle("host", "")
+                .putOrReplaceSingle("x-amz-date", "")
+                .putOrReplaceSingle("x-amz-content-sha256", "UNSIGNED-PAYLOAD");
+        range.ifPresent(value -> headers.putOrReplaceSingle("range", value.toRangeHeader()));
+
+        ParsedS3Request request = new ParsedS3Request(
+                randomUUID(),
+                new RequestAuthorization("", warmupRequest.accessKey(), warmupRequest.region().orElse(DEFAULT_REGION), "", ImmutableSet.of(), "", Optional.empty()),
+                "",
+                warmupRequest.bucket(),
+                key,
+                headers.build(),
+                queryParameters,
+                httpVerb,
+                rawPath(key),
+                RemoteEndpointResolver.rawQuery(queryParameters),
+                RequestContent.EMPTY);
+
+        return withSigningMetadata(warmupRequest, signingMetadata -> proxyClient.executeInternal(signingMetadata, request, maxBodySize));
+    }
+
+    private <T> T withSigningMetadata(WarmupRequest request, Function<SigningMetadata, T> function)
+    {
+        return credentialsController.withCredentials(randomUUID(), request.accessKey(), Optional.empty(), credentials -> Optional.of(function.apply(new SigningMetadata(SigningServiceType.S3, credentials, Optional.empty()))))
+                .orElseThrow(() -> new IllegalStateException("Credentials are no longer available for access key: " + request.accessKey()));
+    }
+
+    private static void checkCancelled(WarmupJob job)
+    {
+        if (job.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private static OptionalLong contentLength(CachedObjectMetadata metadata)
+    {
+        try {
+            return metadata.headers().getFirst("content-length").map(value -> OptionalLong.of(Long.parseLong(value))).orElse(OptionalLong.empty());
+        }
+        catch (NumberFormatException _) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private static String rawPath(String key)
+    {
+        return Arrays.stream(key.split("/", -1))
+                .map(urlPathSegmentEscaper()::escape)
+                .collect(joining("/"));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+public class CacheWarmupConfig
+{
+    private boolean enabled;
+    private int maxConcurrentJobs = 2;
+    private int maxRequestsPerSecond = 50;
+    private DataSize footerSize = DataSize.of(64, KILOBYTE);
+    private DataSize maxObjectSize = DataSize.of(16, MEGABYTE);
+    private int maxRetainedJobs = 100;
+
+    @Config("s3proxy.warmup.enabled")
+    @ConfigDescription("Serve the cache warmup endpoint. Requests to it must be signed with the admin shared secret")
+    public CacheWarmupConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.warmup.max-concurrent-jobs")
+    @ConfigDescription("Number of cache warmup jobs that run at the same time, others are queued")
+    public CacheWarmupConfig setMaxConcurrentJobs(int maxConcurrentJobs)
+    {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxConcurrentJobs()
+    {
+        return maxConcurrentJobs;
+    }
+
+    @Config("s3proxy.warmup.max-requests-per-second")
+    @ConfigDescription("Rate of remote requests made by all cache warmup jobs together")
+    public CacheWarmupConfig setMaxRequestsPerSecond(int maxRequestsPerSecond)
+    {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxRequestsPerSecond()
+    {
+        return maxRequestsPerSecond;
+    }
+
+    @Config("s3proxy.warmup.footer-size")
+    @ConfigDescription("Number of bytes at the end of each object fetched when warming footers")
+    public CacheWarmupConfig setFooterSize(DataSize footerSize)
+    {
+        this.footerSize = footerSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1B")
+    @MaxDataSize("16MB")
+    public DataSize getFooterSize()
+    {
+        return footerSize;
+    }
+
+    @Config("s3proxy.warmup.max-object-size")
+    @ConfigDescription("Largest object fetched in full when warming objects")
+    public CacheWarmupConfig setMaxObjectSize(DataSize maxObjectSize)
+    {
+        this.maxObjectSize = maxObjectSize;
+        return this;
+    }
+
+    @NotNull
+    @MaxDataSize("1GB")
+    public DataSize getMaxObjectSize()
+    {
+        return maxObjectSize;
+    }
+
+    @Config("s3proxy.warmup.max-retained-jobs")
+    @ConfigDescription("Number of finished cache warmup jobs whose progress can still be queried")
+    public CacheWarmupConfig setMaxRetainedJobs(int maxRetainedJobs)
+    {
+        this.maxRetainedJobs = maxRetainedJobs;
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxRetainedJobs()
+    {
+        return maxRetainedJobs;
+    }
+}
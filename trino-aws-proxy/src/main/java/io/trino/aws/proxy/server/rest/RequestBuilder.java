@@ -15,6 +15,7 @@ package io.trino.aws.proxy.server.rest;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Suppliers;
+import com.google.common.primitives.Ints;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
 import io.trino.aws.proxy.spi.collections.MultiMap;
@@ -39,6 +40,7 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Supplier;
 
+import static com.google.common.io.ByteStreams.readFully;
 import static com.google.common.io.ByteStreams.toByteArray;
 
 class RequestBuilder
@@ -55,7 +57,7 @@ class RequestBuilder
             return new WebApplicationException(Response.Status.BAD_REQUEST);
         });
         Optional<String> securityTokenHeader = requestHeaders.getFirst("x-amz-security-token");
-        RequestContent requestContent = request.hasEntity() ? buildRequestContent(request.getEntityStream(), getRequestContentTypeFromHeader(requestHeaders)) : RequestContent.EMPTY;
+        RequestContent requestContent = request.hasEntity() ? buildRequestContent(request.getEntityStream(), getRequestContentTypeFromHeader(requestHeaders), requestHeaders.getFirst("content-length")) : RequestContent.EMPTY;
         return new Request(
                 UUID.randomUUID(),
                 RequestAuthorization.parse(requestHeaders.getFirst("authorization").orElse(""), securityTokenHeader),
@@ -67,6 +69,38 @@ class RequestBuilder
                 requestContent);
     }
 
+    /**
+     * The path of an S3 request relative to the S3 resource path, if the request is for the S3 resource
+     */
+    static Optional<String> s3RequestPath(Request request, String s3Path)
+    {
+        String path = request.requestUri().getRawPath();
+        if (!path.startsWith(s3Path)) {
+            return Optional.empty();
+        }
+        path = path.substring(s3Path.length());
+        if (path.isEmpty()) {
+            path = "/";
+        }
+        else if ((path.length() > 1) && path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return Optional.of(path);
+    }
+
+    static Optional<String> bucketName(Request request, String s3Path, Optional<String> serverHostName)
+    {
+        try {
+            return s3RequestPath(request, s3Path)
+                    .map(requestPath -> fromRequest(request, requestPath, serverHostName).bucketName())
+                    .filter(bucket -> !bucket.isEmpty());
+        }
+        catch (RuntimeException e) {
+            // invalid requests are rejected when the resource parses them
+            return Optional.empty();
+        }
+    }
+
     static ParsedS3Request fromRequest(Request request, String requestPath, Optional<String> serverHostName)
     {
         String httpVerb = request.httpVerb();
@@ -110,7 +144,7 @@ class RequestBuilder
                 requestContent);
     }
 
-    private static RequestContent buildRequestContent(InputStream requestEntityStream, String requestContentType)
+    private static RequestContent buildRequestContent(InputStream requestEntityStream, String requestContentType, Optional<String> contentLengthHeader)
     {
         ContentType contentType = switch (requestContentType) {
             case "aws-chunked" -> ContentType.AWS_CHUNKED;
@@ -123,7 +157,7 @@ class RequestBuilder
             // memoize the entity bytes so it can be called multiple times
             bytesSupplier = Suppliers.memoize(() -> {
                 try {
-                    return Optional.of(toByteArray(requestEntityStream));
+                    return Optional.of(readEntity(requestEntityStream, contentLengthHeader));
                 }
                 catch (IOException e) {
                     throw new WebApplicationException(Response.Status.BAD_REQUEST);
@@ -165,6 +199,20 @@ class RequestBuilder
         };
     }
 
+    private static byte[] readEntity(InputStream requestEntityStream, Optional<String> contentLengthHeader)
+            throws IOException
+    {
+        // the bytes are handed to plugins and outlive the request, so they cannot come from the buffer pool,
+        // but when the length is declared they are read in place instead of being collected and copied
+        Optional<Integer> contentLength = contentLengthHeader.map(Ints::tryParse).filter(length -> length >= 0);
+        if (contentLength.isEmpty()) {
+            return toByteArray(requestEntityStream);
+        }
+        byte[] bytes = new byte[contentLength.get()];
+        readFully(requestEntityStream, bytes);
+        return bytes;
+    }
+
     private static String getRequestContentTypeFromHeader(MultiMap requestHeaders)
     {
         return requestHeaders.getFirst("content-encoding").or(() -> requestHeaders.getFirst("transfer-encoding")).orElse("");
@@ -15,40 +15,65 @@ package io.trino.aws.proxy.server.rest;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.accesslog.AccessLogRecord;
+import io.trino.aws.proxy.server.accesslog.AccessLogWriter;
+import io.trino.aws.proxy.server.drain.DrainController;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+import io.trino.aws.proxy.server.metrics.RequestPhase;
+import io.trino.aws.proxy.server.metrics.RequestRecorder;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.signing.SigningController;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.container.ContainerResponseContext;
 import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Context;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
 import org.glassfish.jersey.server.model.Parameter;
 import org.glassfish.jersey.server.spi.internal.ValueParamProvider;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.function.Function;
 
+import static io.trino.aws.proxy.server.metrics.RequestPhase.CLIENT_WRITE;
+import static io.trino.aws.proxy.server.metrics.RequestPhase.UPSTREAM_TIME_TO_FIRST_BYTE;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.glassfish.jersey.server.spi.internal.ValueParamProvider.Priority.HIGH;
 
 public class RequestFilter
         implements ContainerRequestFilter, ContainerResponseFilter, ValueParamProvider
 {
+    private static final String CLIENT_ADDRESS_PROPERTY = RequestFilter.class.getName() + ".clientAddress";
+
     private final Logger log = Logger.get(RequestFilter.class);
     private final SigningController signingController;
     private final Map<Class<?>, SigningServiceType> signingServiceTypesMap;
     private final RequestLoggerController requestLoggerController;
+    private final Set<Class<?>> unsignedResources;
+    private final ProxyMetrics proxyMetrics;
+    private final RequestRecorder requestRecorder;
+    private final AccessLogWriter accessLogWriter;
+    private final DrainController drainController;
+
+    @Context
+    private HttpServletRequest servletRequest;
 
     private record InternalRequestContext(Request request, SigningMetadata signingMetadata, RequestLoggingSession requestLoggingSession)
     {
@@ -61,11 +86,16 @@ public class RequestFilter
     }
 
     @Inject
-    RequestFilter(SigningController signingController, Map<Class<?>, SigningServiceType> signingServiceTypesMap, RequestLoggerController requestLoggerController)
+    RequestFilter(SigningController signingController, Map<Class<?>, SigningServiceType> signingServiceTypesMap, RequestLoggerController requestLoggerController, Set<Class<?>> unsignedResources, ProxyMetrics proxyMetrics, RequestRecorder requestRecorder, AccessLogWriter accessLogWriter, DrainController drainController)
     {
         this.signingController = requireNonNull(signingController, "signingController is null");
         this.signingServiceTypesMap = ImmutableMap.copyOf(signingServiceTypesMap);
         this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
+        this.unsignedResources = ImmutableSet.copyOf(unsignedResources);
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+        this.requestRecorder = requireNonNull(requestRecorder, "requestRecorder is null");
+        this.accessLogWriter = requireNonNull(accessLogWriter, "accessLogWriter is null");
+        this.drainController = requireNonNull(drainController, "drainController is null");
     }
 
     @SuppressWarnings("ThrowableNotThrown")
@@ -80,6 +110,12 @@ public class RequestFilter
             }
 
             Class<?> declaringClass = containerRequest.getUriInfo().getMatchedResourceMethod().getInvocable().getDefinitionMethod().getDeclaringClass();
+            if (unsignedResources.contains(declaringClass)) {
+                return;
+            }
+            if (!drainController.isAccepting()) {
+                throw drainController.rejectRequest();
+            }
             SigningServiceType signingServiceType = signingServiceTypesMap.get(declaringClass);
             if (signingServiceType == null) {
                 log.warn("%s does not have a SigningServiceType", declaringClass.getName());
@@ -87,8 +123,13 @@ public class RequestFilter
             }
 
             Request request = RequestBuilder.fromRequest(containerRequest);
-            RequestLoggingSession requestLoggingSession = requestLoggerController.newRequestSession(request, signingServiceType);
+            String clientAddress = servletRequest.getRemoteAddr();
+            containerRequest.setProperty(Request.class.getName(), request);
+            containerRequest.setProperty(CLIENT_ADDRESS_PROPERTY, clientAddress);
+            RequestLoggingSession requestLoggingSession = requestLoggerController.newRequestSession(request, signingServiceType, clientAddress);
             containerRequest.setProperty(RequestLoggingSession.class.getName(), requestLoggingSession);
+            RequestTracker requestTracker = proxyMetrics.startRequest(request.requestId(), signingServiceType, request.httpVerb(), request.requestContent().contentLength().orElse(0));
+            containerRequest.setProperty(RequestTracker.class.getName(), requestTracker);
 
             SigningMetadata signingMetadata;
             try {
@@ -104,7 +145,6 @@ public class RequestFilter
                 }
             }
 
-            containerRequest.setProperty(Request.class.getName(), request);
             containerRequest.setProperty(SigningMetadata.class.getName(), signingMetadata);
         }
         else {
@@ -120,12 +160,32 @@ public class RequestFilter
         if ((requestContext.getRequest() instanceof ContainerRequest containerRequest) && (responseContext instanceof ContainerResponse containerResponse)) {
             Optional.ofNullable(unwrap(containerRequest, RequestLoggingSession.class))
                     .ifPresent(requestLoggingSession -> {
+                        RequestTracker requestTracker = unwrap(containerRequest, RequestTracker.class);
+                        requestTracker.setStatusCode(responseContext.getStatus());
+                        String path = containerRequest.getRequestUri().getRawPath();
+                        Runnable completion = () -> {
+                            try (requestLoggingSession) {
+                                requestTracker.completePhase(CLIENT_WRITE);
+                                requestTracker.finish();
+                                requestRecorder.record(requestTracker, path);
+                                if (accessLogWriter.isEnabled()) {
+                                    accessLogWriter.write(accessLogRecord(unwrap(containerRequest, Request.class), (String) containerRequest.getProperty(CLIENT_ADDRESS_PROPERTY), requestTracker));
+                                }
+                                for (RequestPhase phase : RequestPhase.values()) {
+                                    long nanos = requestTracker.phaseNanos(phase);
+                                    if (nanos > 0) {
+                                        requestLoggingSession.logPhase(phase.phaseName(), nanos);
+                                    }
+                                }
+                            }
+                        };
+
                         OutputStream entityStream = (containerResponse.isCommitted() || !containerResponse.hasEntity()) ? null : responseContext.getEntityStream();
                         if (entityStream != null) {
-                            responseContext.setEntityStream(closingStream(requestLoggingSession, entityStream));
+                            responseContext.setEntityStream(closingStream(completion, requestTracker, entityStream));
                         }
                         else {
-                            requestLoggingSession.close();
+                            completion.run();
                         }
                     });
         }
@@ -146,7 +206,34 @@ public class RequestFilter
         return HIGH;
     }
 
-    private static OutputStream closingStream(Closeable closeable, OutputStream delegate)
+    private static AccessLogRecord accessLogRecord(Request request, String clientAddress, RequestTracker requestTracker)
+    {
+        String requestUri = Optional.ofNullable(request.requestUri().getRawQuery())
+                .map(query -> request.requestUri().getRawPath() + "?" + query)
+                .orElseGet(() -> request.requestUri().getRawPath());
+        long timeToFirstByteNanos = requestTracker.phaseNanos(UPSTREAM_TIME_TO_FIRST_BYTE);
+        return new AccessLogRecord(
+                Instant.ofEpochMilli(requestTracker.startEpochMillis()),
+                request.requestId(),
+                clientAddress,
+                Optional.of(request.requestAuthorization().accessKey()).filter(accessKey -> !accessKey.isEmpty()),
+                requestTracker.service(),
+                requestTracker.httpVerb(),
+                requestTracker.action(),
+                requestTracker.bucket(),
+                requestTracker.key(),
+                requestUri,
+                requestTracker.statusCode(),
+                requestTracker.bytesIn(),
+                requestTracker.bytesOut(),
+                NANOSECONDS.toMillis(requestTracker.elapsedNanos()),
+                (timeToFirstByteNanos > 0) ? OptionalLong.of(NANOSECONDS.toMillis(timeToFirstByteNanos)) : OptionalLong.empty(),
+                request.requestHeaders().getFirst("user-agent"),
+                request.requestHeaders().getFirst("referer"),
+                request.requestHeaders().getFirst("host"));
+    }
+
+    private static OutputStream closingStream(Runnable completion, RequestTracker requestTracker, OutputStream delegate)
     {
         return new OutputStream()
         {
@@ -154,37 +241,50 @@ public class RequestFilter
             public void write(int b)
                     throws IOException
             {
+                long start = System.nanoTime();
                 delegate.write(b);
+                requestTracker.accumulatePhaseNanos(CLIENT_WRITE, System.nanoTime() - start);
+                requestTracker.addBytesOut(1);
             }
 
             @Override
             public void write(byte[] b)
                     throws IOException
             {
-                delegate.write(b);
+                write(b, 0, b.length);
             }
 
             @Override
             public void write(byte[] b, int off, int len)
                     throws IOException
             {
+                long start = System.nanoTime();
                 delegate.write(b, off, len);
+                requestTracker.accumulatePhaseNanos(CLIENT_WRITE, System.nanoTime() - start);
+                requestTracker.addBytesOut(len);
             }
 
             @Override
             public void flush()
                     throws IOException
             {
+                long start = System.nanoTime();
                 delegate.flush();
+                requestTracker.accumulatePhaseNanos(CLIENT_WRITE, System.nanoTime() - start);
             }
 
             @Override
             public void close()
                     throws IOException
             {
-                try (closeable) {
+                long start = System.nanoTime();
+                try {
                     delegate.close();
                 }
+                finally {
+                    requestTracker.accumulatePhaseNanos(CLIENT_WRITE, System.nanoTime() - start);
+                    completion.run();
+                }
             }
         };
     }
@@ -14,21 +14,33 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InetAddresses;
+import com.google.inject.Inject;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.WebApplicationException;
 
+import java.net.InetAddress;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static io.trino.aws.proxy.server.rest.RequestBuilder.bucketName;
 import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.EMPTY;
 import static java.util.Objects.requireNonNull;
+import static java.util.Objects.requireNonNullElse;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class RequestLoggerController
 {
@@ -74,16 +86,28 @@ public class RequestLoggerController
     private static final RequestLoggingSession NOP_REQUEST_LOGGING_SESSION = () -> {};
 
     private volatile LoggerProc loggerProc = debugLogger;
+    private volatile List<RequestLoggingRule> rules = ImmutableList.of();
     private final Map<UUID, RequestLoggingSession> sessions = new ConcurrentHashMap<>();
+    private final String s3Path;
+    private final Optional<String> serverHostName;
+
+    @Inject
+    public RequestLoggerController(TrinoS3ProxyConfig trinoS3ProxyConfig)
+    {
+        s3Path = trinoS3ProxyConfig.getS3Path();
+        serverHostName = trinoS3ProxyConfig.getS3HostName();
+    }
 
     @PreDestroy
     public void verifyState()
     {
-        checkState(sessions.isEmpty(), "Some logging sessions were not closed: " + sessions);
+        if (!sessions.isEmpty()) {
+            // requests still running when a drain reaches its deadline are cut off by the shutdown
+            log.warn("Closing logging sessions of requests that did not finish: %s", sessions.keySet());
+            ImmutableList.copyOf(sessions.values()).forEach(RequestLoggingSession::close);
+        }
     }
 
-    // TODO - allow levels to be set for only certain users, IPs, etc.
-
     public void setLevelInfo()
     {
         loggerProc = infoLogger;
@@ -94,30 +118,75 @@ public class RequestLoggerController
         loggerProc = debugLogger;
     }
 
-    public RequestLoggingSession newRequestSession(Request request, SigningServiceType serviceType)
+    /**
+     * Replace the rules that select requests to log. While there are rules, only requests that match a rule are
+     * logged, at info level. Without rules, all requests are logged at the current level.
+     */
+    public void setRules(List<RequestLoggingRule> rules)
     {
+        this.rules = ImmutableList.copyOf(rules);
+    }
+
+    public List<RequestLoggingRule> getRules()
+    {
+        return rules;
+    }
+
+    public RequestLoggingSession newRequestSession(Request request, SigningServiceType serviceType, String clientAddress)
+    {
+        List<RequestLoggingRule> currentRules = rules;
+        LoggerProc requestLoggerProc;
+        if (currentRules.isEmpty()) {
+            requestLoggerProc = loggerProc;
+        }
+        else {
+            requestLoggerProc = matchesAnyRule(currentRules, request, serviceType, clientAddress) ? infoLogger : null;
+        }
+
+        // disabled sessions are not registered so that requests cost nothing when logging is disabled
+        if ((requestLoggerProc == null) || !requestLoggerProc.isEnabled()) {
+            return NOP_REQUEST_LOGGING_SESSION;
+        }
+
         return sessions.compute(request.requestId(), (requestId, current) -> {
             checkState(current == null, "There is already a logging session for the request: " + requestId);
-            return internalNewRequestSession(request, serviceType);
+            return internalNewRequestSession(request, serviceType, requestLoggerProc);
         });
     }
 
     public RequestLoggingSession currentRequestSession(UUID requestId)
     {
-        return requireNonNull(sessions.get(requestId), "No RequestLoggingSession for requestId: " + requestId);
+        return sessions.getOrDefault(requireNonNull(requestId, "requestId is null"), NOP_REQUEST_LOGGING_SESSION);
     }
 
-    private RequestLoggingSession internalNewRequestSession(Request request, SigningServiceType serviceType)
+    private boolean matchesAnyRule(List<RequestLoggingRule> currentRules, Request request, SigningServiceType serviceType, String clientAddress)
     {
-        if (!loggerProc.isEnabled()) {
-            return NOP_REQUEST_LOGGING_SESSION;
+        // the bucket and client address are only parsed if a rule needs them
+        Supplier<Optional<String>> bucket = Suppliers.memoize(() -> serviceType.equals(SigningServiceType.S3) ? bucketName(request, s3Path, serverHostName) : Optional.empty());
+        Supplier<Optional<InetAddress>> address = Suppliers.memoize(() -> parseAddress(clientAddress));
+        String accessKey = request.requestAuthorization().accessKey();
+        for (RequestLoggingRule rule : currentRules) {
+            if (rule.matches(accessKey, bucket, address)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        Map<String, String> entries = new ConcurrentHashMap<>();
+    private static Optional<InetAddress> parseAddress(String clientAddress)
+    {
+        String address = (clientAddress.startsWith("[") && clientAddress.endsWith("]")) ? clientAddress.substring(1, clientAddress.length() - 1) : clientAddress;
+        return InetAddresses.isInetAddress(address) ? Optional.of(InetAddresses.forString(address)) : Optional.empty();
+    }
+
+    private RequestLoggingSession internalNewRequestSession(Request request, SigningServiceType serviceType, LoggerProc loggerProc)
+    {
+        // values are converted to strings only when the session is logged
+        Map<String, Object> properties = new ConcurrentHashMap<>();
 
-        Map<String, String> properties = new ConcurrentHashMap<>();
+        Map<String, Object> errors = new ConcurrentHashMap<>();
 
-        Map<String, String> errors = new ConcurrentHashMap<>();
+        Map<String, Long> phaseMicros = new ConcurrentHashMap<>();
 
         Map<String, Object> requestDetails = ImmutableMap.of(
                 "request.id", request.requestId(),
@@ -126,9 +195,7 @@ public class RequestLoggerController
                 "request.http.method", request.httpVerb(),
                 "request.http.entity", request.requestContent().contentType() != EMPTY);
 
-        addAll(entries, requestDetails);
-
-        logAndClear("RequestStart", entries);
+        log(loggerProc, "RequestStart", requestDetails);
 
         return new RequestLoggingSession()
         {
@@ -138,13 +205,19 @@ public class RequestLoggerController
             @Override
             public void logProperty(String name, Object value)
             {
-                properties.put(name, String.valueOf(value));
+                properties.put(name, requireNonNullElse(value, "null"));
             }
 
             @Override
             public void logError(String name, Object value)
             {
-                errors.put(name, String.valueOf(value));
+                errors.put(name, requireNonNullElse(value, "null"));
+            }
+
+            @Override
+            public void logPhase(String name, long nanos)
+            {
+                phaseMicros.merge(name, NANOSECONDS.toMicros(nanos), Long::sum);
             }
 
             @SuppressWarnings({"ThrowableNotThrown", "SwitchStatementWithTooFewBranches"})
@@ -153,13 +226,13 @@ public class RequestLoggerController
             {
                 switch (Throwables.getRootCause(e)) {
                     case WebApplicationException webApplicationException -> {
-                        errors.put("webException.status", Integer.toString(webApplicationException.getResponse().getStatus()));
-                        errors.put("webException.message", webApplicationException.getMessage());
+                        errors.put("webException.status", webApplicationException.getResponse().getStatus());
+                        errors.put("webException.message", String.valueOf(webApplicationException.getMessage()));
                     }
 
                     default -> {
                         errors.put("exception.type", e.getClass().getName());
-                        errors.put("exception.message", e.getMessage());
+                        errors.put("exception.message", String.valueOf(e.getMessage()));
                     }
                 }
             }
@@ -174,12 +247,15 @@ public class RequestLoggerController
                 closed = true;
 
                 try {
-                    addAll(entries, requestDetails);
-                    add(entries, "request.elapsed.ms", stopwatch.elapsed().toMillis());
-                    add(entries, "request.properties", properties);
-                    add(entries, "request.errors", errors);
-
-                    logAndClear("RequestEnd", entries);
+                    Map<String, Object> entries = ImmutableMap.<String, Object>builder()
+                            .putAll(requestDetails)
+                            .put("request.elapsed.ms", stopwatch.elapsed().toMillis())
+                            .put("request.phases.us", phaseMicros)
+                            .put("request.properties", properties)
+                            .put("request.errors", errors)
+                            .buildOrThrow();
+
+                    log(loggerProc, "RequestEnd", entries);
                 }
                 finally {
                     sessions.remove(request.requestId());
@@ -188,23 +264,11 @@ public class RequestLoggerController
         };
     }
 
-    private void addAll(Map<String, String> entries, Map<String, Object> values)
-    {
-        values.forEach((key, value) -> add(entries, key, value));
-    }
-
-    private void add(Map<String, String> entries, String key, Object value)
+    private static void log(LoggerProc loggerProc, String message, Map<String, Object> entries)
     {
-        entries.put(key, String.valueOf(value));
-    }
-
-    private void logAndClear(String message, Map<String, String> entries)
-    {
-        // TODO - keep a list of recent entries, etc.
-
-        Map<String, String> copy = ImmutableMap.copyOf(entries);
-        entries.clear();
+        Map<String, String> values = entries.entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, entry -> String.valueOf(entry.getValue())));
 
-        loggerProc.log("%s: %s", message, copy);
+        loggerProc.log("%s: %s", message, values);
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Selects requests to log in full. A request matches when it matches every condition that is set. Matching
+ * requests are then sampled at the sample rate, which defaults to logging every matching request.
+ */
+public class RequestLoggingRule
+{
+    private final Optional<String> accessKey;
+    private final Optional<String> bucket;
+    private final Optional<String> clientAddress;
+    private final OptionalDouble sampleRate;
+    private final Optional<AddressRange> clientAddressRange;
+
+    @JsonCreator
+    public RequestLoggingRule(
+            @JsonProperty("accessKey") Optional<String> accessKey,
+            @JsonProperty("bucket") Optional<String> bucket,
+            @JsonProperty("clientAddress") Optional<String> clientAddress,
+            @JsonProperty("sampleRate") OptionalDouble sampleRate)
+    {
+        this.accessKey = requireNonNull(accessKey, "accessKey is null");
+        this.bucket = requireNonNull(bucket, "bucket is null");
+        this.clientAddress = requireNonNull(clientAddress, "clientAddress is null");
+        this.sampleRate = requireNonNull(sampleRate, "sampleRate is null");
+        sampleRate.ifPresent(rate -> checkArgument((rate >= 0) && (rate <= 1), "sampleRate must be between 0 and 1: %s", rate));
+        clientAddressRange = clientAddress.map(AddressRange::parse);
+    }
+
+    @JsonProperty
+    public Optional<String> getAccessKey()
+    {
+        return accessKey;
+    }
+
+    @JsonProperty
+    public Optional<String> getBucket()
+    {
+        return bucket;
+    }
+
+    @JsonProperty
+    public Optional<String> getClientAddress()
+    {
+        return clientAddress;
+    }
+
+    @JsonProperty
+    public OptionalDouble getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    public boolean matches(String requestAccessKey, Supplier<Optional<String>> requestBucket, Supplier<Optional<InetAddress>> requestClientAddress)
+    {
+        if (accessKey.isPresent() && !accessKey.get().equals(requestAccessKey)) {
+            return false;
+        }
+        if (bucket.isPresent() && !requestBucket.get().equals(bucket)) {
+            return false;
+        }
+        if (clientAddressRange.isPresent() && !requestClientAddress.get().map(clientAddressRange.get()::contains).orElse(false)) {
+            return false;
+        }
+        return sampleRate.isEmpty() || (ThreadLocalRandom.current().nextDouble() < sampleRate.getAsDouble());
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if ((o == null) || (getClass() != o.getClass())) {
+            return false;
+        }
+        RequestLoggingRule that = (RequestLoggingRule) o;
+        return accessKey.equals(that.accessKey) && bucket.equals(that.bucket) && clientAddress.equals(that.clientAddress) && sampleRate.equals(that.sampleRate);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(accessKey, bucket, clientAddress, sampleRate);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("accessKey", accessKey.orElse(null))
+                .add("bucket", bucket.orElse(null))
+                .add("clientAddress", clientAddress.orElse(null))
+                .add("sampleRate", sampleRate.isPresent() ? sampleRate.getAsDouble() : null)
+                .omitNullValues()
+                .toString();
+    }
+
+    // an address with an optional prefix length, e.g. 10.0.0.0/8
+    private record AddressRange(byte[] address, int prefixLength)
+    {
+        private static AddressRange parse(String value)
+        {
+            int slash = value.indexOf('/');
+            byte[] address = InetAddresses.forString((slash < 0) ? value : value.substring(0, slash)).getAddress();
+            int prefixLength = (slash < 0) ? (address.length * Byte.SIZE) : Integer.parseInt(value.substring(slash + 1));
+            checkArgument((prefixLength >= 0) && (prefixLength <= (address.length * Byte.SIZE)), "Invalid prefix length: %s", value);
+            return new AddressRange(address, prefixLength);
+        }
+
+        private boolean contains(InetAddress inetAddress)
+        {
+            byte[] other = inetAddress.getAddress();
+            if (other.length != address.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / Byte.SIZE;
+            for (int i = 0; i < fullBytes; i++) {
+                if (other[i] != address[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % Byte.SIZE;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (Byte.SIZE - remainingBits);
+            return (other[fullBytes] & mask) == (address[fullBytes] & mask);
+        }
+    }
+}
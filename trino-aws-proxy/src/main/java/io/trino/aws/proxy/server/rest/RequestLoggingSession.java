@@ -33,6 +33,11 @@ public interface RequestLoggingSession
         // NOP
     }
 
+    default void logPhase(String name, long nanos)
+    {
+        // NOP
+    }
+
     @Override
     void close();
 }
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.compression.ResponseCompressor;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import org.glassfish.jersey.server.ContainerResponse;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static com.google.common.net.HttpHeaders.ACCEPT_ENCODING;
+import static com.google.common.net.HttpHeaders.CONTENT_ENCODING;
+import static com.google.common.net.HttpHeaders.CONTENT_LENGTH;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.net.HttpHeaders.VARY;
+import static io.trino.aws.proxy.server.compression.ResponseCompressor.GZIP;
+import static io.trino.aws.proxy.server.metrics.S3Actions.isObjectAction;
+import static jakarta.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Negotiates gzip encoding of XML and JSON responses. Runs after {@link RequestFilter} has wrapped the
+ * entity stream, so that the bytes it counts are the bytes sent to the client.
+ */
+@Priority(Priorities.ENTITY_CODER)
+public class ResponseCompressionFilter
+        implements ContainerResponseFilter
+{
+    private final ResponseCompressor responseCompressor;
+
+    @Inject
+    ResponseCompressionFilter(ResponseCompressor responseCompressor)
+    {
+        this.responseCompressor = requireNonNull(responseCompressor, "responseCompressor is null");
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+    {
+        if (!responseCompressor.isEnabled() || !responseContext.hasEntity() || (responseContext.getStatus() == PARTIAL_CONTENT.getStatusCode())) {
+            return;
+        }
+        if ((responseContext instanceof ContainerResponse containerResponse) && containerResponse.isCommitted()) {
+            return;
+        }
+        if (responseContext.getHeaders().containsKey(CONTENT_ENCODING) || isHead(requestContext) || isObjectRequest(requestContext)) {
+            return;
+        }
+
+        OptionalLong contentLength = (responseContext.getLength() >= 0) ? OptionalLong.of(responseContext.getLength()) : OptionalLong.empty();
+        if (!responseCompressor.isCompressible(Optional.ofNullable(responseContext.getHeaderString(CONTENT_TYPE)), contentLength)) {
+            return;
+        }
+        responseContext.getHeaders().add(VARY, ACCEPT_ENCODING);
+        if (!ResponseCompressor.acceptsGzip(requestContext.getHeaders().getOrDefault(ACCEPT_ENCODING, ImmutableList.of()))) {
+            return;
+        }
+
+        responseContext.getHeaders().remove(CONTENT_LENGTH);
+        responseContext.getHeaders().putSingle(CONTENT_ENCODING, GZIP);
+        responseContext.setEntityStream(responseCompressor.compress(responseContext.getEntityStream()));
+    }
+
+    // a HEAD response describes the body of a GET, its Content-Length must be passed through
+    private static boolean isHead(ContainerRequestContext requestContext)
+    {
+        return requestContext.getMethod().equals(HttpMethod.HEAD);
+    }
+
+    // objects and their metadata are passed through untouched whatever their content type, only listings and
+    // other responses about buckets or the service are compressed
+    private static boolean isObjectRequest(ContainerRequestContext requestContext)
+    {
+        return (requestContext.getProperty(RequestTracker.class.getName()) instanceof RequestTracker requestTracker) && isObjectAction(requestTracker.action());
+    }
+}
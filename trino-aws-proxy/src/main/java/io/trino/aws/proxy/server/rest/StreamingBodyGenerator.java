@@ -14,6 +14,9 @@
 package io.trino.aws.proxy.server.rest;
 
 import io.airlift.http.client.BodyGenerator;
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimiter.Throttle;
+import io.trino.aws.proxy.server.bandwidth.ThrottledOutputStream;
+import io.trino.aws.proxy.server.buffer.BufferPool;
 
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -24,17 +27,21 @@ class StreamingBodyGenerator
         implements BodyGenerator
 {
     private final InputStream source;
+    private final BufferPool bufferPool;
+    private final Throttle throttle;
 
-    StreamingBodyGenerator(InputStream source)
+    StreamingBodyGenerator(InputStream source, BufferPool bufferPool, Throttle throttle)
     {
         this.source = requireNonNull(source, "source is null");
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
+        this.throttle = requireNonNull(throttle, "throttle is null");
     }
 
     @Override
     public void write(OutputStream out)
             throws Exception
     {
-        source.transferTo(out);
+        bufferPool.transferTo(source, new ThrottledOutputStream(out, throttle));
         out.flush();
     }
 }
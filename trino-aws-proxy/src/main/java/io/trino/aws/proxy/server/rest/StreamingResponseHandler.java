@@ -19,14 +19,21 @@ import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.Response;
 import io.airlift.http.client.ResponseHandler;
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimiter.Throttle;
+import io.trino.aws.proxy.server.bandwidth.ThrottledOutputStream;
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.core.StreamingOutput;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static io.trino.aws.proxy.server.metrics.RequestPhase.UPSTREAM_READ;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static java.util.Objects.requireNonNull;
 
@@ -35,12 +42,18 @@ class StreamingResponseHandler
 {
     private final AsyncResponse asyncResponse;
     private final RequestLoggingSession requestLoggingSession;
+    private final Optional<RequestTracker> requestTracker;
+    private final BufferPool bufferPool;
+    private final Optional<Throttle> throttle;
     private final AtomicBoolean hasBeenResumed = new AtomicBoolean(false);
 
-    StreamingResponseHandler(AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    StreamingResponseHandler(AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession, Optional<RequestTracker> requestTracker, BufferPool bufferPool, Optional<Throttle> throttle)
     {
         this.asyncResponse = requireNonNull(asyncResponse, "asyncResponse is null");
         this.requestLoggingSession = requireNonNull(requestLoggingSession, "requestLoggingSession is null");
+        this.requestTracker = requireNonNull(requestTracker, "requestTracker is null");
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
+        this.throttle = requireNonNull(throttle, "throttle is null");
     }
 
     @Override
@@ -60,11 +73,17 @@ class StreamingResponseHandler
     {
         StreamingOutput streamingOutput = output -> {
             InputStream inputStream = response.getInputStream();
+            OutputStream target = throttle.<OutputStream>map(value -> new ThrottledOutputStream(output, value)).orElse(output);
 
             // HttpClient/Jersey timeouts control behavior. The configured HttpClient idle timeout
             // controls whether the InputStream will time out. Jersey configuration controls
             // OutputStream and general request timeouts.
-            inputStream.transferTo(output);
+            if (requestTracker.isPresent()) {
+                transferTimed(inputStream, target, requestTracker.get());
+            }
+            else {
+                bufferPool.transferTo(inputStream, target);
+            }
             output.flush();
         };
 
@@ -88,6 +107,28 @@ class StreamingResponseHandler
         return null;
     }
 
+    private void transferTimed(InputStream inputStream, OutputStream output, RequestTracker requestTracker)
+            throws IOException
+    {
+        // time spent writing to the client is measured by RequestFilter, so only reads are timed here
+        byte[] buffer = bufferPool.borrow(BufferPool.TRANSFER_BUFFER_SIZE);
+        try {
+            while (true) {
+                long readStart = System.nanoTime();
+                int count = inputStream.read(buffer);
+                requestTracker.accumulatePhaseNanos(UPSTREAM_READ, System.nanoTime() - readStart);
+                if (count < 0) {
+                    break;
+                }
+                output.write(buffer, 0, count);
+            }
+        }
+        finally {
+            bufferPool.release(buffer);
+            requestTracker.completePhase(UPSTREAM_READ);
+        }
+    }
+
     @SuppressWarnings("ThrowableNotThrown")
     private void resume(Object result)
     {
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.admin.AdminOnly;
+import io.trino.aws.proxy.server.drain.DrainController;
+import io.trino.aws.proxy.server.drain.DrainStatus;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static jakarta.ws.rs.core.MediaType.TEXT_PLAIN;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static java.util.Objects.requireNonNull;
+
+public class TrinoDrainResource
+{
+    private final DrainController drainController;
+
+    @Inject
+    public TrinoDrainResource(DrainController drainController)
+    {
+        this.drainController = requireNonNull(drainController, "drainController is null");
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    @AdminOnly
+    public DrainStatus getStatus()
+    {
+        return drainController.getStatus();
+    }
+
+    @POST
+    @Produces(APPLICATION_JSON)
+    @AdminOnly
+    public Response startDrain()
+    {
+        return Response.status(Response.Status.ACCEPTED).entity(drainController.startDrain()).build();
+    }
+
+    @DELETE
+    @Produces(APPLICATION_JSON)
+    @AdminOnly
+    public DrainStatus cancelDrain()
+    {
+        return drainController.cancelDrain();
+    }
+
+    // polled by load balancers, so it stays open
+    @GET
+    @Path("ready")
+    @Produces(TEXT_PLAIN)
+    public Response getReadiness()
+    {
+        if (drainController.isReady()) {
+            return Response.ok("ready").build();
+        }
+        return Response.status(SERVICE_UNAVAILABLE).entity("draining").build();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.admin.AdminOnly;
+import io.trino.aws.proxy.server.metrics.OpenMetricsWriter;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+public class TrinoMetricsResource
+{
+    private final ProxyMetrics proxyMetrics;
+
+    @Inject
+    public TrinoMetricsResource(ProxyMetrics proxyMetrics)
+    {
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+    }
+
+    @GET
+    public Response metrics()
+    {
+        return openMetrics(writer -> OpenMetricsWriter.write(proxyMetrics, writer));
+    }
+
+    @GET
+    @Path("buckets")
+    @AdminOnly
+    public Response bucketMetrics()
+    {
+        return openMetrics(writer -> OpenMetricsWriter.writeBuckets(proxyMetrics, writer));
+    }
+
+    private static Response openMetrics(MetricsSource source)
+    {
+        StreamingOutput output = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
+            source.write(writer);
+            writer.flush();
+        };
+        return Response.ok(output, OpenMetricsWriter.CONTENT_TYPE).build();
+    }
+
+    private interface MetricsSource
+    {
+        void write(Writer writer)
+                throws IOException;
+    }
+}
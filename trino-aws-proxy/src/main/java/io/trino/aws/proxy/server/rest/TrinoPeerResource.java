@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.inject.Inject;
+import io.airlift.json.JsonCodec;
+import io.trino.aws.proxy.server.cache.ObjectCacheKey;
+import io.trino.aws.proxy.server.cache.ObjectMetadataCache;
+import io.trino.aws.proxy.server.cluster.PeerCache;
+import io.trino.aws.proxy.server.cluster.PeerMetadata;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static io.trino.aws.proxy.server.cluster.PeerAuthenticator.SIGNATURE_HEADER;
+import static io.trino.aws.proxy.server.cluster.PeerCache.BUCKET_PATH;
+import static io.trino.aws.proxy.server.cluster.PeerCache.METADATA_PATH;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serves the metadata cache of this node to the other nodes of a cluster
+ */
+public class TrinoPeerResource
+{
+    private static final JsonCodec<PeerMetadata> PEER_METADATA_CODEC = jsonCodec(PeerMetadata.class);
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final PeerCache peerCache;
+    private final ObjectMetadataCache objectMetadataCache;
+
+    @Inject
+    public TrinoPeerResource(PeerCache peerCache, ObjectMetadataCache objectMetadataCache)
+    {
+        this.peerCache = requireNonNull(peerCache, "peerCache is null");
+        this.objectMetadataCache = requireNonNull(objectMetadataCache, "objectMetadataCache is null");
+    }
+
+    @GET
+    @Path(METADATA_PATH)
+    @Produces(APPLICATION_JSON)
+    public PeerMetadata getMetadata(@HeaderParam(SIGNATURE_HEADER) String signature, @QueryParam("accessKey") String accessKey, @QueryParam("bucket") String bucket, @QueryParam("key") String key)
+    {
+        ObjectCacheKey cacheKey = authenticate(signature, "GET", METADATA_PATH, EMPTY_BODY, accessKey, bucket, key);
+        return objectMetadataCache.lookup(cacheKey).cached()
+                .map(PeerMetadata::fromCached)
+                .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
+    }
+
+    @PUT
+    @Path(METADATA_PATH)
+    @Consumes(APPLICATION_JSON)
+    public void storeMetadata(@HeaderParam(SIGNATURE_HEADER) String signature, @QueryParam("accessKey") String accessKey, @QueryParam("bucket") String bucket, @QueryParam("key") String key, byte[] body)
+    {
+        ObjectCacheKey cacheKey = authenticate(signature, "PUT", METADATA_PATH, body, accessKey, bucket, key);
+        PeerMetadata metadata;
+        try {
+            metadata = PEER_METADATA_CODEC.fromJson(body);
+        }
+        catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        objectMetadataCache.store(cacheKey, metadata.toCached());
+    }
+
+    @DELETE
+    @Path(METADATA_PATH)
+    public void invalidate(@HeaderParam(SIGNATURE_HEADER) String signature, @QueryParam("bucket") String bucket, @QueryParam("key") String key)
+    {
+        checkPresent(bucket, key);
+        checkSignature(signature, "DELETE", List.of(METADATA_PATH, bucket, key), EMPTY_BODY);
+        objectMetadataCache.invalidate(bucket, key);
+    }
+
+    @DELETE
+    @Path(BUCKET_PATH)
+    public void invalidateBucket(@HeaderParam(SIGNATURE_HEADER) String signature, @QueryParam("bucket") String bucket)
+    {
+        checkPresent(bucket);
+        checkSignature(signature, "DELETE", List.of(BUCKET_PATH, bucket), EMPTY_BODY);
+        objectMetadataCache.invalidateBucket(bucket);
+    }
+
+    private ObjectCacheKey authenticate(String signature, String method, String path, byte[] body, String accessKey, String bucket, String key)
+    {
+        checkPresent(accessKey, bucket, key);
+        checkSignature(signature, method, List.of(path, accessKey, bucket, key), body);
+        return new ObjectCacheKey(accessKey, bucket, key);
+    }
+
+    private void checkSignature(String signature, String method, List<String> parameters, byte[] body)
+    {
+        if (!peerCache.isEnabled() || !objectMetadataCache.isEnabled()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        if (!peerCache.verify(signature, method, parameters, body)) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+    }
+
+    private static void checkPresent(String... parameters)
+    {
+        for (String parameter : parameters) {
+            if (parameter == null) {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+        }
+    }
+}
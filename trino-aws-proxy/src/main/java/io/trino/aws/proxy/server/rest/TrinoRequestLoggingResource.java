@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.admin.AdminOnly;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Produces;
+
+import java.util.List;
+
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.util.Objects.requireNonNull;
+
+@AdminOnly
+public class TrinoRequestLoggingResource
+{
+    private final RequestLoggerController requestLoggerController;
+
+    @Inject
+    public TrinoRequestLoggingResource(RequestLoggerController requestLoggerController)
+    {
+        this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    public List<RequestLoggingRule> getRules()
+    {
+        return requestLoggerController.getRules();
+    }
+
+    @PUT
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    public List<RequestLoggingRule> setRules(List<RequestLoggingRule> rules)
+    {
+        requestLoggerController.setRules(requireNonNull(rules, "rules is null"));
+        return requestLoggerController.getRules();
+    }
+
+    @DELETE
+    public void clearRules()
+    {
+        requestLoggerController.setRules(List.of());
+    }
+}
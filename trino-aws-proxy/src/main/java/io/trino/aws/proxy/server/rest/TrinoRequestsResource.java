@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.admin.AdminOnly;
+import io.trino.aws.proxy.server.metrics.RecordedRequest;
+import io.trino.aws.proxy.server.metrics.RequestRecorder;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+
+import java.util.List;
+
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static java.util.Objects.requireNonNull;
+
+@AdminOnly
+public class TrinoRequestsResource
+{
+    private final RequestRecorder requestRecorder;
+
+    @Inject
+    public TrinoRequestsResource(RequestRecorder requestRecorder)
+    {
+        this.requestRecorder = requireNonNull(requestRecorder, "requestRecorder is null");
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    public List<RecordedRequest> recentRequests(@QueryParam("limit") @DefaultValue("100") int limit)
+    {
+        return requestRecorder.recentRequests(validLimit(limit));
+    }
+
+    @GET
+    @Path("slow")
+    @Produces(APPLICATION_JSON)
+    public List<RecordedRequest> slowRequests(@QueryParam("limit") @DefaultValue("100") int limit)
+    {
+        return requestRecorder.slowRequests(validLimit(limit));
+    }
+
+    private static int validLimit(int limit)
+    {
+        if (limit < 0) {
+            throw new WebApplicationException("limit is negative", BAD_REQUEST);
+        }
+        return limit;
+    }
+}
@@ -13,12 +13,48 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
 import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
+import io.airlift.http.client.ResponseHandler;
 import io.airlift.log.Logger;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimiter;
+import io.trino.aws.proxy.server.bandwidth.BandwidthLimiter.Throttle;
+import io.trino.aws.proxy.server.bandwidth.ThrottledOutputStream;
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import io.trino.aws.proxy.server.cache.ByteRange;
+import io.trino.aws.proxy.server.cache.CachedObjectMetadata;
+import io.trino.aws.proxy.server.cache.CachedRange;
+import io.trino.aws.proxy.server.cache.ListObjectsCache;
+import io.trino.aws.proxy.server.cache.ListObjectsCache.IndexBuild;
+import io.trino.aws.proxy.server.cache.ListObjectsCacheKey;
+import io.trino.aws.proxy.server.cache.ListObjectsV2Parameters;
+import io.trino.aws.proxy.server.cache.ObjectCacheKey;
+import io.trino.aws.proxy.server.cache.ObjectMetadataCache;
+import io.trino.aws.proxy.server.cache.RangeCoalescer;
+import io.trino.aws.proxy.server.cache.RangeCoalescer.Member;
+import io.trino.aws.proxy.server.cache.RangeCoalescer.Merge;
+import io.trino.aws.proxy.server.cache.ReadAheadController;
+import io.trino.aws.proxy.server.cache.ReadAheadController.Prefetch;
+import io.trino.aws.proxy.server.cache.StreamingListing;
+import io.trino.aws.proxy.server.cluster.ClusterPeer;
+import io.trino.aws.proxy.server.cluster.PeerCache;
+import io.trino.aws.proxy.server.dns.DnsCache;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.RequestPhase;
+import io.trino.aws.proxy.server.remote.RemoteEndpointResolver;
 import io.trino.aws.proxy.server.remote.RemoteS3Facade;
+import io.trino.aws.proxy.server.rest.BufferedResponseHandler.BufferedResponse;
+import io.trino.aws.proxy.server.scheduling.FairScheduler;
+import io.trino.aws.proxy.server.scheduling.FairScheduler.Permit;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
 import io.trino.aws.proxy.spi.collections.MultiMap;
@@ -33,7 +69,7 @@ import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.io.InputStream;
 import java.lang.annotation.Retention;
@@ -42,10 +78,26 @@ import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static com.google.common.net.HttpHeaders.CONTENT_LENGTH;
+import static com.google.common.net.HttpHeaders.CONTENT_RANGE;
+import static com.google.common.util.concurrent.Futures.getUnchecked;
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.isBulkDelete;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.isCacheableHeadObject;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.isObjectWrite;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.listObjectsV2;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.rangedGetObject;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.remoteListQuery;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.recordFailure;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.startUpstreamSpan;
+import static jakarta.ws.rs.core.Response.Status.OK;
+import static jakarta.ws.rs.core.Response.Status.PARTIAL_CONTENT;
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.ElementType.PARAMETER;
@@ -57,12 +109,25 @@ public class TrinoS3ProxyClient
     private static final Logger log = Logger.get(TrinoS3ProxyClient.class);
 
     private static final int CHUNK_SIZE = 8_192 * 8;
+    // 1000 keys of up to 1024 bytes each, URL encoded, plus the XML around them
+    private static final long MAX_LIST_RESPONSE_SIZE = 16 * 1024 * 1024;
 
     private final HttpClient httpClient;
     private final SigningController signingController;
     private final RemoteS3Facade remoteS3Facade;
     private final S3SecurityController s3SecurityController;
-    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReadAheadController readAheadController;
+    private final RangeCoalescer rangeCoalescer;
+    private final ObjectMetadataCache objectMetadataCache;
+    private final ListObjectsCache listObjectsCache;
+    private final PeerCache peerCache;
+    private final ProxyMetrics proxyMetrics;
+    private final BufferPool bufferPool;
+    private final FairScheduler fairScheduler;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final Tracer tracer;
+    // tasks run in the trace context of the request that submitted them
+    private final ExecutorService executorService = Context.taskWrapping(Executors.newVirtualThreadPerTaskExecutor());
 
     @Retention(RUNTIME)
     @Target({FIELD, PARAMETER, METHOD})
@@ -70,26 +135,35 @@ public class TrinoS3ProxyClient
     public @interface ForProxyClient {}
 
     @Inject
-    public TrinoS3ProxyClient(@ForProxyClient HttpClient httpClient, SigningController signingController, RemoteS3Facade remoteS3Facade, S3SecurityController s3SecurityController)
+    public TrinoS3ProxyClient(@ForProxyClient HttpClient httpClient, SigningController signingController, RemoteS3Facade remoteS3Facade, S3SecurityController s3SecurityController, ReadAheadController readAheadController, RangeCoalescer rangeCoalescer, ObjectMetadataCache objectMetadataCache, ListObjectsCache listObjectsCache, PeerCache peerCache, ProxyMetrics proxyMetrics, BufferPool bufferPool, FairScheduler fairScheduler, BandwidthLimiter bandwidthLimiter, DnsCache dnsCache, Tracer tracer)
     {
-        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.httpClient = dnsCache.monitor(requireNonNull(httpClient, "httpClient is null"));
         this.signingController = requireNonNull(signingController, "signingController is null");
         this.remoteS3Facade = requireNonNull(remoteS3Facade, "objectStore is null");
         this.s3SecurityController = requireNonNull(s3SecurityController, "securityController is null");
+        this.readAheadController = requireNonNull(readAheadController, "readAheadController is null");
+        this.rangeCoalescer = requireNonNull(rangeCoalescer, "rangeCoalescer is null");
+        this.objectMetadataCache = requireNonNull(objectMetadataCache, "objectMetadataCache is null");
+        this.listObjectsCache = requireNonNull(listObjectsCache, "listObjectsCache is null");
+        this.peerCache = requireNonNull(peerCache, "peerCache is null");
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
+        this.fairScheduler = requireNonNull(fairScheduler, "fairScheduler is null");
+        this.bandwidthLimiter = requireNonNull(bandwidthLimiter, "bandwidthLimiter is null");
+        this.tracer = requireNonNull(tracer, "tracer is null");
     }
 
     @PreDestroy
     public void shutDown()
     {
-        if (!shutdownAndAwaitTermination(executorService, Duration.ofSeconds(30))) {
+        // client requests have had until the drain deadline to finish, what is left is background work and requests cut off by it
+        if (!shutdownAndAwaitTermination(executorService, Duration.ofSeconds(5))) {
             log.warn("Could not shutdown executor service");
         }
     }
 
     public void proxyRequest(SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
     {
-        URI remoteUri = remoteS3Facade.buildEndpoint(uriBuilder(request.queryParameters()), request.rawPath(), request.bucketName(), request.requestAuthorization().region());
-
         SecurityResponse securityResponse = s3SecurityController.apply(request);
         if (!securityResponse.canProceed()) {
             log.debug("SecurityController check failed. AccessKey: %s, Request: %s, SecurityResponse: %s", signingMetadata.credentials().emulated().accessKey(), request, securityResponse);
@@ -100,6 +174,178 @@ public class TrinoS3ProxyClient
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
 
+        invalidateCaches(request);
+        if (!serveCacheable(signingMetadata, request, asyncResponse, requestLoggingSession)) {
+            // a read that raced with a write may have cached the previous state of the bucket after the caches were
+            // invalidated, so invalidate again once the remote has responded to the write - whether it succeeded or not
+            proxyRemote(signingMetadata, toRemoteRequest(request), asyncResponse, requestLoggingSession, () -> invalidateCaches(request));
+        }
+    }
+
+    /**
+     * Execute a request made by the proxy itself rather than by a client, such as a cache warmup
+     */
+    BufferedResponse executeInternal(SigningMetadata signingMetadata, ParsedS3Request request, long maxBodySize)
+    {
+        if (!s3SecurityController.apply(request).canProceed()) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        Request remoteRequest = buildRemoteRequest(signingMetadata, request);
+        return executeBackground(request, remoteRequest, new BufferedResponseHandler(maxBodySize));
+    }
+
+    private void invalidateCaches(ParsedS3Request request)
+    {
+        if (isObjectWrite(request)) {
+            readAheadController.invalidate(request.bucketName(), request.keyInBucket());
+            objectMetadataCache.invalidate(request.bucketName(), request.keyInBucket());
+            peerCache.invalidate(request.bucketName(), request.keyInBucket());
+            listObjectsCache.invalidate(request.bucketName(), request.keyInBucket());
+        }
+        else if (isBulkDelete(request)) {
+            readAheadController.invalidateBucket(request.bucketName());
+            objectMetadataCache.invalidateBucket(request.bucketName());
+            peerCache.invalidateBucket(request.bucketName());
+            listObjectsCache.invalidateBucket(request.bucketName());
+        }
+    }
+
+    private boolean serveCacheable(SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        if (objectMetadataCache.isEnabled() && isCacheableHeadObject(request)) {
+            headObject(signingMetadata, request, asyncResponse, requestLoggingSession);
+            return true;
+        }
+
+        if (listObjectsCache.isEnabled()) {
+            Optional<ListObjectsV2Parameters> listParameters = listObjectsV2(request);
+            if (listParameters.isPresent()) {
+                listObjects(signingMetadata, request, listParameters.get(), asyncResponse, requestLoggingSession);
+                return true;
+            }
+        }
+
+        Optional<ByteRange> range = rangedGetObject(request);
+        if (range.isEmpty()) {
+            return false;
+        }
+        if (readAheadController.isEnabled() && serveFromReadAhead(signingMetadata, request, range.get(), asyncResponse, requestLoggingSession)) {
+            return true;
+        }
+        if (rangeCoalescer.isEnabled()) {
+            coalesce(signingMetadata, request, range.get(), asyncResponse, requestLoggingSession);
+            return true;
+        }
+        return false;
+    }
+
+    private void proxyRemote(SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        proxyRemote(signingMetadata, request, asyncResponse, requestLoggingSession, () -> {});
+    }
+
+    /**
+     * Proxy the request to the remote, running {@code onComplete} once the response has been streamed to the client or has failed
+     */
+    private void proxyRemote(SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession, Runnable onComplete)
+    {
+        Request remoteRequest = buildRemoteRequest(signingMetadata, request);
+
+        executorService.submit(() -> {
+            StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, requestLoggingSession, proxyMetrics.currentRequest(request.requestId()), bufferPool, Optional.of(bandwidthLimiter.throttle(signingMetadata.credentials().emulated().accessKey())));
+            try {
+                executeUpstream(signingMetadata, request, remoteRequest, responseHandler);
+            }
+            catch (Throwable e) {
+                responseHandler.handleException(remoteRequest, new RuntimeException(e));
+            }
+            finally {
+                onComplete.run();
+            }
+        });
+    }
+
+    /**
+     * Execute the remote request on behalf of a client request, within an upstream span, once the fair
+     * scheduler grants it a slot
+     */
+    private <T, E extends Exception> T executeUpstream(SigningMetadata signingMetadata, ParsedS3Request request, Request remoteRequest, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        long queueStartNanos = System.nanoTime();
+        try (Permit permit = fairScheduler.acquire(signingMetadata)) {
+            if (fairScheduler.isEnabled()) {
+                proxyMetrics.recordPhase(request.requestId(), RequestPhase.SCHEDULER_QUEUE, queueStartNanos);
+            }
+            Span span = startUpstreamSpan(tracer, request);
+            try (Scope _ = span.makeCurrent()) {
+                return httpClient(request).execute(remoteRequest, proxyMetrics.upstream(request.requestId(), charging(permit, responseHandler)));
+            }
+            catch (Throwable e) {
+                recordFailure(span, e);
+                throw e;
+            }
+            finally {
+                span.end();
+            }
+        }
+    }
+
+    /**
+     * Execute a remote request the proxy makes on its own, once the fair scheduler grants it a background slot
+     */
+    private <T, E extends Exception> T executeBackground(ParsedS3Request request, Request remoteRequest, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        Permit permit;
+        try {
+            permit = fairScheduler.acquireBackground();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a background request slot", e);
+        }
+        try (permit) {
+            return httpClient(request).execute(remoteRequest, proxyMetrics.upstream(responseHandler));
+        }
+    }
+
+    /**
+     * Charge the scheduling class of a request for the response body the remote sends
+     */
+    private static <T, E extends Exception> ResponseHandler<T, E> charging(Permit permit, ResponseHandler<T, E> delegate)
+    {
+        return new ResponseHandler<>()
+        {
+            @Override
+            public T handleException(Request request, Exception exception)
+                    throws E
+            {
+                return delegate.handleException(request, exception);
+            }
+
+            @Override
+            public T handle(Request request, io.airlift.http.client.Response response)
+                    throws E
+            {
+                Optional.ofNullable(response.getHeader(CONTENT_LENGTH))
+                        .map(Longs::tryParse)
+                        .ifPresent(permit::charge);
+                return delegate.handle(request, response);
+            }
+        };
+    }
+
+    private HttpClient httpClient(ParsedS3Request request)
+    {
+        return remoteS3Facade.httpClient(request.bucketName()).orElse(httpClient);
+    }
+
+    private Request buildRemoteRequest(SigningMetadata signingMetadata, ParsedS3Request request)
+    {
+        String remoteRegion = remoteS3Facade.remoteRegion(request.bucketName(), request.requestAuthorization().region());
+        URI remoteUri = remoteS3Facade.buildEndpoint(request.rawPath(), request.queryParameters(), request.bucketName(), remoteRegion);
+
         Request.Builder remoteRequestBuilder = new Request.Builder()
                 .setMethod(request.httpVerb())
                 .setUri(remoteUri)
@@ -131,7 +377,7 @@ public class TrinoS3ProxyClient
         request.requestContent().contentLength().ifPresent(length -> remoteRequestHeadersBuilder.putOrReplaceSingle("content-length", Integer.toString(length)));
 
         contentInputStream(request.requestContent(), signingMetadata).ifPresent(inputStream -> {
-            remoteRequestBuilder.setBodyGenerator(new StreamingBodyGenerator(inputStream));
+            remoteRequestBuilder.setBodyGenerator(new StreamingBodyGenerator(inputStream, bufferPool, bandwidthLimiter.throttle(signingMetadata.credentials().emulated().accessKey())));
             remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-content-sha256", "UNSIGNED-PAYLOAD");
         });
 
@@ -139,7 +385,7 @@ public class TrinoS3ProxyClient
         MultiMap remoteRequestHeaders = remoteRequestHeadersBuilder.build();
         String signature = signingController.signRequest(
                 signingMetadata,
-                request.requestAuthorization().region(),
+                remoteRegion,
                 targetXAmzDate,
                 Credentials::requiredRemoteCredential,
                 remoteUri,
@@ -151,23 +397,334 @@ public class TrinoS3ProxyClient
         remoteRequestHeaders.forEachEntry(remoteRequestBuilder::addHeader);
         remoteRequestBuilder.addHeader("Authorization", signature);
 
-        Request remoteRequest = remoteRequestBuilder.build();
+        return remoteRequestBuilder.build();
+    }
+
+    private void headObject(SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        ObjectCacheKey key = objectCacheKey(signingMetadata, request);
+        Optional<ClusterPeer> owner = peerCache.remoteOwner(request.bucketName(), request.keyInBucket());
+        if (owner.isPresent()) {
+            // another node of the cluster caches this object's metadata
+            headObjectRemote(signingMetadata, request, () -> peerCache.fetchMetadata(owner.get(), key), metadata -> peerCache.storeMetadata(owner.get(), key, metadata), asyncResponse, requestLoggingSession);
+            return;
+        }
+
+        ObjectMetadataCache.Lookup lookup = objectMetadataCache.lookup(key);
+        Optional<CachedObjectMetadata> cached = lookup.cached();
+        if (cached.isPresent()) {
+            requestLoggingSession.logProperty("response.metadata-cache.hit", true);
+            requestLoggingSession.logProperty("response.status", cached.get().statusCode());
+            asyncResponse.resume(metadataResponse(signingMetadata, cached.get().statusCode(), cached.get().headers()));
+            return;
+        }
+
+        headObjectRemote(signingMetadata, request, Optional::empty, lookup::store, asyncResponse, requestLoggingSession);
+    }
+
+    private void headObjectRemote(SigningMetadata signingMetadata, ParsedS3Request request, Supplier<Optional<CachedObjectMetadata>> peerLookup, Consumer<CachedObjectMetadata> store, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        Request remoteRequest = buildRemoteRequest(signingMetadata, request);
 
         executorService.submit(() -> {
-            StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, requestLoggingSession);
             try {
-                httpClient.execute(remoteRequest, responseHandler);
+                Optional<CachedObjectMetadata> peerCached = peerLookup.get();
+                if (peerCached.isPresent()) {
+                    requestLoggingSession.logProperty("response.peer-cache.hit", true);
+                    requestLoggingSession.logProperty("response.status", peerCached.get().statusCode());
+                    asyncResponse.resume(metadataResponse(signingMetadata, peerCached.get().statusCode(), peerCached.get().headers()));
+                    return;
+                }
+
+                // HeadObject responses have no body
+                BufferedResponse response = executeUpstream(signingMetadata, request, remoteRequest, new BufferedResponseHandler(0));
+                store.accept(CachedObjectMetadata.fromRemoteResponse(response.statusCode(), response.headers()));
+
+                requestLoggingSession.logProperty("response.status", response.statusCode());
+                requestLoggingSession.logProperty("response.headers", response.headers());
+                asyncResponse.resume(metadataResponse(signingMetadata, response.statusCode(), response.headers()));
             }
             catch (Throwable e) {
-                responseHandler.handleException(remoteRequest, new RuntimeException(e));
+                new StreamingResponseHandler(asyncResponse, requestLoggingSession, Optional.empty(), bufferPool, Optional.empty()).handleException(remoteRequest, new RuntimeException(e));
             }
         });
     }
 
+    private jakarta.ws.rs.core.Response metadataResponse(SigningMetadata signingMetadata, int statusCode, MultiMap headers)
+    {
+        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(statusCode);
+        if (HttpStatus.familyForStatusCode(statusCode) == HttpStatus.Family.SUCCESSFUL) {
+            // matches StreamingResponseHandler so that Content-Length is passed through unchanged
+            responseBuilder.entity(throttled(signingMetadata, _ -> {}));
+        }
+        headers.forEachEntry(responseBuilder::header);
+        return responseBuilder.build();
+    }
+
+    private void listObjects(SigningMetadata signingMetadata, ParsedS3Request request, ListObjectsV2Parameters parameters, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        ListObjectsCache.Lookup lookup = listObjectsCache.lookup(new ListObjectsCacheKey(signingMetadata.credentials().emulated().accessKey(), request.bucketName(), parameters));
+        Optional<StreamingListing> cached = lookup.cached();
+        if (cached.isPresent()) {
+            requestLoggingSession.logProperty("response.list-cache.hit", true);
+            requestLoggingSession.logProperty("response.status", OK.getStatusCode());
+            jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.ok(throttled(signingMetadata, cached.get()::writeTo));
+            cached.get().headers().forEachEntry(responseBuilder::header);
+            asyncResponse.resume(responseBuilder.build());
+            return;
+        }
+
+        lookup.startIndexBuild().ifPresent(indexBuild -> executorService.submit(() -> buildListingIndex(signingMetadata, request, indexBuild)));
+
+        // continuation tokens issued from an index that is no longer cached are not known to the remote
+        Request remoteRequest = buildRemoteRequest(signingMetadata, toRemoteRequest(request));
+
+        executorService.submit(() -> {
+            try {
+                BufferedResponse response = executeUpstream(signingMetadata, request, remoteRequest, new BufferedResponseHandler(MAX_LIST_RESPONSE_SIZE));
+                if (response.statusCode() == OK.getStatusCode()) {
+                    lookup.store(response.headers(), response.body());
+                }
+
+                requestLoggingSession.logProperty("response.status", response.statusCode());
+                requestLoggingSession.logProperty("response.headers", response.headers());
+                asyncResponse.resume(bufferedResponse(signingMetadata, response));
+            }
+            catch (Throwable e) {
+                new StreamingResponseHandler(asyncResponse, requestLoggingSession, Optional.empty(), bufferPool, Optional.empty()).handleException(remoteRequest, new RuntimeException(e));
+            }
+        });
+    }
+
+    private void buildListingIndex(SigningMetadata signingMetadata, ParsedS3Request request, IndexBuild indexBuild)
+    {
+        try {
+            Optional<String> continuationToken = Optional.empty();
+            do {
+                ImmutableMultiMap.Builder queryBuilder = ImmutableMultiMap.builder(true)
+                        .putOrReplaceSingle("list-type", "2")
+                        .putOrReplaceSingle("prefix", indexBuild.prefix())
+                        .putOrReplaceSingle("max-keys", "1000");
+                continuationToken.ifPresent(token -> queryBuilder.putOrReplaceSingle("continuation-token", token));
+
+                BufferedResponse response = executeBackground(request, buildRemoteRequest(signingMetadata, withQuery(request, queryBuilder.build())), new BufferedResponseHandler(MAX_LIST_RESPONSE_SIZE));
+                if (response.statusCode() != OK.getStatusCode()) {
+                    log.debug("Listing for index failed. Bucket: %s, Prefix: %s, Status: %s", request.bucketName(), indexBuild.prefix(), response.statusCode());
+                    indexBuild.abandon();
+                    return;
+                }
+                continuationToken = indexBuild.addPage(response.headers(), response.body());
+            }
+            while (continuationToken.isPresent());
+            indexBuild.complete();
+        }
+        catch (Throwable e) {
+            log.debug(e, "Could not build listing index. Bucket: %s, Prefix: %s", request.bucketName(), indexBuild.prefix());
+            indexBuild.abandon();
+        }
+    }
+
+    private jakarta.ws.rs.core.Response bufferedResponse(SigningMetadata signingMetadata, BufferedResponse response)
+    {
+        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(response.statusCode())
+                .entity(throttled(signingMetadata, output -> output.write(response.body())));
+        response.headers().forEachEntry(responseBuilder::header);
+        return responseBuilder.build();
+    }
+
+    private boolean serveFromReadAhead(SigningMetadata signingMetadata, ParsedS3Request request, ByteRange range, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        ReadAheadController.Access access = readAheadController.access(objectCacheKey(signingMetadata, request), range);
+        access.prefetch().ifPresent(prefetch -> startPrefetch(signingMetadata, request, prefetch));
+
+        return access.hit().map(cachedRange -> {
+            requestLoggingSession.logProperty("response.read-ahead.hit", range);
+            requestLoggingSession.logProperty("response.status", PARTIAL_CONTENT.getStatusCode());
+            asyncResponse.resume(cachedRangeResponse(signingMetadata, cachedRange, range));
+            return true;
+        }).orElse(false);
+    }
+
+    private void startPrefetch(SigningMetadata signingMetadata, ParsedS3Request request, Prefetch prefetch)
+    {
+        Request remoteRequest;
+        try {
+            remoteRequest = buildRemoteRequest(signingMetadata, withRange(request, prefetch.range()));
+        }
+        catch (RuntimeException e) {
+            log.debug(e, "Could not build prefetch request. Request: %s, Range: %s", request, prefetch.range());
+            prefetch.abandon();
+            return;
+        }
+
+        // a prefetch that has to wait would likely arrive after the read it is for
+        Optional<Permit> permit = fairScheduler.tryAcquireBackground();
+        if (permit.isEmpty()) {
+            prefetch.abandon();
+            return;
+        }
+
+        try {
+            executorService.submit(() -> {
+                try (Permit _ = permit.get()) {
+                    BufferedResponse response = httpClient(request).execute(remoteRequest, proxyMetrics.upstream(new BufferedResponseHandler(prefetch.range().length())));
+                    toCachedRange(response, prefetch.range()).ifPresentOrElse(prefetch::complete, () -> prefetch.abandon(contentRangeObjectSize(response)));
+                }
+                catch (Throwable e) {
+                    log.debug(e, "Prefetch failed. Request: %s, Range: %s", request, prefetch.range());
+                    prefetch.abandon();
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            permit.get().close();
+            prefetch.abandon();
+            throw e;
+        }
+    }
+
+    private void coalesce(SigningMetadata signingMetadata, ParsedS3Request request, ByteRange range, AsyncResponse asyncResponse, RequestLoggingSession requestLoggingSession)
+    {
+        Member member = rangeCoalescer.join(objectCacheKey(signingMetadata, request), range);
+        if (member.isSolo()) {
+            // no other read of the object is in flight, so there is nothing to wait for
+            try {
+                proxyRemote(signingMetadata, request, asyncResponse, requestLoggingSession, member::close);
+            }
+            catch (RuntimeException e) {
+                member.close();
+                throw e;
+            }
+            return;
+        }
+        if (member.isLeader()) {
+            executorService.submit(() -> fetchMerged(signingMetadata, request, member.merge()));
+        }
+
+        ListenableFuture<Optional<CachedRange>> result = member.result();
+        result.addListener(() -> getUnchecked(result).ifPresentOrElse(cachedRange -> {
+            member.close();
+            requestLoggingSession.logProperty("response.coalesced.range", cachedRange.range());
+            requestLoggingSession.logProperty("response.status", PARTIAL_CONTENT.getStatusCode());
+            asyncResponse.resume(cachedRangeResponse(signingMetadata, cachedRange, range));
+        }, () -> {
+            try {
+                proxyRemote(signingMetadata, request, asyncResponse, requestLoggingSession, member::close);
+            }
+            catch (WebApplicationException e) {
+                member.close();
+                asyncResponse.resume(e);
+            }
+        }), executorService);
+    }
+
+    private void fetchMerged(SigningMetadata signingMetadata, ParsedS3Request request, Merge merge)
+    {
+        try {
+            Optional<ByteRange> mergedRange = merge.awaitMerge();
+            if (mergedRange.isPresent()) {
+                Request remoteRequest = buildRemoteRequest(signingMetadata, withRange(request, mergedRange.get()));
+                BufferedResponse response = executeUpstream(signingMetadata, request, remoteRequest, new BufferedResponseHandler(mergedRange.get().length()));
+                toCachedRange(response, mergedRange.get()).ifPresentOrElse(merge::complete, merge::fail);
+            }
+        }
+        catch (Throwable e) {
+            log.debug(e, "Merged fetch failed. Request: %s", request);
+            merge.fail();
+        }
+    }
+
+    private static ObjectCacheKey objectCacheKey(SigningMetadata signingMetadata, ParsedS3Request request)
+    {
+        return new ObjectCacheKey(signingMetadata.credentials().emulated().accessKey(), request.bucketName(), request.keyInBucket());
+    }
+
+    static Optional<CachedRange> toCachedRange(BufferedResponse response, ByteRange requestedRange)
+    {
+        if (response.statusCode() != PARTIAL_CONTENT.getStatusCode()) {
+            return Optional.empty();
+        }
+        return response.headers().getFirst("content-range").flatMap(contentRange -> ByteRange.parseContentRangeHeader(contentRange)
+                .filter(range -> (range.start() == requestedRange.start()) && requestedRange.contains(range) && (range.length() == response.body().length))
+                .map(range -> new CachedRange(range, ByteRange.parseContentRangeObjectSize(contentRange), response.entityHeaders(), response.body())));
+    }
+
+    private static OptionalLong contentRangeObjectSize(BufferedResponse response)
+    {
+        return response.headers().getFirst("content-range")
+                .map(ByteRange::parseContentRangeObjectSize)
+                .orElse(OptionalLong.empty());
+    }
+
+    private jakarta.ws.rs.core.Response cachedRangeResponse(SigningMetadata signingMetadata, CachedRange cachedRange, ByteRange range)
+    {
+        jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(PARTIAL_CONTENT)
+                .entity(throttled(signingMetadata, output -> cachedRange.writeTo(range, output)));
+        cachedRange.headers().forEachEntry(responseBuilder::header);
+        return responseBuilder.header(CONTENT_RANGE, range.toContentRangeHeader(cachedRange.objectSize()))
+                .header(CONTENT_LENGTH, range.length())
+                .build();
+    }
+
+    /**
+     * Write a response body served by the proxy itself at the bandwidth limit of the client, like bodies streamed from the remote
+     */
+    private StreamingOutput throttled(SigningMetadata signingMetadata, StreamingOutput body)
+    {
+        Throttle throttle = bandwidthLimiter.throttle(signingMetadata.credentials().emulated().accessKey());
+        return output -> body.write(new ThrottledOutputStream(output, throttle));
+    }
+
+    private static ParsedS3Request withRange(ParsedS3Request request, ByteRange range)
+    {
+        ImmutableMultiMap.Builder headersBuilder = ImmutableMultiMap.builder(false);
+        request.requestHeaders().forEach(headersBuilder::addAll);
+        headersBuilder.putOrReplaceSingle("range", range.toRangeHeader());
+
+        return new ParsedS3Request(
+                request.requestId(),
+                request.requestAuthorization(),
+                request.requestDate(),
+                request.bucketName(),
+                request.keyInBucket(),
+                headersBuilder.build(),
+                request.queryParameters(),
+                request.httpVerb(),
+                request.rawPath(),
+                request.rawQuery(),
+                RequestContent.EMPTY);
+    }
+
+    /**
+     * Replace continuation tokens issued by the proxy, which the remote does not know
+     */
+    private static ParsedS3Request toRemoteRequest(ParsedS3Request request)
+    {
+        return remoteListQuery(request)
+                .map(query -> withQuery(request, query))
+                .orElse(request);
+    }
+
+    private static ParsedS3Request withQuery(ParsedS3Request request, MultiMap queryParameters)
+    {
+        return new ParsedS3Request(
+                request.requestId(),
+                request.requestAuthorization(),
+                request.requestDate(),
+                request.bucketName(),
+                request.keyInBucket(),
+                request.requestHeaders(),
+                queryParameters,
+                request.httpVerb(),
+                request.rawPath(),
+                RemoteEndpointResolver.rawQuery(queryParameters),
+                RequestContent.EMPTY);
+    }
+
     private Optional<InputStream> contentInputStream(RequestContent requestContent, SigningMetadata signingMetadata)
     {
         return switch (requestContent.contentType()) {
-            case AWS_CHUNKED -> requestContent.inputStream().map(inputStream -> new AwsChunkedInputStream(inputStream, Optional.of(signingMetadata.requiredSigningContext().chunkSigningSession())));
+            case AWS_CHUNKED -> requestContent.inputStream().map(inputStream -> new AwsChunkedInputStream(inputStream, Optional.of(signingMetadata.requiredSigningContext().chunkSigningSession()), bufferPool));
 
             case STANDARD, W3C_CHUNKED -> requestContent.inputStream().map(inputStream -> {
                 SigningContext signingContext = signingMetadata.requiredSigningContext();
@@ -189,11 +746,4 @@ public class TrinoS3ProxyClient
         }
         return remoteUri.getHost() + ":" + port;
     }
-
-    private static UriBuilder uriBuilder(MultiMap queryParameters)
-    {
-        UriBuilder uriBuilder = UriBuilder.newInstance();
-        queryParameters.forEachEntry(uriBuilder::queryParam);
-        return uriBuilder;
-    }
 }
@@ -24,6 +24,12 @@ public class TrinoS3ProxyConfig
     private Optional<String> s3HostName = Optional.empty();
     private String s3Path = "/api/v1/s3Proxy/s3";
     private String stsPath = "/api/v1/s3Proxy/sts";
+    private String metricsPath = "/api/v1/s3Proxy/metrics";
+    private String requestsPath = "/api/v1/s3Proxy/requests";
+    private String requestLoggingPath = "/api/v1/s3Proxy/logging/rules";
+    private String peerPath = "/api/v1/s3Proxy/peer";
+    private String warmupPath = "/api/v1/s3Proxy/warmup";
+    private String drainPath = "/api/v1/s3Proxy/drain";
 
     @Config("s3proxy.s3.hostname")
     @ConfigDescription("Hostname to use for S3 REST operations, virtual-host style addressing is only supported if this is set")
@@ -66,4 +72,88 @@ public class TrinoS3ProxyConfig
     {
         return stsPath;
     }
+
+    @Config("s3proxy.metrics.path")
+    @ConfigDescription("URL Path for OpenMetrics metrics, optional")
+    public TrinoS3ProxyConfig setMetricsPath(String metricsPath)
+    {
+        this.metricsPath = metricsPath;
+        return this;
+    }
+
+    @NotNull
+    public String getMetricsPath()
+    {
+        return metricsPath;
+    }
+
+    @Config("s3proxy.requests.path")
+    @ConfigDescription("URL Path for recently recorded requests, optional")
+    public TrinoS3ProxyConfig setRequestsPath(String requestsPath)
+    {
+        this.requestsPath = requestsPath;
+        return this;
+    }
+
+    @NotNull
+    public String getRequestsPath()
+    {
+        return requestsPath;
+    }
+
+    @Config("s3proxy.request-logging.path")
+    @ConfigDescription("URL Path for managing the rules that select requests to log, optional")
+    public TrinoS3ProxyConfig setRequestLoggingPath(String requestLoggingPath)
+    {
+        this.requestLoggingPath = requestLoggingPath;
+        return this;
+    }
+
+    @NotNull
+    public String getRequestLoggingPath()
+    {
+        return requestLoggingPath;
+    }
+
+    @Config("s3proxy.peer.path")
+    @ConfigDescription("URL Path for requests between the nodes of a cluster, optional")
+    public TrinoS3ProxyConfig setPeerPath(String peerPath)
+    {
+        this.peerPath = peerPath;
+        return this;
+    }
+
+    @NotNull
+    public String getPeerPath()
+    {
+        return peerPath;
+    }
+
+    @Config("s3proxy.warmup.path")
+    @ConfigDescription("URL Path for starting and following cache warmup jobs, optional")
+    public TrinoS3ProxyConfig setWarmupPath(String warmupPath)
+    {
+        this.warmupPath = warmupPath;
+        return this;
+    }
+
+    @NotNull
+    public String getWarmupPath()
+    {
+        return warmupPath;
+    }
+
+    @Config("s3proxy.drain.path")
+    @ConfigDescription("URL Path for draining the proxy and for its readiness check, optional")
+    public TrinoS3ProxyConfig setDrainPath(String drainPath)
+    {
+        this.drainPath = drainPath;
+        return this;
+    }
+
+    @NotNull
+    public String getDrainPath()
+    {
+        return drainPath;
+    }
 }
@@ -14,6 +14,7 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.inject.Inject;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
@@ -31,19 +32,23 @@ import jakarta.ws.rs.core.Response;
 
 import java.util.Optional;
 
+import static io.trino.aws.proxy.server.metrics.S3Actions.actionName;
 import static io.trino.aws.proxy.server.rest.RequestBuilder.fromRequest;
+import static io.trino.aws.proxy.server.rest.RequestBuilder.s3RequestPath;
 import static java.util.Objects.requireNonNull;
 
 public class TrinoS3Resource
 {
     private final TrinoS3ProxyClient proxyClient;
+    private final ProxyMetrics proxyMetrics;
     private final Optional<String> serverHostName;
     private final String s3Path;
 
     @Inject
-    public TrinoS3Resource(TrinoS3ProxyClient proxyClient, TrinoS3ProxyConfig trinoS3ProxyConfig)
+    public TrinoS3Resource(TrinoS3ProxyClient proxyClient, ProxyMetrics proxyMetrics, TrinoS3ProxyConfig trinoS3ProxyConfig)
     {
         this.proxyClient = requireNonNull(proxyClient, "proxyClient is null");
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
         this.serverHostName = trinoS3ProxyConfig.getS3HostName();
 
         s3Path = trinoS3ProxyConfig.getS3Path();
@@ -118,6 +123,11 @@ public class TrinoS3Resource
     {
         try {
             ParsedS3Request parsedS3Request = parseRequest(request);
+            proxyMetrics.currentRequest(request.requestId())
+                    .ifPresent(requestTracker -> {
+                        requestTracker.setAction(Optional.of(parsedS3Request.bucketName()), actionName(parsedS3Request));
+                        requestTracker.setKey(parsedS3Request.keyInBucket());
+                    });
 
             requestLoggingSession.logProperty("request.parsed.bucket", parsedS3Request.bucketName());
             requestLoggingSession.logProperty("request.parsed.key", parsedS3Request.keyInBucket());
@@ -133,18 +143,8 @@ public class TrinoS3Resource
 
     private ParsedS3Request parseRequest(Request request)
     {
-        String path = request.requestUri().getRawPath();
-        if (!path.startsWith(s3Path)) {
-            // Sanity check: this should never happen as this resource is prefixed at build time
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
-        path = path.substring(s3Path.length());
-        if (path.isEmpty()) {
-            path = "/";
-        }
-        else if ((path.length() > 1) && path.startsWith("/")) {
-            path = path.substring(1);
-        }
+        // Sanity check: this should never happen as this resource is prefixed at build time
+        String path = s3RequestPath(request, s3Path).orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
 
         return fromRequest(request, path, serverHostName);
     }
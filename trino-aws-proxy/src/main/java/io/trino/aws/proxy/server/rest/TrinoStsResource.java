@@ -17,6 +17,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
 import io.trino.aws.proxy.server.rest.AssumeRoleResponse.AssumeRoleResult;
 import io.trino.aws.proxy.server.rest.AssumeRoleResponse.AssumedRoleUser;
 import io.trino.aws.proxy.spi.collections.MultiMap;
@@ -46,13 +47,15 @@ public class TrinoStsResource
     private final SigningController signingController;
     private final AssumedRoleProvider assumedRoleProvider;
     private final XmlMapper xmlMapper;
+    private final ProxyMetrics proxyMetrics;
 
     @Inject
-    public TrinoStsResource(SigningController signingController, AssumedRoleProvider assumedRoleProvider, XmlMapper xmlMapper)
+    public TrinoStsResource(SigningController signingController, AssumedRoleProvider assumedRoleProvider, XmlMapper xmlMapper, ProxyMetrics proxyMetrics)
     {
         this.signingController = requireNonNull(signingController, "signingController is null");
         this.assumedRoleProvider = requireNonNull(assumedRoleProvider, "assumedRoleProvider is null");
         this.xmlMapper = requireNonNull(xmlMapper, "xmlMapper is null");
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
     }
 
     @SuppressWarnings("SwitchStatementWithTooFewBranches")
@@ -64,7 +67,10 @@ public class TrinoStsResource
         String action = Optional.ofNullable(arguments.get("Action")).orElse("");
 
         return switch (action) {
-            case "AssumeRole" -> assumeRole(request.requestAuthorization().region(), signingMetadata, arguments, requestLoggingSession);
+            case "AssumeRole" -> {
+                proxyMetrics.currentRequest(request.requestId()).ifPresent(requestTracker -> requestTracker.setAction(Optional.empty(), action));
+                yield assumeRole(request.requestAuthorization().region(), signingMetadata, arguments, requestLoggingSession);
+            }
             default -> {
                 log.debug("Request missing \"Action\". Arguments: %s", arguments);
                 requestLoggingSession.logError("request.action.unsupported", arguments);
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.admin.AdminOnly;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.util.Objects.requireNonNull;
+
+@AdminOnly
+public class TrinoWarmupResource
+{
+    private final CacheWarmer cacheWarmer;
+
+    @Inject
+    public TrinoWarmupResource(CacheWarmer cacheWarmer)
+    {
+        this.cacheWarmer = requireNonNull(cacheWarmer, "cacheWarmer is null");
+    }
+
+    @POST
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    public Response startJob(WarmupRequest request)
+    {
+        if (request == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        WarmupJob job = cacheWarmer.start(request)
+                .orElseThrow(() -> new WebApplicationException(Response.Status.BAD_REQUEST));
+        return Response.status(Response.Status.ACCEPTED).entity(job).build();
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    public List<WarmupJob> getJobs()
+    {
+        return cacheWarmer.getJobs();
+    }
+
+    @GET
+    @Path("{jobId}")
+    @Produces(APPLICATION_JSON)
+    public WarmupJob getJob(@PathParam("jobId") String jobId)
+    {
+        return cacheWarmer.getJob(jobId)
+                .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
+    }
+
+    @DELETE
+    @Path("{jobId}")
+    @Produces(APPLICATION_JSON)
+    public WarmupJob cancelJob(@PathParam("jobId") String jobId)
+    {
+        return cacheWarmer.cancel(jobId)
+                .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
+    }
+}
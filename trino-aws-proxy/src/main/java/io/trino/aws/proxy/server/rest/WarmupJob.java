@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Progress of a cache warmup. Counts are updated while the job runs and can be read at any time.
+ */
+public class WarmupJob
+{
+    public enum State
+    {
+        QUEUED,
+        RUNNING,
+        FINISHED,
+        CANCELLED,
+        FAILED;
+
+        public boolean isDone()
+        {
+            return (this != QUEUED) && (this != RUNNING);
+        }
+    }
+
+    private final String id;
+    private final WarmupRequest request;
+    private final Instant created = Instant.now();
+
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong metadata = new AtomicLong();
+    private final AtomicLong listings = new AtomicLong();
+    private final AtomicLong ranges = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile State state = State.QUEUED;
+    private volatile Optional<Instant> finished = Optional.empty();
+    private volatile Optional<String> error = Optional.empty();
+    private volatile Future<?> future;
+
+    WarmupJob(String id, WarmupRequest request)
+    {
+        this.id = requireNonNull(id, "id is null");
+        this.request = requireNonNull(request, "request is null");
+    }
+
+    @JsonProperty
+    public String getId()
+    {
+        return id;
+    }
+
+    // the access key identifies a tenant, it is not reported back
+    @JsonProperty
+    @JsonIgnoreProperties("accessKey")
+    public WarmupRequest getRequest()
+    {
+        return request;
+    }
+
+    @JsonProperty
+    public State getState()
+    {
+        return state;
+    }
+
+    @JsonProperty
+    public Instant getCreated()
+    {
+        return created;
+    }
+
+    @JsonProperty
+    public Optional<Instant> getFinished()
+    {
+        return finished;
+    }
+
+    @JsonProperty
+    public Optional<String> getError()
+    {
+        return error;
+    }
+
+    /**
+     * Objects listed or named in the manifest that were processed so far
+     */
+    @JsonProperty
+    public long getObjects()
+    {
+        return objects.get();
+    }
+
+    @JsonProperty
+    public long getMetadata()
+    {
+        return metadata.get();
+    }
+
+    @JsonProperty
+    public long getListings()
+    {
+        return listings.get();
+    }
+
+    @JsonProperty
+    public long getRanges()
+    {
+        return ranges.get();
+    }
+
+    @JsonProperty
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * Items that could not be cached, because the cache is disabled or full, or the object is missing or too large
+     */
+    @JsonProperty
+    public long getSkipped()
+    {
+        return skipped.get();
+    }
+
+    @JsonProperty
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    boolean isCancelled()
+    {
+        return state == State.CANCELLED;
+    }
+
+    void objectProcessed()
+    {
+        objects.incrementAndGet();
+    }
+
+    void metadataWarmed()
+    {
+        metadata.incrementAndGet();
+    }
+
+    void listingWarmed()
+    {
+        listings.incrementAndGet();
+    }
+
+    void rangeWarmed(long length)
+    {
+        ranges.incrementAndGet();
+        bytes.addAndGet(length);
+    }
+
+    void skipped()
+    {
+        skipped.incrementAndGet();
+    }
+
+    void failed()
+    {
+        failures.incrementAndGet();
+    }
+
+    synchronized void setFuture(Future<?> future)
+    {
+        this.future = requireNonNull(future, "future is null");
+        if (state == State.CANCELLED) {
+            future.cancel(true);
+        }
+    }
+
+    synchronized boolean start()
+    {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        return true;
+    }
+
+    synchronized void finish(Optional<String> error)
+    {
+        if (!state.isDone()) {
+            state = error.isPresent() ? State.FAILED : State.FINISHED;
+            this.error = error;
+            finished = Optional.of(Instant.now());
+        }
+    }
+
+    synchronized void cancel()
+    {
+        if (!state.isDone()) {
+            state = State.CANCELLED;
+            finished = Optional.of(Instant.now());
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import io.trino.aws.proxy.server.cache.ByteRange;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Objects whose data should be fetched into the caches ahead of a planned workload. Objects are either listed
+ * under prefixes or named in a manifest, optionally with the ranges that will be read. Cached data is never
+ * shared between access keys, so the caches are warmed for a single emulated access key.
+ */
+public record WarmupRequest(
+        String accessKey,
+        String bucket,
+        Optional<String> region,
+        List<String> prefixes,
+        List<WarmupObject> objects,
+        Set<Target> targets)
+{
+    private static final Set<Target> DEFAULT_TARGETS = Sets.immutableEnumSet(Target.METADATA, Target.LISTING, Target.FOOTERS);
+
+    public enum Target
+    {
+        /**
+         * HeadObject responses
+         */
+        METADATA,
+        /**
+         * Listing indexes of the prefixes
+         */
+        LISTING,
+        /**
+         * The end of each object, where columnar formats keep their footer
+         */
+        FOOTERS,
+        /**
+         * Whole objects, up to a maximum size
+         */
+        OBJECTS,
+    }
+
+    public record WarmupObject(String key, List<ByteRange> ranges)
+    {
+        public WarmupObject
+        {
+            requireNonNull(key, "key is null");
+            ranges = (ranges == null) ? ImmutableList.of() : ImmutableList.copyOf(ranges);
+        }
+    }
+
+    public WarmupRequest
+    {
+        requireNonNull(accessKey, "accessKey is null");
+        requireNonNull(bucket, "bucket is null");
+        checkArgument(!bucket.isEmpty(), "bucket is empty");
+        region = (region == null) ? Optional.empty() : region;
+        prefixes = (prefixes == null) ? ImmutableList.of() : ImmutableList.copyOf(prefixes);
+        objects = (objects == null) ? ImmutableList.of() : ImmutableList.copyOf(objects);
+        targets = ((targets == null) || targets.isEmpty()) ? DEFAULT_TARGETS : Sets.immutableEnumSet(targets);
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.scheduling;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.spi.remote.RemoteSessionRole;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.WebApplicationException;
+import org.weakref.jmx.MBeanExport;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.util.concurrent.Futures.getUnchecked;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Shares the remote request slots of the proxy between weighted scheduling classes, so that one tenant's bulk
+ * work cannot starve another's interactive requests. Requests are classified by the remote session role of their
+ * credentials or, failing that, their emulated access key. While slots are free requests start right
+ * away; otherwise they wait in their class's queue, and a freed slot goes to the waiting class that has received
+ * the least service relative to its weight (start-time fair queuing). A request is charged a fixed cost when it
+ * starts and the size of its response once the remote answers, so classes moving many bytes yield to the others.
+ * Requests the proxy makes on its own have a separate, smaller limit and only start while no client request waits.
+ */
+public class FairScheduler
+{
+    private static final Logger log = Logger.get(FairScheduler.class);
+
+    // what a request costs besides its response bytes, so that classes sending many small requests are also held back
+    private static final long REQUEST_COST_BYTES = 64 * 1024;
+
+    private final boolean enabled;
+    private final long maxQueuedNanos;
+    private final Map<String, SchedulingClass> classes;
+    private final SchedulingClass defaultClass;
+    private final Map<String, SchedulingClass> accessKeyClasses;
+    private final Map<String, SchedulingClass> roleClasses;
+    private final Permit unscheduled = new Permit(Optional.empty(), 0, false);
+    private final MBeanExporter exporter;
+    private final List<MBeanExport> exports;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+    private int availableSlots;
+    private int availableBackgroundSlots;
+    private double virtualTime;
+
+    public FairScheduler(SchedulingConfig config, Map<String, SchedulingClassConfig> classConfigs, MBeanExporter exporter)
+    {
+        enabled = config.isEnabled();
+        maxQueuedNanos = config.getMaxQueuedTime().roundTo(NANOSECONDS);
+        availableSlots = config.getMaxConcurrentRequests();
+        availableBackgroundSlots = config.getMaxBackgroundRequests();
+        this.exporter = requireNonNull(exporter, "exporter is null");
+
+        Map<String, SchedulingClass> classes = new LinkedHashMap<>();
+        Map<String, SchedulingClass> accessKeyClasses = new HashMap<>();
+        Map<String, SchedulingClass> roleClasses = new HashMap<>();
+        classConfigs.forEach((name, classConfig) -> {
+            SchedulingClass schedulingClass = new SchedulingClass(name, classConfig.getWeight(), classConfig.getMaxQueuedRequests());
+            classes.put(name, schedulingClass);
+            classConfig.getAccessKeys().forEach(accessKey -> checkArgument(accessKeyClasses.put(accessKey, schedulingClass) == null, "Access key is assigned to more than one scheduling class: %s", accessKey));
+            classConfig.getRoles().forEach(role -> checkArgument(roleClasses.put(role, schedulingClass) == null, "Role is assigned to more than one scheduling class: %s", role));
+        });
+        classes.computeIfAbsent(config.getDefaultClass(), name -> new SchedulingClass(name, 1, new SchedulingClassConfig().getMaxQueuedRequests()));
+        this.classes = ImmutableMap.copyOf(classes);
+        this.accessKeyClasses = ImmutableMap.copyOf(accessKeyClasses);
+        this.roleClasses = ImmutableMap.copyOf(roleClasses);
+        defaultClass = this.classes.get(config.getDefaultClass());
+
+        ImmutableList.Builder<MBeanExport> exports = ImmutableList.builder();
+        if (enabled) {
+            for (SchedulingClass schedulingClass : this.classes.values()) {
+                try {
+                    exports.add(exporter.exportWithGeneratedName(schedulingClass.stats, SchedulingClassStats.class, ImmutableMap.of("type", "SchedulingClass", "name", schedulingClass.name)));
+                }
+                catch (RuntimeException e) {
+                    log.warn(e, "Could not export stats of scheduling class %s", schedulingClass.name);
+                }
+            }
+        }
+        this.exports = exports.build();
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        for (MBeanExport export : exports) {
+            try {
+                export.unexport();
+            }
+            catch (RuntimeException e) {
+                log.warn(e, "Could not unexport %s", export.getObjectName());
+            }
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Wait for a remote request slot for the given client request. The returned permit must be closed once the
+     * remote request, including the transfer of its response, is complete.
+     *
+     * @throws WebApplicationException with status 503 if the class of the request has too many requests
+     * waiting or the request waited too long
+     */
+    public Permit acquire(SigningMetadata signingMetadata)
+    {
+        if (!enabled) {
+            return unscheduled;
+        }
+        return acquire(classify(signingMetadata));
+    }
+
+    /**
+     * The scheduling class of a request: the class of the remote session role, else the class of the access key,
+     * else the default class. Only the credentials decide, so a client cannot move its requests to another class
+     */
+    public String classify(SigningMetadata signingMetadata)
+    {
+        return signingMetadata.credentials().remoteSessionRole().map(RemoteSessionRole::roleArn).map(roleClasses::get)
+                .or(() -> Optional.ofNullable(accessKeyClasses.get(signingMetadata.credentials().emulated().accessKey())))
+                .orElse(defaultClass)
+                .name;
+    }
+
+    Permit acquire(String className)
+    {
+        SchedulingClass schedulingClass = requireNonNull(classes.get(className), "unknown scheduling class");
+        long startNanos = System.nanoTime();
+        SettableFuture<Permit> waiter = SettableFuture.create();
+        lock.lock();
+        try {
+            if (schedulingClass.queue.isEmpty()) {
+                // a class does not bank credit while it has nothing waiting
+                schedulingClass.virtualTime = Math.max(schedulingClass.virtualTime, virtualTime);
+            }
+            if ((availableSlots > 0) && (queuedRequests() == 0)) {
+                return start(schedulingClass, 0);
+            }
+            if (schedulingClass.queue.size() >= schedulingClass.maxQueuedRequests) {
+                schedulingClass.stats.getRejected().update(1);
+                throw slowDown();
+            }
+            schedulingClass.queue.add(new Waiter(waiter, startNanos));
+            schedulingClass.queued = schedulingClass.queue.size();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        try {
+            return waiter.get(maxQueuedNanos, NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            schedulingClass.stats.getTimedOut().update(1);
+            return abandon(schedulingClass, waiter);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandon(schedulingClass, waiter);
+        }
+        catch (ExecutionException e) {
+            // the future is only ever set to a permit
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Take a remote request slot for work the proxy does on its own, such as a prefetch, if one is free right away.
+     * Background requests are not charged to any class. They start only while no client request is waiting for a
+     * slot, and at most {@code s3proxy.scheduling.max-background-requests} of them run at the same time, also when
+     * scheduling is disabled.
+     */
+    public Optional<Permit> tryAcquireBackground()
+    {
+        lock.lock();
+        try {
+            if (!canStartBackground()) {
+                return Optional.empty();
+            }
+            return Optional.of(startBackground());
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a background request can start, see {@link #tryAcquireBackground()}
+     */
+    public Permit acquireBackground()
+            throws InterruptedException
+    {
+        lock.lockInterruptibly();
+        try {
+            while (!canStartBackground()) {
+                slotReleased.await();
+            }
+            return startBackground();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Managed
+    public int getAvailableSlots()
+    {
+        lock.lock();
+        try {
+            return availableSlots;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Managed
+    public int getAvailableBackgroundSlots()
+    {
+        lock.lock();
+        try {
+            return availableBackgroundSlots;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Managed
+    public int getQueuedRequests()
+    {
+        lock.lock();
+        try {
+            return queuedRequests();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, SchedulingClassStats> getClassStats()
+    {
+        return classes.entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().stats));
+    }
+
+    private Permit abandon(SchedulingClass schedulingClass, SettableFuture<Permit> waiter)
+    {
+        lock.lock();
+        try {
+            if (schedulingClass.queue.removeIf(queued -> queued.future() == waiter)) {
+                schedulingClass.queued = schedulingClass.queue.size();
+                throw slowDown();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        // the slot was granted while giving up, hand it on
+        getUnchecked(waiter).close();
+        throw slowDown();
+    }
+
+    private Permit start(SchedulingClass schedulingClass, long queuedNanos)
+    {
+        availableSlots--;
+        schedulingClass.running++;
+        virtualTime = Math.max(virtualTime, schedulingClass.virtualTime);
+        schedulingClass.virtualTime += (double) REQUEST_COST_BYTES / schedulingClass.weight;
+        schedulingClass.stats.getAdmitted().update(1);
+        schedulingClass.stats.getQueueTime().addNanos(queuedNanos);
+        return new Permit(Optional.of(schedulingClass), queuedNanos, false);
+    }
+
+    private boolean canStartBackground()
+    {
+        if (availableBackgroundSlots == 0) {
+            return false;
+        }
+        return !enabled || ((availableSlots > 0) && (queuedRequests() == 0));
+    }
+
+    private Permit startBackground()
+    {
+        availableBackgroundSlots--;
+        if (enabled) {
+            availableSlots--;
+        }
+        return new Permit(Optional.empty(), 0, true);
+    }
+
+    private void release(SchedulingClass schedulingClass)
+    {
+        lock.lock();
+        try {
+            availableSlots++;
+            schedulingClass.running--;
+            dispatch();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseBackground()
+    {
+        lock.lock();
+        try {
+            availableBackgroundSlots++;
+            if (enabled) {
+                availableSlots++;
+            }
+            dispatch();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand free slots to the waiting client requests, then to waiting background requests
+     */
+    private void dispatch()
+    {
+        while (availableSlots > 0) {
+            SchedulingClass next = null;
+            for (SchedulingClass candidate : classes.values()) {
+                if (!candidate.queue.isEmpty() && ((next == null) || (candidate.virtualTime < next.virtualTime))) {
+                    next = candidate;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            Waiter waiter = next.queue.poll();
+            next.queued = next.queue.size();
+            waiter.future().set(start(next, System.nanoTime() - waiter.startNanos()));
+        }
+        if (canStartBackground()) {
+            slotReleased.signalAll();
+        }
+    }
+
+    private void charge(SchedulingClass schedulingClass, long bytes)
+    {
+        if (bytes <= 0) {
+            return;
+        }
+        schedulingClass.stats.getChargedBytes().update(bytes);
+        lock.lock();
+        try {
+            schedulingClass.virtualTime += (double) bytes / schedulingClass.weight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private int queuedRequests()
+    {
+        int queued = 0;
+        for (SchedulingClass schedulingClass : classes.values()) {
+            queued += schedulingClass.queue.size();
+        }
+        return queued;
+    }
+
+    private static WebApplicationException slowDown()
+    {
+        return new WebApplicationException(SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * A remote request slot. Close it once the remote request is complete.
+     */
+    public final class Permit
+            implements AutoCloseable
+    {
+        private final Optional<SchedulingClass> schedulingClass;
+        private final long queuedNanos;
+        private final boolean background;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(Optional<SchedulingClass> schedulingClass, long queuedNanos, boolean background)
+        {
+            this.schedulingClass = requireNonNull(schedulingClass, "schedulingClass is null");
+            this.queuedNanos = queuedNanos;
+            this.background = background;
+        }
+
+        public Optional<String> className()
+        {
+            return schedulingClass.map(value -> value.name);
+        }
+
+        /**
+         * Time spent waiting for the slot
+         */
+        public long queuedNanos()
+        {
+            return queuedNanos;
+        }
+
+        /**
+         * Charge the class of the request for bytes transferred on its behalf
+         */
+        public void charge(long bytes)
+        {
+            schedulingClass.ifPresent(value -> FairScheduler.this.charge(value, bytes));
+        }
+
+        @Override
+        public void close()
+        {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (background) {
+                releaseBackground();
+            }
+            else {
+                schedulingClass.ifPresent(FairScheduler.this::release);
+            }
+        }
+    }
+
+    private record Waiter(SettableFuture<Permit> future, long startNanos) {}
+
+    private static final class SchedulingClass
+    {
+        private final String name;
+        private final int weight;
+        private final int maxQueuedRequests;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private final SchedulingClassStats stats;
+        // service received relative to the weight, in bytes; only accessed under the scheduler lock
+        private double virtualTime;
+        private volatile int running;
+        private volatile int queued;
+
+        private SchedulingClass(String name, int weight, int maxQueuedRequests)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.weight = weight;
+            this.maxQueuedRequests = maxQueuedRequests;
+            stats = new SchedulingClassStats(weight, () -> running, () -> queued);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.scheduling;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * A scheduling class, bound under {@code s3proxy.scheduling.class.<name>}
+ */
+public class SchedulingClassConfig
+{
+    private int weight = 1;
+    private List<String> accessKeys = ImmutableList.of();
+    private List<String> roles = ImmutableList.of();
+    private int maxQueuedRequests = 1000;
+
+    @Config("weight")
+    @ConfigDescription("Share of remote requests and response bytes the class gets while other classes are waiting")
+    public SchedulingClassConfig setWeight(int weight)
+    {
+        this.weight = weight;
+        return this;
+    }
+
+    @Min(1)
+    @Max(1000)
+    public int getWeight()
+    {
+        return weight;
+    }
+
+    @Config("access-keys")
+    @ConfigDescription("Emulated access keys whose requests belong to the class")
+    public SchedulingClassConfig setAccessKeys(List<String> accessKeys)
+    {
+        this.accessKeys = ImmutableList.copyOf(accessKeys);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getAccessKeys()
+    {
+        return accessKeys;
+    }
+
+    @Config("roles")
+    @ConfigDescription("Remote session role ARNs, as returned by the credentials provider, whose requests belong to the class")
+    public SchedulingClassConfig setRoles(List<String> roles)
+    {
+        this.roles = ImmutableList.copyOf(roles);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getRoles()
+    {
+        return roles;
+    }
+
+    @Config("max-queued-requests")
+    @ConfigDescription("Requests of the class beyond this many waiting are answered with 503 Slow Down")
+    public SchedulingClassConfig setMaxQueuedRequests(int maxQueuedRequests)
+    {
+        this.maxQueuedRequests = maxQueuedRequests;
+        return this;
+    }
+
+    @Min(0)
+    public int getMaxQueuedRequests()
+    {
+        return maxQueuedRequests;
+    }
+}
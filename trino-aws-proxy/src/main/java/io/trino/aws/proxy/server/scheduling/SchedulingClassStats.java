@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.scheduling;
+
+import io.airlift.stats.CounterStat;
+import io.trino.aws.proxy.server.metrics.LatencyHistogram;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.function.IntSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Admissions, rejections, charged bytes and queueing time of a scheduling class
+ */
+public class SchedulingClassStats
+{
+    private final int weight;
+    private final IntSupplier runningRequests;
+    private final IntSupplier queuedRequests;
+    private final CounterStat admitted = new CounterStat();
+    private final CounterStat rejected = new CounterStat();
+    private final CounterStat timedOut = new CounterStat();
+    private final CounterStat chargedBytes = new CounterStat();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+
+    SchedulingClassStats(int weight, IntSupplier runningRequests, IntSupplier queuedRequests)
+    {
+        this.weight = weight;
+        this.runningRequests = requireNonNull(runningRequests, "runningRequests is null");
+        this.queuedRequests = requireNonNull(queuedRequests, "queuedRequests is null");
+    }
+
+    @Managed
+    public int getWeight()
+    {
+        return weight;
+    }
+
+    @Managed
+    public int getRunningRequests()
+    {
+        return runningRequests.getAsInt();
+    }
+
+    @Managed
+    public int getQueuedRequests()
+    {
+        return queuedRequests.getAsInt();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getAdmitted()
+    {
+        return admitted;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejected()
+    {
+        return rejected;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getTimedOut()
+    {
+        return timedOut;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getChargedBytes()
+    {
+        return chargedBytes;
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getQueueTime()
+    {
+        return queueTime;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.scheduling;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class SchedulingConfig
+{
+    private boolean enabled;
+    private int maxConcurrentRequests = 256;
+    private int maxBackgroundRequests = 16;
+    private Duration maxQueuedTime = new Duration(30, SECONDS);
+    private List<String> classes = ImmutableList.of();
+    private String defaultClass = "default";
+
+    @Config("s3proxy.scheduling.enabled")
+    @ConfigDescription("Share remote requests between weighted scheduling classes instead of running them in arrival order")
+    public SchedulingConfig setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Config("s3proxy.scheduling.max-concurrent-requests")
+    @ConfigDescription("Number of remote requests in progress at the same time, others wait for their class's turn")
+    public SchedulingConfig setMaxConcurrentRequests(int maxConcurrentRequests)
+    {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxConcurrentRequests()
+    {
+        return maxConcurrentRequests;
+    }
+
+    @Config("s3proxy.scheduling.max-background-requests")
+    @ConfigDescription("Number of remote requests the proxy makes on its own, for prefetches, listing indexes and cache warmups, in progress at the same time")
+    public SchedulingConfig setMaxBackgroundRequests(int maxBackgroundRequests)
+    {
+        this.maxBackgroundRequests = maxBackgroundRequests;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxBackgroundRequests()
+    {
+        return maxBackgroundRequests;
+    }
+
+    @Config("s3proxy.scheduling.max-queued-time")
+    @ConfigDescription("Requests waiting longer than this for their turn are answered with 503 Slow Down")
+    public SchedulingConfig setMaxQueuedTime(Duration maxQueuedTime)
+    {
+        this.maxQueuedTime = maxQueuedTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getMaxQueuedTime()
+    {
+        return maxQueuedTime;
+    }
+
+    @Config("s3proxy.scheduling.classes")
+    @ConfigDescription("Names of the scheduling classes, each configured under s3proxy.scheduling.class.<name>")
+    public SchedulingConfig setClasses(List<String> classes)
+    {
+        this.classes = ImmutableList.copyOf(classes);
+        return this;
+    }
+
+    @NotNull
+    public List<String> getClasses()
+    {
+        return classes;
+    }
+
+    @Config("s3proxy.scheduling.default-class")
+    @ConfigDescription("Class of requests that no other class claims. Created with weight 1 if it is not one of s3proxy.scheduling.classes")
+    public SchedulingConfig setDefaultClass(String defaultClass)
+    {
+        this.defaultClass = defaultClass;
+        return this;
+    }
+
+    @NotNull
+    public String getDefaultClass()
+    {
+        return defaultClass;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.scheduling;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Binder;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import io.airlift.configuration.AbstractConfigurationAwareModule;
+import org.weakref.jmx.MBeanExporter;
+
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binds a {@link FairScheduler} built from {@code s3proxy.scheduling.*} properties
+ */
+public class SchedulingModule
+        extends AbstractConfigurationAwareModule
+{
+    private static final String CLASS_PREFIX = "s3proxy.scheduling.class.";
+
+    @Override
+    protected void setup(Binder binder)
+    {
+        SchedulingConfig schedulingConfig = buildConfigObject(SchedulingConfig.class);
+
+        ImmutableMap.Builder<String, SchedulingClassConfig> classes = ImmutableMap.builder();
+        for (String name : schedulingConfig.getClasses()) {
+            classes.put(name, buildConfigObject(SchedulingClassConfig.class, CLASS_PREFIX + name));
+        }
+        binder.bind(SchedulingDefinition.class).toInstance(new SchedulingDefinition(classes.buildOrThrow()));
+    }
+
+    @Provides
+    @Singleton
+    public FairScheduler newFairScheduler(SchedulingConfig config, SchedulingDefinition scheduling, MBeanExporter exporter)
+    {
+        return new FairScheduler(config, scheduling.classes(), exporter);
+    }
+
+    record SchedulingDefinition(Map<String, SchedulingClassConfig> classes)
+    {
+        SchedulingDefinition
+        {
+            classes = ImmutableMap.copyOf(requireNonNull(classes, "classes is null"));
+        }
+    }
+}
@@ -16,6 +16,11 @@ package io.trino.aws.proxy.server.security;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.inject.Inject;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.RequestPhase;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.security.S3DatabaseSecurityFacadeProvider;
@@ -27,6 +32,9 @@ import java.util.Locale;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.SECURITY_CAN_PROCEED;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.recordFailure;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.startSpan;
 import static java.util.Objects.requireNonNull;
 
 public class S3SecurityController
@@ -34,9 +42,11 @@ public class S3SecurityController
     private static final S3SecurityFacadeProvider DEFAULT_SECURITY_FACADE_PROVIDER = _ -> _ -> SecurityResponse.DEFAULT;
 
     private final S3SecurityFacadeProvider s3SecurityFacadeProvider;
+    private final ProxyMetrics proxyMetrics;
+    private final Tracer tracer;
 
     @Inject
-    public S3SecurityController(Optional<S3SecurityFacadeProvider> s3SecurityFacadeProvider, Optional<S3DatabaseSecurityFacadeProvider> s3DatabaseSecurityFacadeProvider, RequestLoggerController requestLoggerController)
+    public S3SecurityController(Optional<S3SecurityFacadeProvider> s3SecurityFacadeProvider, Optional<S3DatabaseSecurityFacadeProvider> s3DatabaseSecurityFacadeProvider, RequestLoggerController requestLoggerController, ProxyMetrics proxyMetrics, Tracer tracer)
     {
         boolean hasDatabaseSecurity = s3DatabaseSecurityFacadeProvider.isPresent();
         boolean hasNonDefaultSecurity = s3SecurityFacadeProvider.isPresent();
@@ -46,15 +56,31 @@ public class S3SecurityController
         this.s3SecurityFacadeProvider = requireNonNull(s3SecurityFacadeProvider, "securityFacadeProvider is null")
                 .orElseGet(() -> s3DatabaseSecurityFacadeProvider.map(databaseSecurity -> (S3SecurityFacadeProvider) new S3DatabaseSecurityController(databaseSecurity, requestLoggerController))
                         .orElse(DEFAULT_SECURITY_FACADE_PROVIDER));
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+        this.tracer = requireNonNull(tracer, "tracer is null");
     }
 
     public SecurityResponse apply(ParsedS3Request request)
     {
-        S3SecurityFacade s3SecurityFacade = currentProvider().securityFacadeForRequest(request);
+        long decisionStart = System.nanoTime();
+        Span span = startSpan(tracer, RequestPhase.SECURITY_DECISION.phaseName(), request.requestId());
+        try (Scope _ = span.makeCurrent()) {
+            S3SecurityFacade s3SecurityFacade = currentProvider().securityFacadeForRequest(request);
 
-        Optional<String> lowercaseAction = request.rawQuery().flatMap(S3SecurityController::parseAction);
+            Optional<String> lowercaseAction = request.rawQuery().flatMap(S3SecurityController::parseAction);
 
-        return s3SecurityFacade.apply(lowercaseAction);
+            SecurityResponse securityResponse = s3SecurityFacade.apply(lowercaseAction);
+            span.setAttribute(SECURITY_CAN_PROCEED, securityResponse.canProceed());
+            return securityResponse;
+        }
+        catch (RuntimeException e) {
+            recordFailure(span, e);
+            throw e;
+        }
+        finally {
+            span.end();
+            proxyMetrics.recordPhase(request.requestId(), RequestPhase.SECURITY_DECISION, decisionStart);
+        }
     }
 
     @VisibleForTesting
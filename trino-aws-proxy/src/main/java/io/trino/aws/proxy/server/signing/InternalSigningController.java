@@ -17,7 +17,12 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
 import io.trino.aws.proxy.server.credentials.CredentialsController;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.RequestPhase;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
 import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
 import io.trino.aws.proxy.spi.collections.MultiMap;
@@ -44,6 +49,9 @@ import java.util.stream.Stream;
 import static io.trino.aws.proxy.server.signing.Signer.AMZ_DATE_FORMAT;
 import static io.trino.aws.proxy.server.signing.Signer.RESPONSE_DATE_FORMAT;
 import static io.trino.aws.proxy.server.signing.Signer.ZONE;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.SIGNATURE_VALID;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.recordFailure;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.startSpan;
 import static java.util.Objects.requireNonNull;
 
 public class InternalSigningController
@@ -54,14 +62,18 @@ public class InternalSigningController
     private final Duration maxClockDrift;
     private final RequestLoggerController requestLoggerController;
     private final CredentialsController credentialsController;
+    private final ProxyMetrics proxyMetrics;
+    private final Tracer tracer;
 
     private static final Set<String> LOWERCASE_HEADERS = ImmutableSet.of("content-type");
 
     @Inject
-    public InternalSigningController(CredentialsController credentialsController, SigningControllerConfig signingControllerConfig, RequestLoggerController requestLoggerController)
+    public InternalSigningController(CredentialsController credentialsController, SigningControllerConfig signingControllerConfig, RequestLoggerController requestLoggerController, ProxyMetrics proxyMetrics, Tracer tracer)
     {
         this.credentialsController = requireNonNull(credentialsController, "credentialsController is null");
         this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
+        this.proxyMetrics = requireNonNull(proxyMetrics, "proxyMetrics is null");
+        this.tracer = requireNonNull(tracer, "tracer is null");
 
         maxClockDrift = signingControllerConfig.getMaxClockDrift().toJavaTime();
     }
@@ -116,9 +128,23 @@ public class InternalSigningController
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
 
-        return credentialsController.withCredentials(request.requestAuthorization().accessKey(), request.requestAuthorization().securityToken(), credentials -> {
+        return credentialsController.withCredentials(request.requestId(), request.requestAuthorization().accessKey(), request.requestAuthorization().securityToken(), credentials -> {
             SigningMetadata metadata = new SigningMetadata(signingServiceType, credentials, Optional.empty());
-            return isValidAuthorization(metadata, request, Credentials::emulated);
+            long verificationStart = System.nanoTime();
+            Span span = startSpan(tracer, RequestPhase.SIGNATURE_VERIFICATION.phaseName(), request.requestId());
+            try (Scope _ = span.makeCurrent()) {
+                Optional<SigningMetadata> signingMetadata = isValidAuthorization(metadata, request, Credentials::emulated);
+                span.setAttribute(SIGNATURE_VALID, signingMetadata.isPresent());
+                return signingMetadata;
+            }
+            catch (RuntimeException e) {
+                recordFailure(span, e);
+                throw e;
+            }
+            finally {
+                span.end();
+                proxyMetrics.recordPhase(request.requestId(), RequestPhase.SIGNATURE_VERIFICATION, verificationStart);
+            }
         }).orElseThrow(() -> {
             log.debug("ValidateAndParseAuthorization failed. Request: %s, SigningServiceType: %s", request, signingServiceType);
             return new WebApplicationException(Response.Status.UNAUTHORIZED);
@@ -200,6 +226,12 @@ public class InternalSigningController
         if (mode == Mode.UNADJUSTED_HEADERS) {
             return headers;
         }
+        boolean unchanged = LOWERCASE_HEADERS.stream()
+                .flatMap(headerName -> headers.get(headerName).stream())
+                .allMatch(headerValue -> headerValue.equals(headerValue.toLowerCase(Locale.ROOT)));
+        if (unchanged) {
+            return headers;
+        }
         ImmutableMultiMap.Builder adjustedHeaderBuilder = ImmutableMultiMap.builder(headers.isCaseSensitiveKeys());
         headers.forEachEntry((headerName, headerValue) -> adjustedHeaderBuilder.add(headerName, lowercaseHeader(headerName, headerValue)));
         return adjustedHeaderBuilder.build();
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+
+import java.util.UUID;
+
+import static io.opentelemetry.api.common.AttributeKey.booleanKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+/**
+ * Names and attributes of the spans the proxy creates within the server span of a request. Spans are children
+ * of the current span, so they nest under the server span created from the client's {@code traceparent}.
+ */
+public final class ProxySpans
+{
+    public static final String TRACER_NAME = "trino-aws-proxy";
+    public static final String UPSTREAM = "upstream";
+
+    public static final AttributeKey<String> REQUEST_ID = stringKey("s3proxy.request_id");
+    public static final AttributeKey<String> BUCKET = stringKey("aws.s3.bucket");
+    public static final AttributeKey<String> KEY = stringKey("aws.s3.key");
+    public static final AttributeKey<Boolean> SIGNATURE_VALID = booleanKey("s3proxy.signature.valid");
+    public static final AttributeKey<Boolean> SECURITY_CAN_PROCEED = booleanKey("s3proxy.security.can_proceed");
+
+    private ProxySpans() {}
+
+    public static Span startSpan(Tracer tracer, String name, UUID requestId)
+    {
+        return tracer.spanBuilder(name)
+                .setAttribute(REQUEST_ID, requestId.toString())
+                .startSpan();
+    }
+
+    public static Span startUpstreamSpan(Tracer tracer, ParsedS3Request request)
+    {
+        return tracer.spanBuilder(UPSTREAM)
+                .setAttribute(REQUEST_ID, request.requestId().toString())
+                .setAttribute(BUCKET, request.bucketName())
+                .setAttribute(KEY, request.keyInBucket())
+                .startSpan();
+    }
+
+    public static void recordFailure(Span span, Throwable throwable)
+    {
+        span.setStatus(StatusCode.ERROR, throwable.getMessage());
+        span.recordException(throwable);
+    }
+}
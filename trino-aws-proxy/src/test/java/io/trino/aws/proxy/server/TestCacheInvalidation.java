@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.testing.TestingTrinoAwsProxyServer;
+import io.trino.aws.proxy.server.testing.containers.S3Container.ForS3Container;
+import io.trino.aws.proxy.server.testing.harness.BuilderFilter;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTest;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTestCommonModules.WithConfiguredBuckets;
+import jakarta.annotation.PreDestroy;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TrinoAwsProxyTest(filters = {WithConfiguredBuckets.class, TestCacheInvalidation.Filter.class})
+public class TestCacheInvalidation
+{
+    private static final int WRITES = 50;
+    private static final int READERS = 4;
+
+    private final S3Client internalClient;
+    private final S3Client remoteClient;
+    private final String bucket;
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+
+    public static class Filter
+            implements BuilderFilter
+    {
+        @Override
+        public TestingTrinoAwsProxyServer.Builder filter(TestingTrinoAwsProxyServer.Builder builder)
+        {
+            // long enough that nothing expires during a test
+            return builder.withProperty("s3proxy.metadata-cache.enabled", "true")
+                    .withProperty("s3proxy.metadata-cache.ttl", "1m")
+                    .withProperty("s3proxy.list-cache.enabled", "true")
+                    .withProperty("s3proxy.list-cache.ttl", "1m");
+        }
+    }
+
+    @Inject
+    public TestCacheInvalidation(S3Client internalClient, @ForS3Container S3Client remoteClient, @ForS3Container List<String> configuredBuckets)
+    {
+        this.internalClient = requireNonNull(internalClient, "internalClient is null");
+        this.remoteClient = requireNonNull(remoteClient, "remoteClient is null");
+        bucket = configuredBuckets.getFirst();
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        shutdownAndAwaitTermination(executorService, Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testWritesInvalidateHeadObject()
+    {
+        String key = "head/object";
+        internalClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString("one"));
+        assertThat(headLength(key)).isEqualTo(3);
+
+        // a write that bypasses the proxy is not seen, so the HEAD is served from the cache
+        remoteClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString("remote"));
+        assertThat(headLength(key)).isEqualTo(3);
+
+        internalClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString("three"));
+        assertThat(headLength(key)).isEqualTo(5);
+
+        internalClient.deleteObject(request -> request.bucket(bucket).key(key));
+        assertThatThrownBy(() -> headLength(key)).isInstanceOf(NoSuchKeyException.class);
+
+        // a bulk delete does not name its keys in the request line, so it invalidates the whole bucket
+        internalClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString("four"));
+        assertThat(headLength(key)).isEqualTo(4);
+        internalClient.deleteObjects(request -> request.bucket(bucket).delete(Delete.builder().objects(ObjectIdentifier.builder().key(key).build()).build()));
+        assertThatThrownBy(() -> headLength(key)).isInstanceOf(NoSuchKeyException.class);
+    }
+
+    @Test
+    public void testWriteRacingHeadObject()
+            throws Exception
+    {
+        String key = "head/race";
+        internalClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString("0"));
+
+        // readers keep filling the cache while the object is rewritten, so fills are in flight during the writes
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> readers = IntStream.range(0, READERS)
+                .mapToObj(_ -> executorService.submit(() -> {
+                    while (!done.get()) {
+                        headLength(key);
+                    }
+                }))
+                .collect(toImmutableList());
+        try {
+            for (int length = 1; length <= WRITES; length++) {
+                String content = "x".repeat(length);
+                internalClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString(content));
+                // a fill that started before the write completed must not be served afterwards
+                assertThat(headLength(key)).isEqualTo(length);
+            }
+        }
+        finally {
+            done.set(true);
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        internalClient.deleteObject(request -> request.bucket(bucket).key(key));
+    }
+
+    @Test
+    public void testWritesInvalidateListings()
+    {
+        String prefix = "list/";
+        internalClient.putObject(request -> request.bucket(bucket).key("list/one"), RequestBody.fromString("one"));
+        assertThat(listKeys(prefix)).containsExactly("list/one");
+
+        // a write that bypasses the proxy is not seen, so the listing is served from the cache
+        remoteClient.putObject(request -> request.bucket(bucket).key("list/remote"), RequestBody.fromString("remote"));
+        assertThat(listKeys(prefix)).containsExactly("list/one");
+
+        internalClient.putObject(request -> request.bucket(bucket).key("list/two"), RequestBody.fromString("two"));
+        assertThat(listKeys(prefix)).containsExactly("list/one", "list/remote", "list/two");
+
+        internalClient.deleteObject(request -> request.bucket(bucket).key("list/two"));
+        assertThat(listKeys(prefix)).containsExactly("list/one", "list/remote");
+
+        internalClient.deleteObjects(request -> request.bucket(bucket).delete(Delete.builder()
+                .objects(ObjectIdentifier.builder().key("list/one").build(), ObjectIdentifier.builder().key("list/remote").build())
+                .build()));
+        assertThat(listKeys(prefix)).isEmpty();
+    }
+
+    @Test
+    public void testWriteRacingListing()
+            throws Exception
+    {
+        String prefix = "race/";
+
+        // listers keep filling the cache while keys are written, so fills are in flight during the writes
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> listers = IntStream.range(0, READERS)
+                .mapToObj(_ -> executorService.submit(() -> {
+                    while (!done.get()) {
+                        listKeys(prefix);
+                    }
+                }))
+                .collect(toImmutableList());
+        try {
+            for (int write = 0; write < WRITES; write++) {
+                String key = prefix + write;
+                // a fill that started before the write completed must not be served afterwards
+                internalClient.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromString("data"));
+                assertThat(listKeys(prefix)).containsExactly(key);
+                internalClient.deleteObject(request -> request.bucket(bucket).key(key));
+                assertThat(listKeys(prefix)).isEmpty();
+            }
+        }
+        finally {
+            done.set(true);
+        }
+        for (Future<?> lister : listers) {
+            lister.get();
+        }
+    }
+
+    private List<String> listKeys(String prefix)
+    {
+        return internalClient.listObjectsV2(request -> request.bucket(bucket).prefix(prefix)).contents().stream()
+                .map(S3Object::key)
+                .collect(toImmutableList());
+    }
+
+    private long headLength(String key)
+    {
+        return internalClient.headObject(request -> request.bucket(bucket).key(key)).contentLength();
+    }
+}
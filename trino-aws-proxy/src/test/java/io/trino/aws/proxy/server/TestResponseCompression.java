@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server;
+
+import com.google.inject.Inject;
+import io.trino.aws.proxy.server.testing.TestingTrinoAwsProxyServer;
+import io.trino.aws.proxy.server.testing.containers.S3Container.ForS3Container;
+import io.trino.aws.proxy.server.testing.harness.BuilderFilter;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTest;
+import io.trino.aws.proxy.server.testing.harness.TrinoAwsProxyTestCommonModules.WithConfiguredBuckets;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TrinoAwsProxyTest(filters = {WithConfiguredBuckets.class, TestResponseCompression.Filter.class})
+public class TestResponseCompression
+{
+    private final S3Client internalClient;
+    private final S3Client remoteClient;
+    private final String bucket;
+
+    public static class Filter
+            implements BuilderFilter
+    {
+        @Override
+        public TestingTrinoAwsProxyServer.Builder filter(TestingTrinoAwsProxyServer.Builder builder)
+        {
+            return builder.withProperty("s3proxy.response-compression.enabled", "true")
+                    .withProperty("s3proxy.metadata-cache.enabled", "true");
+        }
+    }
+
+    @Inject
+    public TestResponseCompression(S3Client internalClient, @ForS3Container S3Client remoteClient, @ForS3Container List<String> configuredBuckets)
+    {
+        this.internalClient = requireNonNull(internalClient, "internalClient is null");
+        this.remoteClient = requireNonNull(remoteClient, "remoteClient is null");
+        bucket = configuredBuckets.getFirst();
+    }
+
+    @Test
+    public void testHeadObjectKeepsContentLength()
+    {
+        // a table metadata file, large enough to be compressed if it were a listing
+        String metadata = IntStream.range(0, 100)
+                .mapToObj(i -> "{\"snapshot-id\": " + i + ", \"manifest-list\": \"s3://bucket/table/metadata/snap-" + i + ".avro\"}")
+                .collect(Collectors.joining(", ", "{\"snapshots\": [", "]}"));
+        remoteClient.putObject(request -> request.bucket(bucket).key("table/metadata/00001.metadata.json").contentType("application/json"), RequestBody.fromString(metadata));
+
+        // the second request is served from the metadata cache
+        for (int i = 0; i < 2; i++) {
+            HeadObjectResponse response = internalClient.headObject(request -> request.bucket(bucket).key("table/metadata/00001.metadata.json")
+                    .overrideConfiguration(override -> override.putHeader("Accept-Encoding", "gzip")));
+            assertThat(response.contentLength()).isEqualTo(metadata.length());
+            assertThat(response.contentEncoding()).isNull();
+            assertThat(response.contentType()).isEqualTo("application/json");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.accesslog;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestAccessLogWriter
+{
+    private static final UUID REQUEST_ID = UUID.fromString("d4c1a3a0-4f5e-4c8a-9a8e-3b7e2f1c0d11");
+
+    @Test
+    public void testS3Format()
+    {
+        assertThat(AccessLogFormat.S3.format(record("dir/my key", 200)))
+                .isEqualTo("- bucket [19/Oct/2026:10:15:30 +0000] 10.0.0.1 AKIAEXAMPLE d4c1a3a0-4f5e-4c8a-9a8e-3b7e2f1c0d11 REST.GET.OBJECT dir/my%20key " +
+                        "\"GET /api/v1/s3Proxy/s3/bucket/dir/my%20key?versionId=1 HTTP/1.1\" 200 - 1024 - 25 7 \"-\" \"aws-sdk-java/2.0 \\\"test\\\"\" " +
+                        "- - - - - s3.example.com - - -");
+
+        AccessLogRecord listBuckets = new AccessLogRecord(Instant.EPOCH, REQUEST_ID, "10.0.0.1", Optional.empty(), "s3", "GET", "ListBuckets", Optional.empty(), Optional.empty(), "/", 403, 0, 0, 1, OptionalLong.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        assertThat(AccessLogFormat.S3.format(listBuckets))
+                .startsWith("- - [01/Jan/1970:00:00:00 +0000] 10.0.0.1 - d4c1a3a0-4f5e-4c8a-9a8e-3b7e2f1c0d11 REST.GET.SERVICE - \"GET / HTTP/1.1\" 403 - - - 1 - ");
+    }
+
+    @Test
+    public void testJsonFormat()
+    {
+        assertThat(AccessLogFormat.JSON.format(record("key", 200)))
+                .doesNotContain("\n")
+                .contains("\"requestId\":\"d4c1a3a0-4f5e-4c8a-9a8e-3b7e2f1c0d11\"")
+                .contains("\"bucket\":\"bucket\"")
+                .contains("\"statusCode\":200")
+                .contains("\"turnAroundTimeMillis\":7")
+                .contains("\"time\":\"2026-10-19T10:15:30Z\"");
+    }
+
+    @Test
+    public void testWriteAndRotate(@TempDir Path directory)
+            throws IOException
+    {
+        Path path = directory.resolve("access.log");
+        AccessLogWriter writer = new AccessLogWriter(config(path)
+                .setMaxFileSize(DataSize.of(1, KILOBYTE))
+                .setMaxHistory(2)
+                .setMaxBatchSize(1));
+        writer.start();
+        for (int i = 0; i < 40; i++) {
+            writer.write(record("key" + i, 200));
+        }
+        writer.shutdown();
+
+        assertThat(writer.getWritten()).isEqualTo(40);
+        assertThat(writer.getDropped()).isZero();
+        assertThat(writer.getWriteFailures()).isZero();
+        assertThat(writer.getRotations()).isGreaterThan(2);
+
+        // only the newest rotated files are kept, compressed
+        List<Path> rotated;
+        try (Stream<Path> files = Files.list(directory)) {
+            rotated = files.filter(file -> !file.equals(path)).sorted().toList();
+        }
+        assertThat(rotated).hasSize(2).allSatisfy(file -> assertThat(file.getFileName().toString()).startsWith("access.log.").endsWith(".gz"));
+
+        List<String> lines;
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(rotated.getLast()))) {
+            lines = new String(input.readAllBytes(), UTF_8).lines().toList();
+        }
+        assertThat(lines).isNotEmpty().allSatisfy(line -> assertThat(line).startsWith("{").endsWith("}"));
+
+        List<String> current = Files.readAllLines(path);
+        assertThat(current.getLast()).contains("\"key\":\"key39\"");
+    }
+
+    @Test
+    public void testDropWhenFull(@TempDir Path directory)
+    {
+        // not started, so nothing takes records from the queue
+        AccessLogWriter writer = new AccessLogWriter(config(directory.resolve("access.log")).setQueueSize(2));
+        for (int i = 0; i < 5; i++) {
+            writer.write(record("key" + i, 200));
+        }
+        assertThat(writer.getQueued()).isEqualTo(2);
+        assertThat(writer.getDropped()).isEqualTo(3);
+
+        writer.shutdown();
+        writer.write(record("late", 200));
+        assertThat(writer.getDropped()).isEqualTo(4);
+    }
+
+    private static AccessLogConfig config(Path path)
+    {
+        return new AccessLogConfig()
+                .setEnabled(true)
+                .setPath(path.toString())
+                .setFlushInterval(new Duration(10, MILLISECONDS));
+    }
+
+    private static AccessLogRecord record(String key, int statusCode)
+    {
+        return new AccessLogRecord(
+                Instant.parse("2026-10-19T10:15:30Z"),
+                REQUEST_ID,
+                "10.0.0.1",
+                Optional.of("AKIAEXAMPLE"),
+                "s3",
+                "GET",
+                "GetObject",
+                Optional.of("bucket"),
+                Optional.of(key),
+                "/api/v1/s3Proxy/s3/bucket/" + key.replace(" ", "%20") + "?versionId=1",
+                statusCode,
+                0,
+                1024,
+                25,
+                OptionalLong.of(7),
+                Optional.of("aws-sdk-java/2.0 \"test\""),
+                Optional.empty(),
+                Optional.of("s3.example.com"));
+    }
+}
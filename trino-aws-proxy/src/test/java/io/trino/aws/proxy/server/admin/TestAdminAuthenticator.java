@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.admin;
+
+import io.airlift.units.DataSize;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestAdminAuthenticator
+{
+    private static final Instant NOW = Instant.parse("2024-06-01T00:00:00Z");
+    private static final byte[] BODY = "[]".getBytes(UTF_8);
+
+    @Test
+    public void testDisabledWithoutSecret()
+    {
+        AdminAuthenticator authenticator = new AdminAuthenticator(new AdminConfig());
+        assertThat(authenticator.isEnabled()).isFalse();
+        assertStatus(() -> authenticator.authenticate(null, "GET", "/api/v1/s3Proxy/requests", "", new byte[0]), 404);
+        assertThatThrownBy(() -> authenticator.sign("GET", "/api/v1/s3Proxy/requests", "", new byte[0]))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testSignedRequests()
+    {
+        AdminAuthenticator signer = authenticator("secret", NOW);
+        AdminAuthenticator verifier = authenticator("secret", NOW.plusSeconds(30));
+        assertThat(verifier.isEnabled()).isTrue();
+
+        String signature = signer.sign("PUT", "/api/v1/s3Proxy/logging/rules", "", BODY);
+        verifier.authenticate(signature, "PUT", "/api/v1/s3Proxy/logging/rules", "", BODY);
+
+        assertStatus(() -> verifier.authenticate(null, "PUT", "/api/v1/s3Proxy/logging/rules", "", BODY), 401);
+        assertStatus(() -> verifier.authenticate("garbage", "PUT", "/api/v1/s3Proxy/logging/rules", "", BODY), 401);
+        assertStatus(() -> verifier.authenticate(signature, "DELETE", "/api/v1/s3Proxy/logging/rules", "", BODY), 401);
+        assertStatus(() -> verifier.authenticate(signature, "PUT", "/api/v1/s3Proxy/drain", "", BODY), 401);
+        assertStatus(() -> verifier.authenticate(signature, "PUT", "/api/v1/s3Proxy/logging/rules", "limit=1", BODY), 401);
+        assertStatus(() -> verifier.authenticate(signature, "PUT", "/api/v1/s3Proxy/logging/rules", "", new byte[0]), 401);
+        assertStatus(() -> authenticator("other", NOW).authenticate(signature, "PUT", "/api/v1/s3Proxy/logging/rules", "", BODY), 401);
+        assertStatus(() -> authenticator("secret", NOW.plusSeconds(3600)).authenticate(signature, "PUT", "/api/v1/s3Proxy/logging/rules", "", BODY), 401);
+    }
+
+    @Test
+    public void testRequestsRejectedBeforeReadingBody()
+    {
+        AdminAuthenticator authenticator = new AdminAuthenticator(new AdminConfig().setSharedSecret("secret").setMaxBodySize(DataSize.of(1, KILOBYTE)), Clock.fixed(NOW, UTC));
+        assertThat(authenticator.getMaxBodySize()).isEqualTo(1024);
+
+        authenticator.checkRequest("signature", 1024);
+        // the length of chunked bodies is not known up front
+        authenticator.checkRequest("signature", -1);
+        assertStatus(() -> authenticator.checkRequest(null, 0), 401);
+        assertStatus(() -> authenticator.checkRequest("", 0), 401);
+        assertStatus(() -> authenticator.checkRequest("signature", 1025), 413);
+        assertStatus(() -> new AdminAuthenticator(new AdminConfig()).checkRequest("signature", 0), 404);
+    }
+
+    private static AdminAuthenticator authenticator(String secret, Instant now)
+    {
+        return new AdminAuthenticator(new AdminConfig().setSharedSecret(secret), Clock.fixed(now, UTC));
+    }
+
+    private static void assertStatus(Runnable runnable, int status)
+    {
+        assertThatThrownBy(runnable::run)
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(status));
+    }
+}
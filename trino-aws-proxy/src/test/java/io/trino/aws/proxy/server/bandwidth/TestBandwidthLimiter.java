@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.bandwidth;
+
+import com.google.common.base.Ticker;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestBandwidthLimiter
+{
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    public void testTokenBucket()
+    {
+        TokenBucket bucket = new TokenBucket(1000, MILLISECONDS.toNanos(100), ticker);
+
+        // a full bucket holds the burst
+        assertThat(bucket.take(100)).isEqualTo(0);
+        assertThat(bucket.take(100)).isEqualTo(MILLISECONDS.toNanos(100));
+        assertThat(bucket.take(50)).isEqualTo(MILLISECONDS.toNanos(150));
+
+        // an idle bucket refills to the burst and no further
+        nanos.addAndGet(MILLISECONDS.toNanos(10_000));
+        assertThat(bucket.take(100)).isEqualTo(0);
+        assertThat(bucket.take(1)).isEqualTo(MILLISECONDS.toNanos(1));
+
+        bucket.setBytesPerSecond(0);
+        assertThat(bucket.take(1_000_000)).isEqualTo(0);
+    }
+
+    @Test
+    public void testRuntimeLimits()
+    {
+        BandwidthLimiter limiter = new BandwidthLimiter(new BandwidthLimitConfig().setAccessKeyLimit(DataSize.of(1, KILOBYTE)), ticker);
+        assertThat(limiter.getGlobalLimit()).isEqualTo(0);
+        assertThat(limiter.getLimitForAccessKey("tenant")).isEqualTo(1024);
+
+        limiter.throttle("tenant");
+        limiter.setLimitForAccessKey("tenant", 4096);
+        limiter.setAccessKeyLimit(2048);
+        assertThat(limiter.getLimitForAccessKey("tenant")).isEqualTo(4096);
+        assertThat(limiter.getLimitForAccessKey("other")).isEqualTo(2048);
+
+        limiter.removeLimitForAccessKey("tenant");
+        assertThat(limiter.getLimitForAccessKey("tenant")).isEqualTo(2048);
+    }
+
+    @Test
+    public void testPacing()
+            throws IOException
+    {
+        BandwidthLimiter limiter = new BandwidthLimiter(new BandwidthLimitConfig()
+                .setGlobalLimit(DataSize.of(1, MEGABYTE))
+                .setBurst(new Duration(10, MILLISECONDS)));
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        try (OutputStream output = new ThrottledOutputStream(sink, limiter.throttle("tenant"))) {
+            output.write(new byte[256 * 1024]);
+        }
+        long elapsedMillis = NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // a quarter of a megabyte at a megabyte per second, less the initial burst
+        assertThat(sink.size()).isEqualTo(256 * 1024);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(200);
+        assertThat(limiter.getPacedWrites().getTotalCount()).isGreaterThan(1);
+
+        limiter.setGlobalLimit(0);
+        start = System.nanoTime();
+        try (OutputStream output = new ThrottledOutputStream(sink, limiter.throttle("tenant"))) {
+            output.write(new byte[1024 * 1024]);
+        }
+        assertThat(NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(200);
+    }
+}
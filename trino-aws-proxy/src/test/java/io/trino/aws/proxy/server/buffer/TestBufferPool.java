@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.buffer;
+
+import io.airlift.units.DataSize;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestBufferPool
+{
+    @Test
+    public void testSizeClasses()
+    {
+        BufferPool bufferPool = new BufferPool(new BufferPoolConfig().setMaxBufferSize(DataSize.of(64, KILOBYTE)));
+
+        assertThat(bufferPool.borrow(0)).hasSize(4096);
+        assertThat(bufferPool.borrow(4096)).hasSize(4096);
+        assertThat(bufferPool.borrow(4097)).hasSize(8192);
+        assertThat(bufferPool.borrow(65536)).hasSize(65536);
+        // larger than the largest size class
+        assertThat(bufferPool.borrow(65537)).hasSize(65537);
+
+        assertThat(bufferPool.getOutstandingBuffers()).isEqualTo(5);
+        assertThat(bufferPool.getOutstandingBytes()).isEqualTo(4096 + 4096 + 8192 + 65536 + 65537);
+    }
+
+    @Test
+    public void testReuse()
+    {
+        BufferPool bufferPool = new BufferPool(new BufferPoolConfig());
+
+        byte[] buffer = bufferPool.borrow(10_000);
+        bufferPool.release(buffer);
+        assertThat(bufferPool.getRetainedBytes()).isEqualTo(16384);
+        assertThat(bufferPool.getOutstandingBuffers()).isZero();
+
+        assertThat(bufferPool.borrow(16384)).isSameAs(buffer);
+        assertThat(bufferPool.getRetainedBytes()).isZero();
+        assertThat(bufferPool.getAllocations().getTotalCount()).isEqualTo(1);
+        assertThat(bufferPool.getReuses().getTotalCount()).isEqualTo(1);
+
+        // a different size class is not reused
+        bufferPool.release(buffer);
+        assertThat(bufferPool.borrow(4096)).hasSize(4096);
+        assertThat(bufferPool.getAllocations().getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testMaxRetainedSize()
+    {
+        BufferPool bufferPool = new BufferPool(new BufferPoolConfig().setMaxRetainedSize(DataSize.of(20, KILOBYTE)));
+
+        byte[] first = bufferPool.borrow(8192);
+        byte[] second = bufferPool.borrow(8192);
+        byte[] third = bufferPool.borrow(8192);
+        bufferPool.release(first);
+        bufferPool.release(second);
+        bufferPool.release(third);
+
+        assertThat(bufferPool.getRetainedBytes()).isEqualTo(16384);
+        assertThat(bufferPool.getDiscards().getTotalCount()).isEqualTo(1);
+        assertThat(bufferPool.getOutstandingBytes()).isZero();
+    }
+
+    @Test
+    public void testLeakDetection()
+    {
+        BufferPool bufferPool = new BufferPool(new BufferPoolConfig().setLeakDetectionEnabled(true));
+
+        byte[] buffer = bufferPool.borrow(100);
+        assertThatThrownBy(bufferPool::checkNoOutstandingBuffers)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("1 buffers were not released")
+                .cause()
+                .hasMessage("Buffer borrowed here");
+
+        bufferPool.release(buffer);
+        bufferPool.checkNoOutstandingBuffers();
+
+        assertThatThrownBy(() -> bufferPool.release(buffer))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("already released");
+        assertThatThrownBy(() -> bufferPool.release(new byte[4096]))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not borrowed from this pool");
+    }
+
+    @Test
+    public void testTransferTo()
+            throws IOException
+    {
+        BufferPool bufferPool = new BufferPool(new BufferPoolConfig().setLeakDetectionEnabled(true));
+
+        byte[] data = new byte[100_000];
+        ThreadLocalRandom.current().nextBytes(data);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(bufferPool.transferTo(new ByteArrayInputStream(data), output)).isEqualTo(data.length);
+        assertThat(output.toByteArray()).isEqualTo(data);
+
+        bufferPool.transferTo(new ByteArrayInputStream(data), new ByteArrayOutputStream());
+        assertThat(bufferPool.getAllocations().getTotalCount()).isEqualTo(1);
+        bufferPool.checkNoOutstandingBuffers();
+    }
+}
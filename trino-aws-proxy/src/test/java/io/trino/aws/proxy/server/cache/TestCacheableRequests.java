@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static io.trino.aws.proxy.server.cache.CacheableRequests.listObjectsV2;
+import static io.trino.aws.proxy.server.cache.CacheableRequests.remoteListQuery;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestCacheableRequests
+{
+    private static final String PROXY_TOKEN = new ListContinuationToken("data/b", false).encode();
+
+    @Test
+    public void testProxyContinuationTokenOfCacheableListing()
+    {
+        ParsedS3Request request = listRequest(ImmutableMultiMap.builder(true)
+                .add("list-type", "2")
+                .add("prefix", "data/")
+                .add("continuation-token", PROXY_TOKEN)
+                .build());
+        assertThat(listObjectsV2(request)).isPresent();
+
+        MultiMap query = remoteListQuery(request).orElseThrow();
+        assertThat(query.getFirst("continuation-token")).isEmpty();
+        assertThat(query.getFirst("start-after")).contains("data/b");
+        assertThat(query.getFirst("prefix")).contains("data/");
+    }
+
+    @Test
+    public void testProxyContinuationTokenOfUncacheableListing()
+    {
+        // fetch-owner is not modeled by the cache, so this page is sent straight to the remote
+        ParsedS3Request request = listRequest(ImmutableMultiMap.builder(true)
+                .add("list-type", "2")
+                .add("prefix", "data/")
+                .add("fetch-owner", "true")
+                .add("start-after", "data/a")
+                .add("continuation-token", new ListContinuationToken("data/b/", true).encode())
+                .build());
+        assertThat(listObjectsV2(request)).isEmpty();
+
+        MultiMap query = remoteListQuery(request).orElseThrow();
+        assertThat(query.getFirst("continuation-token")).isEmpty();
+        assertThat(query.get("start-after")).hasSize(1);
+        assertThat(query.getFirst("start-after").orElseThrow()).startsWith("data/b/");
+        assertThat(query.getFirst("fetch-owner")).contains("true");
+    }
+
+    @Test
+    public void testRemoteContinuationTokensAreUnchanged()
+    {
+        assertThat(remoteListQuery(listRequest(ImmutableMultiMap.builder(true)
+                .add("list-type", "2")
+                .add("continuation-token", "1ueGcxLPRx1Tr/XYExHnhbYLgveDs2J/wm36Hy4vbOwM=")
+                .build()))).isEmpty();
+        assertThat(remoteListQuery(listRequest(ImmutableMultiMap.builder(true)
+                .add("list-type", "2")
+                .build()))).isEmpty();
+        // ListObjects V1 has no continuation tokens
+        assertThat(remoteListQuery(listRequest(ImmutableMultiMap.builder(true)
+                .add("continuation-token", PROXY_TOKEN)
+                .build()))).isEmpty();
+    }
+
+    private static ParsedS3Request listRequest(MultiMap query)
+    {
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.parse(""),
+                "",
+                "bucket",
+                "",
+                ImmutableMultiMap.empty(),
+                query,
+                "GET",
+                "/bucket",
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.cache.ListObjectsCache.Lookup;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestListObjectsCache
+{
+    private static final MultiMap HEADERS = ImmutableMultiMap.builder(false)
+            .add("Content-Type", "application/xml")
+            .add("Content-Length", "123")
+            .add("x-amz-request-id", "abc")
+            .build();
+
+    private static final String LISTING = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <ListBucketResult xmlns="http://s3.amazonaws.com/doc/2006-03-01/">
+              <Name>bucket</Name>
+              <Prefix>data/</Prefix>
+              <KeyCount>2</KeyCount>
+              <MaxKeys>1000</MaxKeys>
+              <Delimiter>/</Delimiter>
+              <IsTruncated>false</IsTruncated>
+              <Contents>
+                <Key>data/one.parquet</Key>
+                <LastModified>2024-05-01T10:00:00.000Z</LastModified>
+                <ETag>"d41d8cd98f00b204e9800998ecf8427e"</ETag>
+                <ChecksumAlgorithm>CRC32</ChecksumAlgorithm>
+                <Size>1234</Size>
+                <StorageClass>STANDARD</StorageClass>
+              </Contents>
+              <CommonPrefixes>
+                <Prefix>data/year=2024/</Prefix>
+              </CommonPrefixes>
+            </ListBucketResult>
+            """;
+
+    @Test
+    public void testRoundTrip()
+            throws IOException
+    {
+        ListObjectsCache cache = cache();
+        ListObjectsCacheKey key = key("access", "data/");
+
+        Lookup lookup = cache.lookup(key);
+        assertThat(lookup.cached()).isEmpty();
+        lookup.store(HEADERS, LISTING.getBytes(UTF_8));
+
+        CachedListing listing = (CachedListing) cache.lookup(key).cached().orElseThrow();
+        assertThat(listing.headers().keySet()).containsExactly("content-type");
+        ObjectListing contents = listing.page().contents();
+        assertThat(contents.size()).isEqualTo(1);
+        assertThat(contents.eTag(0)).contains("\"d41d8cd98f00b204e9800998ecf8427e\"");
+        assertThat(contents.lastModified(0)).contains("2024-05-01T10:00:00.000Z");
+        assertThat(contents.checksumAlgorithms(0)).containsExactly("CRC32");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        listing.writeTo(output);
+        String xml = output.toString(UTF_8);
+        assertThat(xml)
+                .contains("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .contains("<Name>bucket</Name><Prefix>data/</Prefix><KeyCount>2</KeyCount><MaxKeys>1000</MaxKeys><Delimiter>/</Delimiter><IsTruncated>false</IsTruncated>")
+                .contains("<Contents><Key>data/one.parquet</Key><LastModified>2024-05-01T10:00:00.000Z</LastModified><ETag>\"d41d8cd98f00b204e9800998ecf8427e\"</ETag>")
+                .contains("<CommonPrefixes><Prefix>data/year=2024/</Prefix></CommonPrefixes>")
+                .doesNotContain("ContinuationToken");
+
+        // the regenerated XML parses to the same listing
+        ListObjectsPage reparsed = ListObjectsXml.parsePage(output.toByteArray());
+        assertThat(reparsed.header()).isEqualTo(listing.page().header());
+        assertThat(reparsed.commonPrefixes()).isEqualTo(listing.page().commonPrefixes());
+        assertThat(reparsed.contents().key(0)).isEqualTo(contents.key(0));
+        assertThat(reparsed.contents().objectSize(0)).isEqualTo(1234);
+        assertThat(reparsed.contents().storageClass(0)).contains("STANDARD");
+    }
+
+    @Test
+    public void testUnknownElementsAreNotCached()
+    {
+        ListObjectsCache cache = cache();
+        ListObjectsCacheKey key = key("access", "data/");
+
+        cache.lookup(key).store(HEADERS, LISTING.replace("<Size>", "<RestoreStatus><IsRestoreInProgress>true</IsRestoreInProgress></RestoreStatus><Size>").getBytes(UTF_8));
+        assertThat(cache.lookup(key).cached()).isEmpty();
+        assertThat(cache.getParseFailures().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidation()
+    {
+        ListObjectsCache cache = cache();
+        ListObjectsCacheKey root = key("access", "");
+        ListObjectsCacheKey data = key("access", "data/");
+        ListObjectsCacheKey dataOtherKey = key("other", "data/");
+        ListObjectsCacheKey logs = key("access", "logs/");
+
+        store(cache, root, data, dataOtherKey, logs);
+        cache.invalidate("bucket", "data/year=2024/two.parquet");
+        assertThat(cache.lookup(root).cached()).isEmpty();
+        assertThat(cache.lookup(data).cached()).isEmpty();
+        assertThat(cache.lookup(dataOtherKey).cached()).isEmpty();
+        assertThat(cache.lookup(logs).cached()).isPresent();
+        assertThat(cache.getInvalidations().getTotalCount()).isEqualTo(3);
+
+        // writes to other buckets are ignored
+        cache.invalidate("other-bucket", "logs/one");
+        assertThat(cache.lookup(logs).cached()).isPresent();
+
+        cache.invalidateBucket("bucket");
+        assertThat(cache.lookup(logs).cached()).isEmpty();
+
+        // a listing that was in flight when a covered key was written is not cached
+        Lookup lookup = cache.lookup(data);
+        cache.invalidate("bucket", "data/three.parquet");
+        lookup.store(HEADERS, LISTING.getBytes(UTF_8));
+        assertThat(cache.lookup(data).cached()).isEmpty();
+    }
+
+    @Test
+    public void testListingInterleavedWithWrites()
+            throws IOException
+    {
+        ListObjectsCache cache = new ListObjectsCache(new ListObjectsCacheConfig()
+                .setEnabled(true)
+                .setTtl(new Duration(1, TimeUnit.MINUTES))
+                .setIndexEnabled(true)
+                .setIndexMaxKeys(3));
+        ListObjectsCacheKey data = key("access", "data/");
+        store(cache, data);
+
+        // the PUT invalidates before it is forwarded
+        cache.invalidate("bucket", "data/three.parquet");
+
+        // a listing arriving before the remote applies the PUT does not contain the new key
+        Lookup lookup = cache.lookup(data);
+        lookup.store(HEADERS, LISTING.getBytes(UTF_8));
+        assertThat(cache.lookup(data).cached()).isPresent();
+
+        // the PUT invalidates again once the remote responds
+        cache.invalidate("bucket", "data/three.parquet");
+        assertThat(cache.lookup(data).cached()).isEmpty();
+
+        // the same applies to an index build and a bulk delete
+        cache.invalidateBucket("bucket");
+        ListObjectsCache.IndexBuild build = cache.lookup(data).startIndexBuild().orElseThrow();
+        assertThat(build.addPage(HEADERS, page(false, "data/a", "data/b").getBytes(UTF_8))).isEmpty();
+        cache.invalidateBucket("bucket");
+        build.complete();
+        assertThat(cache.getCachedIndexes()).isZero();
+        assertThat(cache.lookup(key("access", "data/a")).cached()).isEmpty();
+    }
+
+    @Test
+    public void testTrackedBucketsAreBounded()
+    {
+        ListObjectsCache cache = cache();
+        ListObjectsCacheKey data = key("access", "data/");
+        store(cache, data);
+        Lookup inFlight = cache.lookup(key("access", "logs/"));
+
+        for (int bucket = 0; bucket < (2 * ListObjectsCache.MAX_TRACKED_BUCKETS); bucket++) {
+            cache.lookup(new ListObjectsCacheKey("access", "bucket-" + bucket, data.parameters()));
+        }
+        assertThat(cache.getTrackedBuckets()).isLessThanOrEqualTo(ListObjectsCache.MAX_TRACKED_BUCKETS);
+
+        // listings of a bucket that is no longer tracked could not be invalidated by writes, so they are dropped
+        assertThat(cache.lookup(data).cached()).isEmpty();
+        inFlight.store(HEADERS, LISTING.getBytes(UTF_8));
+        assertThat(cache.lookup(key("access", "logs/")).cached()).isEmpty();
+        assertThat(cache.getCachedListings()).isZero();
+    }
+
+    @Test
+    public void testIndex()
+            throws IOException
+    {
+        ListObjectsCache cache = new ListObjectsCache(new ListObjectsCacheConfig()
+                .setEnabled(true)
+                .setTtl(new Duration(1, TimeUnit.MINUTES))
+                .setIndexEnabled(true)
+                .setIndexMaxKeys(3));
+
+        ListObjectsCache.IndexBuild build = cache.lookup(key("access", "data/")).startIndexBuild().orElseThrow();
+        // only one build per prefix at a time
+        assertThat(cache.lookup(key("access", "data/")).startIndexBuild()).isEmpty();
+
+        assertThat(build.addPage(HEADERS, page(true, "data/a", "data/b/1").getBytes(UTF_8))).contains("next");
+        assertThat(build.addPage(HEADERS, page(false, "data/b/2").getBytes(UTF_8))).isEmpty();
+        build.complete();
+        assertThat(cache.getCachedIndexes()).isEqualTo(1);
+        assertThat(cache.getIndexBuildsInFlight()).isZero();
+
+        // a longer prefix is answered from the index
+        StreamingListing listing = cache.lookup(key("access", "data/b")).cached().orElseThrow();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        listing.writeTo(output);
+        assertThat(output.toString(UTF_8)).contains("<CommonPrefixes><Prefix>data/b/</Prefix></CommonPrefixes>");
+        assertThat(cache.getIndexHits().getTotalCount()).isEqualTo(1);
+
+        // other access keys and prefixes outside the index are not
+        assertThat(cache.lookup(key("other", "data/b")).cached()).isEmpty();
+        assertThat(cache.lookup(key("access", "logs/")).cached()).isEmpty();
+
+        cache.invalidate("bucket", "data/c");
+        assertThat(cache.lookup(key("access", "data/b")).cached()).isEmpty();
+
+        // prefixes with too many keys are not indexed, and are not retried until the ttl passes
+        ListObjectsCache.IndexBuild tooLarge = cache.lookup(key("access", "logs/")).startIndexBuild().orElseThrow();
+        assertThatThrownBy(() -> tooLarge.addPage(HEADERS, page(false, "logs/1", "logs/2", "logs/3", "logs/4").getBytes(UTF_8)))
+                .isInstanceOf(IOException.class);
+        tooLarge.abandon();
+        assertThat(cache.lookup(key("access", "logs/")).startIndexBuild()).isEmpty();
+        assertThat(cache.getFailedIndexBuilds().getTotalCount()).isEqualTo(1);
+    }
+
+    private static String page(boolean isTruncated, String... keys)
+    {
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>bucket</Name><Prefix>data/</Prefix>")
+                .append("<KeyCount>").append(keys.length).append("</KeyCount><MaxKeys>1000</MaxKeys><IsTruncated>").append(isTruncated).append("</IsTruncated>");
+        if (isTruncated) {
+            xml.append("<NextContinuationToken>next</NextContinuationToken>");
+        }
+        for (String key : keys) {
+            xml.append("<Contents><Key>").append(key).append("</Key><Size>1</Size></Contents>");
+        }
+        return xml.append("</ListBucketResult>").toString();
+    }
+
+    private static void store(ListObjectsCache cache, ListObjectsCacheKey... keys)
+    {
+        for (ListObjectsCacheKey key : keys) {
+            cache.lookup(key).store(HEADERS, LISTING.getBytes(UTF_8));
+            assertThat(cache.lookup(key).cached()).isPresent();
+        }
+    }
+
+    private static ListObjectsCacheKey key(String accessKey, String prefix)
+    {
+        return new ListObjectsCacheKey(accessKey, "bucket", new ListObjectsV2Parameters(prefix, Optional.of("/"), Optional.empty(), Optional.empty(), OptionalInt.empty(), Optional.empty()));
+    }
+
+    private static ListObjectsCache cache()
+    {
+        return new ListObjectsCache(new ListObjectsCacheConfig()
+                .setEnabled(true)
+                .setTtl(new Duration(1, TimeUnit.MINUTES)));
+    }
+}
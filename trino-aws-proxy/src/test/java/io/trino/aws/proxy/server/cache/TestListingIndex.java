@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.collect.ImmutableList;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestListingIndex
+{
+    @Test
+    public void testFrontCodedStrings()
+    {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.add("data/part-%05d.parquet".formatted(i));
+        }
+        values.add("data/été");
+        values.add("data/😀");
+
+        FrontCodedStrings.Builder builder = FrontCodedStrings.builder();
+        values.forEach(builder::add);
+        FrontCodedStrings strings = builder.build();
+
+        assertThat(strings.isSorted()).isTrue();
+        assertThat(strings.size()).isEqualTo(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertThat(strings.get(i)).isEqualTo(values.get(i));
+        }
+        assertThat(strings.lowerBound("data/part-00017.parquet")).isEqualTo(17);
+        assertThat(strings.upperBound("data/part-00017.parquet")).isEqualTo(18);
+        assertThat(strings.lowerBound("data/part-00017")).isEqualTo(17);
+        assertThat(strings.prefixEnd("data/part-0001")).isEqualTo(20);
+        assertThat(strings.prefixEnd("data/")).isEqualTo(values.size());
+        assertThat(strings.lowerBound("z")).isEqualTo(values.size());
+
+        FrontCodedStrings unsorted = FrontCodedStrings.builder().add("b").add("a").build();
+        assertThat(unsorted.isSorted()).isFalse();
+        assertThat(unsorted.get(1)).isEqualTo("a");
+    }
+
+    @Test
+    public void testPagination()
+            throws IOException
+    {
+        ListingIndex index = index("a/1", "a/2", "a/3", "b/1", "c");
+
+        ListObjectsPage page = serve(index, parameters("", Optional.empty(), Optional.empty(), Optional.empty(), 2));
+        assertThat(keys(page)).containsExactly("a/1", "a/2");
+        assertThat(page.header().isTruncated()).isTrue();
+        assertThat(page.header().keyCount()).hasValue(2);
+
+        String token = page.header().nextContinuationToken().orElseThrow();
+        page = serve(index, parameters("", Optional.empty(), Optional.of(token), Optional.empty(), 2));
+        assertThat(keys(page)).containsExactly("a/3", "b/1");
+        assertThat(page.header().continuationToken()).contains(token);
+
+        page = serve(index, parameters("", Optional.empty(), page.header().nextContinuationToken(), Optional.empty(), 2));
+        assertThat(keys(page)).containsExactly("c");
+        assertThat(page.header().isTruncated()).isFalse();
+        assertThat(page.header().nextContinuationToken()).isEmpty();
+
+        page = serve(index, parameters("a/", Optional.empty(), Optional.empty(), Optional.of("a/1"), 1000));
+        assertThat(keys(page)).containsExactly("a/2", "a/3");
+        assertThat(page.header().startAfter()).contains("a/1");
+    }
+
+    @Test
+    public void testDelimiter()
+            throws IOException
+    {
+        ListingIndex index = index("a/1", "a/2", "a/3", "b/1", "b/2/x", "c");
+
+        ListObjectsPage page = serve(index, parameters("", Optional.of("/"), Optional.empty(), Optional.empty(), 2));
+        assertThat(page.commonPrefixes()).containsExactly("a/", "b/");
+        assertThat(keys(page)).isEmpty();
+        assertThat(page.header().isTruncated()).isTrue();
+
+        // the token of a common prefix skips all of its keys
+        page = serve(index, parameters("", Optional.of("/"), page.header().nextContinuationToken(), Optional.empty(), 2));
+        assertThat(page.commonPrefixes()).isEmpty();
+        assertThat(keys(page)).containsExactly("c");
+
+        page = serve(index, parameters("b/", Optional.of("/"), Optional.empty(), Optional.empty(), 1000));
+        assertThat(keys(page)).containsExactly("b/1");
+        assertThat(page.commonPrefixes()).containsExactly("b/2/");
+    }
+
+    @Test
+    public void testUnsupportedRequests()
+    {
+        ListingIndex index = index("a/1");
+        assertThat(index.serve(parameters("", Optional.empty(), Optional.of("remote-token"), Optional.empty(), 1000))).isEmpty();
+        assertThat(index.serve(new ListObjectsV2Parameters("", Optional.empty(), Optional.empty(), Optional.empty(), OptionalInt.empty(), Optional.of("url")))).isEmpty();
+        assertThat(new ListingIndex("bucket", "a/", ImmutableMultiMap.empty(), listing("a/1")).serve(parameters("", Optional.empty(), Optional.empty(), Optional.empty(), 1000))).isEmpty();
+    }
+
+    private static ListObjectsPage serve(ListingIndex index, ListObjectsV2Parameters parameters)
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.serve(parameters).orElseThrow().writeTo(output);
+        return ListObjectsXml.parsePage(output.toByteArray());
+    }
+
+    private static List<String> keys(ListObjectsPage page)
+    {
+        ImmutableList.Builder<String> keys = ImmutableList.builder();
+        for (int i = 0; i < page.contents().size(); i++) {
+            keys.add(page.contents().key(i));
+        }
+        return keys.build();
+    }
+
+    private static ListObjectsV2Parameters parameters(String prefix, Optional<String> delimiter, Optional<String> continuationToken, Optional<String> startAfter, int maxKeys)
+    {
+        return new ListObjectsV2Parameters(prefix, delimiter, continuationToken, startAfter, OptionalInt.of(maxKeys), Optional.empty());
+    }
+
+    private static ListingIndex index(String... keys)
+    {
+        return new ListingIndex("bucket", "", ImmutableMultiMap.empty(), listing(keys));
+    }
+
+    private static ObjectListing listing(String... keys)
+    {
+        ObjectListing.Builder builder = ObjectListing.builder();
+        for (String key : keys) {
+            builder.add(key, key.length(), Optional.of("2024-05-01T10:00:00.000Z"), Optional.of("\"d41d8cd98f00b204e9800998ecf8427e-2\""), Optional.empty(), List.of());
+        }
+        return builder.build();
+    }
+}
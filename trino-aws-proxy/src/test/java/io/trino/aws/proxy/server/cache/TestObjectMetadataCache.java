@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import com.google.common.base.Ticker;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.cache.ObjectMetadataCache.Lookup;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestObjectMetadataCache
+{
+    private static final ObjectCacheKey KEY = new ObjectCacheKey("access", "bucket", "key");
+    private static final CachedObjectMetadata FOUND = new CachedObjectMetadata(200, ImmutableMultiMap.builder(false).add("etag", "\"abc\"").add("content-length", "123").build());
+    private static final CachedObjectMetadata NOT_FOUND = new CachedObjectMetadata(404, ImmutableMultiMap.empty());
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    public void testHitAndExpiry()
+    {
+        ObjectMetadataCache cache = cache(true);
+
+        Lookup lookup = cache.lookup(KEY);
+        assertThat(lookup.cached()).isEmpty();
+        lookup.store(FOUND);
+
+        assertThat(cache.lookup(KEY).cached()).contains(FOUND);
+        // entries are per access key
+        assertThat(cache.lookup(new ObjectCacheKey("other", "bucket", "key")).cached()).isEmpty();
+        assertThat(cache.getHitRate()).isEqualTo(1.0 / 3);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+    }
+
+    @Test
+    public void testUncacheableResponses()
+    {
+        ObjectMetadataCache cache = cache(false);
+
+        cache.lookup(KEY).store(new CachedObjectMetadata(403, ImmutableMultiMap.empty()));
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+
+        cache.lookup(KEY).store(NOT_FOUND);
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+
+        cache = cache(true);
+        cache.lookup(KEY).store(NOT_FOUND);
+        assertThat(cache.lookup(KEY).cached()).contains(NOT_FOUND);
+    }
+
+    @Test
+    public void testInvalidation()
+    {
+        ObjectMetadataCache cache = cache(true);
+
+        cache.lookup(KEY).store(FOUND);
+        cache.lookup(new ObjectCacheKey("other", "bucket", "key")).store(FOUND);
+        cache.invalidate("bucket", "key");
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+        assertThat(cache.lookup(new ObjectCacheKey("other", "bucket", "key")).cached()).isEmpty();
+
+        // a response that was in flight when the object was written is not cached
+        Lookup lookup = cache.lookup(KEY);
+        cache.invalidate("bucket", "key");
+        lookup.store(FOUND);
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+
+        cache.lookup(KEY).store(FOUND);
+        cache.lookup(new ObjectCacheKey("access", "other-bucket", "key")).store(FOUND);
+        cache.invalidateBucket("bucket");
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+        assertThat(cache.lookup(new ObjectCacheKey("access", "other-bucket", "key")).cached()).contains(FOUND);
+    }
+
+    @Test
+    public void testHeadInterleavedWithPut()
+    {
+        ObjectMetadataCache cache = cache(true);
+        cache.lookup(KEY).store(FOUND);
+
+        // the PUT invalidates before it is forwarded
+        cache.invalidate("bucket", "key");
+
+        // a HEAD arriving before the remote applies the PUT sees the previous version of the object
+        Lookup head = cache.lookup(KEY);
+        assertThat(head.cached()).isEmpty();
+        head.store(FOUND);
+        assertThat(cache.lookup(KEY).cached()).contains(FOUND);
+
+        // the PUT invalidates again once the remote responds
+        cache.invalidate("bucket", "key");
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+
+        // a HEAD still in flight when the PUT completes is not cached
+        head = cache.lookup(KEY);
+        cache.invalidate("bucket", "key");
+        head.store(NOT_FOUND);
+        assertThat(cache.lookup(KEY).cached()).isEmpty();
+
+        // a HEAD issued after the PUT completed is cached
+        head = cache.lookup(KEY);
+        head.store(FOUND);
+        assertThat(cache.lookup(KEY).cached()).contains(FOUND);
+    }
+
+    @Test
+    public void testPerResponseHeadersAreDropped()
+    {
+        MultiMap remoteHeaders = ImmutableMultiMap.builder(false)
+                .add("ETag", "\"abc\"")
+                .add("Date", "Mon, 01 Jan 2024 00:00:00 GMT")
+                .add("x-amz-request-id", "123")
+                .add("x-amz-meta-owner", "me")
+                .build();
+
+        assertThat(CachedObjectMetadata.fromRemoteResponse(200, remoteHeaders).headers().keySet())
+                .containsExactlyInAnyOrder("etag", "x-amz-meta-owner");
+    }
+
+    private ObjectMetadataCache cache(boolean cacheMissingObjects)
+    {
+        return new ObjectMetadataCache(new ObjectMetadataCacheConfig()
+                .setEnabled(true)
+                .setTtl(new Duration(5, TimeUnit.SECONDS))
+                .setCacheMissingObjects(cacheMissingObjects), ticker);
+    }
+}
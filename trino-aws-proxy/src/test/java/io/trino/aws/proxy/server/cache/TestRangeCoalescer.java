@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.cache.RangeCoalescer.Member;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.Futures.getUnchecked;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRangeCoalescer
+{
+    private static final ObjectCacheKey KEY = new ObjectCacheKey("access", "bucket", "key");
+
+    @Test
+    public void testNearbyRangesAreMerged()
+            throws InterruptedException
+    {
+        RangeCoalescer coalescer = coalescer(10, 1000, 3);
+        Member inFlight = coalescer.join(KEY, new ByteRange(500, 509));
+        assertThat(inFlight.isSolo()).isTrue();
+
+        Member leader = coalescer.join(KEY, new ByteRange(0, 9));
+        Member overlapping = coalescer.join(KEY, new ByteRange(5, 14));
+        Member nearby = coalescer.join(KEY, new ByteRange(25, 29));
+        assertThat(leader.isLeader()).isTrue();
+        assertThat(overlapping.isLeader()).isFalse();
+        assertThat(nearby.isLeader()).isFalse();
+
+        // the merge is full so the leader does not wait for the window
+        assertThat(leader.merge().awaitMerge()).contains(new ByteRange(0, 29));
+        assertThat(coalescer.getOpenMerges()).isZero();
+
+        leader.merge().complete(cachedRange(new ByteRange(0, 29)));
+        assertThat(getUnchecked(leader.result())).map(CachedRange::range).contains(new ByteRange(0, 29));
+        assertThat(getUnchecked(overlapping.result())).isPresent();
+        assertThat(getUnchecked(nearby.result())).isPresent();
+        assertThat(coalescer.getMergedFetches().getTotalCount()).isEqualTo(1);
+        assertThat(coalescer.getMergedRequests().getTotalCount()).isEqualTo(3);
+        assertThat(coalescer.getGapBytes().getTotalCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void testDistantRangesAreNotMerged()
+            throws InterruptedException
+    {
+        RangeCoalescer coalescer = coalescer(10, 100, 10);
+        coalescer.join(KEY, new ByteRange(500, 509));
+
+        Member first = coalescer.join(KEY, new ByteRange(0, 9));
+        Member distant = coalescer.join(KEY, new ByteRange(50, 59));
+        Member tooLarge = coalescer.join(KEY, new ByteRange(60, 200));
+        Member otherObject = coalescer.join(new ObjectCacheKey("access", "bucket", "other"), new ByteRange(0, 9));
+        assertThat(first.isLeader()).isTrue();
+        assertThat(distant.isLeader()).isTrue();
+        assertThat(tooLarge.isLeader()).isTrue();
+        // no other read of the object is in flight
+        assertThat(otherObject.isSolo()).isTrue();
+
+        // a merge with only the leader is sent as a normal request
+        assertThat(first.merge().awaitMerge()).isEmpty();
+        assertThat(getUnchecked(first.result())).isEmpty();
+        assertThat(coalescer.getUnmergedRequests().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFallback()
+            throws InterruptedException
+    {
+        RangeCoalescer coalescer = coalescer(10, 1000, 2);
+        coalescer.join(KEY, new ByteRange(500, 509));
+
+        Member leader = coalescer.join(KEY, new ByteRange(0, 9));
+        Member member = coalescer.join(KEY, new ByteRange(10, 19));
+        assertThat(leader.merge().awaitMerge()).contains(new ByteRange(0, 19));
+
+        // the object ends before the second range
+        leader.merge().complete(cachedRange(new ByteRange(0, 14)));
+        assertThat(getUnchecked(leader.result())).isPresent();
+        assertThat(getUnchecked(member.result())).isEmpty();
+        assertThat(coalescer.getFallbackRequests().getTotalCount()).isEqualTo(1);
+
+        leader = coalescer.join(KEY, new ByteRange(0, 9));
+        member = coalescer.join(KEY, new ByteRange(10, 19));
+        leader.merge().awaitMerge();
+        leader.merge().fail();
+        assertThat(getUnchecked(leader.result())).isEmpty();
+        assertThat(getUnchecked(member.result())).isEmpty();
+        assertThat(coalescer.getFallbackRequests().getTotalCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testUncontendedRequestsAreNotDelayed()
+    {
+        RangeCoalescer coalescer = coalescer(10, 1000, 3);
+
+        Member solo = coalescer.join(KEY, new ByteRange(0, 9));
+        assertThat(solo.isSolo()).isTrue();
+        assertThat(solo.isLeader()).isFalse();
+        assertThat(solo.result()).isDone();
+        assertThat(getUnchecked(solo.result())).isEmpty();
+        assertThat(coalescer.getOpenMerges()).isZero();
+        assertThat(coalescer.getActiveObjects()).isEqualTo(1);
+
+        // closing is idempotent and releases the object
+        solo.close();
+        solo.close();
+        assertThat(coalescer.getActiveObjects()).isZero();
+
+        Member next = coalescer.join(KEY, new ByteRange(10, 19));
+        assertThat(next.isSolo()).isTrue();
+        assertThat(coalescer.getUncontendedRequests().getTotalCount()).isEqualTo(2);
+
+        // a second read while the first is in flight opens a merge
+        Member contended = coalescer.join(KEY, new ByteRange(20, 29));
+        assertThat(contended.isLeader()).isTrue();
+        assertThat(coalescer.getOpenMerges()).isEqualTo(1);
+
+        next.close();
+        contended.close();
+        assertThat(coalescer.getActiveObjects()).isZero();
+    }
+
+    @Test
+    public void testLeaderTimesOutAlone()
+            throws InterruptedException
+    {
+        RangeCoalescer coalescer = coalescer(10, 1000, 3);
+        coalescer.join(KEY, new ByteRange(500, 509));
+
+        Member leader = coalescer.join(KEY, new ByteRange(0, 9));
+        assertThat(leader.isLeader()).isTrue();
+        assertThat(leader.result()).isNotDone();
+
+        // no request joins within the window
+        assertThat(leader.merge().awaitMerge()).isEmpty();
+        assertThat(getUnchecked(leader.result())).isEmpty();
+        assertThat(coalescer.getOpenMerges()).isZero();
+        assertThat(coalescer.getUnmergedRequests().getTotalCount()).isEqualTo(1);
+        assertThat(coalescer.getMergedFetches().getTotalCount()).isZero();
+
+        // the merge is closed, so a later request opens a new one
+        Member later = coalescer.join(KEY, new ByteRange(5, 14));
+        assertThat(later.isLeader()).isTrue();
+        assertThat(later.merge()).isNotSameAs(leader.merge());
+    }
+
+    @Test
+    public void testFullMergeIsReplaced()
+            throws InterruptedException
+    {
+        RangeCoalescer coalescer = coalescer(10, 1000, 2);
+        coalescer.join(KEY, new ByteRange(500, 509));
+
+        Member leader = coalescer.join(KEY, new ByteRange(0, 9));
+        Member follower = coalescer.join(KEY, new ByteRange(10, 19));
+        assertThat(follower.isLeader()).isFalse();
+        assertThat(follower.merge()).isSameAs(leader.merge());
+
+        // the first merge is full but still registered until its leader wakes up
+        assertThat(coalescer.getOpenMerges()).isEqualTo(1);
+        Member replacement = coalescer.join(KEY, new ByteRange(20, 29));
+        assertThat(replacement.isLeader()).isTrue();
+        assertThat(replacement.merge()).isNotSameAs(leader.merge());
+        assertThat(coalescer.getOpenMerges()).isEqualTo(1);
+
+        // the first leader does not remove the merge that replaced its own
+        assertThat(leader.merge().awaitMerge()).contains(new ByteRange(0, 19));
+        assertThat(coalescer.getOpenMerges()).isEqualTo(1);
+
+        Member joined = coalescer.join(KEY, new ByteRange(30, 39));
+        assertThat(joined.isLeader()).isFalse();
+        assertThat(joined.merge()).isSameAs(replacement.merge());
+    }
+
+    private static RangeCoalescer coalescer(long maxGap, long maxMergedSize, int maxRequestsPerMerge)
+    {
+        return new RangeCoalescer(new RangeCoalescingConfig()
+                .setEnabled(true)
+                .setMaxGap(DataSize.of(maxGap, BYTE))
+                .setMaxMergedSize(DataSize.of(maxMergedSize, BYTE))
+                .setMaxRequestsPerMerge(maxRequestsPerMerge)
+                .setWindow(new Duration(1, TimeUnit.MILLISECONDS)));
+    }
+
+    private static CachedRange cachedRange(ByteRange range)
+    {
+        return new CachedRange(range, OptionalLong.empty(), ImmutableMultiMap.empty(), new byte[(int) range.length()]);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cache;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.cache.ReadAheadController.Access;
+import io.trino.aws.proxy.server.cache.ReadAheadController.Prefetch;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestReadAheadController
+{
+    private static final ObjectCacheKey KEY = new ObjectCacheKey("access", "bucket", "key");
+
+    @Test
+    public void testParseRanges()
+    {
+        assertThat(ByteRange.parseRangeHeader("bytes=0-99")).contains(new ByteRange(0, 99));
+        assertThat(ByteRange.parseRangeHeader(" bytes=10-10 ")).contains(new ByteRange(10, 10));
+        assertThat(ByteRange.parseRangeHeader("bytes=10-")).isEmpty();
+        assertThat(ByteRange.parseRangeHeader("bytes=-10")).isEmpty();
+        assertThat(ByteRange.parseRangeHeader("bytes=10-5")).isEmpty();
+        assertThat(ByteRange.parseRangeHeader("bytes=0-1,5-6")).isEmpty();
+        assertThat(ByteRange.parseRangeHeader("items=0-1")).isEmpty();
+
+        assertThat(ByteRange.parseContentRangeHeader("bytes 100-199/1000")).contains(new ByteRange(100, 199));
+        assertThat(ByteRange.parseContentRangeObjectSize("bytes 100-199/1000")).hasValue(1000);
+        assertThat(ByteRange.parseContentRangeObjectSize("bytes 100-199/*")).isEmpty();
+        assertThat(new ByteRange(100, 199).toContentRangeHeader(OptionalLong.of(1000))).isEqualTo("bytes 100-199/1000");
+    }
+
+    @Test
+    public void testSequentialReadsArePrefetched()
+            throws IOException
+    {
+        ReadAheadController controller = controller(100, 1000);
+
+        // first read is never adjacent, second read reaches the sequential threshold
+        assertThat(controller.access(KEY, new ByteRange(0, 9)).prefetch()).isEmpty();
+        Access access = controller.access(KEY, new ByteRange(10, 19));
+        assertThat(access.hit()).isEmpty();
+        Prefetch prefetch = access.prefetch().orElseThrow();
+        assertThat(prefetch.range()).isEqualTo(new ByteRange(20, 119));
+        assertThat(controller.getReservedBytes()).isEqualTo(100);
+
+        // only one prefetch in flight per object
+        assertThat(controller.access(KEY, new ByteRange(20, 29)).prefetch()).isEmpty();
+
+        prefetch.complete(cachedRange(prefetch.range(), OptionalLong.of(1000)));
+
+        access = controller.access(KEY, new ByteRange(30, 39));
+        CachedRange hit = access.hit().orElseThrow();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        hit.writeTo(new ByteRange(30, 39), output);
+        assertThat(output.toByteArray()).containsExactly(30, 31, 32, 33, 34, 35, 36, 37, 38, 39);
+
+        // less than a full window is buffered ahead of the reader so the next window is prefetched
+        assertThat(access.prefetch().orElseThrow().range()).isEqualTo(new ByteRange(120, 219));
+        assertThat(controller.getHits().getTotalCount()).isEqualTo(1);
+        assertThat(controller.getPrefetchedBytes().getTotalCount()).isEqualTo(100);
+    }
+
+    @Test
+    public void testMemoryLimit()
+    {
+        ReadAheadController controller = controller(100, 150);
+
+        readSequentially(controller, new ObjectCacheKey("access", "bucket", "one"));
+        assertThat(controller.getReservedBytes()).isEqualTo(100);
+
+        // a second sequential reader would exceed the limit
+        Access access = readSequentially(controller, new ObjectCacheKey("access", "bucket", "two"));
+        assertThat(access.prefetch()).isEmpty();
+        assertThat(controller.getRejectedPrefetches().getTotalCount()).isEqualTo(1);
+        assertThat(controller.getReservedBytes()).isEqualTo(100);
+    }
+
+    @Test
+    public void testWasteAndInvalidation()
+    {
+        ReadAheadController controller = controller(100, 1000);
+
+        Prefetch prefetch = readSequentially(controller, KEY).prefetch().orElseThrow();
+        prefetch.complete(cachedRange(prefetch.range(), OptionalLong.empty()));
+        assertThat(controller.getReservedBytes()).isEqualTo(100);
+
+        // a random read breaks the pattern and releases the unused window
+        assertThat(controller.access(KEY, new ByteRange(500, 509)).hit()).isEmpty();
+        assertThat(controller.getReservedBytes()).isZero();
+        assertThat(controller.getWastedPrefetches().getTotalCount()).isEqualTo(1);
+        assertThat(controller.getWastedBytes().getTotalCount()).isEqualTo(100);
+
+        prefetch = readSequentially(controller, KEY).prefetch().orElseThrow();
+        controller.invalidate("bucket", "key");
+        prefetch.complete(cachedRange(prefetch.range(), OptionalLong.empty()));
+        assertThat(controller.getReservedBytes()).isZero();
+        assertThat(controller.getTrackedObjects()).isZero();
+
+        prefetch = readSequentially(controller, KEY).prefetch().orElseThrow();
+        prefetch.abandon();
+        assertThat(controller.getReservedBytes()).isZero();
+        assertThat(controller.getFailedPrefetches().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidationOfAllAccessKeys()
+    {
+        ReadAheadController controller = controller(100, 1000);
+        ObjectCacheKey otherAccessKey = new ObjectCacheKey("other", "bucket", "key");
+        ObjectCacheKey otherObject = new ObjectCacheKey("access", "bucket", "other");
+
+        for (ObjectCacheKey key : List.of(KEY, otherAccessKey, otherObject)) {
+            Prefetch prefetch = readSequentially(controller, key).prefetch().orElseThrow();
+            prefetch.complete(cachedRange(prefetch.range(), OptionalLong.empty()));
+        }
+        assertThat(controller.getTrackedObjects()).isEqualTo(2);
+        assertThat(controller.getReservedBytes()).isEqualTo(300);
+
+        controller.invalidate("bucket", "key");
+        assertThat(controller.getTrackedObjects()).isEqualTo(1);
+        assertThat(controller.getReservedBytes()).isEqualTo(100);
+        assertThat(controller.access(otherObject, new ByteRange(20, 29)).hit()).isPresent();
+    }
+
+    @Test
+    public void testPrefetchPastEndOfObject()
+    {
+        ReadAheadController controller = controller(100, 1000);
+
+        // the object size is not known yet, the window past its end is answered with a 416 that reports the size
+        Prefetch prefetch = readSequentially(controller, KEY).prefetch().orElseThrow();
+        assertThat(prefetch.range()).isEqualTo(new ByteRange(20, 119));
+        prefetch.abandon(OptionalLong.of(20));
+        assertThat(controller.getReservedBytes()).isZero();
+
+        // reads at the tail no longer plan windows past the end
+        assertThat(controller.access(KEY, new ByteRange(20, 29)).prefetch()).isEmpty();
+
+        ObjectCacheKey longer = new ObjectCacheKey("access", "bucket", "longer");
+        prefetch = readSequentially(controller, longer).prefetch().orElseThrow();
+        prefetch.abandon(OptionalLong.of(50));
+        assertThat(controller.access(longer, new ByteRange(20, 29)).prefetch().orElseThrow().range()).isEqualTo(new ByteRange(30, 49));
+    }
+
+    @Test
+    public void testWarmedRanges()
+    {
+        ReadAheadController controller = controller(100, 1000);
+
+        // a warmed footer survives reads elsewhere in the object
+        assertThat(controller.warm(KEY, cachedRange(new ByteRange(900, 999), OptionalLong.of(1000)))).isTrue();
+        assertThat(controller.access(KEY, new ByteRange(0, 9)).hit()).isEmpty();
+        assertThat(controller.access(KEY, new ByteRange(950, 999)).hit()).isPresent();
+        assertThat(controller.access(KEY, new ByteRange(500, 509)).hit()).isEmpty();
+        assertThat(controller.access(KEY, new ByteRange(900, 949)).hit()).isPresent();
+
+        // the footer far ahead of a sequential reader does not stop its prefetches
+        controller.access(KEY, new ByteRange(0, 9));
+        assertThat(controller.access(KEY, new ByteRange(10, 19)).prefetch().orElseThrow().range()).isEqualTo(new ByteRange(20, 119));
+
+        // warmed data counts against the memory limit and is released on invalidation
+        assertThat(controller.warm(KEY, cachedRange(new ByteRange(0, 899), OptionalLong.of(1000)))).isFalse();
+        assertThat(controller.getRejectedPrefetches().getTotalCount()).isEqualTo(1);
+        controller.invalidate("bucket", "key");
+        assertThat(controller.getReservedBytes()).isEqualTo(100);
+
+        assertThat(new ReadAheadController(new ReadAheadConfig()).warm(KEY, cachedRange(new ByteRange(0, 9), OptionalLong.empty()))).isFalse();
+    }
+
+    @Test
+    public void testConcurrentReadsOfExpiringObjects()
+            throws Exception
+    {
+        // every reader but one is refused memory, which forces the expiry of the other readers' objects
+        ReadAheadController controller = new ReadAheadController(new ReadAheadConfig()
+                .setEnabled(true)
+                .setWindowSize(DataSize.of(10, BYTE))
+                .setMaxMemory(DataSize.of(10, BYTE))
+                .setIdleTimeout(new Duration(1, MILLISECONDS)));
+
+        ExecutorService executor = newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                ObjectCacheKey key = new ObjectCacheKey("access", "bucket", "key" + reader);
+                readers.add(executor.submit(() -> {
+                    for (int read = 0; read < 5000; read++) {
+                        long start = (read % 100) * 10L;
+                        Access access = controller.access(key, new ByteRange(start, start + 9));
+                        access.prefetch().ifPresent(prefetch -> prefetch.complete(cachedRange(prefetch.range(), OptionalLong.empty())));
+                    }
+                }));
+            }
+            for (Future<?> future : readers) {
+                future.get(30, SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        // by key, as a bucket-wide removal leaves expired objects to the next cache maintenance
+        for (int reader = 0; reader < 4; reader++) {
+            controller.invalidate("bucket", "key" + reader);
+        }
+        assertThat(controller.getReservedBytes()).isEqualTo(0);
+    }
+
+    private static Access readSequentially(ReadAheadController controller, ObjectCacheKey key)
+    {
+        controller.access(key, new ByteRange(0, 9));
+        return controller.access(key, new ByteRange(10, 19));
+    }
+
+    private static ReadAheadController controller(long windowSize, long maxMemory)
+    {
+        return new ReadAheadController(new ReadAheadConfig()
+                .setEnabled(true)
+                .setWindowSize(DataSize.of(windowSize, BYTE))
+                .setMaxMemory(DataSize.of(maxMemory, BYTE)));
+    }
+
+    private static CachedRange cachedRange(ByteRange range, OptionalLong objectSize)
+    {
+        byte[] data = new byte[(int) range.length()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (range.start() + i);
+        }
+        return new CachedRange(range, objectSize, ImmutableMultiMap.empty(), data);
+    }
+}
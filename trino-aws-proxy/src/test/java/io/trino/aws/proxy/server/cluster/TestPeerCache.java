@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.cluster;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.trino.aws.proxy.server.cache.CachedObjectMetadata;
+import io.trino.aws.proxy.server.cache.ObjectCacheKey;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestPeerCache
+{
+    private static final List<ClusterPeer> PEERS = List.of(
+            ClusterPeer.parse("a=http://node-a:8080"),
+            ClusterPeer.parse("b=http://node-b:8080"),
+            ClusterPeer.parse("c=http://node-c:8080"));
+
+    @Test
+    public void testRingSpreadsAndKeepsOwnership()
+    {
+        ConsistentHashRing ring = ConsistentHashRing.build(PEERS, 128);
+        Map<String, Integer> counts = new HashMap<>();
+        IntStream.range(0, 30_000).forEach(i -> counts.merge(ring.owner("bucket", "key" + i).nodeId(), 1, Integer::sum));
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(7_500, 12_500));
+
+        // removing a node only moves the objects that it owned
+        ConsistentHashRing smaller = ConsistentHashRing.build(PEERS.subList(0, 2), 128);
+        for (int i = 0; i < 30_000; i++) {
+            ClusterPeer owner = ring.owner("bucket", "key" + i);
+            if (!owner.nodeId().equals("c")) {
+                assertThat(smaller.owner("bucket", "key" + i)).isEqualTo(owner);
+            }
+        }
+    }
+
+    @Test
+    public void testAuthenticator()
+    {
+        Instant now = Instant.parse("2024-06-01T00:00:00Z");
+        PeerAuthenticator signer = new PeerAuthenticator("secret", Clock.fixed(now, UTC));
+        PeerAuthenticator verifier = new PeerAuthenticator("secret", Clock.fixed(now.plusSeconds(60), UTC));
+        byte[] body = {1, 2, 3};
+
+        String signature = signer.sign("PUT", List.of("metadata", "bucket", "key"), body);
+        assertThat(verifier.verify(signature, "PUT", List.of("metadata", "bucket", "key"), body)).isTrue();
+        assertThat(verifier.verify(signature, "GET", List.of("metadata", "bucket", "key"), body)).isFalse();
+        assertThat(verifier.verify(signature, "PUT", List.of("metadata", "bucket/key", ""), body)).isFalse();
+        assertThat(verifier.verify(signature, "PUT", List.of("metadata", "bucket", "key"), new byte[] {1, 2})).isFalse();
+        assertThat(verifier.verify(null, "PUT", List.of("metadata", "bucket", "key"), body)).isFalse();
+        assertThat(new PeerAuthenticator("other", Clock.fixed(now, UTC)).verify(signature, "PUT", List.of("metadata", "bucket", "key"), body)).isFalse();
+        assertThat(new PeerAuthenticator("secret", Clock.fixed(now.plus(PeerAuthenticator.MAX_CLOCK_SKEW).plusSeconds(1), UTC)).verify(signature, "PUT", List.of("metadata", "bucket", "key"), body)).isFalse();
+    }
+
+    @Test
+    public void testFetchFromOwner()
+    {
+        CachedObjectMetadata metadata = new CachedObjectMetadata(200, ImmutableMultiMap.builder(false).add("ETag", "\"abc\"").add("Content-Length", "10").build());
+        byte[] json = jsonCodec(PeerMetadata.class).toJsonBytes(PeerMetadata.fromCached(metadata));
+
+        ClusterConfig clusterConfig = new ClusterConfig()
+                .setEnabled(true)
+                .setPeers(PEERS.stream().map(peer -> peer.nodeId() + "=" + peer.uri()).toList())
+                .setSharedSecret("secret");
+        PeerCache ownerCache = new PeerCache(clusterConfig, "/peer", "b", new TestingHttpClient(_ -> { throw new AssertionError(); }), Clock.systemUTC());
+        PeerCache peerCache = new PeerCache(clusterConfig, "/peer", "a", new TestingHttpClient(request -> {
+            assertThat(request.getUri().getPath()).isEqualTo("/peer/metadata");
+            String signature = request.getHeader(PeerAuthenticator.SIGNATURE_HEADER);
+            if (!ownerCache.verify(signature, "GET", List.of("metadata", "access", "bucket", request.getUri().getQuery().replaceAll(".*key=", "")), new byte[0])) {
+                return new TestingResponse(HttpStatus.UNAUTHORIZED, ImmutableListMultimap.of(), new byte[0]);
+            }
+            if (request.getUri().getQuery().endsWith("key=missing")) {
+                return new TestingResponse(HttpStatus.NOT_FOUND, ImmutableListMultimap.of(), new byte[0]);
+            }
+            return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of("Content-Type", "application/json"), json);
+        }), Clock.systemUTC());
+
+        String ownedByB = IntStream.range(0, 1_000)
+                .mapToObj(i -> "key" + i)
+                .filter(key -> peerCache.remoteOwner("bucket", key).map(ClusterPeer::nodeId).equals(Optional.of("b")))
+                .findFirst()
+                .orElseThrow();
+        assertThat(ownerCache.remoteOwner("bucket", ownedByB)).isEmpty();
+
+        Optional<CachedObjectMetadata> fetched = peerCache.fetchMetadata(PEERS.get(1), new ObjectCacheKey("access", "bucket", ownedByB));
+        assertThat(fetched).isPresent();
+        assertThat(fetched.get().statusCode()).isEqualTo(200);
+        assertThat(fetched.get().headers().getFirst("etag")).contains("\"abc\"");
+        assertThat(peerCache.fetchMetadata(PEERS.get(1), new ObjectCacheKey("access", "bucket", "missing"))).isEmpty();
+        assertThat(ImmutableMap.of("hits", peerCache.getHits().getTotalCount(), "misses", peerCache.getMisses().getTotalCount(), "failures", peerCache.getFailures().getTotalCount()))
+                .isEqualTo(ImmutableMap.of("hits", 1L, "misses", 1L, "failures", 0L));
+
+        // the cluster is disabled by default
+        PeerCache disabled = new PeerCache(new ClusterConfig(), "/peer", "a", new TestingHttpClient(_ -> { throw new AssertionError(); }), Clock.systemUTC());
+        assertThat(disabled.remoteOwner("bucket", ownedByB)).isEmpty();
+    }
+}
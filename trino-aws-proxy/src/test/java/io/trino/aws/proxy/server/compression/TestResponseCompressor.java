@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.compression;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import io.trino.aws.proxy.server.buffer.BufferPoolConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.zip.GZIPInputStream;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.trino.aws.proxy.server.compression.ResponseCompressor.acceptsGzip;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestResponseCompressor
+{
+    @Test
+    public void testAcceptsGzip()
+    {
+        assertThat(acceptsGzip(ImmutableList.of("gzip"))).isTrue();
+        assertThat(acceptsGzip(ImmutableList.of("br, GZIP;q=0.5"))).isTrue();
+        assertThat(acceptsGzip(ImmutableList.of("deflate", "x-gzip"))).isTrue();
+        assertThat(acceptsGzip(ImmutableList.of("*"))).isTrue();
+
+        assertThat(acceptsGzip(ImmutableList.of())).isFalse();
+        assertThat(acceptsGzip(ImmutableList.of("identity"))).isFalse();
+        assertThat(acceptsGzip(ImmutableList.of("gzip;q=0"))).isFalse();
+        assertThat(acceptsGzip(ImmutableList.of("gzip;q=bad"))).isFalse();
+        // an explicit refusal wins over the wildcard
+        assertThat(acceptsGzip(ImmutableList.of("*, gzip;q=0"))).isFalse();
+    }
+
+    @Test
+    public void testCompressible()
+    {
+        ResponseCompressor compressor = new ResponseCompressor(new ResponseCompressionConfig().setMinSize(DataSize.of(1, KILOBYTE)), new BufferPool(new BufferPoolConfig()));
+
+        assertThat(compressor.isCompressible(Optional.of("application/xml"), OptionalLong.empty())).isTrue();
+        assertThat(compressor.isCompressible(Optional.of("Application/JSON; charset=utf-8"), OptionalLong.of(4096))).isTrue();
+
+        assertThat(compressor.isCompressible(Optional.of("application/xml"), OptionalLong.of(100))).isFalse();
+        assertThat(compressor.isCompressible(Optional.of("application/octet-stream"), OptionalLong.empty())).isFalse();
+        assertThat(compressor.isCompressible(Optional.empty(), OptionalLong.empty())).isFalse();
+    }
+
+    @Test
+    public void testCompress()
+            throws IOException
+    {
+        BufferPool bufferPool = new BufferPool(new BufferPoolConfig());
+        ResponseCompressor compressor = new ResponseCompressor(new ResponseCompressionConfig(), bufferPool);
+
+        String page = "<Contents><Key>data/part-%05d</Key><Size>1024</Size></Contents>";
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int response = 0; response < 2; response++) {
+            compressed.reset();
+            expected.setLength(0);
+            try (OutputStream output = compressor.compress(compressed)) {
+                for (int i = 0; i < 1000; i++) {
+                    String contents = page.formatted(i);
+                    expected.append(contents);
+                    output.write(contents.getBytes(UTF_8));
+                    if (i == 500) {
+                        // a flush sends what was written so far without ending the stream
+                        output.flush();
+                        assertThat(decompress(compressed.toByteArray(), expected.length())).isEqualTo(expected.toString());
+                    }
+                }
+            }
+            assertThat(decompress(compressed.toByteArray(), Integer.MAX_VALUE)).isEqualTo(expected.toString());
+            assertThat(compressor.getPooledCompressors()).isEqualTo(1);
+        }
+
+        assertThat(compressor.getCompressedResponses().getTotalCount()).isEqualTo(2);
+        assertThat(compressor.getUncompressedBytes().getTotalCount()).isEqualTo(2L * expected.length());
+        assertThat(compressor.getCompressedBytes().getTotalCount()).isEqualTo(2L * compressed.size());
+        assertThat(compressed.size()).isLessThan(expected.length() / 5);
+        bufferPool.checkNoOutstandingBuffers();
+
+        // an empty response is still a valid gzip stream
+        compressed.reset();
+        compressor.compress(compressed).close();
+        assertThat(decompress(compressed.toByteArray(), Integer.MAX_VALUE)).isEmpty();
+    }
+
+    private static String decompress(byte[] compressed, int length)
+            throws IOException
+    {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(input.readNBytes(length), UTF_8);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.dns;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolver.LookupPolicy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static java.net.spi.InetAddressResolver.LookupPolicy.IPV4;
+import static java.net.spi.InetAddressResolver.LookupPolicy.IPV6;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestCachingInetAddressResolver
+{
+    private static final LookupPolicy ANY = LookupPolicy.of(IPV4 | IPV6);
+    private static final InetAddress FIRST = address("10.0.0.1");
+    private static final InetAddress SECOND = address("10.0.0.2");
+    private static final InetAddress THIRD = address("10.0.0.3");
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+    private final AtomicReference<List<InetAddress>> answer = new AtomicReference<>(ImmutableList.of(FIRST, SECOND, THIRD));
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final InetAddressResolver nameService = new InetAddressResolver()
+    {
+        @Override
+        public Stream<InetAddress> lookupByName(String host, LookupPolicy lookupPolicy)
+                throws UnknownHostException
+        {
+            lookups.incrementAndGet();
+            List<InetAddress> addresses = answer.get();
+            if (addresses.isEmpty()) {
+                throw new UnknownHostException(host);
+            }
+            return addresses.stream();
+        }
+
+        @Override
+        public String lookupByAddress(byte[] address)
+        {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    public void testCachingWithoutSpreading()
+            throws UnknownHostException
+    {
+        CachingInetAddressResolver resolver = new CachingInetAddressResolver(nameService, new Duration(30, SECONDS), ticker);
+
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(FIRST, SECOND, THIRD);
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(FIRST, SECOND, THIRD);
+        assertThat(lookups).hasValue(1);
+
+        answer.set(ImmutableList.of(THIRD));
+        nanos.addAndGet(SECONDS.toNanos(31));
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(THIRD);
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void testExpiredNamesArePruned()
+            throws UnknownHostException
+    {
+        CachingInetAddressResolver resolver = new CachingInetAddressResolver(nameService, new Duration(5, SECONDS), ticker);
+
+        resolver.lookupByName("first", ANY);
+        resolver.lookupByName("second", ANY);
+        nanos.addAndGet(SECONDS.toNanos(3));
+        resolver.lookupByName("third", ANY);
+        assertThat(resolver.addresses("first")).isNotEmpty();
+        assertThat(lookups).hasValue(3);
+
+        // the TTL is configurable
+        nanos.addAndGet(SECONDS.toNanos(3));
+        resolver.lookupByName("second", ANY);
+        assertThat(lookups).hasValue(4);
+
+        // resolving a name drops the names that have expired
+        assertThat(resolver.addresses("first")).isEmpty();
+        assertThat(resolver.addresses("second")).isNotEmpty();
+        assertThat(resolver.addresses("third")).isNotEmpty();
+    }
+
+    @Test
+    public void testSpreading()
+            throws UnknownHostException
+    {
+        CachingInetAddressResolver resolver = new CachingInetAddressResolver(nameService, new Duration(30, SECONDS), ticker);
+        assertThat(resolver.isSpreading()).isFalse();
+        resolver.enableSpreading(new Duration(10, MINUTES), new Duration(1, MINUTES));
+        assertThat(resolver.isSpreading()).isTrue();
+
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(FIRST, SECOND, THIRD);
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(SECOND, THIRD, FIRST);
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(THIRD, FIRST, SECOND);
+
+        // evicted addresses are tried last until the eviction ends
+        resolver.evict("s3", SECOND);
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(FIRST, THIRD, SECOND);
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(THIRD, FIRST, SECOND);
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertThat(resolver.lookupByName("s3", ANY)).containsExactly(THIRD, FIRST, SECOND);
+
+        // names do not expire while spreading
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    public void testRefresh()
+            throws UnknownHostException
+    {
+        CachingInetAddressResolver resolver = new CachingInetAddressResolver(nameService, new Duration(30, SECONDS), ticker);
+        resolver.enableSpreading(new Duration(10, MINUTES), new Duration(1, MINUTES));
+        resolver.lookupByName("s3", ANY);
+        assertThat(resolver.addresses("s3")).containsExactlyInAnyOrder(FIRST, SECOND, THIRD);
+
+        answer.set(ImmutableList.of(SECOND, THIRD));
+        assertThat(resolver.refresh()).isEqualTo(0);
+        assertThat(resolver.addresses("s3")).containsExactlyInAnyOrder(SECOND, THIRD);
+
+        // failed refreshes keep the previous addresses
+        answer.set(ImmutableList.of());
+        assertThat(resolver.refresh()).isEqualTo(1);
+        assertThat(resolver.addresses("s3")).containsExactlyInAnyOrder(SECOND, THIRD);
+
+        // names that are not looked up are dropped
+        nanos.addAndGet(MINUTES.toNanos(11));
+        resolver.refresh();
+        assertThat(resolver.addresses("s3")).isEmpty();
+    }
+
+    @Test
+    public void testConnectFailuresAreNotProbedWithoutSpreading()
+            throws UnknownHostException
+    {
+        CachingInetAddressResolver resolver = new CachingInetAddressResolver(nameService, new Duration(30, SECONDS), ticker);
+        resolver.lookupByName("s3", ANY);
+        DnsCache dnsCache = new DnsCache(new DnsCacheConfig().setEnabled(true), Optional.of(resolver));
+        try {
+            // evictions would have no effect until the DNS cache starts spreading
+            dnsCache.reportConnectFailure(URI.create("https://s3/bucket/key"));
+            assertThat(dnsCache.getConnectFailures().getTotalCount()).isZero();
+        }
+        finally {
+            dnsCache.stop();
+        }
+    }
+
+    private static InetAddress address(String value)
+    {
+        try {
+            return InetAddress.getByAddress(value, InetAddress.getByName(value).getAddress());
+        }
+        catch (UnknownHostException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
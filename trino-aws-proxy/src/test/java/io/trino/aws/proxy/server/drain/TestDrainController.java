@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.drain;
+
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+import io.trino.aws.proxy.server.metrics.ProxyMetricsConfig;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static io.trino.aws.proxy.server.drain.DrainController.State.ACTIVE;
+import static io.trino.aws.proxy.server.drain.DrainController.State.DRAINED;
+import static io.trino.aws.proxy.server.drain.DrainController.State.DRAINING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestDrainController
+{
+    private final ProxyMetrics proxyMetrics = new ProxyMetrics(new ProxyMetricsConfig(), new MBeanExporter(new TestingMBeanServer()));
+
+    @Test
+    public void testStartAndCancel()
+    {
+        DrainController controller = new DrainController(new DrainConfig(), proxyMetrics);
+        assertThat(controller.isReady()).isTrue();
+        assertThat(controller.isAccepting()).isTrue();
+
+        DrainStatus status = controller.startDrain();
+        assertThat(status.state()).isEqualTo(DRAINING);
+        assertThat(status.started()).isPresent();
+        assertThat(controller.isReady()).isFalse();
+        assertThat(controller.isAccepting()).isFalse();
+
+        WebApplicationException rejection = controller.rejectRequest();
+        assertThat(rejection.getResponse().getStatus()).isEqualTo(503);
+        assertThat((String) rejection.getResponse().getEntity()).contains("<Code>SlowDown</Code>");
+        assertThat(controller.getStatus().rejectedRequests()).isEqualTo(1);
+
+        assertThat(controller.cancelDrain().state()).isEqualTo(ACTIVE);
+        assertThat(controller.isReady()).isTrue();
+        assertThat(controller.isAccepting()).isTrue();
+    }
+
+    @Test
+    public void testGracePeriod()
+    {
+        DrainController controller = new DrainController(new DrainConfig().setGracePeriod(new Duration(1, SECONDS)), proxyMetrics);
+        controller.startDrain();
+
+        // readiness fails right away, requests are still served until load balancers have caught up
+        assertThat(controller.isReady()).isFalse();
+        assertThat(controller.isAccepting()).isTrue();
+    }
+
+    @Test
+    public void testAwaitDrained()
+            throws Exception
+    {
+        DrainController controller = new DrainController(new DrainConfig().setDeadline(new Duration(10, SECONDS)), proxyMetrics);
+        RequestTracker tracker = proxyMetrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "GET", 0);
+
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(controller::awaitDrained);
+        MILLISECONDS.sleep(200);
+        assertThat(drained).isNotDone();
+        assertThat(controller.getStatus().inFlightRequests()).isEqualTo(1);
+
+        tracker.finish();
+        assertThat(drained.get(5, SECONDS)).isTrue();
+        assertThat(controller.getStatus().state()).isEqualTo(DRAINED);
+        assertThat(controller.cancelDrain().state()).isEqualTo(DRAINED);
+        assertThat(controller.isAccepting()).isFalse();
+    }
+
+    @Test
+    public void testDeadline()
+    {
+        DrainController controller = new DrainController(new DrainConfig().setDeadline(new Duration(100, MILLISECONDS)), proxyMetrics);
+        RequestTracker tracker = proxyMetrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "GET", 0);
+
+        assertThat(controller.awaitDrained()).isFalse();
+        assertThat(controller.getStatus().state()).isEqualTo(DRAINED);
+        tracker.finish();
+    }
+
+    @Test
+    public void testShutdownWaitsForGracePeriod()
+    {
+        DrainController controller = new DrainController(new DrainConfig().setGracePeriod(new Duration(300, MILLISECONDS)), proxyMetrics);
+
+        // nothing is in flight, but load balancers must see readiness fail before the proxy goes away
+        long start = System.nanoTime();
+        assertThat(controller.awaitDrained()).isTrue();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(300));
+        assertThat(controller.getStatus().state()).isEqualTo(DRAINED);
+        assertThat(controller.getStatus().started()).isPresent();
+    }
+
+    @Test
+    public void testShutdownDrainCannotBeCancelled()
+            throws Exception
+    {
+        DrainController controller = new DrainController(new DrainConfig().setGracePeriod(new Duration(300, MILLISECONDS)), proxyMetrics);
+        DrainStatus started = controller.startDrain();
+
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(controller::awaitDrained);
+        while (controller.cancelDrain().state() == ACTIVE) {
+            // cancelled before the shutdown took over the drain
+            controller.startDrain();
+        }
+        assertThat(controller.getStatus().state()).isEqualTo(DRAINING);
+        assertThat(controller.isReady()).isFalse();
+
+        assertThat(drained.get(5, SECONDS)).isTrue();
+        DrainStatus status = controller.getStatus();
+        assertThat(status.state()).isEqualTo(DRAINED);
+        assertThat(status.started()).isPresent();
+        assertThat(status.started().get()).isAfterOrEqualTo(started.started().orElseThrow());
+    }
+}
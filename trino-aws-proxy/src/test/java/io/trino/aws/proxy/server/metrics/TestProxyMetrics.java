@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestProxyMetrics
+{
+    @Test
+    public void testHistogram()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getP50Millis()).isNaN();
+
+        for (int i = 0; i < 98; i++) {
+            histogram.addNanos(TimeUnit.MICROSECONDS.toNanos(700));
+        }
+        histogram.addNanos(TimeUnit.MILLISECONDS.toNanos(40));
+        histogram.addNanos(TimeUnit.MINUTES.toNanos(5));
+
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.getP50Millis()).isEqualTo(1.0);
+        assertThat(histogram.getP99Millis()).isEqualTo(50.0);
+        // values above the largest bound are counted in the last bucket
+        assertThat(histogram.bucketCounts()[histogram.bucketCounts().length - 1]).isEqualTo(1);
+    }
+
+    @Test
+    public void testActions()
+    {
+        assertThat(S3Actions.actionName(request("GET", "", "", ImmutableMultiMap.empty()))).isEqualTo("ListBuckets");
+        assertThat(S3Actions.actionName(request("GET", "bucket", "", query("list-type", "2", "prefix", "a/")))).isEqualTo("ListObjectsV2");
+        assertThat(S3Actions.actionName(request("GET", "bucket", "", query("prefix", "a/")))).isEqualTo("ListObjects");
+        assertThat(S3Actions.actionName(request("GET", "bucket", "key", ImmutableMultiMap.empty()))).isEqualTo("GetObject");
+        assertThat(S3Actions.actionName(request("GET", "bucket", "key", query("X-Amz-Signature", "abc")))).isEqualTo("GetObject");
+        assertThat(S3Actions.actionName(request("GET", "bucket", "key", query("tagging", "")))).isEqualTo("GetObjectConfiguration");
+        assertThat(S3Actions.actionName(request("PUT", "bucket", "key", query("uploadId", "1", "partNumber", "2")))).isEqualTo("UploadPart");
+        assertThat(S3Actions.actionName(request("POST", "bucket", "key", query("uploads", "")))).isEqualTo("CreateMultipartUpload");
+        assertThat(S3Actions.actionName(request("POST", "bucket", "", query("delete", "")))).isEqualTo("DeleteObjects");
+        assertThat(S3Actions.actionName(request("PATCH", "bucket", "key", ImmutableMultiMap.empty()))).isEqualTo(S3Actions.UNKNOWN);
+    }
+
+    @Test
+    public void testObjectActions()
+    {
+        for (String httpVerb : List.of("GET", "HEAD", "PUT", "POST", "DELETE")) {
+            for (MultiMap query : List.of(ImmutableMultiMap.empty(), query("uploads", ""), query("uploadId", "1"), query("uploadId", "1", "partNumber", "2"), query("tagging", ""), query("restore", ""))) {
+                String objectAction = S3Actions.actionName(request(httpVerb, "bucket", "key", query));
+                assertThat(S3Actions.isObjectAction(objectAction)).as(objectAction).isEqualTo(!objectAction.equals(S3Actions.UNKNOWN));
+                String bucketAction = S3Actions.actionName(request(httpVerb, "bucket", "", query));
+                assertThat(S3Actions.isObjectAction(bucketAction)).as(bucketAction).isFalse();
+            }
+        }
+    }
+
+    @Test
+    public void testRequests()
+    {
+        MBeanExporter exporter = new MBeanExporter(new TestingMBeanServer());
+        ProxyMetrics metrics = new ProxyMetrics(new ProxyMetricsConfig().setMaxTrackedBuckets(1), exporter);
+
+        RequestTracker tracker = metrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "GET", 0);
+        assertThat(metrics.getInFlightRequests()).isEqualTo(1);
+        tracker.setAction(Optional.of("one"), "GetObject");
+        tracker.setStatusCode(200);
+        tracker.addBytesOut(100);
+        tracker.finish();
+        tracker.finish();
+        assertThat(metrics.getInFlightRequests()).isZero();
+
+        RequestTracker other = metrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "PUT", 10);
+        other.setAction(Optional.of("two"), "PutObject");
+        other.setStatusCode(503);
+        other.finish();
+
+        RequestTracker third = metrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "GET", 0);
+        third.setAction(Optional.of("three"), "GetObject");
+        third.setStatusCode(200);
+        third.finish();
+
+        RequestStats getObject = metrics.getActionStats().get(new ProxyMetrics.ActionKey("s3", "GET", "GetObject"));
+        assertThat(getObject.getRequests()).isEqualTo(2);
+        assertThat(getObject.getSuccessfulResponses()).isEqualTo(2);
+        assertThat(getObject.getBytesOut()).isEqualTo(100);
+        assertThat(metrics.getActionStats().get(new ProxyMetrics.ActionKey("s3", "PUT", "PutObject")).getServerErrorResponses()).isEqualTo(1);
+
+        // only one bucket is tracked by name
+        assertThat(metrics.getBucketStats().keySet()).containsExactlyInAnyOrder("one", ProxyMetrics.OTHER_BUCKETS);
+        assertThat(metrics.getBucketStats().get(ProxyMetrics.OTHER_BUCKETS).getRequests()).isEqualTo(2);
+        assertThat(exporter.getExportedObjects().keySet()).containsExactlyInAnyOrder(
+                "io.trino.aws.proxy.server.metrics:type=RequestStats,service=s3,verb=GET,action=GetObject",
+                "io.trino.aws.proxy.server.metrics:type=RequestStats,service=s3,verb=PUT,action=PutObject",
+                "io.trino.aws.proxy.server.metrics:type=RequestStats,bucket=one",
+                "io.trino.aws.proxy.server.metrics:type=RequestStats,bucket=_other");
+
+        metrics.shutdown();
+        assertThat(exporter.getExportedObjects()).isEmpty();
+    }
+
+    @Test
+    public void testPhases()
+    {
+        ProxyMetrics metrics = new ProxyMetrics(new ProxyMetricsConfig(), new MBeanExporter(new TestingMBeanServer()));
+        UUID requestId = UUID.randomUUID();
+        RequestTracker tracker = metrics.startRequest(requestId, SigningServiceType.S3, "GET", 0);
+
+        metrics.recordPhase(requestId, RequestPhase.CREDENTIALS_LOOKUP, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(3));
+        tracker.accumulatePhaseNanos(RequestPhase.CLIENT_WRITE, 100);
+        tracker.accumulatePhaseNanos(RequestPhase.CLIENT_WRITE, 200);
+        assertThat(metrics.getClientWrite().getCount()).isZero();
+        tracker.completePhase(RequestPhase.CLIENT_WRITE);
+        // phases that did not happen are not recorded
+        tracker.completePhase(RequestPhase.UPSTREAM_READ);
+        tracker.finish();
+
+        assertThat(tracker.phaseNanos().keySet()).containsExactly(RequestPhase.CREDENTIALS_LOOKUP, RequestPhase.CLIENT_WRITE);
+        assertThat(tracker.phaseNanos().get(RequestPhase.CREDENTIALS_LOOKUP)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(3));
+        assertThat(tracker.phaseNanos().get(RequestPhase.CLIENT_WRITE)).isEqualTo(300);
+        assertThat(metrics.getCredentialsLookup().getCount()).isEqualTo(1);
+        assertThat(metrics.getClientWrite().getCount()).isEqualTo(1);
+        assertThat(metrics.getUpstreamRead().getCount()).isZero();
+
+        // phases of requests that are no longer tracked are only recorded in the histograms
+        metrics.recordPhase(requestId, RequestPhase.SECURITY_DECISION, System.nanoTime());
+        assertThat(metrics.getSecurityDecision().getCount()).isEqualTo(1);
+        assertThat(tracker.phaseNanos()).doesNotContainKey(RequestPhase.SECURITY_DECISION);
+    }
+
+    @Test
+    public void testOpenMetrics()
+            throws IOException
+    {
+        ProxyMetrics metrics = new ProxyMetrics(new ProxyMetricsConfig(), new MBeanExporter(new TestingMBeanServer()));
+        RequestTracker tracker = metrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "GET", 0);
+        tracker.setAction(Optional.of("my\"bucket"), "GetObject");
+        tracker.setStatusCode(200);
+        tracker.finish();
+        metrics.getPhaseLatency(RequestPhase.SIGNATURE_VERIFICATION).addNanos(TimeUnit.MILLISECONDS.toNanos(2));
+
+        StringWriter writer = new StringWriter();
+        OpenMetricsWriter.write(metrics, writer);
+        assertThat(writer.toString())
+                .contains("# TYPE s3proxy_requests counter\n")
+                .contains("s3proxy_requests_total{service=\"s3\",verb=\"GET\",action=\"GetObject\"} 1\n")
+                .contains("s3proxy_responses_total{service=\"s3\",verb=\"GET\",action=\"GetObject\",status_class=\"2xx\"} 1\n")
+                .contains("s3proxy_request_duration_seconds_bucket{service=\"s3\",verb=\"GET\",action=\"GetObject\",le=\"+Inf\"} 1\n")
+                .doesNotContain("s3proxy_bucket_")
+                .contains("s3proxy_request_phase_duration_seconds_bucket{phase=\"signature_verification\",le=\"0.0025\"} 1\n")
+                .contains("s3proxy_in_flight_requests 0\n")
+                .endsWith("# EOF\n");
+
+        // bucket names are only written by the separate, authenticated export
+        StringWriter bucketWriter = new StringWriter();
+        OpenMetricsWriter.writeBuckets(metrics, bucketWriter);
+        assertThat(bucketWriter.toString())
+                .contains("# TYPE s3proxy_bucket_requests counter\n")
+                .contains("s3proxy_bucket_requests_total{bucket=\"my\\\"bucket\"} 1\n")
+                .contains("s3proxy_bucket_request_duration_seconds_bucket{bucket=\"my\\\"bucket\",le=\"+Inf\"} 1\n")
+                .doesNotContain("s3proxy_requests_total")
+                .endsWith("# EOF\n");
+    }
+
+    private static MultiMap query(String... namesAndValues)
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            builder.add(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return builder.build();
+    }
+
+    private static ParsedS3Request request(String httpVerb, String bucket, String key, MultiMap query)
+    {
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.parse(""),
+                "",
+                bucket,
+                key,
+                ImmutableMultiMap.empty(),
+                query,
+                httpVerb,
+                "/" + bucket,
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.metrics;
+
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics.RequestTracker;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.lang.Math.multiplyExact;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRequestRecorder
+{
+    private final ProxyMetrics metrics = new ProxyMetrics(new ProxyMetricsConfig(), new MBeanExporter(new TestingMBeanServer()));
+
+    @Test
+    public void testRecentRequests()
+    {
+        RequestRecorder recorder = new RequestRecorder(new RequestRecorderConfig().setCapacity(3).setSlowThreshold(new Duration(200, MILLISECONDS)));
+        assertThat(recorder.recentRequests(10)).isEmpty();
+
+        RequestTracker first = finishedRequest("first", 0);
+        recorder.record(first, "/api/v1/s3Proxy/s3/bucket/first");
+        for (int i = 0; i < 4; i++) {
+            recorder.record(finishedRequest("key" + i, 0), "/api/v1/s3Proxy/s3/bucket/key" + i);
+        }
+
+        // only the newest requests are kept
+        List<RecordedRequest> recent = recorder.recentRequests(10);
+        assertThat(recent).extracting(RecordedRequest::path).containsExactly("/api/v1/s3Proxy/s3/bucket/key3", "/api/v1/s3Proxy/s3/bucket/key2", "/api/v1/s3Proxy/s3/bucket/key1");
+        assertThat(recorder.recentRequests(1)).hasSize(1);
+        assertThat(recorder.recentRequests(0)).isEmpty();
+        assertThat(recorder.getRecordedRequests()).isEqualTo(5);
+
+        RecordedRequest request = recent.getFirst();
+        assertThat(request.service()).isEqualTo("s3");
+        assertThat(request.httpVerb()).isEqualTo("GET");
+        assertThat(request.action()).isEqualTo("GetObject");
+        assertThat(request.bucket()).contains("bucket");
+        assertThat(request.statusCode()).isEqualTo(200);
+        assertThat(request.bytesIn()).isEqualTo(10);
+        assertThat(request.bytesOut()).isEqualTo(1000);
+        assertThat(request.phases()).containsOnlyKeys("client_write");
+        assertThat(request.phases().get("client_write").roundTo(NANOSECONDS)).isEqualTo(500);
+
+        // requests at or above the threshold are also kept as slow requests
+        assertThat(recorder.slowRequests(10)).isEmpty();
+        recorder.record(finishedRequest("slow", MILLISECONDS.toNanos(250)), "/slow");
+        assertThat(recorder.slowRequests(10)).extracting(RecordedRequest::path).containsExactly("/slow");
+        assertThat(recorder.slowRequests(10).getFirst().elapsed().toMillis()).isGreaterThanOrEqualTo(250);
+    }
+
+    @Test
+    public void testTruncation()
+    {
+        RequestRecorder recorder = new RequestRecorder(new RequestRecorderConfig().setCapacity(2).setSlowCapacity(0).setOffHeap(true));
+
+        String longPath = "/" + "x".repeat(199) + "😀";
+        recorder.record(finishedRequest("key", 0), longPath);
+        // the surrogate pair is dropped rather than split
+        assertThat(recorder.recentRequests(1).getFirst().path()).isEqualTo(longPath.substring(0, 200));
+        assertThat(recorder.slowRequests(10)).isEmpty();
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        RequestRecorder recorder = new RequestRecorder(new RequestRecorderConfig().setCapacity(0).setSlowCapacity(0));
+        recorder.record(finishedRequest("key", 0), "/key");
+        assertThat(recorder.recentRequests(10)).isEmpty();
+        assertThat(recorder.slowRequests(10)).isEmpty();
+    }
+
+    @Test
+    public void testCapacityLimit()
+    {
+        // the largest configurable ring fits in a single buffer
+        assertThat(multiplyExact(RequestRecorderConfig.MAX_CAPACITY, RequestRing.SLOT_SIZE)).isPositive();
+        assertThatThrownBy(() -> new RequestRing(Integer.MAX_VALUE / RequestRing.SLOT_SIZE + 1, false))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    private RequestTracker finishedRequest(String key, long delayNanos)
+    {
+        RequestTracker tracker = metrics.startRequest(UUID.randomUUID(), SigningServiceType.S3, "GET", 10);
+        tracker.setAction(Optional.of("bucket"), "GetObject");
+        tracker.setStatusCode(200);
+        tracker.addBytesOut(1000);
+        tracker.accumulatePhaseNanos(RequestPhase.CLIENT_WRITE, 500);
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < delayNanos) {
+            Thread.onSpinWait();
+        }
+        tracker.finish();
+        return tracker;
+    }
+}
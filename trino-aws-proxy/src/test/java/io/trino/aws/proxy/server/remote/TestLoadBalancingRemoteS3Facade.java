@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.remote.LoadBalancingConfig.Policy;
+import io.trino.aws.proxy.server.remote.RoutingRemoteS3Facade.Backend;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class TestLoadBalancingRemoteS3Facade
+{
+    private static final Response OK = new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), new byte[0]);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+    private final Set<String> failingHosts = ConcurrentHashMap.newKeySet();
+    private LoadBalancingRemoteS3Facade loadBalancer;
+
+    @Test
+    public void testLeastOutstandingRequests()
+    {
+        LoadBalancingRemoteS3Facade facade = facade(new LoadBalancingConfig().setPolicy(Policy.LEAST_OUTSTANDING_REQUESTS), request -> {
+            // the endpoint serving this request is busy, so every new request goes to the other one
+            UpstreamEndpoint busy = loadBalancer.getEndpoints().stream()
+                    .filter(endpoint -> endpoint.host().equals(request.getUri().getHost()))
+                    .findFirst()
+                    .orElseThrow();
+            assertThat(busy.outstandingRequests()).isEqualTo(1);
+            for (int i = 0; i < 20; i++) {
+                assertThat(loadBalancer.select()).isNotSameAs(busy);
+            }
+            return OK;
+        });
+
+        for (UpstreamEndpoint endpoint : facade.getEndpoints()) {
+            execute(facade, endpoint);
+            assertThat(endpoint.outstandingRequests()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testOutlierEjection()
+    {
+        LoadBalancingRemoteS3Facade facade = facade(new LoadBalancingConfig()
+                .setConsecutiveFailures(3)
+                .setBaseEjectionTime(new Duration(10, SECONDS))
+                .setMaxEjectedPercent(50), _ -> OK);
+        UpstreamEndpoint first = facade.getEndpoints().get(0);
+        UpstreamEndpoint second = facade.getEndpoints().get(1);
+
+        failingHosts.add(first.host());
+        for (int i = 0; i < 3; i++) {
+            execute(facade, first);
+        }
+        assertThat(first.isEjected(ticker.read())).isTrue();
+        for (int i = 0; i < 20; i++) {
+            assertThat(facade.select()).isSameAs(second);
+        }
+
+        // at most half of the endpoints are ejected
+        failingHosts.add(second.host());
+        for (int i = 0; i < 3; i++) {
+            execute(facade, second);
+        }
+        assertThat(second.isEjected(ticker.read())).isFalse();
+
+        // ejection ends, and a second ejection lasts twice as long
+        nanos.addAndGet(SECONDS.toNanos(11));
+        assertThat(first.isEjected(ticker.read())).isFalse();
+        for (int i = 0; i < 3; i++) {
+            execute(facade, first);
+        }
+        nanos.addAndGet(SECONDS.toNanos(11));
+        assertThat(first.isEjected(ticker.read())).isTrue();
+        nanos.addAndGet(SECONDS.toNanos(10));
+        assertThat(first.isEjected(ticker.read())).isFalse();
+
+        // a success resets the ejection time
+        failingHosts.clear();
+        execute(facade, first);
+        failingHosts.add(first.host());
+        for (int i = 0; i < 3; i++) {
+            execute(facade, first);
+        }
+        nanos.addAndGet(SECONDS.toNanos(11));
+        assertThat(first.isEjected(ticker.read())).isFalse();
+    }
+
+    @Test
+    public void testHealthCheck()
+            throws InterruptedException
+    {
+        LoadBalancingRemoteS3Facade facade = facade(new LoadBalancingConfig().setHealthCheckInterval(new Duration(100, MILLISECONDS)), _ -> OK);
+        UpstreamEndpoint first = facade.getEndpoints().get(0);
+        UpstreamEndpoint second = facade.getEndpoints().get(1);
+
+        failingHosts.add(first.host());
+        facade.start();
+        try {
+            long deadline = System.nanoTime() + SECONDS.toNanos(10);
+            while (first.isHealthy() && (System.nanoTime() < deadline)) {
+                MILLISECONDS.sleep(10);
+            }
+            assertThat(first.isHealthy()).isFalse();
+            assertThat(second.isHealthy()).isTrue();
+            for (int i = 0; i < 20; i++) {
+                assertThat(facade.select()).isSameAs(second);
+            }
+
+            failingHosts.clear();
+            while (!first.isHealthy() && (System.nanoTime() < deadline)) {
+                MILLISECONDS.sleep(10);
+            }
+            assertThat(first.isHealthy()).isTrue();
+        }
+        finally {
+            facade.stop();
+        }
+    }
+
+    @Test
+    public void testEndpointsFromConfig()
+    {
+        RemoteBackendConfig backendConfig = new RemoteBackendConfig()
+                .setEndpoints(ImmutableList.of("gateway-1", "gateway-2:9001"))
+                .setPort(9000)
+                .setHttps(false)
+                .setPathStyle(true);
+        Backend backend = Backend.fromConfig("cluster", backendConfig, new LoadBalancingConfig().setHealthCheckPath("/minio/health/live"), new TestingHttpClient(_ -> OK));
+
+        assertThat(backend.facade()).isInstanceOf(LoadBalancingRemoteS3Facade.class);
+        assertThat(((LoadBalancingRemoteS3Facade) backend.facade()).getEndpoints())
+                .extracting(endpoint -> endpoint.facade().buildEndpoint("key", ImmutableMultiMap.empty(), "bucket", "us-east-1"), UpstreamEndpoint::healthCheckUri)
+                .containsExactly(
+                        tuple(URI.create("http://gateway-1:9000/bucket/key"), URI.create("http://gateway-1:9000/minio/health/live")),
+                        tuple(URI.create("http://gateway-2:9001/bucket/key"), URI.create("http://gateway-2:9001/minio/health/live")));
+    }
+
+    private LoadBalancingRemoteS3Facade facade(LoadBalancingConfig config, TestingHttpClient.Processor processor)
+    {
+        HttpClient httpClient = new TestingHttpClient(request -> {
+            if (failingHosts.contains(request.getUri().getHost())) {
+                return new TestingResponse(HttpStatus.SERVICE_UNAVAILABLE, ImmutableListMultimap.of(), new byte[0]);
+            }
+            return request.getMethod().equals("HEAD") ? OK : processor.handle(request);
+        });
+        List<UpstreamEndpoint> endpoints = Stream.of("gateway-1", "gateway-2")
+                .map(host -> new UpstreamEndpoint(host, Optional.of(9000), new PathStyleRemoteS3Facade((_, _) -> host, false, Optional.of(9000)), URI.create("http://%s:9000/".formatted(host))))
+                .collect(toImmutableList());
+        loadBalancer = new LoadBalancingRemoteS3Facade("cluster", endpoints, config, httpClient, ticker);
+        return loadBalancer;
+    }
+
+    private static void execute(LoadBalancingRemoteS3Facade facade, UpstreamEndpoint endpoint)
+    {
+        Request request = prepareGet()
+                .setUri(endpoint.facade().buildEndpoint("key", ImmutableMultiMap.empty(), "bucket", "us-east-1"))
+                .build();
+        facade.httpClient("bucket").orElseThrow().execute(request, createStatusResponseHandler());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.collections.MultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRemoteEndpointResolver
+{
+    private static final MultiMap NO_QUERY = ImmutableMultiMap.empty();
+
+    @Test
+    public void testPathStyle()
+    {
+        RemoteS3Facade facade = new PathStyleRemoteS3Facade((_, _) -> "localhost", false, Optional.of(9000));
+
+        assertThat(facade.buildEndpoint("", NO_QUERY, "bucket", "us-east-1")).isEqualTo(URI.create("http://localhost:9000/bucket"));
+        assertThat(facade.buildEndpoint("/", NO_QUERY, "bucket", "us-east-1")).isEqualTo(URI.create("http://localhost:9000/bucket/"));
+        assertThat(facade.buildEndpoint("dir/a%20b", NO_QUERY, "bucket", "us-east-1")).isEqualTo(URI.create("http://localhost:9000/bucket/dir/a%20b"));
+        assertThat(facade.buildEndpoint("/lead", NO_QUERY, "bucket", "us-east-1")).isEqualTo(URI.create("http://localhost:9000/bucket/lead"));
+        assertThat(facade.buildEndpoint("key", NO_QUERY, "", "us-east-1")).isEqualTo(URI.create("http://localhost:9000/key"));
+        assertThat(facade.remoteUri("us-east-1")).isEqualTo(URI.create("http://localhost:9000/"));
+    }
+
+    @Test
+    public void testVirtualHostStyle()
+    {
+        RemoteS3Facade facade = new VirtualHostStyleRemoteS3Facade();
+
+        assertThat(facade.buildEndpoint("", NO_QUERY, "bucket", "us-west-2")).isEqualTo(URI.create("https://bucket.s3.us-west-2.amazonaws.com/"));
+        assertThat(facade.buildEndpoint("dir/key", NO_QUERY, "bucket", "us-west-2")).isEqualTo(URI.create("https://bucket.s3.us-west-2.amazonaws.com/dir/key"));
+        assertThat(facade.buildEndpoint("x%2Fy+z", NO_QUERY, "bucket", "us-west-2")).isEqualTo(URI.create("https://bucket.s3.us-west-2.amazonaws.com/x%2Fy+z"));
+        // characters that are not valid in a URI are encoded
+        assertThat(facade.buildEndpoint("café 😀", NO_QUERY, "bucket", "us-west-2").getRawPath()).isEqualTo("/caf%C3%A9%20%F0%9F%98%80");
+        assertThat(facade.remoteUri("us-west-2")).isEqualTo(URI.create("https://s3.us-west-2.amazonaws.com/"));
+    }
+
+    @Test
+    public void testQuery()
+    {
+        MultiMap query = ImmutableMultiMap.builder(true)
+                .add("list-type", "2")
+                .add("prefix", "a b+c%41/é&=~")
+                .add("uploads", "")
+                .add("tag", "1")
+                .add("tag", "2")
+                .build();
+
+        URI uri = new VirtualHostStyleRemoteS3Facade().buildEndpoint("", query, "bucket", "us-east-1");
+        assertThat(uri.getRawQuery()).isEqualTo("list-type=2&prefix=a%20b%2Bc%2541%2F%C3%A9%26%3D~&uploads=&tag=1&tag=2");
+        assertThat(uri.getQuery()).isEqualTo("list-type=2&prefix=a b+c%41/é&=~&uploads=&tag=1&tag=2");
+
+        assertThat(RemoteEndpointResolver.rawQuery(query)).hasValue(uri.getRawQuery());
+        assertThat(RemoteEndpointResolver.rawQuery(NO_QUERY)).isEmpty();
+    }
+
+    @Test
+    public void testHostsAreMemoized()
+    {
+        AtomicInteger builds = new AtomicInteger();
+        RemoteEndpointResolver resolver = new RemoteEndpointResolver((bucket, region) -> {
+            builds.incrementAndGet();
+            return "%s.%s.example.com".formatted(bucket, region);
+        }, true, Optional.empty(), false);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(resolver.resolve("key", NO_QUERY, "one", "us-east-1")).isEqualTo(URI.create("https://one.us-east-1.example.com/key"));
+            assertThat(resolver.resolve("key", NO_QUERY, "two", "us-east-1")).isEqualTo(URI.create("https://two.us-east-1.example.com/key"));
+            assertThat(resolver.resolve("key", NO_QUERY, "one", "eu-west-1")).isEqualTo(URI.create("https://one.eu-west-1.example.com/key"));
+        }
+        assertThat(builds.get()).isEqualTo(3);
+    }
+}
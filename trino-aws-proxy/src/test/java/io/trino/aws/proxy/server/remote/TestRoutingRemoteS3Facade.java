@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import io.airlift.bootstrap.Bootstrap;
+import io.airlift.bootstrap.LifeCycleManager;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import io.trino.aws.proxy.server.dns.DnsCache;
+import io.trino.aws.proxy.server.dns.DnsCacheConfig;
+import io.trino.aws.proxy.server.remote.RoutingRemoteS3Facade.Backend;
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static io.airlift.configuration.ConfigBinder.configBinder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRoutingRemoteS3Facade
+{
+    @Test
+    public void testBucketTrie()
+    {
+        BucketTrie<String> trie = BucketTrie.build(ImmutableMap.of(
+                "logs", "exact",
+                "logs*", "logs-prefix",
+                "logs-archive*", "archive-prefix",
+                "l*", "l-prefix"));
+
+        assertThat(trie.match("logs")).hasValue("exact");
+        assertThat(trie.match("logs-2024")).hasValue("logs-prefix");
+        assertThat(trie.match("logs-archive")).hasValue("archive-prefix");
+        assertThat(trie.match("logs-archive-old")).hasValue("archive-prefix");
+        assertThat(trie.match("lo")).hasValue("l-prefix");
+        assertThat(trie.match("data")).isEmpty();
+        assertThat(trie.match("")).isEmpty();
+
+        assertThat(BucketTrie.build(ImmutableMap.of("*", "all")).match("anything")).hasValue("all");
+    }
+
+    @Test
+    public void testRouting()
+            throws Exception
+    {
+        Injector injector = new Bootstrap(
+                new RoutingModule(),
+                binder -> {
+                    configBinder(binder).bindConfig(DnsCacheConfig.class);
+                    binder.bind(DnsCache.class).in(Scopes.SINGLETON);
+                    binder.bind(OpenTelemetry.class).toInstance(OpenTelemetry.noop());
+                    binder.bind(Tracer.class).toInstance(OpenTelemetry.noop().getTracer("test"));
+                })
+                .doNotInitializeLogging()
+                .setRequiredConfigurationProperties(ImmutableMap.<String, String>builder()
+                        .put("s3proxy.routing.backends", "minio,aws")
+                        .put("s3proxy.routing.default-backend", "aws")
+                        .put("s3proxy.routing.backend.minio.buckets", "local-*,scratch")
+                        .put("s3proxy.routing.backend.minio.hostname", "minio.internal")
+                        .put("s3proxy.routing.backend.minio.port", "9000")
+                        .put("s3proxy.routing.backend.minio.https", "false")
+                        .put("s3proxy.routing.backend.minio.path-style", "true")
+                        .put("s3proxy.routing.backend.minio.region", "local")
+                        .put("s3proxy.routing.backend.minio.http-client.max-connections-per-server", "10")
+                        .put("s3proxy.routing.backend.aws.buckets", "shared")
+                        .buildOrThrow())
+                .initialize();
+        try {
+            RemoteS3Facade facade = injector.getInstance(RemoteS3Facade.class);
+
+            assertThat(facade.buildEndpoint("key", ImmutableMultiMap.empty(), "local-data", "us-east-1")).isEqualTo(URI.create("http://minio.internal:9000/local-data/key"));
+            assertThat(facade.buildEndpoint("key", ImmutableMultiMap.empty(), "scratch", "us-east-1")).isEqualTo(URI.create("http://minio.internal:9000/scratch/key"));
+            assertThat(facade.remoteRegion("scratch", "us-east-1")).isEqualTo("local");
+            assertThat(facade.buildEndpoint("key", ImmutableMultiMap.empty(), "shared", "us-east-1")).isEqualTo(URI.create("https://shared.s3.us-east-1.amazonaws.com/key"));
+            assertThat(facade.remoteRegion("shared", "us-east-1")).isEqualTo("us-east-1");
+            // unmatched buckets and requests without a bucket go to the default backend
+            assertThat(facade.buildEndpoint("key", ImmutableMultiMap.empty(), "other", "eu-west-1")).isEqualTo(URI.create("https://other.s3.eu-west-1.amazonaws.com/key"));
+            assertThat(facade.remoteUri("eu-west-1")).isEqualTo(URI.create("https://s3.eu-west-1.amazonaws.com/"));
+
+            assertThat(facade.httpClient("local-data")).isPresent();
+            assertThat(facade.httpClient("local-data").get()).isNotSameAs(facade.httpClient("shared").get());
+        }
+        finally {
+            injector.getInstance(LifeCycleManager.class).stop();
+        }
+    }
+
+    @Test
+    public void testNoDefaultBackend()
+    {
+        RemoteS3Facade facade = new RoutingRemoteS3Facade(
+                ImmutableList.of(Backend.fromConfig("minio", new RemoteBackendConfig().setBuckets(ImmutableList.of("data")).setHostname("minio"), new LoadBalancingConfig(), new TestingHttpClient(_ -> null))),
+                Optional.empty());
+
+        assertThat(facade.buildEndpoint("key", ImmutableMultiMap.empty(), "data", "us-east-1")).isEqualTo(URI.create("https://data.minio/key"));
+        assertThatThrownBy(() -> facade.buildEndpoint("key", ImmutableMultiMap.empty(), "other", "us-east-1"))
+                .isInstanceOf(WebApplicationException.class);
+    }
+}
@@ -16,6 +16,7 @@ package io.trino.aws.proxy.server.rest;
 import com.google.inject.Inject;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.Request;
+import io.trino.aws.proxy.server.buffer.BufferPool;
 import io.trino.aws.proxy.server.rest.TestHangingStreamingResponseHandler.ForTimeout;
 import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.GET;
@@ -29,6 +30,7 @@ import jakarta.ws.rs.core.UriInfo;
 
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -43,12 +45,14 @@ import static java.util.Objects.requireNonNull;
 public class HangingResource
 {
     private final HttpClient httpClient;
+    private final BufferPool bufferPool;
     private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
 
     @Inject
-    public HangingResource(@ForTimeout HttpClient httpClient)
+    public HangingResource(@ForTimeout HttpClient httpClient, BufferPool bufferPool)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
     }
 
     @PreDestroy
@@ -62,7 +66,7 @@ public class HangingResource
     {
         // simulate calling a remote request and streaming the result while the remote server hangs
         Request request = prepareGet().setUri(uriInfo.getBaseUri().resolve("hang")).build();
-        httpClient.execute(request, new StreamingResponseHandler(asyncResponse, () -> {}));
+        httpClient.execute(request, new StreamingResponseHandler(asyncResponse, () -> {}, Optional.empty(), bufferPool, Optional.empty()));
     }
 
     @GET
@@ -29,6 +29,8 @@ import io.airlift.jaxrs.JaxrsModule;
 import io.airlift.json.JsonModule;
 import io.airlift.node.testing.TestingNodeModule;
 import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.buffer.BufferPool;
+import io.trino.aws.proxy.server.buffer.BufferPoolConfig;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -40,6 +42,7 @@ import java.net.URI;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static io.airlift.http.client.HttpClientBinder.httpClientBinder;
 import static io.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.prepareGet;
@@ -49,6 +52,9 @@ import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.ElementType.PARAMETER;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 
@@ -74,6 +80,7 @@ public class TestHangingStreamingResponseHandler
     {
         Module module = binder -> {
             jaxrsBinder(binder).bind(HangingResource.class);
+            binder.bind(BufferPool.class).toInstance(new BufferPool(new BufferPoolConfig().setLeakDetectionEnabled(true)));
 
             httpClientBinder(binder).bindHttpClient("test", ForTimeout.class)
                     .withConfigDefaults(config -> config.setRequestTimeout(TIMEOUT)
@@ -111,5 +118,14 @@ public class TestHangingStreamingResponseHandler
         Request request = prepareGet().setUri(baseUrl).build();
         assertThatThrownBy(() -> httpClient.execute(request, createJsonResponseHandler(jsonCodec(String.class))))
                 .hasRootCauseInstanceOf(EOFException.class);
+
+        // the transfer buffer is released once the failed stream unwinds, which can lag the client seeing the failure
+        BufferPool bufferPool = injector.getInstance(BufferPool.class);
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while ((bufferPool.getOutstandingBuffers() > 0) && (System.nanoTime() < deadline)) {
+            sleepUninterruptibly(10, MILLISECONDS);
+        }
+        bufferPool.checkNoOutstandingBuffers();
+        assertThat(bufferPool.getAllocations().getTotalCount()).isEqualTo(1);
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRequestLoggerController
+{
+    private final RequestLoggerController controller = new RequestLoggerController(new TrinoS3ProxyConfig());
+
+    @Test
+    public void testDisabledSessionsAreNotRegistered()
+    {
+        // debug logging is disabled in tests
+        Request request = request("AKID", "/api/v1/s3Proxy/s3/bucket/key");
+        RequestLoggingSession session = controller.newRequestSession(request, SigningServiceType.S3, "127.0.0.1");
+        session.logProperty("name", "value");
+        assertThat(controller.currentRequestSession(request.requestId())).isSameAs(session);
+        session.close();
+
+        controller.verifyState();
+    }
+
+    @Test
+    public void testUnfinishedSessionsAreClosedOnShutdown()
+    {
+        controller.setRules(List.of(new RequestLoggingRule(Optional.empty(), Optional.empty(), Optional.empty(), OptionalDouble.of(1))));
+        Request request = request("AKID", "/api/v1/s3Proxy/s3/bucket/key");
+        RequestLoggingSession session = controller.newRequestSession(request, SigningServiceType.S3, "127.0.0.1");
+        assertThat(controller.currentRequestSession(request.requestId())).isSameAs(session);
+
+        // a request cut off by the drain deadline does not fail the shutdown
+        controller.verifyState();
+        assertThat(controller.currentRequestSession(request.requestId())).isSameAs(controller.currentRequestSession(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testRules()
+    {
+        controller.setRules(List.of(
+                rule(Optional.of("AKID"), Optional.empty(), Optional.empty()),
+                rule(Optional.empty(), Optional.of("traced"), Optional.of("10.1.0.0/16"))));
+
+        assertTraced(request("AKID", "/api/v1/s3Proxy/s3/bucket/key"), "192.168.1.1", true);
+        assertTraced(request("OTHER", "/api/v1/s3Proxy/s3/bucket/key"), "10.1.2.3", false);
+        assertTraced(request("OTHER", "/api/v1/s3Proxy/s3/traced/key"), "10.1.2.3", true);
+        assertTraced(request("OTHER", "/api/v1/s3Proxy/s3/traced/key"), "10.2.2.3", false);
+        assertTraced(request("OTHER", "/api/v1/s3Proxy/s3/traced"), "10.1.255.255", true);
+        assertTraced(request("OTHER", "/api/v1/s3Proxy/s3/traced/key"), "[::1]", false);
+
+        controller.setRules(List.of(new RequestLoggingRule(Optional.empty(), Optional.empty(), Optional.of("::1"), OptionalDouble.empty())));
+        assertTraced(request("OTHER", "/api/v1/s3Proxy/s3/traced/key"), "[::1]", true);
+
+        // sampled rules
+        controller.setRules(List.of(new RequestLoggingRule(Optional.empty(), Optional.empty(), Optional.empty(), OptionalDouble.of(0))));
+        assertTraced(request("AKID", "/api/v1/s3Proxy/s3/bucket/key"), "127.0.0.1", false);
+        controller.setRules(List.of(new RequestLoggingRule(Optional.empty(), Optional.empty(), Optional.empty(), OptionalDouble.of(1))));
+        assertTraced(request("AKID", "/api/v1/s3Proxy/s3/bucket/key"), "127.0.0.1", true);
+
+        controller.setRules(List.of());
+        controller.verifyState();
+    }
+
+    @Test
+    public void testInvalidRules()
+    {
+        assertThatThrownBy(() -> rule(Optional.empty(), Optional.empty(), Optional.of("10.0.0.0/33")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rule(Optional.empty(), Optional.empty(), Optional.of("example.com")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RequestLoggingRule(Optional.empty(), Optional.empty(), Optional.empty(), OptionalDouble.of(1.5)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertTraced(Request request, String clientAddress, boolean traced)
+    {
+        try (RequestLoggingSession session = controller.newRequestSession(request, SigningServiceType.S3, clientAddress)) {
+            assertThat(controller.currentRequestSession(request.requestId())).isSameAs(session);
+            // requests that are not traced get the no-op session, which is also returned for unknown requests
+            assertThat(session == controller.currentRequestSession(UUID.randomUUID())).isEqualTo(!traced);
+        }
+    }
+
+    private static RequestLoggingRule rule(Optional<String> accessKey, Optional<String> bucket, Optional<String> clientAddress)
+    {
+        return new RequestLoggingRule(accessKey, bucket, clientAddress, OptionalDouble.empty());
+    }
+
+    private static Request request(String accessKey, String path)
+    {
+        String authorization = "AWS4-HMAC-SHA256 Credential=%s/20240101/us-east-1/s3/aws4_request, SignedHeaders=host;x-amz-date, Signature=abc".formatted(accessKey);
+        return new Request(
+                UUID.randomUUID(),
+                RequestAuthorization.parse(authorization, Optional.empty()),
+                "20240101T000000Z",
+                URI.create("http://localhost" + path),
+                ImmutableMultiMap.empty(),
+                ImmutableMultiMap.empty(),
+                "GET",
+                RequestContent.EMPTY);
+    }
+}
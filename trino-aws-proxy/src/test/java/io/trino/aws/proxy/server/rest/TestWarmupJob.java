@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.json.JsonCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestWarmupJob
+{
+    @Test
+    public void testAccessKeyIsNotReported()
+    {
+        JsonCodec<WarmupRequest> requestCodec = jsonCodec(WarmupRequest.class);
+        WarmupRequest request = requestCodec.fromJson("{\"accessKey\": \"AKID\", \"bucket\": \"bucket\", \"prefixes\": [\"dir/\"]}");
+        assertThat(request.accessKey()).isEqualTo("AKID");
+        assertThat(request.region()).isEqualTo(Optional.empty());
+
+        String json = jsonCodec(WarmupJob.class).toJson(new WarmupJob("id", request));
+        assertThat(json)
+                .contains("\"bucket\" : \"bucket\"")
+                .contains("dir/")
+                .doesNotContain("accessKey")
+                .doesNotContain("AKID");
+    }
+}
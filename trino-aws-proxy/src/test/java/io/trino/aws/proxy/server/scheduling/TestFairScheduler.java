@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.scheduling;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.scheduling.FairScheduler.Permit;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.Credentials;
+import io.trino.aws.proxy.spi.remote.RemoteSessionRole;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestFairScheduler
+{
+    @Test
+    public void testWeightedDispatch()
+            throws Exception
+    {
+        FairScheduler scheduler = scheduler(new SchedulingConfig().setMaxQueuedTime(new Duration(10, SECONDS)), ImmutableMap.of(
+                "heavy", new SchedulingClassConfig().setWeight(3),
+                "light", new SchedulingClassConfig().setWeight(1)));
+
+        List<String> granted = new CopyOnWriteArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Permit blocker = scheduler.acquire("default");
+            for (int i = 0; i < 4; i++) {
+                for (String className : ImmutableList.of("heavy", "light")) {
+                    executor.submit(() -> {
+                        try (Permit permit = scheduler.acquire(className)) {
+                            granted.add(permit.className().orElseThrow());
+                        }
+                    });
+                }
+            }
+            awaitQueued(scheduler, 8);
+            blocker.close();
+        }
+
+        // each heavy request costs a third of a light one, so heavy requests are let through three at a time
+        assertThat(granted).containsExactly("heavy", "light", "heavy", "heavy", "heavy", "light", "light", "light");
+        assertThat(scheduler.getAvailableSlots()).isEqualTo(1);
+        assertThat(scheduler.getClassStats().get("heavy").getAdmitted().getTotalCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testChargedBytes()
+            throws Exception
+    {
+        FairScheduler scheduler = scheduler(new SchedulingConfig().setMaxQueuedTime(new Duration(10, SECONDS)), ImmutableMap.of(
+                "bulk", new SchedulingClassConfig(),
+                "interactive", new SchedulingClassConfig()));
+
+        List<String> granted = new CopyOnWriteArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try (Permit permit = scheduler.acquire("bulk")) {
+                permit.charge(1024 * 1024);
+                List<String> classNames = ImmutableList.of("bulk", "interactive", "interactive");
+                for (int i = 0; i < classNames.size(); i++) {
+                    String className = classNames.get(i);
+                    executor.submit(() -> {
+                        try (Permit queued = scheduler.acquire(className)) {
+                            granted.add(queued.className().orElseThrow());
+                        }
+                    });
+                    awaitQueued(scheduler, i + 1);
+                }
+            }
+        }
+
+        // the class that moved a megabyte waits until the other has caught up
+        assertThat(granted).containsExactly("interactive", "interactive", "bulk");
+        assertThat(scheduler.getClassStats().get("bulk").getChargedBytes().getTotalCount()).isEqualTo(1024 * 1024);
+    }
+
+    @Test
+    public void testQueueLimits()
+            throws Exception
+    {
+        FairScheduler scheduler = scheduler(new SchedulingConfig().setMaxQueuedTime(new Duration(50, MILLISECONDS)), ImmutableMap.of(
+                "small", new SchedulingClassConfig().setMaxQueuedRequests(0)));
+
+        try (Permit _ = scheduler.acquire("default")) {
+            assertThatThrownBy(() -> scheduler.acquire("small"))
+                    .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+            assertThat(scheduler.getClassStats().get("small").getRejected().getTotalCount()).isEqualTo(1);
+
+            assertThatThrownBy(() -> scheduler.acquire("default"))
+                    .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+            assertThat(scheduler.getClassStats().get("default").getTimedOut().getTotalCount()).isEqualTo(1);
+            assertThat(scheduler.getQueuedRequests()).isEqualTo(0);
+        }
+
+        try (Permit permit = scheduler.acquire("small")) {
+            assertThat(permit.className()).contains("small");
+            assertThat(scheduler.getAvailableSlots()).isEqualTo(0);
+        }
+        assertThat(scheduler.getAvailableSlots()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBackgroundRequests()
+            throws Exception
+    {
+        FairScheduler scheduler = scheduler(new SchedulingConfig().setMaxQueuedTime(new Duration(10, SECONDS)).setMaxBackgroundRequests(1), ImmutableMap.of());
+
+        List<String> granted = new CopyOnWriteArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Permit background = scheduler.tryAcquireBackground().orElseThrow();
+            assertThat(background.className()).isEmpty();
+            assertThat(scheduler.getAvailableSlots()).isEqualTo(0);
+            assertThat(scheduler.getAvailableBackgroundSlots()).isEqualTo(0);
+            assertThat(scheduler.tryAcquireBackground()).isEmpty();
+
+            executor.submit(() -> {
+                try (Permit _ = scheduler.acquire("default")) {
+                    granted.add("client");
+                }
+            });
+            awaitQueued(scheduler, 1);
+            executor.submit(() -> {
+                try (Permit _ = scheduler.acquireBackground()) {
+                    granted.add("background");
+                }
+                return null;
+            });
+            background.close();
+        }
+
+        // the waiting client request goes first
+        assertThat(granted).containsExactly("client", "background");
+        assertThat(scheduler.getAvailableSlots()).isEqualTo(1);
+        assertThat(scheduler.getAvailableBackgroundSlots()).isEqualTo(1);
+
+        // the background limit also applies when scheduling is disabled
+        FairScheduler unscheduled = new FairScheduler(new SchedulingConfig().setMaxBackgroundRequests(1), ImmutableMap.of(), new MBeanExporter(new TestingMBeanServer()));
+        try (Permit _ = unscheduled.tryAcquireBackground().orElseThrow()) {
+            assertThat(unscheduled.tryAcquireBackground()).isEmpty();
+        }
+        assertThat(unscheduled.tryAcquireBackground()).isPresent();
+    }
+
+    @Test
+    public void testClassify()
+    {
+        FairScheduler scheduler = scheduler(new SchedulingConfig(), ImmutableMap.of(
+                "etl", new SchedulingClassConfig().setAccessKeys(ImmutableList.of("etl-key")),
+                "dashboards", new SchedulingClassConfig().setRoles(ImmutableList.of("arn:aws:iam::123456789012:role/dashboards"))));
+
+        assertThat(scheduler.classify(signingMetadata("etl-key", Optional.empty()))).isEqualTo("etl");
+        assertThat(scheduler.classify(signingMetadata("other-key", Optional.empty()))).isEqualTo("default");
+        assertThat(scheduler.classify(signingMetadata("etl-key", Optional.of("arn:aws:iam::123456789012:role/dashboards")))).isEqualTo("dashboards");
+        // roles without a class fall back to the class of the access key
+        assertThat(scheduler.classify(signingMetadata("etl-key", Optional.of("arn:aws:iam::123456789012:role/other")))).isEqualTo("etl");
+
+        assertThatThrownBy(() -> scheduler(new SchedulingConfig(), ImmutableMap.of(
+                "first", new SchedulingClassConfig().setAccessKeys(ImmutableList.of("key")),
+                "second", new SchedulingClassConfig().setAccessKeys(ImmutableList.of("key")))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("more than one scheduling class");
+    }
+
+    private static FairScheduler scheduler(SchedulingConfig config, Map<String, SchedulingClassConfig> classes)
+    {
+        return new FairScheduler(config.setEnabled(true).setMaxConcurrentRequests(1), classes, new MBeanExporter(new TestingMBeanServer()));
+    }
+
+    private static void awaitQueued(FairScheduler scheduler, int queued)
+            throws InterruptedException
+    {
+        while (scheduler.getQueuedRequests() < queued) {
+            MILLISECONDS.sleep(1);
+        }
+    }
+
+    private static SigningMetadata signingMetadata(String accessKey, Optional<String> roleArn)
+    {
+        Credential emulated = new Credential(accessKey, "secret", Optional.empty());
+        Credentials credentials = new Credentials(emulated, Optional.empty(), roleArn.map(arn -> new RemoteSessionRole("us-east-1", arn, Optional.empty())));
+        return new SigningMetadata(SigningServiceType.S3, credentials, Optional.empty());
+    }
+}
@@ -14,23 +14,41 @@
 package io.trino.aws.proxy.server.signing;
 
 import io.airlift.units.Duration;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
 import io.trino.aws.proxy.server.credentials.CredentialsController;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
+import io.trino.aws.proxy.server.metrics.ProxyMetricsConfig;
+import io.trino.aws.proxy.server.metrics.RequestPhase;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
+import io.trino.aws.proxy.server.rest.TrinoS3ProxyConfig;
+import io.trino.aws.proxy.server.testing.InMemoryTracing;
+import io.trino.aws.proxy.server.testing.InMemoryTracing.FinishedSpan;
 import io.trino.aws.proxy.server.testing.TestingRemoteS3Facade;
 import io.trino.aws.proxy.spi.collections.ImmutableMultiMap;
 import io.trino.aws.proxy.spi.credentials.Credential;
 import io.trino.aws.proxy.spi.credentials.Credentials;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
+import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
 import io.trino.aws.proxy.spi.signing.SigningController;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import jakarta.ws.rs.WebApplicationException;
 import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
 
 import java.net.URI;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static io.trino.aws.proxy.server.tracing.ProxySpans.REQUEST_ID;
+import static io.trino.aws.proxy.server.tracing.ProxySpans.SIGNATURE_VALID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -39,8 +57,10 @@ public class TestSigningController
     private static final Credentials CREDENTIALS = Credentials.build(new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY"));
 
     private final CredentialsProvider credentialsProvider = (emulatedAccessKey, session) -> Optional.of(CREDENTIALS);
-    private final CredentialsController credentialsController = new CredentialsController(new TestingRemoteS3Facade(), credentialsProvider);
-    private final SigningController signingController = new InternalSigningController(credentialsController, new SigningControllerConfig().setMaxClockDrift(new Duration(99999, TimeUnit.DAYS)), new RequestLoggerController());
+    private final ProxyMetrics proxyMetrics = new ProxyMetrics(new ProxyMetricsConfig(), new MBeanExporter(new TestingMBeanServer()));
+    private final InMemoryTracing tracing = new InMemoryTracing();
+    private final CredentialsController credentialsController = new CredentialsController(new TestingRemoteS3Facade(), credentialsProvider, proxyMetrics, tracing);
+    private final SigningController signingController = new InternalSigningController(credentialsController, new SigningControllerConfig().setMaxClockDrift(new Duration(99999, TimeUnit.DAYS)), new RequestLoggerController(new TrinoS3ProxyConfig()), proxyMetrics, tracing);
 
     @Test
     public void testRootLs()
@@ -71,7 +91,7 @@ public class TestSigningController
     @Test
     public void testRootExpiredClock()
     {
-        SigningController signingController = new InternalSigningController(credentialsController, new SigningControllerConfig().setMaxClockDrift(new Duration(1, TimeUnit.MINUTES)), new RequestLoggerController());
+        SigningController signingController = new InternalSigningController(credentialsController, new SigningControllerConfig().setMaxClockDrift(new Duration(1, TimeUnit.MINUTES)), new RequestLoggerController(new TrinoS3ProxyConfig()), proxyMetrics, tracing);
 
         // values discovered from an AWS CLI request sent to a dummy local HTTP server
         ImmutableMultiMap.Builder requestHeadersBuilder = ImmutableMultiMap.builder(false);
@@ -126,4 +146,55 @@ public class TestSigningController
 
         assertThat(signature).isEqualTo("AWS4-HMAC-SHA256 Credential=THIS_IS_AN_ACCESS_KEY/20240516/us-east-1/s3/aws4_request, SignedHeaders=host;x-amz-content-sha256;x-amz-date;x-amz-security-token, Signature=222d7b7fcd4d5560c944e8fecd9424ee3915d131c3ad9e000d65db93e87946c4");
     }
+
+    @Test
+    public void testValidationSpans()
+    {
+        ImmutableMultiMap.Builder requestHeadersBuilder = ImmutableMultiMap.builder(false);
+        String xAmzDate = "20240516T024511Z";
+        requestHeadersBuilder.putOrReplaceSingle("X-Amz-Date", xAmzDate);
+        requestHeadersBuilder.putOrReplaceSingle("X-Amz-Content-SHA256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+        requestHeadersBuilder.putOrReplaceSingle("X-Amz-Security-Token", "FwoGZXIvYXdzEP3//////////wEaDG79rlcAjsgKPP9N3SKIAu7/Zvngne5Ov6kGrDcIIPUZYkGpwNbj8zNnbWgOhiqmOCM3hrk4NuH17mP5n3nC7urlXZxaTCywKpAHpO3YsvLXcwjlfaYFA0Au4oejwSbU9ybIlzPzrqz7lVesgCfJOV+rj5F5UAh19d7RpRpA6Vy4nxGBTTlCNIVbkW9fp2Esql2/vsdh77rAG+j+BQegtegDCKBfen4gHMdvEOF6hyc4ne43eLXjpvUKxBgpI9MjOHtNHrDbOOBFXDDyknoESgE9Hsm12nDuVQhwrI/hhA4YB/MSIpl4FTgVs2sQP3K+v65tmyvIlpL6O78S6spMM9Tv/F4JLtksTzb90w46uZk9sxKC/RBkRijisM6tBjIrr/0znxnW3i5ggGAX4H/Z3aWlxSdzNs2UGWtqig9Plp3Xa9gG+zCKcXmDAA==");
+        requestHeadersBuilder.putOrReplaceSingle("Host", "localhost:10064");
+        String authorization = "AWS4-HMAC-SHA256 Credential=THIS_IS_AN_ACCESS_KEY/20240516/us-east-1/s3/aws4_request, SignedHeaders=host;x-amz-content-sha256;x-amz-date;x-amz-security-token, Signature=9a19c251bf4e1533174e80da59fa57c65b3149b611ec9a4104f6944767c25704";
+        Request request = new Request(
+                UUID.randomUUID(),
+                RequestAuthorization.parse(authorization),
+                xAmzDate,
+                URI.create("http://localhost:10064/"),
+                requestHeadersBuilder.build(),
+                ImmutableMultiMap.empty(),
+                "GET",
+                RequestContent.EMPTY);
+
+        // the client's trace context is the parent of the proxy's spans
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        Map<String, String> clientHeaders = Map.of("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01");
+        Context clientContext = tracing.getPropagators().getTextMapPropagator().extract(Context.root(), clientHeaders, new TextMapGetter<>()
+        {
+            @Override
+            public Iterable<String> keys(Map<String, String> carrier)
+            {
+                return carrier.keySet();
+            }
+
+            @Override
+            public String get(Map<String, String> carrier, String key)
+            {
+                return carrier.get(key);
+            }
+        });
+        try (Scope _ = clientContext.makeCurrent()) {
+            signingController.validateAndParseAuthorization(request, SigningServiceType.S3);
+        }
+
+        assertThat(tracing.finishedSpans()).extracting(FinishedSpan::name)
+                .containsExactly(RequestPhase.CREDENTIALS_LOOKUP.phaseName(), RequestPhase.SIGNATURE_VERIFICATION.phaseName());
+        assertThat(tracing.finishedSpans()).allSatisfy(span -> {
+            assertThat(span.spanContext().getTraceId()).isEqualTo(traceId);
+            assertThat(span.parent().orElseThrow().getSpanId()).isEqualTo("00f067aa0ba902b7");
+            assertThat(span.attribute(REQUEST_ID)).contains(request.requestId().toString());
+        });
+        assertThat(tracing.finishedSpan(RequestPhase.SIGNATURE_VERIFICATION.phaseName()).orElseThrow().attribute(SIGNATURE_VALID)).contains(true);
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.testing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.TracerProvider;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.ContextPropagators;
+
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A tracer that keeps finished spans in memory, with W3C trace context propagation, for testing
+ */
+public class InMemoryTracing
+        implements OpenTelemetry, Tracer
+{
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final List<FinishedSpan> finishedSpans = new CopyOnWriteArrayList<>();
+
+    public record FinishedSpan(String name, SpanContext spanContext, Optional<SpanContext> parent, Map<AttributeKey<?>, Object> attributes, StatusCode status)
+    {
+        public FinishedSpan
+        {
+            requireNonNull(name, "name is null");
+            requireNonNull(spanContext, "spanContext is null");
+            requireNonNull(parent, "parent is null");
+            attributes = ImmutableMap.copyOf(attributes);
+            requireNonNull(status, "status is null");
+        }
+
+        public Optional<Object> attribute(AttributeKey<?> key)
+        {
+            return Optional.ofNullable(attributes.get(key));
+        }
+    }
+
+    public List<FinishedSpan> finishedSpans()
+    {
+        return ImmutableList.copyOf(finishedSpans);
+    }
+
+    public Optional<FinishedSpan> finishedSpan(String name)
+    {
+        return finishedSpans.stream().filter(span -> span.name().equals(name)).findFirst();
+    }
+
+    public void clear()
+    {
+        finishedSpans.clear();
+    }
+
+    @Override
+    public TracerProvider getTracerProvider()
+    {
+        return new TracerProvider()
+        {
+            @Override
+            public Tracer get(String instrumentationScopeName)
+            {
+                return InMemoryTracing.this;
+            }
+
+            @Override
+            public Tracer get(String instrumentationScopeName, String instrumentationScopeVersion)
+            {
+                return InMemoryTracing.this;
+            }
+        };
+    }
+
+    @Override
+    public ContextPropagators getPropagators()
+    {
+        return ContextPropagators.create(W3CTraceContextPropagator.getInstance());
+    }
+
+    @Override
+    public SpanBuilder spanBuilder(String spanName)
+    {
+        return new InMemorySpanBuilder(spanName);
+    }
+
+    private final class InMemorySpanBuilder
+            implements SpanBuilder
+    {
+        private final String name;
+        private final Map<AttributeKey<?>, Object> attributes = new ConcurrentHashMap<>();
+        private Optional<Context> parent = Optional.empty();
+
+        private InMemorySpanBuilder(String name)
+        {
+            this.name = requireNonNull(name, "name is null");
+        }
+
+        @Override
+        public SpanBuilder setParent(Context context)
+        {
+            parent = Optional.of(context);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder setNoParent()
+        {
+            parent = Optional.of(Context.root());
+            return this;
+        }
+
+        @Override
+        public SpanBuilder addLink(SpanContext spanContext)
+        {
+            return this;
+        }
+
+        @Override
+        public SpanBuilder addLink(SpanContext spanContext, Attributes attributes)
+        {
+            return this;
+        }
+
+        @Override
+        public SpanBuilder setAttribute(String key, String value)
+        {
+            return setAttribute(AttributeKey.stringKey(key), value);
+        }
+
+        @Override
+        public SpanBuilder setAttribute(String key, long value)
+        {
+            return setAttribute(AttributeKey.longKey(key), value);
+        }
+
+        @Override
+        public SpanBuilder setAttribute(String key, double value)
+        {
+            return setAttribute(AttributeKey.doubleKey(key), value);
+        }
+
+        @Override
+        public SpanBuilder setAttribute(String key, boolean value)
+        {
+            return setAttribute(AttributeKey.booleanKey(key), value);
+        }
+
+        @Override
+        public <T> SpanBuilder setAttribute(AttributeKey<T> key, T value)
+        {
+            if (value != null) {
+                attributes.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public SpanBuilder setSpanKind(SpanKind spanKind)
+        {
+            return this;
+        }
+
+        @Override
+        public SpanBuilder setStartTimestamp(long startTimestamp, TimeUnit unit)
+        {
+            return this;
+        }
+
+        @Override
+        public Span startSpan()
+        {
+            SpanContext parentContext = Span.fromContext(parent.orElseGet(Context::current)).getSpanContext();
+            String traceId = parentContext.isValid() ? parentContext.getTraceId() : randomHex(16);
+            SpanContext spanContext = SpanContext.create(traceId, randomHex(8), TraceFlags.getSampled(), TraceState.getDefault());
+            return new InMemorySpan(name, spanContext, Optional.of(parentContext).filter(SpanContext::isValid), attributes);
+        }
+    }
+
+    private final class InMemorySpan
+            implements Span
+    {
+        private final SpanContext spanContext;
+        private final Optional<SpanContext> parent;
+        private final Map<AttributeKey<?>, Object> attributes;
+        private volatile String name;
+        private volatile StatusCode status = StatusCode.UNSET;
+        private volatile boolean ended;
+
+        private InMemorySpan(String name, SpanContext spanContext, Optional<SpanContext> parent, Map<AttributeKey<?>, Object> attributes)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.spanContext = requireNonNull(spanContext, "spanContext is null");
+            this.parent = requireNonNull(parent, "parent is null");
+            this.attributes = new ConcurrentHashMap<>(attributes);
+        }
+
+        @Override
+        public <T> Span setAttribute(AttributeKey<T> key, T value)
+        {
+            if (value != null) {
+                attributes.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public Span addEvent(String name, Attributes attributes)
+        {
+            return this;
+        }
+
+        @Override
+        public Span addEvent(String name, Attributes attributes, long timestamp, TimeUnit unit)
+        {
+            return this;
+        }
+
+        @Override
+        public Span setStatus(StatusCode statusCode, String description)
+        {
+            status = statusCode;
+            return this;
+        }
+
+        @Override
+        public Span recordException(Throwable exception, Attributes additionalAttributes)
+        {
+            return this;
+        }
+
+        @Override
+        public Span updateName(String name)
+        {
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public void end()
+        {
+            if (!ended) {
+                ended = true;
+                finishedSpans.add(new FinishedSpan(name, spanContext, parent, attributes, status));
+            }
+        }
+
+        @Override
+        public void end(long timestamp, TimeUnit unit)
+        {
+            end();
+        }
+
+        @Override
+        public SpanContext getSpanContext()
+        {
+            return spanContext;
+        }
+
+        @Override
+        public boolean isRecording()
+        {
+            return !ended;
+        }
+    }
+
+    private static String randomHex(int bytes)
+    {
+        byte[] value = new byte[bytes];
+        ThreadLocalRandom.current().nextBytes(value);
+        return HEX.formatHex(value);
+    }
+}
@@ -14,6 +14,7 @@
 package io.trino.aws.proxy.server.testing;
 
 import io.trino.aws.proxy.server.remote.RemoteS3Facade;
+import io.trino.aws.proxy.spi.collections.MultiMap;
 import jakarta.ws.rs.core.UriBuilder;
 
 import java.net.URI;
@@ -32,6 +33,12 @@ public class TestingRemoteS3Facade
         return requireNonNull(delegate.get(), "delegate is null").buildEndpoint(uriBuilder, path, bucket, region);
     }
 
+    @Override
+    public URI buildEndpoint(String rawPath, MultiMap queryParameters, String bucket, String region)
+    {
+        return requireNonNull(delegate.get(), "delegate is null").buildEndpoint(rawPath, queryParameters, bucket, region);
+    }
+
     public void setDelegate(RemoteS3Facade delegate)
     {
         this.delegate.set(requireNonNull(delegate, "delegate is null"));
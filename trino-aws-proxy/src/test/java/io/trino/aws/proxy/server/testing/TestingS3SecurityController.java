@@ -14,6 +14,8 @@
 package io.trino.aws.proxy.server.testing;
 
 import com.google.inject.Inject;
+import io.opentelemetry.api.trace.Tracer;
+import io.trino.aws.proxy.server.metrics.ProxyMetrics;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.spi.security.S3DatabaseSecurityFacadeProvider;
@@ -28,9 +30,9 @@ public class TestingS3SecurityController
     private final AtomicReference<Optional<S3SecurityFacadeProvider>> delegate = new AtomicReference<>(Optional.empty());
 
     @Inject
-    public TestingS3SecurityController(Optional<S3SecurityFacadeProvider> s3SecurityFacadeProvider, Optional<S3DatabaseSecurityFacadeProvider> s3DatabaseSecurityFacadeProvider, RequestLoggerController requestLoggerController)
+    public TestingS3SecurityController(Optional<S3SecurityFacadeProvider> s3SecurityFacadeProvider, Optional<S3DatabaseSecurityFacadeProvider> s3DatabaseSecurityFacadeProvider, RequestLoggerController requestLoggerController, ProxyMetrics proxyMetrics, Tracer tracer)
     {
-        super(s3SecurityFacadeProvider, s3DatabaseSecurityFacadeProvider, requestLoggerController);
+        super(s3SecurityFacadeProvider, s3DatabaseSecurityFacadeProvider, requestLoggerController, proxyMetrics, tracer);
     }
 
     @Override
@@ -26,6 +26,7 @@ import io.airlift.bootstrap.LifeCycleManager;
 import io.airlift.event.client.EventModule;
 import io.airlift.http.server.testing.TestingHttpServerModule;
 import io.airlift.jaxrs.JaxrsModule;
+import io.airlift.jmx.testing.TestingJmxModule;
 import io.airlift.json.JsonModule;
 import io.airlift.log.Level;
 import io.airlift.log.Logging;
@@ -38,6 +39,7 @@ import io.trino.aws.proxy.server.testing.containers.PySparkContainer;
 import io.trino.aws.proxy.server.testing.containers.S3Container;
 import io.trino.aws.proxy.server.testing.containers.S3Container.ForS3Container;
 import io.trino.aws.proxy.spi.credentials.Credentials;
+import org.weakref.jmx.guice.MBeanModule;
 
 import java.io.Closeable;
 import java.util.Collection;
@@ -191,12 +193,19 @@ public final class TestingTrinoAwsProxyServer
                 .add(new EventModule())
                 .add(new TestingHttpServerModule())
                 .add(new JsonModule())
-                .add(new JaxrsModule());
+                .add(new JaxrsModule())
+                .add(new MBeanModule())
+                .add(new TestingJmxModule());
 
         extraModules.forEach(modules::add);
 
         Bootstrap app = new Bootstrap(modules.build());
-        Injector injector = app.setOptionalConfigurationProperties(properties).initialize();
+        // fail on buffers released twice; tests can still turn this off
+        Map<String, String> allProperties = ImmutableMap.<String, String>builder()
+                .put("s3proxy.buffer-pool.leak-detection.enabled", "true")
+                .putAll(properties)
+                .buildKeepingLast();
+        Injector injector = app.setOptionalConfigurationProperties(allProperties).initialize();
         Logging.initialize().setLevel("io.trino.aws.proxy", Level.DEBUG);
 
         return new TestingTrinoAwsProxyServer(injector);
@@ -42,7 +42,9 @@ public class TestingTrinoAwsProxyServerModule
     {
         trinoAwsProxyBinder(binder)
                 .bindAssumedRoleProvider(binding -> binding.to(TestingCredentialsRolesProvider.class).in(Scopes.SINGLETON))
-                .bindCredentialsProvider(binding -> binding.to(TestingCredentialsRolesProvider.class).in(Scopes.SINGLETON));
+                .bindCredentialsProvider(binding -> binding.to(TestingCredentialsRolesProvider.class).in(Scopes.SINGLETON))
+                .bindOpenTelemetry(binding -> binding.to(InMemoryTracing.class));
+        binder.bind(InMemoryTracing.class).in(Scopes.SINGLETON);
         binder.bind(TestingCredentialsRolesProvider.class).in(Scopes.SINGLETON);
 
         binder.bind(RemoteS3Facade.class).to(TestingRemoteS3Facade.class).in(Scopes.SINGLETON);